@@ -33,7 +33,6 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.hash.Funnel;
 import com.google.common.hash.Funnels;
-import com.google.common.hash.Hasher;
 import com.google.common.hash.PrimitiveSink;
 import com.vividsolutions.jts.geom.Coordinate;
 import com.vividsolutions.jts.geom.CoordinateFilter;
@@ -104,16 +103,13 @@ public class HashObjectFunnels {
     public static ObjectId hashTree(@Nullable List<Node> trees, @Nullable List<Node> features,
             @Nullable SortedMap<Integer, Bucket> buckets) {
 
-        final Hasher hasher = ObjectId.HASH_FUNCTION.newHasher();
         trees = trees == null ? ImmutableList.of() : trees;
         features = features == null ? ImmutableList.of() : features;
         buckets = buckets == null ? ImmutableSortedMap.of() : buckets;
-        HashObjectFunnels.tree(hasher, trees, features, buckets);
-
-        final byte[] rawKey = hasher.hash().asBytes();
-        final ObjectId id = ObjectId.createNoClone(rawKey);
-
-        return id;
+        try (ObjectIdHasher hasher = ObjectIdHasher.acquire()) {
+            HashObjectFunnels.tree(hasher, trees, features, buckets);
+            return hasher.hash();
+        }
     }
 
     private static final class NullableFunnel<T> implements Funnel<T> {
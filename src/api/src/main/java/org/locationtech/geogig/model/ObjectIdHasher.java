@@ -0,0 +1,185 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.model;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import com.google.common.base.Throwables;
+import com.google.common.hash.Funnel;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.PrimitiveSink;
+
+/**
+ * A {@link PrimitiveSink} that computes {@link ObjectId}s feeding a reusable, thread confined,
+ * SHA-1 {@link MessageDigest} directly, instead of allocating a {@link Hasher} (and the
+ * {@code MessageDigest} clone, scratch buffer, and hash code it creates) per object, as
+ * {@link ObjectId#HASH_FUNCTION ObjectId.HASH_FUNCTION.newHasher()} does.
+ * <p>
+ * Primitives are encoded exactly like {@code Hasher} does (i.e. multi-byte values in little
+ * endian order), so that funneling an object through {@link HashObjectFunnels} results in the
+ * same {@code ObjectId} either way.
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * <code>
+ * try (ObjectIdHasher hasher = ObjectIdHasher.acquire()) {
+ *     funnel.funnel(object, hasher);
+ *     return hasher.hash();
+ * }
+ * </code>
+ * </pre>
+ *
+ * Instances are not thread safe, and shall be {@link #close() released} by the thread that
+ * acquired them.
+ */
+public final class ObjectIdHasher implements PrimitiveSink, AutoCloseable {
+
+    private static final ThreadLocal<ObjectIdHasher> HASHERS = ThreadLocal
+            .withInitial(ObjectIdHasher::new);
+
+    private final MessageDigest digest;
+
+    private final byte[] scratch = new byte[8];
+
+    private boolean inUse;
+
+    private ObjectIdHasher() {
+        try {
+            this.digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    /**
+     * @return the calling thread's hasher, or a new one if it's already in use (e.g. by a funnel
+     *         computing the id of another object)
+     */
+    public static ObjectIdHasher acquire() {
+        ObjectIdHasher hasher = HASHERS.get();
+        if (hasher.inUse) {
+            hasher = new ObjectIdHasher();
+        }
+        hasher.inUse = true;
+        hasher.digest.reset();
+        return hasher;
+    }
+
+    /**
+     * Convenience method to compute the id of {@code object} through {@code funnel}
+     */
+    public static <T> ObjectId hash(T object, Funnel<? super T> funnel) {
+        try (ObjectIdHasher hasher = acquire()) {
+            funnel.funnel(object, hasher);
+            return hasher.hash();
+        }
+    }
+
+    /**
+     * Computes the {@link ObjectId} of the data fed so far, and resets this hasher.
+     */
+    public ObjectId hash() {
+        byte[] raw = digest.digest();
+        return ObjectId.createNoClone(raw);
+    }
+
+    /**
+     * Releases this hasher so it can be acquired again by the same thread.
+     */
+    @Override
+    public void close() {
+        inUse = false;
+    }
+
+    private PrimitiveSink update(int bytes) {
+        digest.update(scratch, 0, bytes);
+        return this;
+    }
+
+    @Override
+    public PrimitiveSink putByte(byte b) {
+        digest.update(b);
+        return this;
+    }
+
+    @Override
+    public PrimitiveSink putBytes(byte[] bytes) {
+        digest.update(bytes);
+        return this;
+    }
+
+    @Override
+    public PrimitiveSink putBytes(byte[] bytes, int off, int len) {
+        digest.update(bytes, off, len);
+        return this;
+    }
+
+    @Override
+    public PrimitiveSink putShort(short s) {
+        scratch[0] = (byte) s;
+        scratch[1] = (byte) (s >>> 8);
+        return update(2);
+    }
+
+    @Override
+    public PrimitiveSink putInt(int i) {
+        scratch[0] = (byte) i;
+        scratch[1] = (byte) (i >>> 8);
+        scratch[2] = (byte) (i >>> 16);
+        scratch[3] = (byte) (i >>> 24);
+        return update(4);
+    }
+
+    @Override
+    public PrimitiveSink putLong(long l) {
+        for (int i = 0; i < 8; i++) {
+            scratch[i] = (byte) (l >>> (8 * i));
+        }
+        return update(8);
+    }
+
+    @Override
+    public PrimitiveSink putFloat(float f) {
+        return putInt(Float.floatToRawIntBits(f));
+    }
+
+    @Override
+    public PrimitiveSink putDouble(double d) {
+        return putLong(Double.doubleToRawLongBits(d));
+    }
+
+    @Override
+    public PrimitiveSink putBoolean(boolean b) {
+        return putByte(b ? (byte) 1 : (byte) 0);
+    }
+
+    @Override
+    public PrimitiveSink putChar(char c) {
+        scratch[0] = (byte) c;
+        scratch[1] = (byte) (c >>> 8);
+        return update(2);
+    }
+
+    @Override
+    public PrimitiveSink putUnencodedChars(CharSequence charSequence) {
+        for (int i = 0, len = charSequence.length(); i < len; i++) {
+            putChar(charSequence.charAt(i));
+        }
+        return this;
+    }
+
+    @Override
+    public PrimitiveSink putString(CharSequence charSequence, Charset charset) {
+        return putBytes(charSequence.toString().getBytes(charset));
+    }
+}
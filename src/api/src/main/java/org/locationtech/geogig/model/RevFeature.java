@@ -14,6 +14,7 @@ import java.util.function.Consumer;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
+import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.GeometryFactory;
 
@@ -71,6 +72,39 @@ public interface RevFeature extends RevObject {
 
     public Optional<Geometry> get(final int index, final GeometryFactory gf);
 
+    /**
+     * Returns the bounds of the geometry value at the provided {@code index}.
+     * <p>
+     * Implementations backed by a serialized representation are encouraged to override this
+     * method and provide the bounds without decoding the geometry, allowing bounding box checks to
+     * avoid materializing the feature values.
+     * 
+     * @return the envelope of the geometry at the provided {@code index}, or
+     *         {@link Optional#absent() absent} if the value is {@code null}, an empty geometry, or
+     *         not a geometry at all
+     */
+    public default Optional<Envelope> getEnvelope(final int index) {
+        Object value = get(index).orNull();
+        if (value instanceof Geometry && !((Geometry) value).isEmpty()) {
+            return Optional.of(new Envelope(((Geometry) value).getEnvelopeInternal()));
+        }
+        return Optional.absent();
+    }
+
+    /**
+     * Expands the provided envelope to include the bounds of all the geometry values in this
+     * feature, as given by {@link #getEnvelope(int)}.
+     */
+    public default void expand(final Envelope env) {
+        final int size = size();
+        for (int i = 0; i < size; i++) {
+            Optional<Envelope> bounds = getEnvelope(i);
+            if (bounds.isPresent()) {
+                env.expandToInclude(bounds.get());
+            }
+        }
+    }
+
     /**
      * Performs the given action for each attribute in the feature, in it's natural order, until all
      * elements have been processed or the action throws an exception.
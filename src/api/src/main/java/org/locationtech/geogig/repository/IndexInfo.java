@@ -40,6 +40,10 @@ public class IndexInfo {
     /**
      * Key by which the feature attribute values is stored on {@link Node#getExtraData()} for
      * materialized index {@link RevTree}s.
+     * <p>
+     * Queries filtering on materialized attributes evaluate the filter against each feature node
+     * while walking the index, so non matching features are never fetched. Buckets carry no per
+     * attribute value ranges though, so only the bounding box prunes whole buckets.
      */
     public static final String FEATURE_ATTRIBUTES_EXTRA_DATA = "@attributes";
 
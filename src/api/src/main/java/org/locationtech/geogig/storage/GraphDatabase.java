@@ -9,14 +9,22 @@
  */
 package org.locationtech.geogig.storage;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
 import java.io.Closeable;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
 
 import org.locationtech.geogig.model.ObjectId;
 import org.locationtech.geogig.repository.RepositoryConnectionException;
 
 import com.google.common.annotations.Beta;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 
 /**
  * Provides an interface for implementations of a graph database, which keeps track of the
@@ -186,6 +194,46 @@ public interface GraphDatabase extends Closeable {
      */
     public ImmutableList<ObjectId> getChildren(ObjectId commitId) throws IllegalArgumentException;
 
+    /**
+     * Retrieves the parents of the given commits and of their ancestors, in bulk.
+     * <p>
+     * The commit graph is traversed breadth first from the given commits, up to {@code maxDepth}
+     * generations: the given commits are generation zero, their parents generation one, and so
+     * on. The returned map contains an entry for every commit of generations {@code 0} to
+     * {@code maxDepth - 1}, hence the commits whose parents are not keys of the map are the ones
+     * at which the traversal stopped. Commits that are not in the database are mapped to an empty
+     * list.
+     * <p>
+     * The default implementation calls {@link #getParents(ObjectId)} for each commit, backends
+     * for which that means a round trip per commit should override it to fetch the ancestry in a
+     * single query.
+     * 
+     * @param commitIds the commits to start the traversal from
+     * @param maxDepth the maximum number of generations to traverse, use
+     *        {@link Integer#MAX_VALUE} for no limit
+     * @return the parents of each traversed commit
+     */
+    public default Map<ObjectId, ImmutableList<ObjectId>> getAncestry(Iterable<ObjectId> commitIds,
+            int maxDepth) {
+        checkNotNull(commitIds, "commitIds is null");
+        checkArgument(maxDepth >= 0, "maxDepth must be >= 0: %s", maxDepth);
+
+        Map<ObjectId, ImmutableList<ObjectId>> ancestry = new HashMap<>();
+        Set<ObjectId> generation = ImmutableSet.copyOf(commitIds);
+        for (int depth = 0; depth < maxDepth && !generation.isEmpty(); depth++) {
+            Set<ObjectId> next = new LinkedHashSet<>();
+            for (ObjectId commitId : generation) {
+                if (!ancestry.containsKey(commitId)) {
+                    ImmutableList<ObjectId> parents = getParents(commitId);
+                    ancestry.put(commitId, parents);
+                    next.addAll(parents);
+                }
+            }
+            generation = next;
+        }
+        return ancestry;
+    }
+
     /**
      * Adds a commit to the database with the given parents. If a commit with the same id already
      * exists, it will not be inserted.
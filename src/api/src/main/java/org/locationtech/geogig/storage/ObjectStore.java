@@ -12,6 +12,7 @@ package org.locationtech.geogig.storage;
 import java.io.Closeable;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.locationtech.geogig.model.ObjectId;
@@ -53,6 +54,20 @@ public interface ObjectStore extends Closeable {
      */
     public boolean exists(ObjectId id);
 
+    /**
+     * Bulk version of {@link #exists(ObjectId)}, determines which of the given {@link ObjectId}s
+     * exist in the object database.
+     * <p>
+     * Implementations are encouraged to perform the check with as few round trips to the storage
+     * backend as possible, and to avoid fetching the objects' contents, so that client code can
+     * cheaply figure out which objects of a large set are missing before transferring them.
+     * 
+     * @param ids the ids to search for
+     * @return the subset of {@code ids} that exist in the database, may be empty but never
+     *         {@code null}
+     */
+    public Set<ObjectId> existsAll(Iterable<ObjectId> ids);
+
     /**
      * Searches the database for {@link ObjectId}s that match the given partial id.
      * 
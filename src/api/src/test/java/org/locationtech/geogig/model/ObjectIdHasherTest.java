@@ -0,0 +1,90 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.function.Consumer;
+
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.PrimitiveSink;
+
+public class ObjectIdHasherTest {
+
+    /**
+     * Feeds the same data to an {@link ObjectIdHasher} and a {@link ObjectId#HASH_FUNCTION}
+     * hasher and checks both produce the same id
+     */
+    private void assertSameHash(Consumer<PrimitiveSink> data) {
+        Hasher expected = ObjectId.HASH_FUNCTION.newHasher();
+        data.accept(expected);
+        try (ObjectIdHasher hasher = ObjectIdHasher.acquire()) {
+            data.accept(hasher);
+            assertEquals(ObjectId.createNoClone(expected.hash().asBytes()), hasher.hash());
+        }
+    }
+
+    @Test
+    public void testPrimitives() {
+        assertSameHash((s) -> s.putByte((byte) -7));
+        assertSameHash((s) -> s.putBytes(new byte[] { 1, 2, 3 }));
+        assertSameHash((s) -> s.putBytes(new byte[] { 1, 2, 3, 4, 5 }, 1, 3));
+        assertSameHash((s) -> s.putShort(Short.MIN_VALUE));
+        assertSameHash((s) -> s.putShort((short) 0x1234));
+        assertSameHash((s) -> s.putInt(Integer.MIN_VALUE));
+        assertSameHash((s) -> s.putInt(0x12345678));
+        assertSameHash((s) -> s.putLong(Long.MIN_VALUE));
+        assertSameHash((s) -> s.putLong(0x123456789abcdefL));
+        assertSameHash((s) -> s.putFloat(-1.5f));
+        assertSameHash((s) -> s.putDouble(Math.PI));
+        assertSameHash((s) -> s.putBoolean(true));
+        assertSameHash((s) -> s.putBoolean(false));
+        assertSameHash((s) -> s.putChar('é'));
+        assertSameHash((s) -> s.putUnencodedChars("geogig áé"));
+        assertSameHash((s) -> s.putString("geogig áé", Charsets.UTF_8));
+    }
+
+    @Test
+    public void testMixed() {
+        assertSameHash((s) -> s.putInt(1).putUnencodedChars("name").putLong(-1L)
+                .putBytes(ObjectId.valueOf("abc123000000000000001234567890abcdef0000")
+                        .getRawValue())
+                .putDouble(0.1).putBoolean(true));
+    }
+
+    @Test
+    public void testEmpty() {
+        assertSameHash((s) -> {
+        });
+    }
+
+    @Test
+    public void testReuse() {
+        ObjectIdHasher first;
+        try (ObjectIdHasher hasher = ObjectIdHasher.acquire()) {
+            first = hasher;
+            hasher.putInt(1);
+            hasher.hash();
+        }
+        // released instance is reused and reset
+        try (ObjectIdHasher hasher = ObjectIdHasher.acquire()) {
+            assertSame(first, hasher);
+            try (ObjectIdHasher nested = ObjectIdHasher.acquire()) {
+                assertNotSame(hasher, nested);
+            }
+        }
+        assertSameHash((s) -> s.putInt(2));
+    }
+}
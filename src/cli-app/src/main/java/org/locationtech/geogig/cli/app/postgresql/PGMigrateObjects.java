@@ -0,0 +1,53 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.cli.app.postgresql;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+
+import org.locationtech.geogig.cli.AbstractCommand;
+import org.locationtech.geogig.cli.CLICommand;
+import org.locationtech.geogig.cli.CommandFailedException;
+import org.locationtech.geogig.cli.GeogigCLI;
+import org.locationtech.geogig.storage.postgresql.Environment;
+import org.locationtech.geogig.storage.postgresql.PGStorage;
+
+import com.beust.jcommander.Parameters;
+
+/**
+ * Migrates the objects tables of a PostgreSQL repository created on a server older than 9.5 to
+ * ignore duplicate inserts through unique indexes instead of rules, and to have features inserted
+ * directly on their partition instead of through a trigger.
+ * 
+ * @see PGStorage#migrateObjectsTables(Environment)
+ */
+@Parameters(commandNames = "pg-migrate-objects", commandDescription = "Migrates the objects tables of a PostgreSQL repository to the unique index layout")
+public class PGMigrateObjects extends AbstractCommand implements CLICommand {
+
+    @Override
+    protected void runInternal(GeogigCLI cli) throws IOException {
+        final URI repoURI = cli.getGeogig().getRepository().getLocation();
+        final Environment config;
+        try {
+            config = Environment.get(repoURI);
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            throw new CommandFailedException("Not a PostgreSQL repository: " + repoURI, e);
+        }
+        int migrated;
+        try {
+            migrated = PGStorage.migrateObjectsTables(config);
+        } catch (IllegalStateException e) {
+            throw new CommandFailedException(e.getMessage(), e);
+        }
+        cli.getConsole().println(migrated == 0 ? "Objects tables are already up to date."
+                : String.format("Migrated %,d objects tables.", migrated));
+    }
+}
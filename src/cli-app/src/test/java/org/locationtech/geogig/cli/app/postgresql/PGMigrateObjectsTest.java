@@ -0,0 +1,82 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.cli.app.postgresql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.locationtech.geogig.cli.Console;
+import org.locationtech.geogig.cli.GeogigCLI;
+import org.locationtech.geogig.storage.postgresql.PGTemporaryTestConfig;
+
+public class PGMigrateObjectsTest {
+
+    @Rule
+    public PGTemporaryTestConfig testConfig = new PGTemporaryTestConfig(getClass().getSimpleName());
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ByteArrayOutputStream output;
+
+    private GeogigCLI cli;
+
+    @Before
+    public void before() {
+        output = new ByteArrayOutputStream();
+        Console console = new Console(new ByteArrayInputStream(new byte[0]), output)
+                .disableAnsi();
+        cli = new GeogigCLI(console);
+    }
+
+    @After
+    public void after() {
+        cli.close();
+    }
+
+    private String execute(String... args) {
+        output.reset();
+        assertEquals(output.toString(), 0, cli.execute(args));
+        return output.toString();
+    }
+
+    @Test
+    public void testMigrate() {
+        final String repoURL = testConfig.getRepoURL();
+        testConfig.createLegacyTables();
+        execute("init", repoURL);
+        cli.setRepositoryURI(repoURL);
+
+        String result = execute("pg-migrate-objects");
+        assertTrue(result, result.contains("Migrated 21 objects tables."));
+
+        result = execute("pg-migrate-objects");
+        assertTrue(result, result.contains("Objects tables are already up to date."));
+    }
+
+    @Test
+    public void testNotAPostgreSQLRepository() {
+        final String repoURL = folder.getRoot().toURI().toString();
+        execute("init", repoURL);
+        cli.setRepositoryURI(repoURL);
+
+        output.reset();
+        assertEquals(-1, cli.execute("pg-migrate-objects"));
+        assertTrue(output.toString(), output.toString().contains("Not a PostgreSQL repository"));
+    }
+}
@@ -11,6 +11,7 @@ package org.locationtech.geogig.cli;
 
 import org.locationtech.geogig.cli.plumbing.Cat;
 import org.locationtech.geogig.cli.plumbing.DiffTree;
+import org.locationtech.geogig.cli.plumbing.Fsck;
 import org.locationtech.geogig.cli.plumbing.Insert;
 import org.locationtech.geogig.cli.plumbing.LsTree;
 import org.locationtech.geogig.cli.plumbing.MergeBase;
@@ -87,6 +88,7 @@ import com.google.inject.AbstractModule;
  * @see Fetch
  * @see Version
  * @see RebuildGraph
+ * @see Fsck
  */
 public class BuiltinCommandsModule extends AbstractModule implements CLIModule {
 
@@ -135,6 +137,7 @@ public class BuiltinCommandsModule extends AbstractModule implements CLIModule {
         bind(WalkGraph.class);
         bind(Version.class);
         bind(RebuildGraph.class);
+        bind(Fsck.class);
         bind(IndexCommandProxy.class);
     }
 
@@ -0,0 +1,95 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.cli.plumbing;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.locationtech.geogig.cli.AbstractCommand;
+import org.locationtech.geogig.cli.CLICommand;
+import org.locationtech.geogig.cli.CommandFailedException;
+import org.locationtech.geogig.cli.Console;
+import org.locationtech.geogig.cli.GeogigCLI;
+import org.locationtech.geogig.cli.annotation.ReadOnly;
+import org.locationtech.geogig.model.RevObject.TYPE;
+import org.locationtech.geogig.plumbing.FsckOp;
+import org.locationtech.geogig.plumbing.FsckOp.Problem;
+import org.locationtech.geogig.plumbing.FsckOp.Report;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import com.google.common.collect.Lists;
+
+/**
+ * Verifies the integrity of the objects reachable from the repository's refs, printing the ones
+ * that are missing or corrupt.
+ *
+ * @see FsckOp
+ */
+@ReadOnly
+@Parameters(commandNames = "fsck", commandDescription = "Verifies the connectivity and validity of the objects in the repository")
+public class Fsck extends AbstractCommand implements CLICommand {
+
+    @Parameter(description = "[<ref>...] refs to verify, defaults to all refs")
+    private List<String> refs = Lists.newArrayList();
+
+    @Parameter(names = "--no-hashes", description = "Only check features and feature types exist, instead of reading them and verifying their contents match their ids")
+    private boolean noHashes;
+
+    @Parameter(names = "--threads", description = "Number of threads to traverse the repository with. Defaults to the number of available processors")
+    private Integer threads;
+
+    @Parameter(names = "--batch-size", description = "Max number of objects to fetch at once")
+    private Integer batchSize;
+
+    @Parameter(names = "--max-problems", description = "Max number of problems to print, the rest are only counted")
+    private Integer maxProblems;
+
+    @Override
+    public void runInternal(GeogigCLI cli) throws IOException {
+        FsckOp op = cli.getGeogig().command(FsckOp.class);
+        op.setVerifyHashes(!noHashes);
+        if (!refs.isEmpty()) {
+            op.setRefs(refs);
+        }
+        if (threads != null) {
+            op.setThreads(threads.intValue());
+        }
+        if (batchSize != null) {
+            op.setBatchSize(batchSize.intValue());
+        }
+        if (maxProblems != null) {
+            op.setMaxReportedProblems(maxProblems.intValue());
+        }
+
+        final Report report;
+        try {
+            report = op.setProgressListener(cli.getProgressListener()).call();
+        } catch (IllegalArgumentException e) {
+            throw new CommandFailedException(e.getMessage(), true);
+        }
+
+        final Console console = cli.getConsole();
+        for (Problem problem : report.getProblems()) {
+            console.println(problem.toString());
+        }
+        console.println(String.format(
+                "Checked %,d objects: %,d commits, %,d tags, %,d trees, %,d features, %,d feature types",
+                report.getCheckedCount(), report.getChecked(TYPE.COMMIT),
+                report.getChecked(TYPE.TAG), report.getChecked(TYPE.TREE),
+                report.getChecked(TYPE.FEATURE), report.getChecked(TYPE.FEATURETYPE)));
+        if (!report.isClean()) {
+            throw new CommandFailedException(
+                    String.format("%,d missing or corrupt objects found", report.getProblemCount()),
+                    true);
+        }
+        console.println("No problems found.");
+    }
+}
@@ -0,0 +1,22 @@
+Feature: "fsck" command
+    In order to make sure a geogig repository is not damaged
+    As a Geogig User
+    I want to verify the integrity of its objects
+
+Scenario: I try to verify a healthy repository
+    Given I have a repository
+      And I have several commits
+     When I run the command "fsck"
+     Then the response should contain "No problems found."
+
+Scenario: I try to verify a healthy repository checking only objects existence
+    Given I have a repository
+      And I have several commits
+     When I run the command "fsck --no-hashes"
+     Then the response should contain "No problems found."
+
+Scenario: I try to verify an unknown ref
+    Given I have a repository
+      And I have several commits
+     When I run the command "fsck nonexistent"
+     Then the response should contain "Can't resolve ref 'nonexistent'"
@@ -9,6 +9,7 @@
  */
 package org.locationtech.geogig.data;
 
+import java.util.HashMap;
 import java.util.Map;
 
 import org.eclipse.jdt.annotation.Nullable;
@@ -19,6 +20,7 @@ import org.locationtech.geogig.model.RevFeatureType;
 import org.locationtech.geogig.model.impl.RevFeatureTypeBuilder;
 import org.opengis.feature.Feature;
 import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.GeometryDescriptor;
 import org.opengis.filter.identity.FeatureId;
 
 import com.google.common.base.Preconditions;
@@ -38,6 +40,14 @@ public class FeatureBuilder {
 
     private RevFeatureType type;
 
+    private SimpleFeatureType featureType;
+
+    /**
+     * The {@link RevFeature} value index for each attribute of {@link #featureType}, or
+     * {@code null} if it's the full {@link #type}
+     */
+    private @Nullable int[] revTypeIndexes;
+
     /**
      * Constructs a new {@code FeatureBuilder} with the given {@link RevFeatureType feature type}.
      * 
@@ -45,9 +55,52 @@ public class FeatureBuilder {
      */
     public FeatureBuilder(RevFeatureType type) {
         this.type = type;
+        this.featureType = (SimpleFeatureType) type.type();
         this.attNameToRevTypeIndex = GeogigSimpleFeature.buildAttNameToRevTypeIndex(type);
     }
 
+    /**
+     * Constructs a new {@code FeatureBuilder} that builds features of the {@code projection}
+     * feature type out of {@link RevFeature}s of the given {@link RevFeatureType feature type}.
+     * <p>
+     * The built features only decode the values of the attributes in {@code projection}.
+     * 
+     * @param type the feature type of the {@code RevFeature}s the features will be built from
+     * @param projection the feature type of the features that will be built, whose attributes
+     *        must be a subset of the ones in {@code type}, in any order
+     */
+    public FeatureBuilder(RevFeatureType type, SimpleFeatureType projection) {
+        Preconditions.checkNotNull(type, "type is null");
+        Preconditions.checkNotNull(projection, "projection is null");
+        this.type = type;
+        this.featureType = projection;
+
+        final Map<String, Integer> nativeIndexes = GeogigSimpleFeature
+                .buildAttNameToRevTypeIndex(type);
+        final int attCount = projection.getAttributeCount();
+        final int[] revTypeIndexes = new int[attCount];
+        boolean identity = attCount == type.descriptors().size();
+        for (int i = 0; i < attCount; i++) {
+            String name = projection.getDescriptor(i).getLocalName();
+            Integer revTypeIndex = nativeIndexes.get(name);
+            Preconditions.checkArgument(revTypeIndex != null,
+                    "Attribute %s does not exist in feature type %s", name, type.getName());
+            revTypeIndexes[i] = revTypeIndex.intValue();
+            identity &= revTypeIndexes[i] == i;
+        }
+        this.revTypeIndexes = identity ? null : revTypeIndexes;
+
+        Map<String, Integer> attNameToIndex = new HashMap<>();
+        for (int i = 0; i < attCount; i++) {
+            attNameToIndex.put(projection.getDescriptor(i).getLocalName(), Integer.valueOf(i));
+        }
+        GeometryDescriptor defaultGeometry = projection.getGeometryDescriptor();
+        if (defaultGeometry != null) {
+            attNameToIndex.put(null, attNameToIndex.get(defaultGeometry.getLocalName()));
+        }
+        this.attNameToRevTypeIndex = attNameToIndex;
+    }
+
     public RevFeatureType getType() {
         return type;
     }
@@ -75,10 +128,8 @@ public class FeatureBuilder {
 
         final FeatureId fid = new LazyVersionedFeatureId(id, revFeature.getId());
 
-        SimpleFeatureType featureType = (SimpleFeatureType) type.type();
-
         GeogigSimpleFeature feature = new GeogigSimpleFeature(revFeature, featureType, fid,
-                attNameToRevTypeIndex);
+                attNameToRevTypeIndex, revTypeIndexes, null);
         return feature;
     }
 
@@ -89,10 +140,8 @@ public class FeatureBuilder {
 
         final FeatureId fid = new LazyVersionedFeatureId(id, revFeature.getId());
 
-        SimpleFeatureType featureType = (SimpleFeatureType) type.type();
-
         GeogigSimpleFeature feature = new GeogigSimpleFeature(revFeature, featureType, fid,
-                attNameToRevTypeIndex, geometryFactory);
+                attNameToRevTypeIndex, revTypeIndexes, geometryFactory);
         return feature;
     }
 
@@ -45,6 +45,7 @@ import org.opengis.geometry.BoundingBox;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 
 import com.google.common.base.Objects;
+import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Maps;
 import com.vividsolutions.jts.geom.Envelope;
@@ -78,26 +79,48 @@ public class GeogigSimpleFeature implements SimpleFeature {
         }
     }
 
+    /**
+     * State backed by a {@link RevFeature}, whose values are only decoded when requested
+     */
     static final class ImmutableState extends State {
 
         private RevFeature feature;
 
+        /**
+         * The {@code RevFeature} value index for each attribute index, or {@code null} if they
+         * match
+         */
+        private @Nullable int[] revTypeIndexes;
+
         private Object[] values;
 
-        ImmutableState(RevFeature feature) {
-            this(new AtomicReference<>(), feature);
+        ImmutableState(RevFeature feature, @Nullable int[] revTypeIndexes) {
+            this(new AtomicReference<>(), feature, revTypeIndexes);
         }
 
-        ImmutableState(AtomicReference<State> currentState, RevFeature feature) {
+        ImmutableState(AtomicReference<State> currentState, RevFeature feature,
+                @Nullable int[] revTypeIndexes) {
             super(currentState);
             this.feature = feature;
-            this.values = new Object[feature.size()];
+            this.revTypeIndexes = revTypeIndexes;
+            this.values = new Object[revTypeIndexes == null ? feature.size()
+                    : revTypeIndexes.length];
+        }
+
+        private int revTypeIndex(int index) {
+            return revTypeIndexes == null ? index : revTypeIndexes[index];
         }
 
         @Override
         public void set(int index, Object value) {
-            List<Object> values = new ArrayList<>(feature.size());
-            feature.forEach((v) -> values.add(v));
+            List<Object> values = new ArrayList<>(this.values.length);
+            if (revTypeIndexes == null) {
+                feature.forEach((v) -> values.add(v));
+            } else {
+                for (int i = 0; i < this.values.length; i++) {
+                    values.add(get(i));
+                }
+            }
             new MutableState(currentState, values).set(index, value);
         }
 
@@ -105,7 +128,7 @@ public class GeogigSimpleFeature implements SimpleFeature {
         public Object get(int index) {
             Object v = values[index];
             if (v == null) {
-                v = feature.get(index).orNull();
+                v = feature.get(revTypeIndex(index)).orNull();
                 values[index] = v;
             }
             return v;
@@ -115,18 +138,30 @@ public class GeogigSimpleFeature implements SimpleFeature {
         public Geometry get(int index, GeometryFactory gf) {
             Geometry v = (Geometry) values[index];
             if (v == null) {
-                v = feature.get(index, gf).orNull();
+                v = feature.get(revTypeIndex(index), gf).orNull();
                 values[index] = v;
             }
             return v;
         }
 
+        /**
+         * Uses the geometry values already decoded, and asks the {@link RevFeature} for the
+         * {@link RevFeature#getEnvelope(int) bounds} of the others, which doesn't require decoding
+         * them
+         */
         @Override
         public void getBounds(Envelope bounds) {
-            feature.forEach((v) -> {
-                if (v instanceof Geometry)
+            for (int i = 0; i < values.length; i++) {
+                Object v = values[i];
+                if (v instanceof Geometry) {
                     bounds.expandToInclude(((Geometry) v).getEnvelopeInternal());
-            });
+                } else if (v == null) {
+                    Optional<Envelope> env = feature.getEnvelope(revTypeIndex(i));
+                    if (env.isPresent()) {
+                        bounds.expandToInclude(env.get());
+                    }
+                }
+            }
         }
 
     }
@@ -204,10 +239,31 @@ public class GeogigSimpleFeature implements SimpleFeature {
 
     public GeogigSimpleFeature(RevFeature feature, SimpleFeatureType featureType, FeatureId id,
             Map<String, Integer> nameToRevTypeInded, @Nullable GeometryFactory geomFac) {
+        this(feature, featureType, id, nameToRevTypeInded, null, geomFac);
+    }
+
+    /**
+     * Creates a feature whose type contains only a subset of the attributes of the
+     * {@link RevFeatureType} the {@link RevFeature} was created for; only the values of those
+     * attributes are decoded from the {@code RevFeature}, and only when requested.
+     * 
+     * @param nameToRevTypeInded attribute name to index in {@code featureType}
+     * @param revTypeIndexes the {@code RevFeature} value index for each attribute in
+     *        {@code featureType}, or {@code null} if {@code featureType} matches the feature's
+     *        native type
+     */
+    public GeogigSimpleFeature(RevFeature feature, SimpleFeatureType featureType, FeatureId id,
+            Map<String, Integer> nameToRevTypeInded, @Nullable int[] revTypeIndexes,
+            @Nullable GeometryFactory geomFac) {
+        Preconditions.checkArgument(
+                revTypeIndexes == null
+                        || revTypeIndexes.length == featureType.getAttributeCount(),
+                "revTypeIndexes size does not match the feature type attribute count");
         this.id = id;
         this.featureType = featureType;
         this.geomFac = geomFac;
-        this.state = new GeogigSimpleFeature.ImmutableState(feature).currentState;
+        this.state = new GeogigSimpleFeature.ImmutableState(feature,
+                revTypeIndexes).currentState;
 
         this.nameToRevTypeIndex = nameToRevTypeInded;
         Integer defaultGeomIndex = nameToRevTypeInded.get(null);
@@ -11,8 +11,11 @@ package org.locationtech.geogig.data.retrieve;
 
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
+import org.eclipse.jdt.annotation.Nullable;
 import org.locationtech.geogig.data.FeatureBuilder;
+import org.locationtech.geogig.model.impl.RevFeatureTypeBuilder;
 import org.locationtech.geogig.repository.AutoCloseableIterator;
 import org.locationtech.geogig.repository.FeatureInfo;
 import org.locationtech.geogig.repository.NodeRef;
@@ -89,8 +92,25 @@ public class BulkFeatureRetriever {
      * @return
      */
     public Iterator<SimpleFeature> getGeoToolsFeatures(Iterator<NodeRef> refs) {
+        return getGeoToolsFeatures(refs, (Set<String>) null);
+    }
+
+    /**
+     * Given a bunch of NodeRefs, create SimpleFeatures with only the requested properties. The
+     * result might be mixed FeatureTypes, each one containing the requested properties it has.
+     *
+     * Only the values of the requested properties are decoded.
+     *
+     * @see BulkFeatureRetriever#getGeoToolsFeatures(Iterator)
+     *
+     * @param refs
+     * @param propertyNames the properties to include, or {@code null} for all of them
+     * @return
+     */
+    public Iterator<SimpleFeature> getGeoToolsFeatures(Iterator<NodeRef> refs,
+            @Nullable Set<String> propertyNames) {
         AutoCloseableIterator<FeatureInfo> fis = getGeoGIGFeatures(refs,false);
-        MultiFeatureTypeBuilder builder = new MultiFeatureTypeBuilder(odb);
+        MultiFeatureTypeBuilder builder = new MultiFeatureTypeBuilder(odb, propertyNames);
         AutoCloseableIterator<SimpleFeature> result = AutoCloseableIterator.transform(fis, builder);
         return new BackgroundingIterator<>(result, featureSize);
     }
@@ -108,8 +128,32 @@ public class BulkFeatureRetriever {
     public AutoCloseableIterator<SimpleFeature> getGeoToolsFeatures(
             AutoCloseableIterator<NodeRef> refs, SimpleFeatureType schema,
             GeometryFactory geometryFactory) {
+        return getGeoToolsFeatures(refs, schema, schema, geometryFactory);
+    }
+
+    /**
+     * Given a bunch of NodeRefs, create SimpleFeatures of the {@code resultSchema} from the
+     * results, which must contain a subset of the {@code nativeSchema} attributes. Only the values
+     * of the attributes in {@code resultSchema} are decoded.
+     *
+     * This DOES NOT retrieves FeatureType info from the ObjectDatabase.
+     *
+     * @param refs
+     * @param nativeSchema the feature type the features were created for
+     * @param resultSchema the feature type of the returned features
+     * @return
+     */
+    public AutoCloseableIterator<SimpleFeature> getGeoToolsFeatures(
+            AutoCloseableIterator<NodeRef> refs, SimpleFeatureType nativeSchema,
+            SimpleFeatureType resultSchema, GeometryFactory geometryFactory) {
         // builder for this particular schema
-        FeatureBuilder featureBuilder = new FeatureBuilder(schema);
+        FeatureBuilder featureBuilder;
+        if (nativeSchema == resultSchema) {
+            featureBuilder = new FeatureBuilder(nativeSchema);
+        } else {
+            featureBuilder = new FeatureBuilder(RevFeatureTypeBuilder.build(nativeSchema),
+                    resultSchema);
+        }
 
         // function that converts the FeatureInfo a feature of the given schema
         Function<FeatureInfo, SimpleFeature> funcBuildFeature = (input -> MultiFeatureTypeBuilder
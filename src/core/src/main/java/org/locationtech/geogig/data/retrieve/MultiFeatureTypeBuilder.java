@@ -9,11 +9,16 @@
  */
 package org.locationtech.geogig.data.retrieve;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.jdt.annotation.Nullable;
+import org.geotools.data.DataUtilities;
 import org.geotools.factory.Hints;
+import org.geotools.feature.SchemaException;
 import org.locationtech.geogig.data.FeatureBuilder;
 import org.locationtech.geogig.model.ObjectId;
 import org.locationtech.geogig.model.RevFeature;
@@ -22,8 +27,12 @@ import org.locationtech.geogig.repository.FeatureInfo;
 import org.locationtech.geogig.storage.ObjectStore;
 import org.opengis.feature.Feature;
 import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
 
 import com.google.common.base.Function;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableSet;
 import com.vividsolutions.jts.geom.GeometryFactory;
 
 public class MultiFeatureTypeBuilder implements Function<FeatureInfo, SimpleFeature> {
@@ -32,20 +41,52 @@ public class MultiFeatureTypeBuilder implements Function<FeatureInfo, SimpleFeat
 
     ObjectStore odb;
 
+    @Nullable
+    Set<String> propertyNames;
+
     public MultiFeatureTypeBuilder(ObjectStore odb) {
+        this(odb, null);
+    }
+
+    /**
+     * @param propertyNames the names of the attributes to include in the built features, or
+     *        {@code null} for all of them; attributes not in a feature's type are ignored, and only
+     *        the requested attribute values are decoded
+     */
+    public MultiFeatureTypeBuilder(ObjectStore odb, @Nullable Set<String> propertyNames) {
         this.odb = odb;
+        this.propertyNames = propertyNames == null ? null : ImmutableSet.copyOf(propertyNames);
     }
 
     public synchronized FeatureBuilder get(ObjectId metadataId) {
         FeatureBuilder featureBuilder = cache.get(metadataId);
         if (featureBuilder == null) {
             RevFeatureType revFtype = odb.getFeatureType(metadataId);
-            featureBuilder = new FeatureBuilder(revFtype);
+            if (propertyNames == null) {
+                featureBuilder = new FeatureBuilder(revFtype);
+            } else {
+                featureBuilder = new FeatureBuilder(revFtype, project(revFtype));
+            }
             cache.put(metadataId, featureBuilder);
         }
         return featureBuilder;
     }
 
+    private SimpleFeatureType project(RevFeatureType revFtype) {
+        SimpleFeatureType type = (SimpleFeatureType) revFtype.type();
+        List<String> atts = new ArrayList<>();
+        for (AttributeDescriptor d : type.getAttributeDescriptors()) {
+            if (propertyNames.contains(d.getLocalName())) {
+                atts.add(d.getLocalName());
+            }
+        }
+        try {
+            return DataUtilities.createSubType(type, atts.toArray(new String[atts.size()]));
+        } catch (SchemaException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
     @Override
     public SimpleFeature apply(FeatureInfo info) {
         FeatureBuilder featureBuilder = get(info.getFeatureTypeId());
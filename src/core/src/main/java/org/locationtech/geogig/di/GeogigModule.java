@@ -13,7 +13,10 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 import org.locationtech.geogig.hooks.CommandHooksDecorator;
+import org.locationtech.geogig.metrics.CommandMetricsDecorator;
+import org.locationtech.geogig.metrics.ObjectStoreMetricsDecorator;
 import org.locationtech.geogig.model.impl.DefaultPlatform;
+import org.locationtech.geogig.plumbing.ResolvedTreeCache;
 import org.locationtech.geogig.repository.Context;
 import org.locationtech.geogig.repository.Hints;
 import org.locationtech.geogig.repository.Platform;
@@ -94,15 +97,21 @@ public class GeogigModule extends AbstractModule {
         bind(ObjectDatabase.class).to(FileObjectDatabase.class).in(Scopes.SINGLETON);
         bind(IndexDatabase.class).to(HeapIndexDatabase.class).in(Scopes.SINGLETON);
         bind(RefDatabase.class).to(FileRefDatabase.class).in(Scopes.SINGLETON);
+        bind(ResolvedTreeCache.class).in(Scopes.SINGLETON);
 
         bind(ObjectSerializingFactory.class).to(DataStreamSerializationFactoryV2.class)
                 .in(Scopes.SINGLETON);
 
+        // bound first to wrap the object database backend itself
+        bindObjectStoreMetricsDecorator();
+
         bindCommitGraphInterceptor();
 
         bindConflictCheckingInterceptor();
 
         bindDecorator(binder(), new CommandHooksDecorator());
+
+        bindDecorator(binder(), new CommandMetricsDecorator());
     }
 
     private static class PlatformProvider implements Provider<Platform> {
@@ -124,6 +133,10 @@ public class GeogigModule extends AbstractModule {
         }
     }
 
+    private void bindObjectStoreMetricsDecorator() {
+        bindDecorator(binder(), new ObjectStoreMetricsDecorator(getProvider(ConfigDatabase.class)));
+    }
+
     private void bindConflictCheckingInterceptor() {
         bindDecorator(binder(), new ConflictInterceptor());
     }
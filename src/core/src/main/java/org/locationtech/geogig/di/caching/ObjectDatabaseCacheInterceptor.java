@@ -20,6 +20,7 @@ import java.util.concurrent.ExecutionException;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.locationtech.geogig.di.Decorator;
+import org.locationtech.geogig.metrics.CommandMetrics;
 import org.locationtech.geogig.model.ObjectId;
 import org.locationtech.geogig.model.RevCommit;
 import org.locationtech.geogig.model.RevFeature;
@@ -172,6 +173,8 @@ class ObjectDatabaseCacheInterceptor {
 
         private ObjectStore db;
 
+        boolean loaded;
+
         public ValueLoader(ObjectId id, ObjectStore db) {
             this.id = id;
             this.db = db;
@@ -179,6 +182,7 @@ class ObjectDatabaseCacheInterceptor {
 
         @Override
         public RevObject call() throws Exception {
+            loaded = true;
             RevObject object = db.get(id);
             return object;
         }
@@ -198,6 +202,7 @@ class ObjectDatabaseCacheInterceptor {
         public RevObject getIfPresent(ObjectId id, ObjectStore db) throws IllegalArgumentException {
             final Cache<ObjectId, RevObject> cache = cacheProvider.get().get();
             RevObject obj = cache.getIfPresent(id);
+            CommandMetrics.get().recordCacheLookups(obj == null ? 0 : 1, obj == null ? 1 : 0);
             if (obj == null) {
                 obj = db.getIfPresent(id);
                 if (obj != null && isCacheable(obj, cacheFeatures)) {
@@ -217,14 +222,16 @@ class ObjectDatabaseCacheInterceptor {
             final Cache<ObjectId, RevObject> cache = cacheProvider.get().get();
 
             RevObject object;
+            ValueLoader loader = new ValueLoader(id, db);
             try {
-                object = cache.get(id, new ValueLoader(id, db));
+                object = cache.get(id, loader);
             } catch (ExecutionException | UncheckedExecutionException e) {
                 Throwable cause = e.getCause();
                 Throwables.propagateIfInstanceOf(cause, IllegalArgumentException.class);
                 Throwables.propagateIfInstanceOf(cause, IllegalStateException.class);
                 throw new RuntimeException(cause);
             }
+            CommandMetrics.get().recordCacheLookups(loader.loaded ? 0 : 1, loader.loaded ? 1 : 0);
             return type.cast(object);
         }
 
@@ -245,6 +252,8 @@ class ObjectDatabaseCacheInterceptor {
                 Map<ObjectId, RevObject> present = Maps.filterValues(
                         cache.getAllPresent(partitionIds),
                         (o) -> type.isAssignableFrom(o.getClass()));
+                CommandMetrics.get().recordCacheLookups(present.size(),
+                        partitionIds.size() - present.size());
 
                 if (present.isEmpty()) {
                     missing.addAll(partitionIds);
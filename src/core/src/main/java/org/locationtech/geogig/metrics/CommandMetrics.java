@@ -0,0 +1,463 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.metrics;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.ObjectName;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.repository.AbstractGeoGigOp;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Strings;
+
+/**
+ * JVM wide registry of command and object store metrics, fed by the
+ * {@link CommandMetricsDecorator}.
+ * <p>
+ * For every {@link AbstractGeoGigOp} called it records a latency histogram per command class, and
+ * a tree of which commands call which other commands, as tracked per thread while the command's
+ * {@code call()} method is running. Object store calls are counted per kind of call, both globally
+ * and for the innermost command running on the calling thread, so the call tree tells which
+ * commands are responsible for the storage traffic.
+ * <p>
+ * Metrics are disabled by default, and can be enabled at startup with the
+ * {@code -D}{@value #ENABLED_PROPERTY}{@code =true} system property, or at runtime through JMX
+ * under the {@value #OBJECT_NAME} object name. The MBean is registered the first time the metrics
+ * are {@link #get() accessed} rather than when this class is loaded.
+ * <p>
+ * The {@link #getReport() report} also includes the {@link ObjectStoreMetrics} of the object store
+ * backends that have been instrumented.
+ */
+public final class CommandMetrics implements CommandMetricsMBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CommandMetrics.class);
+
+    public static final String ENABLED_PROPERTY = "geogig.metrics.enabled";
+
+    public static final String OBJECT_NAME = "org.locationtech.geogig:type=CommandMetrics";
+
+    /**
+     * Call tree nodes deeper than this are accounted to their parent
+     */
+    private static final int MAX_DEPTH = 16;
+
+    /**
+     * Upper limit of distinct commands tracked as children of a call tree node, further ones are
+     * accounted to an {@code <other>} node
+     */
+    private static final int MAX_CHILDREN = 128;
+
+    private static final CommandMetrics INSTANCE = new CommandMetrics(
+            Boolean.getBoolean(ENABLED_PROPERTY));
+
+    private static final AtomicBoolean REGISTERED = new AtomicBoolean();
+
+    /**
+     * The kinds of object store calls counted
+     */
+    public static enum StoreCall {
+        GET("get"), GET_ALL("getAll"), EXISTS("exists"), PUT("put"), PUT_ALL(
+                "putAll"), DELETE("delete"), DELETE_ALL("deleteAll");
+
+        private final String methodName;
+
+        private StoreCall(String methodName) {
+            this.methodName = methodName;
+        }
+
+        @Override
+        public String toString() {
+            return methodName;
+        }
+    }
+
+    private volatile boolean enabled;
+
+    private final ConcurrentMap<String, CommandStats> commands = new ConcurrentHashMap<>();
+
+    private final CallNode root = new CallNode("<no command>");
+
+    private final ThreadLocal<Deque<Frame>> frames = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private final StoreCounters storeTotals = new StoreCounters();
+
+    private final Histogram getAllBatchSizes = batchSizes();
+
+    private final Histogram putAllBatchSizes = batchSizes();
+
+    private final LongAdder cacheHits = new LongAdder();
+
+    private final LongAdder cacheMisses = new LongAdder();
+
+    CommandMetrics(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return the JVM wide metrics, registering them as an MBean on the first call
+     */
+    public static CommandMetrics get() {
+        if (!REGISTERED.get() && REGISTERED.compareAndSet(false, true)) {
+            registerMBean(INSTANCE);
+        }
+        return INSTANCE;
+    }
+
+    private static void registerMBean(CommandMetrics metrics) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics,
+                    new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            // registered by another class loader
+        } catch (Exception | LinkageError e) {
+            LOG.warn("Unable to register command metrics MBean", e);
+        }
+    }
+
+    private static Histogram latencies() {
+        // microseconds, 10us to 100s
+        return Histogram.exponential(10, 100_000_000);
+    }
+
+    private static Histogram batchSizes() {
+        return Histogram.exponential(1, 100_000);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Called right before the command's {@code _call()} method is run
+     */
+    public void started(AbstractGeoGigOp<?> command) {
+        if (!enabled) {
+            return;
+        }
+        final Deque<Frame> stack = frames.get();
+        final Frame parent = stack.peek();
+        final CallNode node;
+        if (parent == null) {
+            node = root.child(name(command));
+        } else if (stack.size() >= MAX_DEPTH) {
+            node = parent.node;
+        } else {
+            node = parent.node.child(name(command));
+        }
+        stack.push(new Frame(command, node, System.nanoTime()));
+    }
+
+    /**
+     * Called once the command's {@code _call()} method returned or failed.
+     * <p>
+     * Pops the command's frame along with the frames of any nested command that didn't get to
+     * finish (e.g. because another listener failed before ours was called), and releases the
+     * calling thread's stack once it's empty, so pooled threads don't hold on to stale frames.
+     */
+    public void finished(AbstractGeoGigOp<?> command, boolean failed) {
+        final Deque<Frame> stack = frames.get();
+        final Frame frame = find(stack, command);
+        if (frame == null) {
+            // not started while enabled, or another listener failed before ours was called
+            if (stack.isEmpty()) {
+                frames.remove();
+            }
+            return;
+        }
+        try {
+            final long nanos = System.nanoTime() - frame.startNanos;
+            frame.node.calls.increment();
+            frame.node.nanos.add(nanos);
+
+            CommandStats stats = commands.computeIfAbsent(name(command),
+                    (n) -> new CommandStats());
+            stats.latency.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+            if (failed) {
+                stats.failures.increment();
+            }
+        } finally {
+            while (stack.pop() != frame) {
+                // nested command that didn't finish
+            }
+            if (stack.isEmpty()) {
+                frames.remove();
+            }
+        }
+    }
+
+    private static @Nullable Frame find(Deque<Frame> stack, AbstractGeoGigOp<?> command) {
+        for (Frame frame : stack) {
+            if (frame.command == command) {
+                return frame;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the number of commands being tracked as running on the calling thread
+     */
+    @VisibleForTesting
+    int runningCommands() {
+        return frames.get().size();
+    }
+
+    /**
+     * Counts an object store call, accounting it to the command running on the calling thread, if
+     * any.
+     *
+     * @param objects the number of objects requested or stored by the call
+     */
+    public void recordStoreCall(StoreCall call, long objects) {
+        if (!enabled) {
+            return;
+        }
+        storeTotals.record(call, objects);
+        Frame frame = frames.get().peek();
+        CallNode node = frame == null ? root : frame.node;
+        node.store.record(call, objects);
+        if (StoreCall.GET_ALL.equals(call)) {
+            getAllBatchSizes.record(objects);
+        } else if (StoreCall.PUT_ALL.equals(call)) {
+            putAllBatchSizes.record(objects);
+        }
+    }
+
+    /**
+     * Counts object cache lookups that were served from the cache or had to go to the object
+     * store
+     */
+    public void recordCacheLookups(long hits, long misses) {
+        if (!enabled) {
+            return;
+        }
+        cacheHits.add(hits);
+        cacheMisses.add(misses);
+    }
+
+    /**
+     * @return the latency histogram, in microseconds, of the command with the given simple class
+     *         name, or {@code null} if it hasn't been called
+     */
+    public @Nullable Histogram getLatency(String commandName) {
+        checkNotNull(commandName, "commandName is null");
+        CommandStats stats = commands.get(commandName);
+        return stats == null ? null : stats.latency;
+    }
+
+    /**
+     * @return the number of calls made to the object store with the given kind of call
+     */
+    public long getStoreCalls(StoreCall call) {
+        return storeTotals.calls.get(call.ordinal());
+    }
+
+    @Override
+    public void reset() {
+        commands.clear();
+        root.clear();
+        storeTotals.clear();
+        getAllBatchSizes.reset();
+        putAllBatchSizes.reset();
+        cacheHits.reset();
+        cacheMisses.reset();
+        for (ObjectStoreMetrics storeMetrics : ObjectStoreMetrics.enabled()) {
+            storeMetrics.reset();
+        }
+    }
+
+    @Override
+    public String getReport() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("GeoGig command metrics (").append(enabled ? "enabled" : "disabled")
+                .append(")\n");
+
+        sb.append("\nCommand latencies (microseconds):\n");
+        List<Map.Entry<String, CommandStats>> entries = new ArrayList<>(commands.entrySet());
+        entries.sort((e1, e2) -> Long.compare(e2.getValue().latency.getSum(),
+                e1.getValue().latency.getSum()));
+        for (Map.Entry<String, CommandStats> e : entries) {
+            CommandStats stats = e.getValue();
+            sb.append("  ").append(e.getKey()).append(": ").append(stats.latency);
+            long failures = stats.failures.sum();
+            if (failures > 0) {
+                sb.append(" failures=").append(failures);
+            }
+            sb.append('\n');
+        }
+
+        sb.append("\nCall tree:\n");
+        root.print(sb, 1);
+
+        sb.append("\nObject store calls:\n");
+        for (StoreCall call : StoreCall.values()) {
+            sb.append(String.format("  %s: calls=%,d objects=%,d\n", call,
+                    storeTotals.calls.get(call.ordinal()),
+                    storeTotals.objects.get(call.ordinal())));
+        }
+        sb.append("  getAll batch sizes: ").append(getAllBatchSizes).append('\n');
+        sb.append("  putAll batch sizes: ").append(putAllBatchSizes).append('\n');
+
+        final long hits = cacheHits.sum();
+        final long lookups = hits + cacheMisses.sum();
+        sb.append(String.format("\nObject cache: lookups=%,d hits=%,d hit ratio=%.1f%%\n", lookups,
+                hits, lookups == 0 ? 0d : 100d * hits / lookups));
+
+        for (ObjectStoreMetrics storeMetrics : ObjectStoreMetrics.enabled()) {
+            sb.append('\n').append(storeMetrics.getReport());
+        }
+        return sb.toString();
+    }
+
+    private static String name(AbstractGeoGigOp<?> command) {
+        Class<?> c = command.getClass();
+        String name = c.getSimpleName();
+        return name.isEmpty() ? c.getName() : name;
+    }
+
+    private static class CommandStats {
+
+        final Histogram latency = latencies();
+
+        final LongAdder failures = new LongAdder();
+    }
+
+    private static class Frame {
+
+        final AbstractGeoGigOp<?> command;
+
+        final CallNode node;
+
+        final long startNanos;
+
+        Frame(AbstractGeoGigOp<?> command, CallNode node, long startNanos) {
+            this.command = command;
+            this.node = node;
+            this.startNanos = startNanos;
+        }
+    }
+
+    private static class StoreCounters {
+
+        final AtomicLongArray calls = new AtomicLongArray(StoreCall.values().length);
+
+        final AtomicLongArray objects = new AtomicLongArray(StoreCall.values().length);
+
+        void record(StoreCall call, long count) {
+            calls.incrementAndGet(call.ordinal());
+            objects.addAndGet(call.ordinal(), count);
+        }
+
+        boolean isEmpty() {
+            for (int i = 0; i < calls.length(); i++) {
+                if (calls.get(i) > 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void clear() {
+            for (int i = 0; i < calls.length(); i++) {
+                calls.set(i, 0);
+                objects.set(i, 0);
+            }
+        }
+
+        void print(StringBuilder sb) {
+            for (StoreCall call : StoreCall.values()) {
+                long count = calls.get(call.ordinal());
+                if (count > 0) {
+                    sb.append(String.format(" %s=%,d/%,d", call, count,
+                            objects.get(call.ordinal())));
+                }
+            }
+        }
+    }
+
+    private static class CallNode {
+
+        private static final String OTHER = "<other>";
+
+        final String name;
+
+        final LongAdder calls = new LongAdder();
+
+        final LongAdder nanos = new LongAdder();
+
+        final StoreCounters store = new StoreCounters();
+
+        final ConcurrentMap<String, CallNode> children = new ConcurrentHashMap<>();
+
+        CallNode(String name) {
+            this.name = name;
+        }
+
+        CallNode child(String name) {
+            CallNode child = children.get(name);
+            if (child == null) {
+                if (children.size() >= MAX_CHILDREN) {
+                    name = OTHER;
+                }
+                child = children.computeIfAbsent(name, CallNode::new);
+            }
+            return child;
+        }
+
+        void clear() {
+            calls.reset();
+            nanos.reset();
+            store.clear();
+            children.clear();
+        }
+
+        void print(StringBuilder sb, int depth) {
+            if (calls.sum() > 0 || !store.isEmpty()) {
+                sb.append(Strings.repeat("  ", depth)).append(name);
+                sb.append(String.format(": calls=%,d total=%,dms", calls.sum(),
+                        TimeUnit.NANOSECONDS.toMillis(nanos.sum())));
+                if (!store.isEmpty()) {
+                    sb.append(" store calls/objects:");
+                    store.print(sb);
+                }
+                sb.append('\n');
+            }
+            List<CallNode> sorted = new ArrayList<>(children.values());
+            sorted.sort((n1, n2) -> Long.compare(n2.nanos.sum(), n1.nanos.sum()));
+            for (CallNode child : sorted) {
+                child.print(sb, depth + 1);
+            }
+        }
+    }
+}
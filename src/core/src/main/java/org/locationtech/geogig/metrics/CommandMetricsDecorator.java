@@ -0,0 +1,255 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.metrics;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.di.Decorator;
+import org.locationtech.geogig.metrics.CommandMetrics.StoreCall;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevCommit;
+import org.locationtech.geogig.model.RevFeature;
+import org.locationtech.geogig.model.RevFeatureType;
+import org.locationtech.geogig.model.RevObject;
+import org.locationtech.geogig.model.RevTag;
+import org.locationtech.geogig.model.RevTree;
+import org.locationtech.geogig.repository.AbstractGeoGigOp;
+import org.locationtech.geogig.repository.AbstractGeoGigOp.CommandListener;
+import org.locationtech.geogig.storage.BulkOpListener;
+import org.locationtech.geogig.storage.ObjectDatabase;
+import org.locationtech.geogig.storage.impl.ForwardingObjectDatabase;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ForwardingIterator;
+import com.google.inject.util.Providers;
+
+/**
+ * Feeds the {@link CommandMetrics} with the calls to every {@link AbstractGeoGigOp} and to the
+ * repository's {@link ObjectDatabase}.
+ * <p>
+ * Commands are only listened to while metrics are enabled, but since the object database is a
+ * singleton decorated once, it's always wrapped and its calls are only counted while metrics are
+ * enabled.
+ */
+public class CommandMetricsDecorator implements Decorator {
+
+    private static final CommandListener LISTENER = new MetricsListener();
+
+    @Override
+    public boolean canDecorate(Object instance) {
+        return (instance instanceof AbstractGeoGigOp && CommandMetrics.get().isEnabled())
+                || instance instanceof ObjectDatabase;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <I> I decorate(I subject) {
+        if (subject instanceof AbstractGeoGigOp) {
+            ((AbstractGeoGigOp<?>) subject).addListener(LISTENER);
+            return subject;
+        }
+        return (I) new MetricsObjectDatabase((ObjectDatabase) subject);
+    }
+
+    private static class MetricsListener implements CommandListener {
+
+        @Override
+        public void preCall(AbstractGeoGigOp<?> command) {
+            CommandMetrics.get().started(command);
+        }
+
+        @Override
+        public void postCall(AbstractGeoGigOp<?> command, @Nullable Object result,
+                @Nullable RuntimeException exception) {
+            CommandMetrics.get().finished(command, exception != null);
+        }
+    }
+
+    private static class MetricsObjectDatabase extends ForwardingObjectDatabase {
+
+        private final CommandMetrics metrics = CommandMetrics.get();
+
+        MetricsObjectDatabase(ObjectDatabase subject) {
+            super(Providers.of(subject));
+        }
+
+        private void record(StoreCall call, long objects) {
+            metrics.recordStoreCall(call, objects);
+        }
+
+        @Override
+        public boolean exists(ObjectId id) {
+            record(StoreCall.EXISTS, 1);
+            return super.exists(id);
+        }
+
+        @Override
+        public Set<ObjectId> existsAll(Iterable<ObjectId> ids) {
+            Set<ObjectId> found = super.existsAll(ids);
+            record(StoreCall.EXISTS, ids instanceof Collection ? ((Collection<?>) ids).size()
+                    : found.size());
+            return found;
+        }
+
+        @Override
+        public RevObject get(ObjectId id) {
+            record(StoreCall.GET, 1);
+            return super.get(id);
+        }
+
+        @Override
+        public <T extends RevObject> T get(ObjectId id, Class<T> type) {
+            record(StoreCall.GET, 1);
+            return super.get(id, type);
+        }
+
+        @Override
+        public @Nullable RevObject getIfPresent(ObjectId id) {
+            record(StoreCall.GET, 1);
+            return super.getIfPresent(id);
+        }
+
+        @Override
+        public @Nullable <T extends RevObject> T getIfPresent(ObjectId id, Class<T> type) {
+            record(StoreCall.GET, 1);
+            return super.getIfPresent(id, type);
+        }
+
+        @Override
+        public RevTree getTree(ObjectId id) {
+            record(StoreCall.GET, 1);
+            return super.getTree(id);
+        }
+
+        @Override
+        public RevFeature getFeature(ObjectId id) {
+            record(StoreCall.GET, 1);
+            return super.getFeature(id);
+        }
+
+        @Override
+        public RevFeatureType getFeatureType(ObjectId id) {
+            record(StoreCall.GET, 1);
+            return super.getFeatureType(id);
+        }
+
+        @Override
+        public RevCommit getCommit(ObjectId id) {
+            record(StoreCall.GET, 1);
+            return super.getCommit(id);
+        }
+
+        @Override
+        public RevTag getTag(ObjectId id) {
+            record(StoreCall.GET, 1);
+            return super.getTag(id);
+        }
+
+        @Override
+        public Iterator<RevObject> getAll(Iterable<ObjectId> ids) {
+            return getAll(ids, BulkOpListener.NOOP_LISTENER, RevObject.class);
+        }
+
+        @Override
+        public Iterator<RevObject> getAll(Iterable<ObjectId> ids, BulkOpListener listener) {
+            return getAll(ids, listener, RevObject.class);
+        }
+
+        /**
+         * The batch size is known up front if the ids are a collection, otherwise the ids are
+         * counted as the store consumes them and the call recorded once the result is exhausted
+         */
+        @Override
+        public <T extends RevObject> Iterator<T> getAll(Iterable<ObjectId> ids,
+                BulkOpListener listener, Class<T> type) {
+            if (ids instanceof Collection) {
+                record(StoreCall.GET_ALL, ((Collection<?>) ids).size());
+                return super.getAll(ids, listener, type);
+            }
+            final AtomicLong count = new AtomicLong();
+            Iterable<ObjectId> counting = () -> new CountingIterator<>(ids.iterator(), count);
+            final Iterator<T> result = super.getAll(counting, listener, type);
+            return new AbstractIterator<T>() {
+                @Override
+                protected T computeNext() {
+                    if (result.hasNext()) {
+                        return result.next();
+                    }
+                    record(StoreCall.GET_ALL, count.get());
+                    return endOfData();
+                }
+            };
+        }
+
+        @Override
+        public boolean put(RevObject object) {
+            record(StoreCall.PUT, 1);
+            return super.put(object);
+        }
+
+        @Override
+        public void putAll(Iterator<? extends RevObject> objects) {
+            putAll(objects, BulkOpListener.NOOP_LISTENER);
+        }
+
+        @Override
+        public void putAll(Iterator<? extends RevObject> objects, BulkOpListener listener) {
+            AtomicLong count = new AtomicLong();
+            super.putAll(new CountingIterator<>(objects, count), listener);
+            record(StoreCall.PUT_ALL, count.get());
+        }
+
+        @Override
+        public void delete(ObjectId objectId) {
+            record(StoreCall.DELETE, 1);
+            super.delete(objectId);
+        }
+
+        @Override
+        public void deleteAll(Iterator<ObjectId> ids) {
+            deleteAll(ids, BulkOpListener.NOOP_LISTENER);
+        }
+
+        @Override
+        public void deleteAll(Iterator<ObjectId> ids, BulkOpListener listener) {
+            AtomicLong count = new AtomicLong();
+            super.deleteAll(new CountingIterator<>(ids, count), listener);
+            record(StoreCall.DELETE_ALL, count.get());
+        }
+    }
+
+    private static class CountingIterator<T> extends ForwardingIterator<T> {
+
+        private final Iterator<T> delegate;
+
+        private final AtomicLong count;
+
+        CountingIterator(Iterator<T> delegate, AtomicLong count) {
+            this.delegate = delegate;
+            this.count = count;
+        }
+
+        @Override
+        protected Iterator<T> delegate() {
+            return delegate;
+        }
+
+        @Override
+        public T next() {
+            T next = super.next();
+            count.incrementAndGet();
+            return next;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.metrics;
+
+/**
+ * JMX management interface for {@link CommandMetrics}, registered in the platform MBean server
+ * as {@value CommandMetrics#OBJECT_NAME}
+ */
+public interface CommandMetricsMBean {
+
+    public boolean isEnabled();
+
+    public void setEnabled(boolean enabled);
+
+    /**
+     * @return a plain text report of the command latencies, call trees, and object store calls
+     *         recorded since startup or the last {@link #reset()}
+     */
+    public String getReport();
+
+    public void reset();
+}
@@ -0,0 +1,149 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.metrics;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock free histogram of {@code long} values with fixed bucket boundaries.
+ * <p>
+ * Values are counted in the first bucket whose upper bound is greater than or equal to the value,
+ * or in an overflow bucket if they're greater than the last bound. Percentiles are thus
+ * approximate, reported as the upper bound of the bucket they fall into, but recording a value
+ * is cheap enough to be done on every command call and object store access.
+ */
+public final class Histogram {
+
+    private final long[] bounds;
+
+    private final AtomicLongArray buckets;
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder sum = new LongAdder();
+
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param bounds the buckets upper bounds, in strictly ascending order
+     */
+    public Histogram(long... bounds) {
+        checkArgument(bounds.length > 0, "no bucket bounds provided");
+        for (int i = 1; i < bounds.length; i++) {
+            checkArgument(bounds[i] > bounds[i - 1], "bounds are not in ascending order: %s",
+                    Arrays.toString(bounds));
+        }
+        this.bounds = bounds.clone();
+        this.buckets = new AtomicLongArray(bounds.length + 1);
+    }
+
+    /**
+     * Creates a histogram whose bucket bounds follow a 1-2-5 series, from {@code min} up to the
+     * first bound greater than or equal to {@code max}
+     */
+    public static Histogram exponential(final long min, final long max) {
+        checkArgument(min > 0, "min must be > 0: %s", min);
+        checkArgument(max >= min, "max must be >= min: %s", max);
+        long[] bounds = new long[64];
+        int size = 0;
+        long decade = min;
+        while (true) {
+            for (int factor : new int[] { 1, 2, 5 }) {
+                long bound = decade * factor;
+                bounds[size++] = bound;
+                if (bound >= max) {
+                    return new Histogram(Arrays.copyOf(bounds, size));
+                }
+            }
+            decade *= 10;
+        }
+    }
+
+    public void record(final long value) {
+        int index = Arrays.binarySearch(bounds, value);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        buckets.incrementAndGet(index);
+        count.increment();
+        sum.add(value);
+        long currMax;
+        while (value > (currMax = max.get()) && !max.compareAndSet(currMax, value)) {
+            // retry
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public long getMean() {
+        long count = getCount();
+        return count == 0 ? 0 : getSum() / count;
+    }
+
+    /**
+     * @param percentile a value between {@code 0} and {@code 100}
+     * @return the upper bound of the bucket the given percentile falls into, capped to the max
+     *         recorded value
+     */
+    public long getPercentile(final double percentile) {
+        checkArgument(percentile >= 0 && percentile <= 100, "percentile out of range: %s",
+                percentile);
+        final long max = getMax();
+        long total = 0;
+        final int size = buckets.length();
+        long[] counts = new long[size];
+        for (int i = 0; i < size; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long accumulated = 0;
+        for (int i = 0; i < bounds.length; i++) {
+            accumulated += counts[i];
+            if (accumulated >= rank) {
+                return Math.min(bounds[i], max);
+            }
+        }
+        return max;
+    }
+
+    public void reset() {
+        for (int i = 0; i < buckets.length(); i++) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%,d mean=%,d p50=%,d p90=%,d p99=%,d max=%,d", getCount(),
+                getMean(), getPercentile(50), getPercentile(90), getPercentile(99), getMax());
+    }
+}
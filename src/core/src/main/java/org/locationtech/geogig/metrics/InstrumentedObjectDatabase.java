@@ -0,0 +1,306 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.metrics;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.metrics.CommandMetrics.StoreCall;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevCommit;
+import org.locationtech.geogig.model.RevFeature;
+import org.locationtech.geogig.model.RevFeatureType;
+import org.locationtech.geogig.model.RevObject;
+import org.locationtech.geogig.model.RevTag;
+import org.locationtech.geogig.model.RevTree;
+import org.locationtech.geogig.storage.BulkOpListener;
+import org.locationtech.geogig.storage.BulkOpListener.ForwardingListener;
+import org.locationtech.geogig.storage.ObjectDatabase;
+import org.locationtech.geogig.storage.impl.ForwardingObjectDatabase;
+
+import com.google.inject.util.Providers;
+
+/**
+ * An {@link ObjectDatabase} decorator that records the latency of every call made to the
+ * decorated backend into its {@link ObjectStoreMetrics}, as well as the objects found, not found,
+ * and inserted by bulk operations.
+ * <p>
+ * Only the time spent inside the backend is accounted. For {@code getAll}, that's the time spent
+ * in the call and in the returned iterator's {@code hasNext()} and {@code next()} methods, and the
+ * call is recorded once the iterator is exhausted. For {@code putAll} and {@code deleteAll}, the
+ * time spent pulling objects out of the argument iterator is discounted, since it's up to the
+ * caller.
+ * <p>
+ * The backend's metrics are {@link ObjectStoreMetrics#enable() enabled} from creation, or from
+ * being reopened, until this database is closed.
+ */
+class InstrumentedObjectDatabase extends ForwardingObjectDatabase {
+
+    private final ObjectStoreMetrics metrics;
+
+    private final AtomicBoolean instrumenting = new AtomicBoolean();
+
+    InstrumentedObjectDatabase(ObjectDatabase subject, ObjectStoreMetrics metrics) {
+        super(Providers.of(subject));
+        this.metrics = metrics;
+        instrument();
+    }
+
+    private void instrument() {
+        if (instrumenting.compareAndSet(false, true)) {
+            metrics.enable();
+        }
+    }
+
+    @Override
+    public void open() {
+        super.open();
+        instrument();
+    }
+
+    @Override
+    public void close() {
+        try {
+            super.close();
+        } finally {
+            if (instrumenting.compareAndSet(true, false)) {
+                metrics.disable();
+            }
+        }
+    }
+
+    private <T> T timed(StoreCall call, Supplier<T> storeCall) {
+        final long start = System.nanoTime();
+        try {
+            return storeCall.get();
+        } finally {
+            metrics.recordCall(call, System.nanoTime() - start, 1);
+        }
+    }
+
+    @Override
+    public boolean exists(ObjectId id) {
+        return timed(StoreCall.EXISTS, () -> super.exists(id));
+    }
+
+    @Override
+    public Set<ObjectId> existsAll(Iterable<ObjectId> ids) {
+        final long start = System.nanoTime();
+        Set<ObjectId> found = super.existsAll(ids);
+        metrics.recordCall(StoreCall.EXISTS, System.nanoTime() - start,
+                ids instanceof Collection ? ((Collection<?>) ids).size() : found.size());
+        return found;
+    }
+
+    @Override
+    public RevObject get(ObjectId id) {
+        return timed(StoreCall.GET, () -> super.get(id));
+    }
+
+    @Override
+    public <T extends RevObject> T get(ObjectId id, Class<T> type) {
+        return timed(StoreCall.GET, () -> super.get(id, type));
+    }
+
+    @Override
+    public @Nullable RevObject getIfPresent(ObjectId id) {
+        return timed(StoreCall.GET, () -> super.getIfPresent(id));
+    }
+
+    @Override
+    public @Nullable <T extends RevObject> T getIfPresent(ObjectId id, Class<T> type) {
+        return timed(StoreCall.GET, () -> super.getIfPresent(id, type));
+    }
+
+    @Override
+    public RevTree getTree(ObjectId id) {
+        return timed(StoreCall.GET, () -> super.getTree(id));
+    }
+
+    @Override
+    public RevFeature getFeature(ObjectId id) {
+        return timed(StoreCall.GET, () -> super.getFeature(id));
+    }
+
+    @Override
+    public RevFeatureType getFeatureType(ObjectId id) {
+        return timed(StoreCall.GET, () -> super.getFeatureType(id));
+    }
+
+    @Override
+    public RevCommit getCommit(ObjectId id) {
+        return timed(StoreCall.GET, () -> super.getCommit(id));
+    }
+
+    @Override
+    public RevTag getTag(ObjectId id) {
+        return timed(StoreCall.GET, () -> super.getTag(id));
+    }
+
+    @Override
+    public Iterator<RevObject> getAll(Iterable<ObjectId> ids) {
+        return getAll(ids, BulkOpListener.NOOP_LISTENER, RevObject.class);
+    }
+
+    @Override
+    public Iterator<RevObject> getAll(Iterable<ObjectId> ids, BulkOpListener listener) {
+        return getAll(ids, listener, RevObject.class);
+    }
+
+    @Override
+    public <T extends RevObject> Iterator<T> getAll(final Iterable<ObjectId> ids,
+            BulkOpListener listener, Class<T> type) {
+        final long start = System.nanoTime();
+        final SourceIterator<ObjectId> requested;
+        final Iterable<ObjectId> source;
+        if (ids instanceof Collection) {
+            requested = null;
+            source = ids;
+        } else {
+            requested = new SourceIterator<>(ids.iterator());
+            source = () -> requested;
+        }
+        final Iterator<T> result = super.getAll(source, new MetricsListener(listener), type);
+        final long callNanos = System.nanoTime() - start;
+
+        return new Iterator<T>() {
+
+            private long nanos = callNanos;
+
+            private boolean recorded;
+
+            @Override
+            public boolean hasNext() {
+                final long start = System.nanoTime();
+                final boolean hasNext = result.hasNext();
+                nanos += System.nanoTime() - start;
+                if (!hasNext && !recorded) {
+                    recorded = true;
+                    long count = requested == null ? ((Collection<?>) ids).size()
+                            : requested.count;
+                    long sourceNanos = requested == null ? 0 : requested.nanos;
+                    metrics.recordCall(StoreCall.GET_ALL, nanos - sourceNanos, count);
+                }
+                return hasNext;
+            }
+
+            @Override
+            public T next() {
+                final long start = System.nanoTime();
+                try {
+                    return result.next();
+                } finally {
+                    nanos += System.nanoTime() - start;
+                }
+            }
+        };
+    }
+
+    @Override
+    public boolean put(RevObject object) {
+        return timed(StoreCall.PUT, () -> super.put(object));
+    }
+
+    @Override
+    public void putAll(Iterator<? extends RevObject> objects) {
+        putAll(objects, BulkOpListener.NOOP_LISTENER);
+    }
+
+    @Override
+    public void putAll(Iterator<? extends RevObject> objects, BulkOpListener listener) {
+        final long start = System.nanoTime();
+        SourceIterator<? extends RevObject> source = new SourceIterator<>(objects);
+        super.putAll(source, new MetricsListener(listener));
+        metrics.recordCall(StoreCall.PUT_ALL, System.nanoTime() - start - source.nanos,
+                source.count);
+    }
+
+    @Override
+    public void delete(ObjectId objectId) {
+        timed(StoreCall.DELETE, () -> {
+            super.delete(objectId);
+            return null;
+        });
+    }
+
+    @Override
+    public void deleteAll(Iterator<ObjectId> ids) {
+        deleteAll(ids, BulkOpListener.NOOP_LISTENER);
+    }
+
+    @Override
+    public void deleteAll(Iterator<ObjectId> ids, BulkOpListener listener) {
+        final long start = System.nanoTime();
+        SourceIterator<ObjectId> source = new SourceIterator<>(ids);
+        super.deleteAll(source, listener);
+        metrics.recordCall(StoreCall.DELETE_ALL, System.nanoTime() - start - source.nanos,
+                source.count);
+    }
+
+    private class MetricsListener extends ForwardingListener {
+
+        MetricsListener(BulkOpListener target) {
+            super(target);
+        }
+
+        @Override
+        public void found(ObjectId object, @Nullable Integer storageSizeBytes) {
+            metrics.recordFound();
+            super.found(object, storageSizeBytes);
+        }
+
+        @Override
+        public void notFound(ObjectId id) {
+            metrics.recordNotFound();
+            super.notFound(id);
+        }
+
+        @Override
+        public void inserted(ObjectId object, @Nullable Integer storageSizeBytes) {
+            metrics.recordInserted();
+            super.inserted(object, storageSizeBytes);
+        }
+    }
+
+    /**
+     * Counts the elements handed to the store and the time spent producing them
+     */
+    private static class SourceIterator<T> implements Iterator<T> {
+
+        private final Iterator<T> delegate;
+
+        long count, nanos;
+
+        SourceIterator(Iterator<T> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean hasNext() {
+            final long start = System.nanoTime();
+            boolean hasNext = delegate.hasNext();
+            nanos += System.nanoTime() - start;
+            return hasNext;
+        }
+
+        @Override
+        public T next() {
+            final long start = System.nanoTime();
+            T next = delegate.next();
+            nanos += System.nanoTime() - start;
+            count++;
+            return next;
+        }
+    }
+}
@@ -0,0 +1,311 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.metrics;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.locationtech.geogig.metrics.CommandMetrics.StoreCall;
+import org.locationtech.geogig.model.RevObject.TYPE;
+import org.locationtech.geogig.storage.ObjectStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * I/O metrics of an {@link ObjectStore} backend, as recorded by the
+ * {@link InstrumentedObjectDatabase} and by the backends themselves when they encode and decode
+ * objects.
+ * <p>
+ * Metrics are kept per backend kind (e.g. {@code Rocksdb}, {@code PG}, {@code File},
+ * {@code Heap}) for the whole JVM, and are only recorded while at least one store of the backend
+ * is instrumented. Each {@link #enable()} call, as made by the {@link InstrumentedObjectDatabase}
+ * the {@link ObjectStoreMetricsDecorator} creates according to the repository configuration, keeps
+ * them enabled until a matching {@link #disable()} call, as made when it's closed. They comprise:
+ * <ul>
+ * <li>a latency histogram per kind of call, in microseconds, accounting only the time spent
+ * inside the store. Calls slower than the {@link #setSlowCallMillis(long) slow call threshold}
+ * are logged;
+ * <li>the number of objects, encoded bytes, and encoding or decoding time per object type, for the
+ * objects read and written;
+ * <li>the batch size distributions of {@code getAll} and {@code putAll} calls;
+ * <li>the number of objects reported as found, not found, and inserted to bulk operation
+ * listeners.
+ * </ul>
+ * Given the call latencies and the time spent decoding objects, it can be told whether a slow
+ * request spent its time waiting on the storage, decoding objects, or elsewhere.
+ */
+public final class ObjectStoreMetrics {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ObjectStoreMetrics.class);
+
+    public static final long DEFAULT_SLOW_CALL_MILLIS = 1000;
+
+    private static final ConcurrentMap<String, ObjectStoreMetrics> BACKENDS = //
+            new ConcurrentHashMap<>();
+
+    private static final int NUM_TYPES = TYPE.values().length;
+
+    private final String backend;
+
+    private final AtomicInteger enabled = new AtomicInteger();
+
+    private volatile long slowCallNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_SLOW_CALL_MILLIS);
+
+    private final Histogram[] latencies;
+
+    private final Histogram getAllBatchSizes = Histogram.exponential(1, 100_000);
+
+    private final Histogram putAllBatchSizes = Histogram.exponential(1, 100_000);
+
+    private final TypeCounters read = new TypeCounters();
+
+    private final TypeCounters written = new TypeCounters();
+
+    private final LongAdder found = new LongAdder();
+
+    private final LongAdder notFound = new LongAdder();
+
+    private final LongAdder inserted = new LongAdder();
+
+    private final LongAdder slowCalls = new LongAdder();
+
+    private ObjectStoreMetrics(String backend) {
+        this.backend = backend;
+        this.latencies = new Histogram[StoreCall.values().length];
+        for (int i = 0; i < latencies.length; i++) {
+            // microseconds, 1us to 100s
+            latencies[i] = Histogram.exponential(1, 100_000_000);
+        }
+    }
+
+    /**
+     * @return the metrics of the backend the given {@link ObjectStore} implementation belongs to,
+     *         named after the class name without its {@code ObjectDatabase} or {@code ObjectStore}
+     *         suffix
+     */
+    public static ObjectStoreMetrics get(Class<?> storeClass) {
+        checkNotNull(storeClass, "storeClass is null");
+        return BACKENDS.computeIfAbsent(backendName(storeClass), ObjectStoreMetrics::new);
+    }
+
+    /**
+     * @return the metrics of all the backends that have been instrumented
+     */
+    public static List<ObjectStoreMetrics> enabled() {
+        List<ObjectStoreMetrics> enabled = new ArrayList<>();
+        for (ObjectStoreMetrics m : BACKENDS.values()) {
+            if (m.isEnabled()) {
+                enabled.add(m);
+            }
+        }
+        return enabled;
+    }
+
+    static String backendName(Class<?> storeClass) {
+        String name = storeClass.getSimpleName();
+        for (String suffix : new String[] { "ObjectDatabase", "ObjectStore" }) {
+            if (name.endsWith(suffix) && name.length() > suffix.length()) {
+                return name.substring(0, name.length() - suffix.length());
+            }
+        }
+        return name.isEmpty() ? storeClass.getName() : name;
+    }
+
+    public String getBackend() {
+        return backend;
+    }
+
+    /**
+     * @return whether any store of this backend is instrumented
+     */
+    public boolean isEnabled() {
+        return enabled.get() > 0;
+    }
+
+    /**
+     * Enables recording until a matching call to {@link #disable()}
+     */
+    public void enable() {
+        enabled.incrementAndGet();
+    }
+
+    /**
+     * Undoes a previous call to {@link #enable()}, recording stops once all of them have been
+     * undone
+     */
+    public void disable() {
+        enabled.updateAndGet((count) -> Math.max(0, count - 1));
+    }
+
+    /**
+     * @param millis calls that take longer than this many milliseconds are logged as warnings
+     */
+    public void setSlowCallMillis(long millis) {
+        checkArgument(millis > 0, "slow call threshold must be > 0: %s", millis);
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    public Histogram getLatency(StoreCall call) {
+        return latencies[call.ordinal()];
+    }
+
+    /**
+     * Records the time spent in a store call
+     *
+     * @param objects the number of objects requested, stored or deleted by the call
+     */
+    public void recordCall(StoreCall call, long nanos, long objects) {
+        if (!isEnabled()) {
+            return;
+        }
+        latencies[call.ordinal()].record(TimeUnit.NANOSECONDS.toMicros(nanos));
+        if (StoreCall.GET_ALL.equals(call)) {
+            getAllBatchSizes.record(objects);
+        } else if (StoreCall.PUT_ALL.equals(call)) {
+            putAllBatchSizes.record(objects);
+        }
+        if (nanos > slowCallNanos) {
+            slowCalls.increment();
+            LOG.warn("Slow {} call to the {} object store: {}ms for {} objects", call, backend,
+                    TimeUnit.NANOSECONDS.toMillis(nanos), objects);
+        }
+    }
+
+    /**
+     * Records an object decoded from its storage representation
+     */
+    public void recordRead(TYPE type, long bytes, long decodeNanos) {
+        if (isEnabled()) {
+            read.record(type, bytes, decodeNanos);
+        }
+    }
+
+    /**
+     * Records an object encoded to its storage representation
+     */
+    public void recordWritten(TYPE type, long bytes, long encodeNanos) {
+        if (isEnabled()) {
+            written.record(type, bytes, encodeNanos);
+        }
+    }
+
+    public void recordFound() {
+        found.increment();
+    }
+
+    public void recordNotFound() {
+        notFound.increment();
+    }
+
+    public void recordInserted() {
+        inserted.increment();
+    }
+
+    public long getObjectsRead(TYPE type) {
+        return read.objects.get(type.ordinal());
+    }
+
+    public long getBytesRead(TYPE type) {
+        return read.bytes.get(type.ordinal());
+    }
+
+    public long getObjectsWritten(TYPE type) {
+        return written.objects.get(type.ordinal());
+    }
+
+    public long getBytesWritten(TYPE type) {
+        return written.bytes.get(type.ordinal());
+    }
+
+    public void reset() {
+        for (Histogram h : latencies) {
+            h.reset();
+        }
+        getAllBatchSizes.reset();
+        putAllBatchSizes.reset();
+        read.clear();
+        written.clear();
+        found.reset();
+        notFound.reset();
+        inserted.reset();
+        slowCalls.reset();
+    }
+
+    public String getReport() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(backend).append(" object store:\n");
+        sb.append("  Call latencies (microseconds):\n");
+        for (StoreCall call : StoreCall.values()) {
+            Histogram latency = latencies[call.ordinal()];
+            if (latency.getCount() > 0) {
+                sb.append("    ").append(call).append(": ").append(latency).append('\n');
+            }
+        }
+        sb.append(String.format("  Slow calls (over %,dms): %,d\n",
+                TimeUnit.NANOSECONDS.toMillis(slowCallNanos), slowCalls.sum()));
+        sb.append("  getAll batch sizes: ").append(getAllBatchSizes).append('\n');
+        sb.append("  putAll batch sizes: ").append(putAllBatchSizes).append('\n');
+
+        final long found = this.found.sum();
+        final long requested = found + notFound.sum();
+        sb.append(String.format("  Bulk lookups: found=%,d not found=%,d found ratio=%.1f%%\n",
+                found, requested - found, requested == 0 ? 0d : 100d * found / requested));
+        sb.append(String.format("  Bulk inserts: inserted=%,d\n", inserted.sum()));
+        sb.append("  Read (objects/bytes/decoding ms):");
+        read.print(sb);
+        sb.append("\n  Written (objects/bytes/encoding ms):");
+        written.print(sb);
+        sb.append('\n');
+        return sb.toString();
+    }
+
+    private static class TypeCounters {
+
+        final AtomicLongArray objects = new AtomicLongArray(NUM_TYPES);
+
+        final AtomicLongArray bytes = new AtomicLongArray(NUM_TYPES);
+
+        final AtomicLongArray nanos = new AtomicLongArray(NUM_TYPES);
+
+        void record(TYPE type, long size, long time) {
+            final int i = type.ordinal();
+            objects.incrementAndGet(i);
+            bytes.addAndGet(i, size);
+            nanos.addAndGet(i, time);
+        }
+
+        void clear() {
+            for (int i = 0; i < NUM_TYPES; i++) {
+                objects.set(i, 0);
+                bytes.set(i, 0);
+                nanos.set(i, 0);
+            }
+        }
+
+        void print(StringBuilder sb) {
+            for (TYPE type : TYPE.values()) {
+                final int i = type.ordinal();
+                if (objects.get(i) > 0) {
+                    sb.append(String.format(" %s=%,d/%,d/%,d", type, objects.get(i), bytes.get(i),
+                            TimeUnit.NANOSECONDS.toMillis(nanos.get(i))));
+                }
+            }
+        }
+    }
+}
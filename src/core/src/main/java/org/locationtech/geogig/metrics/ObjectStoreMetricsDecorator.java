@@ -0,0 +1,78 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.metrics;
+
+import org.locationtech.geogig.di.Decorator;
+import org.locationtech.geogig.storage.ConfigDatabase;
+import org.locationtech.geogig.storage.ObjectDatabase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Optional;
+import com.google.inject.Provider;
+
+/**
+ * Decorates the repository's {@link ObjectDatabase}, whatever its backend, with an
+ * {@link InstrumentedObjectDatabase} if the {@value #ENABLED_KEY} config property is
+ * {@code true} in the repository or global config.
+ * <p>
+ * The {@value #SLOW_CALL_MILLIS_KEY} config property sets the threshold above which store calls
+ * are logged as slow, defaulting to {@link ObjectStoreMetrics#DEFAULT_SLOW_CALL_MILLIS}.
+ * <p>
+ * This decorator shall be bound before any other one decorating the {@code ObjectDatabase}, so
+ * that only the time spent in the backend itself is accounted.
+ */
+public class ObjectStoreMetricsDecorator implements Decorator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ObjectStoreMetricsDecorator.class);
+
+    public static final String ENABLED_KEY = "objectdb.metrics.enabled";
+
+    public static final String SLOW_CALL_MILLIS_KEY = "objectdb.metrics.slowCallMillis";
+
+    private final Provider<ConfigDatabase> configDb;
+
+    public ObjectStoreMetricsDecorator(Provider<ConfigDatabase> configDb) {
+        this.configDb = configDb;
+    }
+
+    @Override
+    public boolean canDecorate(Object instance) {
+        return instance instanceof ObjectDatabase
+                && getConfig(ENABLED_KEY, Boolean.class).or(Boolean.FALSE).booleanValue();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <I> I decorate(I subject) {
+        ObjectStoreMetrics metrics = ObjectStoreMetrics.get(subject.getClass());
+        Optional<Long> slowCallMillis = getConfig(SLOW_CALL_MILLIS_KEY, Long.class);
+        if (slowCallMillis.isPresent()) {
+            metrics.setSlowCallMillis(slowCallMillis.get().longValue());
+        }
+        LOG.debug("Instrumenting the {} object database", metrics.getBackend());
+        return (I) new InstrumentedObjectDatabase((ObjectDatabase) subject, metrics);
+    }
+
+    private <T> Optional<T> getConfig(String key, Class<T> type) {
+        try {
+            ConfigDatabase config = configDb.get();
+            Optional<T> value = config.get(key, type);
+            if (!value.isPresent()) {
+                value = config.getGlobal(key, type);
+            }
+            return value;
+        } catch (RuntimeException e) {
+            // e.g. no repository or global config yet
+            LOG.debug("Unable to read config property {}", key, e);
+            return Optional.absent();
+        }
+    }
+}
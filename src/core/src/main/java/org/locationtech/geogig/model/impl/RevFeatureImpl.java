@@ -20,6 +20,7 @@ import org.locationtech.geogig.model.RevFeature;
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.GeometryFactory;
 
@@ -68,6 +69,18 @@ class RevFeatureImpl extends AbstractRevObject implements RevFeature {
         return Optional.fromNullable(g2);
     }
 
+    /**
+     * Overrides the default implementation to avoid making a safe copy of the geometry
+     */
+    @Override
+    public Optional<Envelope> getEnvelope(final int index) {
+        Object value = values.get(index);
+        if (value instanceof Geometry && !((Geometry) value).isEmpty()) {
+            return Optional.of(new Envelope(((Geometry) value).getEnvelopeInternal()));
+        }
+        return Optional.absent();
+    }
+
     @Override
     public void forEach(final Consumer<Object> consumer) {
         values.forEach((v) -> consumer.accept(safeCopy(v)));
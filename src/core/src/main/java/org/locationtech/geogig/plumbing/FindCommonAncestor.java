@@ -9,10 +9,11 @@
  */
 package org.locationtech.geogig.plumbing;
 
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 
@@ -20,18 +21,25 @@ import org.locationtech.geogig.model.ObjectId;
 import org.locationtech.geogig.model.RevCommit;
 import org.locationtech.geogig.repository.AbstractGeoGigOp;
 import org.locationtech.geogig.storage.GraphDatabase;
-import org.locationtech.geogig.storage.GraphDatabase.Direction;
-import org.locationtech.geogig.storage.GraphDatabase.GraphEdge;
-import org.locationtech.geogig.storage.GraphDatabase.GraphNode;
 
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 
 /**
  * Finds the common {@link RevCommit commit} ancestor of two commits.
+ * <p>
+ * The commit parents are fetched from the {@link GraphDatabase} in bulk through
+ * {@link GraphDatabase#getAncestry(Iterable, int)}, a few hundred generations at a time, instead
+ * of one commit at a time.
  */
 public class FindCommonAncestor extends AbstractGeoGigOp<Optional<ObjectId>> {
 
+    /**
+     * Number of generations of ancestry to fetch from the graph database at once
+     */
+    private static final int ANCESTRY_BATCH_DEPTH = 500;
+
     private ObjectId left;
 
     private ObjectId right;
@@ -102,39 +110,37 @@ public class FindCommonAncestor extends AbstractGeoGigOp<Optional<ObjectId>> {
      *         {@link Optional#absent()} if a common ancestor could not be found.
      */
     public Optional<ObjectId> findLowestCommonAncestor(ObjectId leftId, ObjectId rightId) {
-        Set<GraphNode> leftSet = new HashSet<GraphNode>();
-        Set<GraphNode> rightSet = new HashSet<GraphNode>();
+        final Ancestry ancestry = new Ancestry(graphDatabase());
 
-        Queue<GraphNode> leftQueue = new LinkedList<GraphNode>();
-        Queue<GraphNode> rightQueue = new LinkedList<GraphNode>();
+        Set<ObjectId> leftSet = new HashSet<ObjectId>();
+        Set<ObjectId> rightSet = new HashSet<ObjectId>();
 
-        GraphDatabase graphDb = graphDatabase();
-        GraphNode leftNode = graphDb.getNode(leftId);
-        leftQueue.add(leftNode);
+        Queue<ObjectId> leftQueue = new LinkedList<ObjectId>();
+        Queue<ObjectId> rightQueue = new LinkedList<ObjectId>();
 
-        GraphNode rightNode = graphDb.getNode(rightId);
-        rightQueue.add(rightNode);
+        leftQueue.add(leftId);
+        rightQueue.add(rightId);
 
-        List<GraphNode> potentialCommonAncestors = new LinkedList<GraphNode>();
+        List<ObjectId> potentialCommonAncestors = new LinkedList<ObjectId>();
         while (!leftQueue.isEmpty() || !rightQueue.isEmpty()) {
             if (!leftQueue.isEmpty()) {
-                GraphNode commit = leftQueue.poll();
-                if (processCommit(commit, leftQueue, leftSet, rightQueue, rightSet)) {
+                ObjectId commit = leftQueue.poll();
+                if (processCommit(commit, leftQueue, leftSet, rightQueue, rightSet, ancestry)) {
                     potentialCommonAncestors.add(commit);
                 }
             }
             if (!rightQueue.isEmpty()) {
-                GraphNode commit = rightQueue.poll();
-                if (processCommit(commit, rightQueue, rightSet, leftQueue, leftSet)) {
+                ObjectId commit = rightQueue.poll();
+                if (processCommit(commit, rightQueue, rightSet, leftQueue, leftSet, ancestry)) {
                     potentialCommonAncestors.add(commit);
                 }
             }
         }
-        verifyAncestors(potentialCommonAncestors, leftSet, rightSet);
+        verifyAncestors(potentialCommonAncestors, leftSet, rightSet, ancestry);
 
         Optional<ObjectId> ancestor = Optional.absent();
         if (potentialCommonAncestors.size() > 0) {
-            ancestor = Optional.of(potentialCommonAncestors.get(0).getIdentifier());
+            ancestor = Optional.of(potentialCommonAncestors.get(0));
         }
         return ancestor;
     }
@@ -149,21 +155,17 @@ public class FindCommonAncestor extends AbstractGeoGigOp<Optional<ObjectId>> {
      * @param mySet my visited nodes
      * @param theirQueue other traversal queue
      * @param theirSet other traversal's visited nodes
+     * @param ancestry the commit parents lookup
      * @return
      */
-    private boolean processCommit(GraphNode commit, Queue<GraphNode> myQueue, Set<GraphNode> mySet,
-            Queue<GraphNode> theirQueue, Set<GraphNode> theirSet) {
+    private boolean processCommit(ObjectId commit, Queue<ObjectId> myQueue, Set<ObjectId> mySet,
+            Queue<ObjectId> theirQueue, Set<ObjectId> theirSet, Ancestry ancestry) {
         if (mySet.add(commit)) {
             if (theirSet.contains(commit)) {
-                stopAncestryPath(commit, theirQueue, theirSet);
+                stopAncestryPath(commit, theirQueue, theirSet, ancestry);
                 return true;
             }
-            Iterator<GraphEdge> edges = commit.getEdges(Direction.OUT);
-            while (edges.hasNext()) {
-                GraphEdge parentEdge = edges.next();
-                GraphNode parent = parentEdge.getToNode();
-                myQueue.add(parent);
-            }
+            myQueue.addAll(ancestry.parents(commit));
         }
         return false;
 
@@ -178,25 +180,22 @@ public class FindCommonAncestor extends AbstractGeoGigOp<Optional<ObjectId>> {
      * @param commit the common ancestor
      * @param theirQueue the opposite traversal queue
      * @param theirSet the opposite visited nodes
+     * @param ancestry the commit parents lookup
      */
-    private void stopAncestryPath(GraphNode commit, Queue<GraphNode> theirQueue,
-            Set<GraphNode> theirSet) {
-        Queue<GraphNode> ancestorQueue = new LinkedList<GraphNode>();
+    private void stopAncestryPath(ObjectId commit, Queue<ObjectId> theirQueue,
+            Set<ObjectId> theirSet, Ancestry ancestry) {
+        Queue<ObjectId> ancestorQueue = new LinkedList<ObjectId>();
         ancestorQueue.add(commit);
-        Set<GraphNode> processed = new HashSet<GraphNode>();
+        Set<ObjectId> processed = new HashSet<ObjectId>();
         while (!ancestorQueue.isEmpty()) {
-            GraphNode ancestor = ancestorQueue.poll();
-            Iterator<GraphEdge> edges = ancestor.getEdges(Direction.OUT);
-            while (edges.hasNext()) {
-                GraphEdge relationship = edges.next();
-                GraphNode parentNode = relationship.getToNode();
-                if (theirSet.contains(parentNode)) {
-                    if (!processed.contains(parentNode)) {
-                        ancestorQueue.add(parentNode);
-                        processed.add(parentNode);
+            ObjectId ancestor = ancestorQueue.poll();
+            for (ObjectId parent : ancestry.parents(ancestor)) {
+                if (theirSet.contains(parent)) {
+                    if (processed.add(parent)) {
+                        ancestorQueue.add(parent);
                     }
                 } else {
-                    theirQueue.remove(parentNode);
+                    theirQueue.remove(parent);
                 }
             }
         }
@@ -209,32 +208,29 @@ public class FindCommonAncestor extends AbstractGeoGigOp<Optional<ObjectId>> {
      * @param potentialCommonAncestors the result list
      * @param leftSet the visited nodes of the left traversal
      * @param rightSet the visited nodes of the right traversal
+     * @param ancestry the commit parents lookup
      */
-    private void verifyAncestors(List<GraphNode> potentialCommonAncestors, Set<GraphNode> leftSet,
-            Set<GraphNode> rightSet) {
-        Queue<GraphNode> ancestorQueue = new LinkedList<GraphNode>();
-        List<GraphNode> falseAncestors = new LinkedList<GraphNode>();
-        List<GraphNode> processed = new LinkedList<GraphNode>();
+    private void verifyAncestors(List<ObjectId> potentialCommonAncestors, Set<ObjectId> leftSet,
+            Set<ObjectId> rightSet, Ancestry ancestry) {
+        Queue<ObjectId> ancestorQueue = new LinkedList<ObjectId>();
+        Set<ObjectId> falseAncestors = new HashSet<ObjectId>();
+        Set<ObjectId> processed = new HashSet<ObjectId>();
 
-        for (GraphNode v : potentialCommonAncestors) {
+        for (ObjectId v : potentialCommonAncestors) {
             if (falseAncestors.contains(v)) {
                 continue;
             }
             ancestorQueue.add(v);
             while (!ancestorQueue.isEmpty()) {
-                GraphNode ancestor = ancestorQueue.poll();
-                Iterator<GraphEdge> edges = ancestor.getEdges(Direction.OUT);
-                while (edges.hasNext()) {
-                    GraphEdge parent = edges.next();
-                    GraphNode parentNode = parent.getToNode();
-                    if (parentNode.getIdentifier() != ancestor.getIdentifier()) {
-                        if (leftSet.contains(parentNode) || rightSet.contains(parentNode)) {
-                            if (!processed.contains(parentNode)) {
-                                ancestorQueue.add(parentNode);
-                                processed.add(parentNode);
+                ObjectId ancestor = ancestorQueue.poll();
+                for (ObjectId parent : ancestry.parents(ancestor)) {
+                    if (!parent.equals(ancestor)) {
+                        if (leftSet.contains(parent) || rightSet.contains(parent)) {
+                            if (processed.add(parent)) {
+                                ancestorQueue.add(parent);
                             }
-                            if (potentialCommonAncestors.contains(parentNode)) {
-                                falseAncestors.add(parentNode);
+                            if (potentialCommonAncestors.contains(parent)) {
+                                falseAncestors.add(parent);
                             }
                         }
                     }
@@ -243,4 +239,34 @@ public class FindCommonAncestor extends AbstractGeoGigOp<Optional<ObjectId>> {
         }
         potentialCommonAncestors.removeAll(falseAncestors);
     }
+
+    /**
+     * Caches the parents of the commits traversed, fetching the ancestry of a commit not yet
+     * cached {@link #ANCESTRY_BATCH_DEPTH} generations at a time
+     */
+    private static class Ancestry {
+
+        private final GraphDatabase graphDb;
+
+        private final Map<ObjectId, ImmutableList<ObjectId>> parents = new HashMap<>();
+
+        Ancestry(GraphDatabase graphDb) {
+            this.graphDb = graphDb;
+        }
+
+        public ImmutableList<ObjectId> parents(ObjectId commitId) {
+            ImmutableList<ObjectId> commitParents = parents.get(commitId);
+            if (commitParents == null) {
+                Map<ObjectId, ImmutableList<ObjectId>> ancestry = graphDb
+                        .getAncestry(ImmutableList.of(commitId), ANCESTRY_BATCH_DEPTH);
+                parents.putAll(ancestry);
+                commitParents = ancestry.get(commitId);
+                if (commitParents == null) {
+                    commitParents = ImmutableList.of();
+                    parents.put(commitId, commitParents);
+                }
+            }
+            return commitParents;
+        }
+    }
 }
@@ -0,0 +1,680 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.plumbing;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.model.Bucket;
+import org.locationtech.geogig.model.Node;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.Ref;
+import org.locationtech.geogig.model.RevCommit;
+import org.locationtech.geogig.model.RevObject;
+import org.locationtech.geogig.model.RevObject.TYPE;
+import org.locationtech.geogig.model.RevTag;
+import org.locationtech.geogig.model.RevTree;
+import org.locationtech.geogig.model.impl.CommitBuilder;
+import org.locationtech.geogig.repository.AbstractGeoGigOp;
+import org.locationtech.geogig.repository.NodeRef;
+import org.locationtech.geogig.repository.ProgressListener;
+import org.locationtech.geogig.storage.ObjectStore;
+import org.locationtech.geogig.storage.memory.OffHeapDeduplicator;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+/**
+ * Verifies the integrity of the repository's object graph, reporting the objects reachable from
+ * its refs that are missing from the object database, or that are corrupt (i.e. can't be decoded,
+ * are not of the expected type, or their contents don't hash to their id).
+ * <p>
+ * All the refs (or the ones {@link #setRefs(List) given}) are traversed concurrently, along their
+ * whole history, on a dedicated fork join pool of {@link #setThreads(int) configurable} size.
+ * Objects shared by several commits or refs are only checked once, keeping track of the visited
+ * ones through an {@link OffHeapDeduplicator}, so that the size of the repository is not bound by
+ * the heap size. Objects are fetched (or, if {@link #setVerifyHashes(boolean) hash verification}
+ * is disabled, checked for existence) in batches of up to {@link #setBatchSize(int) batchSize}
+ * objects.
+ * <p>
+ * Problems are reported with the ref, commit, and path the faulty object was reached through.
+ * Since every object is checked only once, an object reachable through several paths is reported
+ * only for the first one found.
+ * <p>
+ * The {@link #getProgressListener() progress listener}'s progress is updated with the number of
+ * objects checked so far, and cancelling it stops the traversal.
+ */
+public class FsckOp extends AbstractGeoGigOp<FsckOp.Report> {
+
+    public static enum ProblemType {
+        /**
+         * The object is referenced but not present in the object database
+         */
+        MISSING,
+        /**
+         * The object is present but can't be decoded, is not of the expected type, or its contents
+         * don't match its id
+         */
+        CORRUPT
+    }
+
+    /**
+     * A missing or corrupt object, and the path it's been reached through
+     */
+    public static final class Problem {
+
+        private final ProblemType type;
+
+        private final ObjectId objectId;
+
+        private final @Nullable TYPE objectType;
+
+        private final String ref;
+
+        private final @Nullable ObjectId commitId;
+
+        private final String path;
+
+        private final String message;
+
+        Problem(ProblemType type, ObjectId objectId, @Nullable TYPE objectType, String ref,
+                @Nullable ObjectId commitId, String path, String message) {
+            this.type = type;
+            this.objectId = objectId;
+            this.objectType = objectType;
+            this.ref = ref;
+            this.commitId = commitId;
+            this.path = path;
+            this.message = message;
+        }
+
+        public ProblemType getType() {
+            return type;
+        }
+
+        public ObjectId getObjectId() {
+            return objectId;
+        }
+
+        /**
+         * @return the expected type of the object, or {@code null} for the object a ref points to
+         *         directly, which may be a commit, a tag, or a tree
+         */
+        public @Nullable TYPE getObjectType() {
+            return objectType;
+        }
+
+        /**
+         * @return the name of the ref the object has been reached from
+         */
+        public String getRef() {
+            return ref;
+        }
+
+        /**
+         * @return the commit the object has been reached through (i.e. the commit whose tree
+         *         contains the object, or the child commit of a parent commit), or {@code null} if
+         *         the object is pointed to by the ref or a tag
+         */
+        public @Nullable ObjectId getCommitId() {
+            return commitId;
+        }
+
+        /**
+         * @return the path of the object within the commit's tree, or the empty string for
+         *         commits, tags, and root trees
+         */
+        public String getPath() {
+            return path;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(type.toString()).append(' ')
+                    .append(objectType == null ? "OBJECT" : objectType.toString()).append(' ')
+                    .append(objectId).append(" (").append(ref);
+            if (commitId != null) {
+                sb.append(", ").append(commitId);
+            }
+            if (!path.isEmpty()) {
+                sb.append(", ").append(path);
+            }
+            return sb.append("): ").append(message).toString();
+        }
+    }
+
+    /**
+     * The result of a repository verification
+     */
+    public static final class Report {
+
+        private final long[] checked;
+
+        private final long problemCount;
+
+        private final ImmutableList<Problem> problems;
+
+        Report(long[] checked, long problemCount, ImmutableList<Problem> problems) {
+            this.checked = checked;
+            this.problemCount = problemCount;
+            this.problems = problems;
+        }
+
+        /**
+         * @return whether no problems were found
+         */
+        public boolean isClean() {
+            return problemCount == 0;
+        }
+
+        /**
+         * @return the number of distinct objects of the given type that were checked
+         */
+        public long getChecked(TYPE type) {
+            return checked[type.value()];
+        }
+
+        /**
+         * @return the number of distinct objects checked
+         */
+        public long getCheckedCount() {
+            long count = 0;
+            for (long c : checked) {
+                count += c;
+            }
+            return count;
+        }
+
+        /**
+         * @return the total number of problems found, which may be larger than the number of
+         *         {@link #getProblems() reported} ones
+         */
+        public long getProblemCount() {
+            return problemCount;
+        }
+
+        /**
+         * @return the problems found, up to the {@link FsckOp#setMaxReportedProblems(int) max
+         *         reported problems} limit
+         */
+        public ImmutableList<Problem> getProblems() {
+            return problems;
+        }
+    }
+
+    private List<String> refs;
+
+    private boolean verifyHashes = true;
+
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    private int batchSize = 1000;
+
+    private int maxReportedProblems = 1000;
+
+    /**
+     * @param refs the names of the refs to verify, defaults to all the repository's refs
+     */
+    public FsckOp setRefs(List<String> refs) {
+        this.refs = refs;
+        return this;
+    }
+
+    /**
+     * @param verifyHashes whether to verify objects can be decoded and their contents hash to
+     *        their ids, or only that features and feature types exist, which is faster. Commits,
+     *        tags, and trees are always read and verified since the traversal depends on them.
+     *        Defaults to {@code true}.
+     */
+    public FsckOp setVerifyHashes(boolean verifyHashes) {
+        this.verifyHashes = verifyHashes;
+        return this;
+    }
+
+    /**
+     * @param threads the number of threads to traverse the object graph with, defaults to the
+     *        number of available processors
+     */
+    public FsckOp setThreads(int threads) {
+        checkArgument(threads > 0, "threads must be > 0: %s", threads);
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * @param batchSize the max number of objects fetched or checked for existence at once,
+     *        defaults to {@code 1000}
+     */
+    public FsckOp setBatchSize(int batchSize) {
+        checkArgument(batchSize > 0, "batchSize must be > 0: %s", batchSize);
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * @param maxReportedProblems the max number of problems to keep in the {@link Report}, the
+     *        rest being only counted. Defaults to {@code 1000}.
+     */
+    public FsckOp setMaxReportedProblems(int maxReportedProblems) {
+        checkArgument(maxReportedProblems >= 0, "maxReportedProblems must be >= 0: %s",
+                maxReportedProblems);
+        this.maxReportedProblems = maxReportedProblems;
+        return this;
+    }
+
+    @Override
+    protected Report _call() {
+        final List<Ref> refs = resolveRefs();
+        final ProgressListener progress = getProgressListener();
+        progress.started();
+        progress.setDescription("Verifying objects reachable from " + refs.size() + " refs...");
+
+        final OffHeapDeduplicator visited = new OffHeapDeduplicator();
+        final Walk walk = new Walk(objectDatabase(), visited, verifyHashes, batchSize,
+                maxReportedProblems);
+        final ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            for (Ref ref : refs) {
+                ObjectId id = ref.getObjectId();
+                if (!id.isNull() && !RevTree.EMPTY_TREE_ID.equals(id)) {
+                    Entry entry = new Entry(id, null, ref.getName(), null, null, null);
+                    walk.pending.incrementAndGet();
+                    pool.execute(new VerifyObjects(walk, Lists.newArrayList(entry)));
+                }
+            }
+            walk.taskDone();
+            while (!walk.done.await(1, TimeUnit.SECONDS)) {
+                progress.setProgress(visited.size());
+                if (progress.isCanceled()) {
+                    walk.cancel();
+                }
+            }
+            progress.setProgress(visited.size());
+        } catch (InterruptedException e) {
+            walk.cancel();
+            throw Throwables.propagate(e);
+        } finally {
+            pool.shutdownNow();
+            visited.release();
+        }
+
+        Throwable failure = walk.failure.get();
+        if (failure != null) {
+            throw Throwables.propagate(failure);
+        }
+        progress.complete();
+        return walk.report();
+    }
+
+    private List<Ref> resolveRefs() {
+        if (refs == null) {
+            return ImmutableList.copyOf(command(ForEachRef.class).call());
+        }
+        List<Ref> resolved = new ArrayList<>(refs.size());
+        for (String name : refs) {
+            Optional<Ref> ref = command(RefParse.class).setName(name).call();
+            checkArgument(ref.isPresent(), "Can't resolve ref '%s'", name);
+            resolved.add(ref.get());
+        }
+        return resolved;
+    }
+
+    /**
+     * An object to check, and where it's been reached from
+     */
+    private static final class Entry {
+
+        final ObjectId id;
+
+        final @Nullable TYPE type;
+
+        final String ref;
+
+        final @Nullable ObjectId commitId;
+
+        /**
+         * Path of the tree the object is in, {@code null} for commits and tags
+         */
+        final @Nullable String parentPath;
+
+        /**
+         * Name of the node pointing to the object, {@code null} for buckets and root trees
+         */
+        final @Nullable String name;
+
+        Entry(ObjectId id, @Nullable TYPE type, String ref, @Nullable ObjectId commitId,
+                @Nullable String parentPath, @Nullable String name) {
+            this.id = id;
+            this.type = type;
+            this.ref = ref;
+            this.commitId = commitId;
+            this.parentPath = parentPath;
+            this.name = name;
+        }
+
+        /**
+         * The full path is only computed for subtrees and reported problems, sparing the creation
+         * of a path string per feature
+         */
+        String path() {
+            if (parentPath == null) {
+                return NodeRef.ROOT;
+            }
+            return name == null ? parentPath : NodeRef.appendChild(parentPath, name);
+        }
+    }
+
+    /**
+     * State shared by all the tasks of a traversal
+     */
+    private static final class Walk {
+
+        final ObjectStore store;
+
+        final OffHeapDeduplicator visited;
+
+        final boolean verifyHashes;
+
+        final int batchSize;
+
+        final int maxReportedProblems;
+
+        final LongAdder[] checked;
+
+        final AtomicLong problemCount = new AtomicLong();
+
+        final ConcurrentLinkedQueue<Problem> problems = new ConcurrentLinkedQueue<>();
+
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        /**
+         * Number of submitted tasks not yet finished, plus one held by the caller until all the
+         * refs are submitted
+         */
+        final AtomicLong pending = new AtomicLong(1);
+
+        final CountDownLatch done = new CountDownLatch(1);
+
+        volatile boolean cancelled;
+
+        Walk(ObjectStore store, OffHeapDeduplicator visited, boolean verifyHashes, int batchSize,
+                int maxReportedProblems) {
+            this.store = store;
+            this.visited = visited;
+            this.verifyHashes = verifyHashes;
+            this.batchSize = batchSize;
+            this.maxReportedProblems = maxReportedProblems;
+            this.checked = new LongAdder[TYPE.values().length];
+            for (int i = 0; i < checked.length; i++) {
+                checked[i] = new LongAdder();
+            }
+        }
+
+        boolean isAborted() {
+            return cancelled || failure.get() != null;
+        }
+
+        void cancel() {
+            cancelled = true;
+        }
+
+        void fail(Throwable e) {
+            failure.compareAndSet(null, e);
+        }
+
+        void taskDone() {
+            if (pending.decrementAndGet() == 0) {
+                done.countDown();
+            }
+        }
+
+        void checked(TYPE type) {
+            checked[type.value()].increment();
+        }
+
+        void problem(ProblemType type, Entry entry, String message) {
+            if (problemCount.incrementAndGet() <= maxReportedProblems) {
+                problems.add(new Problem(type, entry.id, entry.type, entry.ref, entry.commitId,
+                        entry.path(), message));
+            }
+        }
+
+        Report report() {
+            long[] counts = new long[checked.length];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = checked[i].sum();
+            }
+            return new Report(counts, problemCount.get(), ImmutableList.copyOf(problems));
+        }
+    }
+
+    /**
+     * Checks a batch of objects, and forks new tasks for the objects they reference in batches of
+     * up to {@link Walk#batchSize} objects. Tasks are not joined, but counted as
+     * {@link Walk#pending} until they finish, the traversal being over once there are none left.
+     */
+    private static final class VerifyObjects extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Walk walk;
+
+        private final List<Entry> entries;
+
+        private List<Entry> children;
+
+        VerifyObjects(Walk walk, List<Entry> entries) {
+            this.walk = walk;
+            this.entries = entries;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                if (!walk.isAborted()) {
+                    verify();
+                }
+            } catch (Throwable e) {
+                walk.fail(e);
+            } finally {
+                walk.taskDone();
+            }
+        }
+
+        private void fork(List<Entry> entries) {
+            walk.pending.incrementAndGet();
+            new VerifyObjects(walk, entries).fork();
+        }
+
+        private void verify() {
+            List<Entry> existence = new ArrayList<>();
+            List<Entry> fetch = new ArrayList<>(entries.size());
+            for (Entry e : entries) {
+                if (walk.visited.visit(e.id)) {
+                    continue;
+                }
+                if (!walk.verifyHashes && (TYPE.FEATURE == e.type || TYPE.FEATURETYPE == e.type)) {
+                    existence.add(e);
+                } else {
+                    fetch.add(e);
+                }
+            }
+            checkExists(existence);
+            if (fetch.isEmpty()) {
+                return;
+            }
+            this.children = new ArrayList<>();
+            final Set<ObjectId> corrupt = Sets.newHashSet();
+            final Map<ObjectId, RevObject> objects = fetch(fetch, corrupt);
+            for (Entry e : fetch) {
+                RevObject o = objects.get(e.id);
+                if (o == null) {
+                    if (!corrupt.contains(e.id)) {
+                        walk.problem(ProblemType.MISSING, e, "object not found");
+                    }
+                    continue;
+                }
+                if (e.type != null && e.type != o.getType()) {
+                    walk.problem(ProblemType.CORRUPT, e,
+                            "expected a " + e.type + " but found a " + o.getType());
+                    continue;
+                }
+                walk.checked(o.getType());
+                if (walk.verifyHashes) {
+                    ObjectId hash = hash(o);
+                    if (!e.id.equals(hash)) {
+                        walk.problem(ProblemType.CORRUPT, e, "contents hash to " + hash);
+                    }
+                }
+                expand(e, o);
+            }
+            if (!children.isEmpty()) {
+                fork(children);
+            }
+        }
+
+        /**
+         * Commit ids are computed out of their contents with a {@link ObjectId#NULL null} id, as
+         * opposed to other objects, whose id is not part of their contents
+         */
+        private static ObjectId hash(RevObject o) {
+            if (o instanceof RevCommit) {
+                RevCommit c = (RevCommit) o;
+                o = CommitBuilder.build(ObjectId.NULL, c.getTreeId(), c.getParentIds(),
+                        c.getAuthor(), c.getCommitter(), c.getMessage());
+            }
+            return HashObject.hash(o);
+        }
+
+        private void checkExists(List<Entry> batch) {
+            if (batch.isEmpty()) {
+                return;
+            }
+            Set<ObjectId> present = walk.store.existsAll(Lists.transform(batch, (e) -> e.id));
+            for (Entry e : batch) {
+                if (present.contains(e.id)) {
+                    walk.checked(e.type);
+                } else {
+                    walk.problem(ProblemType.MISSING, e, "object not found");
+                }
+            }
+        }
+
+        /**
+         * Fetches all the objects at once, falling back to fetching them one by one if any of
+         * them can't be decoded, in order to tell which ones are corrupt
+         */
+        private Map<ObjectId, RevObject> fetch(List<Entry> batch, Set<ObjectId> corrupt) {
+            Map<ObjectId, RevObject> objects = new HashMap<>();
+            try {
+                walk.store.getAll(Lists.transform(batch, (e) -> e.id))
+                        .forEachRemaining((o) -> objects.put(o.getId(), o));
+            } catch (RuntimeException batchError) {
+                objects.clear();
+                for (Entry e : batch) {
+                    try {
+                        RevObject o = walk.store.getIfPresent(e.id);
+                        if (o != null) {
+                            objects.put(e.id, o);
+                        }
+                    } catch (RuntimeException decodeError) {
+                        corrupt.add(e.id);
+                        walk.problem(ProblemType.CORRUPT, e,
+                                "can't be decoded: " + decodeError.getMessage());
+                    }
+                }
+            }
+            return objects;
+        }
+
+        private void expand(Entry e, RevObject o) {
+            switch (o.getType()) {
+            case COMMIT: {
+                RevCommit commit = (RevCommit) o;
+                addTree(commit.getTreeId(), e.ref, commit.getId(), NodeRef.ROOT, null);
+                for (ObjectId parentId : commit.getParentIds()) {
+                    add(new Entry(parentId, TYPE.COMMIT, e.ref, commit.getId(), null, null));
+                }
+                break;
+            }
+            case TAG:
+                add(new Entry(((RevTag) o).getCommitId(), TYPE.COMMIT, e.ref, null, null, null));
+                break;
+            case TREE: {
+                RevTree tree = (RevTree) o;
+                final String path = e.path();
+                for (Node node : tree.trees()) {
+                    addTree(node.getObjectId(), e.ref, e.commitId, path, node.getName());
+                    addFeatureType(node, e, path);
+                }
+                for (Node node : tree.features()) {
+                    add(new Entry(node.getObjectId(), TYPE.FEATURE, e.ref, e.commitId, path,
+                            node.getName()));
+                    addFeatureType(node, e, path);
+                }
+                for (Bucket bucket : tree.buckets().values()) {
+                    addTree(bucket.getObjectId(), e.ref, e.commitId, path, null);
+                }
+                break;
+            }
+            default:
+                break;
+            }
+        }
+
+        private void addTree(ObjectId treeId, String ref, @Nullable ObjectId commitId,
+                String parentPath, @Nullable String name) {
+            if (!RevTree.EMPTY_TREE_ID.equals(treeId)) {
+                add(new Entry(treeId, TYPE.TREE, ref, commitId, parentPath, name));
+            }
+        }
+
+        /**
+         * Adds the feature type of a tree or feature node, if it has one, reported with the node's
+         * path
+         */
+        private void addFeatureType(Node node, Entry tree, String path) {
+            Optional<ObjectId> metadataId = node.getMetadataId();
+            if (metadataId.isPresent() && !metadataId.get().isNull()) {
+                add(new Entry(metadataId.get(), TYPE.FEATURETYPE, tree.ref, tree.commitId, path,
+                        node.getName()));
+            }
+        }
+
+        private void add(Entry child) {
+            children.add(child);
+            if (children.size() == walk.batchSize) {
+                fork(children);
+                children = new ArrayList<>();
+            }
+        }
+    }
+}
@@ -23,6 +23,7 @@ import org.locationtech.geogig.model.Bucket;
 import org.locationtech.geogig.model.HashObjectFunnels;
 import org.locationtech.geogig.model.Node;
 import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.ObjectIdHasher;
 import org.locationtech.geogig.model.RevObject;
 import org.locationtech.geogig.repository.AbstractGeoGigOp;
 
@@ -31,10 +32,11 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.hash.Funnel;
-import com.google.common.hash.Hasher;
 
 /**
  * Hashes a RevObject and returns the ObjectId.
+ * <p>
+ * Objects are funneled into a reusable, thread confined, {@link ObjectIdHasher}.
  * 
  * @see RevObject
  * @see ObjectId#HASH_FUNCTION
@@ -71,41 +73,29 @@ public class HashObject extends AbstractGeoGigOp<ObjectId> {
     @Override
     protected ObjectId _call() {
         Preconditions.checkState(object != null, "Object has not been set.");
+        return hash(object);
+    }
 
-        final Hasher hasher = ObjectId.HASH_FUNCTION.newHasher();
+    /**
+     * Same as {@code setObject(object).call()}, without the overhead of creating a command.
+     */
+    public static ObjectId hash(RevObject object) {
         @SuppressWarnings("unchecked")
         final Funnel<RevObject> funnel = (Funnel<RevObject>) FUNNELS[object.getType().value()];
-        funnel.funnel(object, hasher);
-        final byte[] rawKey = hasher.hash().asBytes();
-        final ObjectId id = ObjectId.createNoClone(rawKey);
-
-        return id;
+        return ObjectIdHasher.hash(object, funnel);
     }
 
     public static ObjectId hashFeature(List<Object> values) {
-        final Hasher hasher = ObjectId.HASH_FUNCTION.newHasher();
-
-        HashObjectFunnels.feature(hasher, values);
-
-        final byte[] rawKey = hasher.hash().asBytes();
-        final ObjectId id = ObjectId.createNoClone(rawKey);
-
-        return id;
+        try (ObjectIdHasher hasher = ObjectIdHasher.acquire()) {
+            HashObjectFunnels.feature(hasher, values);
+            return hasher.hash();
+        }
     }
 
     public static ObjectId hashTree(@Nullable List<Node> trees, @Nullable List<Node> features,
             @Nullable SortedMap<Integer, Bucket> buckets) {
 
-        final Hasher hasher = ObjectId.HASH_FUNCTION.newHasher();
-        trees = trees == null ? ImmutableList.of() : trees;
-        features = features == null ? ImmutableList.of() : features;
-        buckets = buckets == null ? ImmutableSortedMap.of() : buckets;
-        HashObjectFunnels.tree(hasher, trees, features, buckets);
-
-        final byte[] rawKey = hasher.hash().asBytes();
-        final ObjectId id = ObjectId.createNoClone(rawKey);
-
-        return id;
+        return HashObjectFunnels.hashTree(trees, features, buckets);
     }
 
     public static ObjectId hashTree(Optional<ImmutableList<Node>> trees,
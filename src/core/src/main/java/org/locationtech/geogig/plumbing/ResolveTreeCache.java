@@ -0,0 +1,32 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.plumbing;
+
+import org.locationtech.geogig.repository.AbstractGeoGigOp;
+
+import com.google.inject.Inject;
+
+/**
+ * Resolves the current repository's {@link ResolvedTreeCache}
+ */
+public class ResolveTreeCache extends AbstractGeoGigOp<ResolvedTreeCache> {
+
+    private final ResolvedTreeCache cache;
+
+    @Inject
+    public ResolveTreeCache(ResolvedTreeCache cache) {
+        this.cache = cache;
+    }
+
+    @Override
+    protected ResolvedTreeCache _call() {
+        return cache;
+    }
+}
@@ -0,0 +1,260 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.plumbing;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.Ref;
+import org.locationtech.geogig.model.RevTree;
+import org.locationtech.geogig.repository.Context;
+import org.locationtech.geogig.repository.IndexInfo;
+import org.locationtech.geogig.repository.NodeRef;
+import org.locationtech.geogig.repository.impl.GeogigTransaction;
+
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Maps;
+import com.google.inject.Singleton;
+
+/**
+ * A per repository cache of the ref &rarr; commit &rarr; root tree &rarr; feature type tree
+ * &rarr; index tree resolutions performed by high rate read paths, like the ones serving map
+ * tiles, which otherwise cost several ref and object database lookups per request before any
+ * data is read.
+ * <p>
+ * Resolutions that depend on the value of a ref (or on the repository's index definitions) are
+ * invalidated as soon as a ref is updated through {@link UpdateRef} or {@link UpdateSymRef} (or an
+ * index is created or updated), and expire after {@link #getMaxAgeMillis() a short time}
+ * regardless, to bound the staleness with respect to changes made by other processes sharing the
+ * same repository. The resolutions that depend only on immutable objects, like the tree child of
+ * a given root tree, or the index tree of a given canonical tree, are kept on a size bounded basis.
+ * <p>
+ * The max age of ref dependent resolutions defaults to {@value #DEFAULT_MAX_AGE_MILLIS}
+ * milliseconds and can be overridden through the {@code geogig.resolvedTreeCache.maxAgeMillis}
+ * system property, a value of zero disabling the caching of ref dependent resolutions.
+ * <p>
+ * Resolutions performed against a {@link GeogigTransaction} are kept apart from the ones performed
+ * against the repository, since the same ref names resolve to different values inside a
+ * transaction.
+ * <p>
+ * Use {@code context.command(ResolveTreeCache.class).call()} to get the repository's instance.
+ * This class is thread safe.
+ */
+@Singleton
+public class ResolvedTreeCache {
+
+    public static final String MAX_AGE_PROPERTY = "geogig.resolvedTreeCache.maxAgeMillis";
+
+    public static final long DEFAULT_MAX_AGE_MILLIS = 1000;
+
+    private static final int MAX_IMMUTABLE_ENTRIES = 10_000;
+
+    private final long maxAgeMillis;
+
+    private final AtomicLong refsGeneration = new AtomicLong();
+
+    private final AtomicLong indexesGeneration = new AtomicLong();
+
+    private final Cache<String, Optional<Ref>> refs;
+
+    private final Cache<String, Optional<ObjectId>> rootTrees;
+
+    private final Cache<Entry<String, String>, Optional<IndexInfo>> indexInfos;
+
+    private final Cache<Entry<ObjectId, String>, Optional<NodeRef>> treeRefs;
+
+    private final Cache<Entry<IndexInfo, ObjectId>, ObjectId> indexedTrees;
+
+    public ResolvedTreeCache() {
+        this(Long.getLong(MAX_AGE_PROPERTY, DEFAULT_MAX_AGE_MILLIS).longValue());
+    }
+
+    public ResolvedTreeCache(final long maxAgeMillis) {
+        this.maxAgeMillis = Math.max(0, maxAgeMillis);
+        this.refs = refDependentCache();
+        this.rootTrees = refDependentCache();
+        this.indexInfos = refDependentCache();
+        this.treeRefs = CacheBuilder.newBuilder().maximumSize(MAX_IMMUTABLE_ENTRIES).build();
+        this.indexedTrees = CacheBuilder.newBuilder().maximumSize(MAX_IMMUTABLE_ENTRIES).build();
+    }
+
+    private <K, V> Cache<K, V> refDependentCache() {
+        return CacheBuilder.newBuilder().maximumSize(1000)
+                .expireAfterWrite(maxAgeMillis, TimeUnit.MILLISECONDS).build();
+    }
+
+    /**
+     * @return the max age, in milliseconds, of the ref dependent resolutions
+     */
+    public long getMaxAgeMillis() {
+        return maxAgeMillis;
+    }
+
+    /**
+     * Resolves the ref named {@code name} as {@link RefParse} does.
+     */
+    public Optional<Ref> resolveRef(Context context, String name) {
+        checkNotNull(name, "ref name not provided");
+        return get(refs, refsGeneration, key(context, name),
+                () -> context.command(RefParse.class).setName(name).call());
+    }
+
+    /**
+     * Resolves the id of the root tree {@code treeish} evaluates to, as {@link ResolveTreeish}
+     * does.
+     *
+     * @throws IllegalArgumentException as thrown by {@link ResolveTreeish} if {@code treeish}
+     *         can't be resolved
+     */
+    public Optional<ObjectId> resolveRootTree(Context context, String treeish) {
+        checkNotNull(treeish, "tree-ish not provided");
+        return get(rootTrees, refsGeneration, key(context, treeish),
+                () -> context.command(ResolveTreeish.class).setTreeish(treeish).call());
+    }
+
+    /**
+     * Resolves the tree at {@code childPath} in the root tree {@code treeish} evaluates to.
+     *
+     * @see #resolveRootTree(Context, String)
+     * @see #resolveTreeRef(Context, ObjectId, String)
+     */
+    public Optional<NodeRef> resolveTreeRef(Context context, String treeish, String childPath) {
+        Optional<ObjectId> rootTree = resolveRootTree(context, treeish);
+        if (!rootTree.isPresent()) {
+            return Optional.absent();
+        }
+        return resolveTreeRef(context, rootTree.get(), childPath);
+    }
+
+    /**
+     * Resolves the tree at {@code childPath} in the root tree identified by {@code rootTreeId}, as
+     * {@link FindTreeChild} does.
+     */
+    public Optional<NodeRef> resolveTreeRef(Context context, ObjectId rootTreeId,
+            String childPath) {
+        checkNotNull(rootTreeId, "root tree id not provided");
+        checkNotNull(childPath, "child path not provided");
+        if (RevTree.EMPTY_TREE_ID.equals(rootTreeId)) {
+            return Optional.absent();
+        }
+        return get(treeRefs, null, Maps.immutableEntry(rootTreeId, childPath), () -> {
+            RevTree rootTree = context.objectDatabase().getTree(rootTreeId);
+            return context.command(FindTreeChild.class).setParent(rootTree)
+                    .setChildPath(childPath).call();
+        });
+    }
+
+    /**
+     * Resolves the index for the given tree and attribute, as
+     * {@link org.locationtech.geogig.storage.IndexDatabase#getIndexInfo(String, String)
+     * IndexDatabase.getIndexInfo} does.
+     */
+    public Optional<IndexInfo> getIndexInfo(Context context, String treeName,
+            String attributeName) {
+        checkNotNull(treeName, "tree name not provided");
+        checkNotNull(attributeName, "attribute name not provided");
+        return get(indexInfos, indexesGeneration, Maps.immutableEntry(treeName, attributeName),
+                () -> context.indexDatabase().getIndexInfo(treeName, attributeName));
+    }
+
+    /**
+     * Resolves the index tree for the canonical tree identified by {@code canonicalTreeId}, as
+     * {@link org.locationtech.geogig.storage.IndexDatabase#resolveIndexedTree(IndexInfo, ObjectId)
+     * IndexDatabase.resolveIndexedTree} does. Only found index trees are cached, since a missing
+     * one may be built at any time.
+     */
+    public Optional<ObjectId> resolveIndexedTree(Context context, IndexInfo index,
+            ObjectId canonicalTreeId) {
+        checkNotNull(index, "index not provided");
+        checkNotNull(canonicalTreeId, "canonical tree id not provided");
+        final Entry<IndexInfo, ObjectId> key = Maps.immutableEntry(index, canonicalTreeId);
+        ObjectId indexedTree = indexedTrees.getIfPresent(key);
+        if (indexedTree == null) {
+            final long generation = indexesGeneration.get();
+            Optional<ObjectId> resolved = context.indexDatabase().resolveIndexedTree(index,
+                    canonicalTreeId);
+            if (!resolved.isPresent()) {
+                return resolved;
+            }
+            indexedTree = resolved.get();
+            put(indexedTrees, indexesGeneration, generation, key, indexedTree);
+        }
+        return Optional.of(indexedTree);
+    }
+
+    /**
+     * Discards all the resolutions that depend on the value of a ref. Called whenever a ref is
+     * updated.
+     */
+    public void invalidateRefs() {
+        refsGeneration.incrementAndGet();
+        refs.invalidateAll();
+        rootTrees.invalidateAll();
+    }
+
+    /**
+     * Discards all the index resolutions. Called whenever an index is created or updated.
+     */
+    public void invalidateIndexes() {
+        indexesGeneration.incrementAndGet();
+        indexInfos.invalidateAll();
+        indexedTrees.invalidateAll();
+    }
+
+    /**
+     * Discards all the cached resolutions.
+     */
+    public void invalidateAll() {
+        invalidateRefs();
+        invalidateIndexes();
+        treeRefs.invalidateAll();
+    }
+
+    private static String key(Context context, String name) {
+        if (context instanceof GeogigTransaction) {
+            return ((GeogigTransaction) context).getTransactionId() + "/" + name;
+        }
+        return name;
+    }
+
+    private <K, V> V get(Cache<K, V> cache, @Nullable AtomicLong generation, K key,
+            Supplier<V> loader) {
+        V value = cache.getIfPresent(key);
+        if (value == null) {
+            if (generation != null && maxAgeMillis == 0) {
+                return loader.get();
+            }
+            final long loadGeneration = generation == null ? 0 : generation.get();
+            value = loader.get();
+            put(cache, generation, loadGeneration, key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Caches a resolved value unless an invalidation happened while it was being resolved, in
+     * which case it may already be stale
+     */
+    private <K, V> void put(Cache<K, V> cache, @Nullable AtomicLong generation,
+            long loadGeneration, K key, V value) {
+        cache.put(key, value);
+        if (generation != null && generation.get() != loadGeneration) {
+            cache.invalidate(key);
+        }
+    }
+}
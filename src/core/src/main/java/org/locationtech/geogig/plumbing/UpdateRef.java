@@ -22,7 +22,7 @@ import com.google.common.base.Optional;
 /**
  * Update the object name stored in a {@link Ref} safely.
  * <p>
- * 
+ * Invalidates the ref dependent resolutions of the repository's {@link ResolvedTreeCache}.
  */
 @Hookable(name = "update-ref")
 public class UpdateRef extends AbstractGeoGigOp<Optional<Ref>> {
@@ -118,6 +118,7 @@ public class UpdateRef extends AbstractGeoGigOp<Optional<Ref>> {
             Optional<Ref> oldRef = command(RefParse.class).setName(name).call();
             if (oldRef.isPresent()) {
                 refDatabase.remove(oldRef.get().getName());
+                command(ResolveTreeCache.class).call().invalidateRefs();
             }
             return oldRef;
         }
@@ -126,6 +127,7 @@ public class UpdateRef extends AbstractGeoGigOp<Optional<Ref>> {
                 "Tried to update Ref %s to an obect that doesn't exist: %s", name, newValue);
 
         refDatabase.putRef(name, newValue.toString());
+        command(ResolveTreeCache.class).call().invalidateRefs();
         Optional<Ref> newRef = command(RefParse.class).setName(name).call();
         checkState(newRef.isPresent());
         return newRef;
@@ -20,7 +20,7 @@ import com.google.common.base.Preconditions;
 /**
  * Update the object name stored in a {@link Ref} safely.
  * <p>
- * 
+ * Invalidates the ref dependent resolutions of the repository's {@link ResolvedTreeCache}.
  */
 @Hookable(name = "update-sym-ref")
 public class UpdateSymRef extends AbstractGeoGigOp<Optional<Ref>> {
@@ -108,11 +108,13 @@ public class UpdateSymRef extends AbstractGeoGigOp<Optional<Ref>> {
             Optional<Ref> oldRef = command(RefParse.class).setName(name).call();
             if (oldRef.isPresent()) {
                 refDatabase().remove(name);
+                command(ResolveTreeCache.class).call().invalidateRefs();
             }
             return oldRef;
         }
 
         refDatabase().putSymRef(name, newValue);
+        command(ResolveTreeCache.class).call().invalidateRefs();
         Optional<Ref> ref = command(RefParse.class).setName(name).call();
         return ref;
     }
@@ -9,10 +9,14 @@
  */
 package org.locationtech.geogig.plumbing.diff;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.locationtech.geogig.model.Bounded;
@@ -24,6 +28,7 @@ import org.locationtech.geogig.model.RevObject.TYPE;
 import org.locationtech.geogig.model.RevObjects;
 import org.locationtech.geogig.model.RevTree;
 import org.locationtech.geogig.repository.NodeRef;
+import org.locationtech.geogig.storage.BulkOpListener;
 import org.locationtech.geogig.storage.ObjectStore;
 
 import com.google.common.base.Function;
@@ -31,13 +36,28 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
 import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
 
 /**
  * An iterator over a {@link RevTree} that can return different results depending on the
  * {@link #Strategy} given;
+ * <p>
+ * The bucket trees of a tree are fetched from the {@link ObjectStore} ahead of the traversal, up
+ * to {@link #setReadAhead(int) readAhead} sibling buckets at a time with a single
+ * {@link ObjectStore#getAll(Iterable, BulkOpListener, Class) getAll} call, instead of one
+ * {@link ObjectStore#getTree(ObjectId) getTree} call per bucket. Nodes are still returned in the
+ * same order.
  */
 public class DepthTreeIterator extends AbstractIterator<NodeRef> {
+
+    /**
+     * Default number of sibling bucket trees to fetch at once, matches the maximum number of
+     * buckets per tree so that all the buckets of a tree are fetched together
+     */
+    public static final int DEFAULT_READ_AHEAD = 32;
+
     public enum Strategy {
         /**
          * Default strategy, list the all direct child entries of a tree, no recursion
@@ -84,6 +104,8 @@ public class DepthTreeIterator extends AbstractIterator<NodeRef> {
 
     private ObjectId metadataId;
 
+    private int readAhead = DEFAULT_READ_AHEAD;
+
     private static class NodeToRef implements Function<Node, NodeRef> {
 
         private final String treePath;
@@ -123,6 +145,18 @@ public class DepthTreeIterator extends AbstractIterator<NodeRef> {
         this.boundsFilter = boundsFilter == null ? alwaysTrue : boundsFilter;
     }
 
+    /**
+     * Sets how many sibling bucket trees to fetch from the object store at once.
+     * 
+     * @param readAhead the number of bucket trees to fetch per call, {@code 1} fetches them one by
+     *        one as they're traversed
+     */
+    public DepthTreeIterator setReadAhead(int readAhead) {
+        checkArgument(readAhead > 0, "readAhead must be > 0: %s", readAhead);
+        this.readAhead = readAhead;
+        return this;
+    }
+
     @Override
     protected NodeRef computeNext() {
         if (iterator == null) {
@@ -292,13 +326,18 @@ public class DepthTreeIterator extends AbstractIterator<NodeRef> {
      */
     private class Buckets extends AbstractIterator<Node> {
 
-        private Iterator<Bucket> buckets;
+        private final List<Bucket> buckets;
+
+        private int nextBucket;
+
+        private final Map<ObjectId, RevTree> fetched = new HashMap<>();
 
         private Iterator<Node> bucketEntries;
 
         public Buckets(RevTree tree) {
             Preconditions.checkArgument(!tree.buckets().isEmpty());
-            buckets = Iterators.filter(tree.buckets().values().iterator(), boundsFilter);
+            buckets = ImmutableList
+                    .copyOf(Iterators.filter(tree.buckets().values().iterator(), boundsFilter));
             bucketEntries = Collections.emptyIterator();
             // may it be a mixed tree (having both direct children and buckets)
             bucketEntries = RevObjects.children(tree, CanonicalNodeOrder.INSTANCE);
@@ -307,9 +346,9 @@ public class DepthTreeIterator extends AbstractIterator<NodeRef> {
         @Override
         protected Node computeNext() {
             while (!bucketEntries.hasNext()) {
-                if (buckets.hasNext()) {
-                    Bucket nextBucket = buckets.next();
-                    bucketEntries = resolveBucketEntries(nextBucket.getObjectId());
+                if (nextBucket < buckets.size()) {
+                    RevTree bucketTree = bucketTree(nextBucket++);
+                    bucketEntries = resolveBucketEntries(bucketTree);
                 } else {
                     return endOfData();
                 }
@@ -318,11 +357,35 @@ public class DepthTreeIterator extends AbstractIterator<NodeRef> {
         }
 
         /**
-         * @param bucketId
-         * @return
+         * Returns the tree of the bucket at the given index, fetching it along with the next
+         * {@code readAhead - 1} bucket trees if it wasn't already
          */
-        protected Iterator<Node> resolveBucketEntries(ObjectId bucketId) {
-            RevTree bucketTree = source.getTree(bucketId);
+        private RevTree bucketTree(final int index) {
+            final ObjectId bucketId = buckets.get(index).getObjectId();
+            RevTree bucketTree = fetched.remove(bucketId);
+            if (bucketTree == null) {
+                if (readAhead == 1) {
+                    return source.getTree(bucketId);
+                }
+                List<ObjectId> ids = Lists.transform(
+                        buckets.subList(index, Math.min(buckets.size(), index + readAhead)),
+                        (b) -> b.getObjectId());
+                Iterator<RevTree> trees = source.getAll(ids, BulkOpListener.NOOP_LISTENER,
+                        RevTree.class);
+                while (trees.hasNext()) {
+                    RevTree tree = trees.next();
+                    fetched.put(tree.getId(), tree);
+                }
+                bucketTree = fetched.remove(bucketId);
+                if (bucketTree == null) {
+                    // let the object store report the missing object
+                    bucketTree = source.getTree(bucketId);
+                }
+            }
+            return bucketTree;
+        }
+
+        protected Iterator<Node> resolveBucketEntries(RevTree bucketTree) {
             if (!bucketTree.buckets().isEmpty()) {
                 return new Buckets(bucketTree);
             }
@@ -340,8 +403,7 @@ public class DepthTreeIterator extends AbstractIterator<NodeRef> {
         }
 
         @Override
-        protected Iterator<Node> resolveBucketEntries(ObjectId bucketId) {
-            RevTree bucketTree = source.getTree(bucketId);
+        protected Iterator<Node> resolveBucketEntries(RevTree bucketTree) {
             if (bucketTree.numTrees() == 0) {
                 return Collections.emptyIterator();
             }
@@ -365,8 +427,7 @@ public class DepthTreeIterator extends AbstractIterator<NodeRef> {
         }
 
         @Override
-        protected Iterator<Node> resolveBucketEntries(ObjectId bucketId) {
-            RevTree bucketTree = source.getTree(bucketId);
+        protected Iterator<Node> resolveBucketEntries(RevTree bucketTree) {
             if (!bucketTree.buckets().isEmpty()) {
                 return new FeatureBuckets(bucketTree);
             }
@@ -12,37 +12,72 @@ package org.locationtech.geogig.plumbing.index;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.locationtech.geogig.model.ObjectId;
 import org.locationtech.geogig.model.Ref;
 import org.locationtech.geogig.model.RevCommit;
 import org.locationtech.geogig.model.RevFeatureType;
+import org.locationtech.geogig.model.RevObject;
 import org.locationtech.geogig.model.RevTree;
 import org.locationtech.geogig.plumbing.FindTreeChild;
-import org.locationtech.geogig.plumbing.ResolveTreeish;
+import org.locationtech.geogig.plumbing.ResolveTreeCache;
 import org.locationtech.geogig.porcelain.BranchListOp;
-import org.locationtech.geogig.porcelain.LogOp;
 import org.locationtech.geogig.porcelain.index.IndexUtils;
 import org.locationtech.geogig.repository.AbstractGeoGigOp;
+import org.locationtech.geogig.repository.DefaultProgressListener;
 import org.locationtech.geogig.repository.IndexInfo;
 import org.locationtech.geogig.repository.NodeRef;
+import org.locationtech.geogig.repository.ProgressListener;
+import org.locationtech.geogig.repository.impl.PostOrderIterator;
+import org.locationtech.geogig.storage.memory.HeapDeduplicator;
 import org.opengis.feature.type.GeometryDescriptor;
 
 import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * Creates a spatial index for every commit a given type tree is present at.
- *
+ * <p>
+ * The distinct versions of the type tree are gathered first, traversing the history of all the
+ * branches once, parents before children. Each tree version is then indexed incrementally from the
+ * index of the tree version in the first of its parent commits that has one (the closest ancestor
+ * version, which is always indexed before it), or from scratch if there's none.
+ * <p>
+ * Index trees whose base tree is already indexed are built concurrently, with the number of
+ * concurrent builds limited by the {@link #setMemoryBudget memory budget}.
  */
 public class BuildFullHistoryIndexOp extends AbstractGeoGigOp<Integer> {
 
+    /**
+     * Rough estimate of the heap used by a single index tree build, as the tree builder holds up
+     * to a hundred thousand nodes in memory before swapping them to disk
+     */
+    private static final long BUILD_MEMORY_ESTIMATE = 64L * 1024 * 1024;
+
     private String treeRefSpec;
 
     private @Nullable String attributeName;
 
+    private long memoryBudget = Runtime.getRuntime().maxMemory() / 4;
+
     public BuildFullHistoryIndexOp setTreeRefSpec(String treeRefSpec) {
         this.treeRefSpec = treeRefSpec;
         return this;
@@ -53,6 +88,17 @@ public class BuildFullHistoryIndexOp extends AbstractGeoGigOp<Integer> {
         return this;
     }
 
+    /**
+     * @param memoryBudget the amount of heap, in bytes, the index tree builds running concurrently
+     *        may use. Defaults to a quarter of the maximum heap size. At least one tree is built at
+     *        a time regardless of the budget.
+     */
+    public BuildFullHistoryIndexOp setMemoryBudget(long memoryBudget) {
+        checkArgument(memoryBudget > 0, "memoryBudget must be a positive number");
+        this.memoryBudget = memoryBudget;
+        return this;
+    }
+
     @Override
     protected Integer _call() {
         checkArgument(treeRefSpec != null, "treeRefSpec not provided");
@@ -68,55 +114,168 @@ public class BuildFullHistoryIndexOp extends AbstractGeoGigOp<Integer> {
         checkState(index.isPresent(), "a matching index could not be found");
 
         indexDatabase().clearIndex(index.get());
+        command(ResolveTreeCache.class).call().invalidateIndexes();
         int builtTrees = indexHistory(index.get());
         return builtTrees;
     }
 
+    /**
+     * A distinct version of the type tree, and the version its index is to be built from, or
+     * {@link ObjectId#NULL} if it's to be built from scratch
+     */
+    private static class TreeVersion {
+
+        final ObjectId treeId;
+
+        final ObjectId featureTypeId;
+
+        final ObjectId baseTreeId;
+
+        TreeVersion(ObjectId treeId, ObjectId featureTypeId, ObjectId baseTreeId) {
+            this.treeId = treeId;
+            this.featureTypeId = featureTypeId;
+            this.baseTreeId = baseTreeId;
+        }
+    }
 
     private int indexHistory(IndexInfo index) {
-        ImmutableList<Ref> branches = command(BranchListOp.class).setLocal(true).setRemotes(true)
-                .call();
+        final ProgressListener progress = getProgressListener();
+        progress.setDescription("Resolving history of " + index.getTreeName());
+
+        final Map<ObjectId, TreeVersion> versions = resolveTreeVersions(index);
+        if (versions.isEmpty() || progress.isCanceled()) {
+            return 0;
+        }
+
+        final ListMultimap<ObjectId, TreeVersion> dependents = ArrayListMultimap.create();
+        for (TreeVersion version : versions.values()) {
+            dependents.put(version.baseTreeId, version);
+        }
+
+        final int concurrency = (int) Math.max(1, Math.min(
+                Runtime.getRuntime().availableProcessors(), memoryBudget / BUILD_MEMORY_ESTIMATE));
+        final ExecutorService executor = Executors.newFixedThreadPool(concurrency,
+                new ThreadFactoryBuilder().setDaemon(true)
+                        .setNameFormat("geogig-index-history-%d").build());
+
+        progress.setDescription(String.format("Building %,d index trees for %s",
+                versions.size(), index.getTreeName()));
+        progress.started();
+
+        final CompletionService<TreeVersion> builds = new ExecutorCompletionService<>(executor);
+        int pending = 0;
         int builtTrees = 0;
-        for (Ref ref : branches) {
-            Iterator<RevCommit> commits = command(LogOp.class).setUntil(ref.getObjectId()).call();
-            while (commits.hasNext()) {
-                RevCommit next = commits.next();
-                if (indexCommit(index, next)) {
-                    builtTrees++;
+        try {
+            for (TreeVersion version : dependents.get(ObjectId.NULL)) {
+                builds.submit(build(index, version));
+                pending++;
+            }
+            while (pending > 0) {
+                TreeVersion built = builds.take().get();
+                pending--;
+                builtTrees++;
+                progress.setProgress((builtTrees * 100f) / versions.size());
+                if (progress.isCanceled()) {
+                    break;
+                }
+                for (TreeVersion version : dependents.get(built.treeId)) {
+                    builds.submit(build(index, version));
+                    pending++;
                 }
             }
+        } catch (InterruptedException | ExecutionException e) {
+            throw Throwables.propagate(Throwables.getRootCause(e));
+        } finally {
+            executor.shutdownNow();
         }
+        progress.complete();
         return builtTrees;
     }
 
-    private boolean indexCommit(IndexInfo index, RevCommit commit) {
-        RevTree commitTree = objectDatabase().getTree(commit.getTreeId());
-        Optional<NodeRef> treeNode = command(FindTreeChild.class).setChildPath(index.getTreeName())
-                .setParent(commitTree).call();
-        if (!treeNode.isPresent()) {
-            return false;
+    /**
+     * Traverses the history of all branches, parents before children, and returns the distinct
+     * versions of the index's type tree in that order, each one with its base version set to the
+     * tree in the first parent commit that has one.
+     */
+    private Map<ObjectId, TreeVersion> resolveTreeVersions(IndexInfo index) {
+        ImmutableList<Ref> branches = command(BranchListOp.class).setLocal(true).setRemotes(true)
+                .call();
+        List<ObjectId> tips = Lists.transform(branches, (r) -> r.getObjectId());
+
+        Iterator<RevObject> commits = PostOrderIterator.rangeOfCommits(new ArrayList<>(tips),
+                ImmutableList.of(), objectDatabase(), new HeapDeduplicator());
+
+        final ProgressListener progress = getProgressListener();
+        final Map<ObjectId, Optional<NodeRef>> typeTrees = new HashMap<>();
+        final Map<ObjectId, TreeVersion> versions = new LinkedHashMap<>();
+        while (commits.hasNext() && !progress.isCanceled()) {
+            RevCommit commit = (RevCommit) commits.next();
+            Optional<NodeRef> typeTree = typeTree(index, commit.getTreeId(), typeTrees);
+            if (!typeTree.isPresent()) {
+                continue;
+            }
+            final ObjectId treeId = typeTree.get().getObjectId();
+            if (versions.containsKey(treeId)) {
+                continue;
+            }
+            ObjectId baseTreeId = ObjectId.NULL;
+            for (ObjectId parentId : commit.getParentIds()) {
+                RevCommit parent = objectDatabase().getCommit(parentId);
+                Optional<NodeRef> parentTypeTree = typeTree(index, parent.getTreeId(), typeTrees);
+                if (parentTypeTree.isPresent()) {
+                    // parents are visited first, so the parent's tree is already a known version
+                    baseTreeId = parentTypeTree.get().getObjectId();
+                    break;
+                }
+            }
+            if (!versions.containsKey(baseTreeId)) {
+                baseTreeId = ObjectId.NULL;
+            }
+            versions.put(treeId,
+                    new TreeVersion(treeId, typeTree.get().getMetadataId(), baseTreeId));
         }
-        if (indexDatabase().resolveIndexedTree(index, treeNode.get().getObjectId()).isPresent()) {
-            return false;
+        return versions;
+    }
+
+    private Optional<NodeRef> typeTree(IndexInfo index, ObjectId rootTreeId,
+            Map<ObjectId, Optional<NodeRef>> cache) {
+        Optional<NodeRef> typeTree = cache.get(rootTreeId);
+        if (typeTree == null) {
+            RevTree rootTree = objectDatabase().getTree(rootTreeId);
+            typeTree = command(FindTreeChild.class).setChildPath(index.getTreeName())
+                    .setParent(rootTree).call();
+            cache.put(rootTreeId, typeTree);
         }
-        RevTree newCanonicalTree = objectDatabase().getTree(treeNode.get().getObjectId());
-        ImmutableList<ObjectId> oldCommits = graphDatabase().getChildren(commit.getId());
-        RevTree oldCanonicalTree = RevTree.EMPTY;
-        for (ObjectId oldCommitId : oldCommits) {
-            Optional<ObjectId> oldTreeId = command(ResolveTreeish.class)
-                    .setTreeish(oldCommitId.toString() + ":" + index.getTreeName()).call();
-            if (oldTreeId.isPresent()) {
-                oldCanonicalTree = objectDatabase().getTree(oldTreeId.get());
-                break;
-            }
+        return typeTree;
+    }
+
+    private RevTree tree(ObjectId treeId) {
+        if (treeId.isNull() || RevTree.EMPTY_TREE_ID.equals(treeId)) {
+            return RevTree.EMPTY;
         }
-        command(BuildIndexOp.class)//
-                .setIndex(index)//
-                .setRevFeatureTypeId(treeNode.get().getMetadataId())//
-                .setOldCanonicalTree(oldCanonicalTree)//
-                .setNewCanonicalTree(newCanonicalTree)//
-                .setProgressListener(getProgressListener())//
-                .call();
-        return true;
+        return objectDatabase().getTree(treeId);
+    }
+
+    private Callable<TreeVersion> build(IndexInfo index, TreeVersion version) {
+        final ProgressListener parentProgress = getProgressListener();
+        return () -> {
+            RevTree oldCanonicalTree = tree(version.baseTreeId);
+            RevTree newCanonicalTree = tree(version.treeId);
+            // builds run concurrently, keep their progress reports off the op's listener
+            ProgressListener buildProgress = new DefaultProgressListener() {
+                @Override
+                public boolean isCanceled() {
+                    return parentProgress.isCanceled();
+                }
+            };
+            command(BuildIndexOp.class)//
+                    .setIndex(index)//
+                    .setRevFeatureTypeId(version.featureTypeId)//
+                    .setOldCanonicalTree(oldCanonicalTree)//
+                    .setNewCanonicalTree(newCanonicalTree)//
+                    .setProgressListener(buildProgress)//
+                    .call();
+            return version;
+        };
     }
 }
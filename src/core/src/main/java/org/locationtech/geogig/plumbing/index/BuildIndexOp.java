@@ -37,6 +37,16 @@ import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.vividsolutions.jts.geom.Envelope;
 
+/**
+ * Updates the index tree of an {@link IndexInfo index} to reflect the changes between two versions
+ * of the canonical tree it indexes, and registers the resulting index tree as the index of the new
+ * canonical tree.
+ * <p>
+ * By default the diff between both canonical trees is walked in canonical order by a single
+ * thread. In {@link #setParallel(boolean) parallel} mode, the diff is walked concurrently across
+ * buckets, the features needed to materialize the index extra attributes are fetched in batches by
+ * the walking threads, and the changed nodes are added to the index tree builder concurrently.
+ */
 public class BuildIndexOp extends AbstractGeoGigOp<RevTree> {
 
     private IndexInfo index;
@@ -47,6 +57,8 @@ public class BuildIndexOp extends AbstractGeoGigOp<RevTree> {
 
     private ObjectId revFeatureTypeId;
 
+    private boolean parallel;
+
     public BuildIndexOp setIndex(IndexInfo index) {
         this.index = index;
         return this;
@@ -67,6 +79,16 @@ public class BuildIndexOp extends AbstractGeoGigOp<RevTree> {
         return this;
     }
 
+    /**
+     * @param parallel whether to walk the diff between the old and new canonical trees and update
+     *        the index tree concurrently instead of in canonical order. The resulting index tree is
+     *        the same either way. Defaults to {@code false}.
+     */
+    public BuildIndexOp setParallel(boolean parallel) {
+        this.parallel = parallel;
+        return this;
+    }
+
     @Override
     protected RevTree _call() {
         checkState(index != null, "index to update was not provided");
@@ -77,7 +99,7 @@ public class BuildIndexOp extends AbstractGeoGigOp<RevTree> {
         final RevTreeBuilder builder = resolveTreeBuilder();
         final PreOrderDiffWalk.Consumer builderConsumer = resolveConsumer(builder);
 
-        boolean preserveIterationOrder = true;
+        final boolean preserveIterationOrder = !parallel;
         final ObjectDatabase canonicalStore = objectDatabase();
         PreOrderDiffWalk walk = new PreOrderDiffWalk(oldCanonicalTree, newCanonicalTree,
                 canonicalStore, canonicalStore, preserveIterationOrder);
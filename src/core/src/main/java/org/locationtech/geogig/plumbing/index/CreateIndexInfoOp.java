@@ -16,6 +16,7 @@ import java.util.HashMap;
 import java.util.Map;
 
 import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.plumbing.ResolveTreeCache;
 import org.locationtech.geogig.repository.AbstractGeoGigOp;
 import org.locationtech.geogig.repository.IndexInfo;
 import org.locationtech.geogig.repository.IndexInfo.IndexType;
@@ -67,6 +68,7 @@ public class CreateIndexInfoOp extends AbstractGeoGigOp<IndexInfo> {
         Map<String, Object> metadata = this.metadata;
 
         IndexInfo index = indexDatabase.createIndexInfo(treeName, attributeName, indexType, metadata);
+        command(ResolveTreeCache.class).call().invalidateIndexes();
 
         return index;
     }
@@ -42,6 +42,15 @@ import com.google.common.collect.Iterators;
 import com.google.common.collect.Maps;
 import com.vividsolutions.jts.geom.Envelope;
 
+/**
+ * Adds the changed feature nodes to the index tree builder, with the values of the index extra
+ * attributes taken from their features.
+ * <p>
+ * Nodes are queued until a batch is full, at which point the thread that found it full fetches
+ * the batch features and adds the materialized nodes to the builder. This consumer is thread safe,
+ * so when the diff is walked concurrently several batches are fetched and added in parallel. The
+ * remaining nodes are added when the walk ends at the root tree.
+ */
 class MaterializedBuilderConsumer extends AbstractConsumer {
 
     private final int batchSize = 1000;
@@ -95,7 +104,8 @@ class MaterializedBuilderConsumer extends AbstractConsumer {
 
     @Override
     public void endTree(@Nullable NodeRef left, @Nullable NodeRef right) {
-        if (NodeRef.ROOT.equals(right.name())) {
+        final NodeRef tree = right == null ? left : right;
+        if (NodeRef.ROOT.equals(tree.name())) {
             addAll();
         }
     }
@@ -114,6 +124,10 @@ class MaterializedBuilderConsumer extends AbstractConsumer {
     private void addAll() {
         List<MaterializedBuilderConsumer.Tuple> list = new ArrayList<>(batchSize);
         nodes.drainTo(list);
+        if (list.isEmpty()) {
+            // another thread drained the queue concurrently
+            return;
+        }
 
         final Map<ObjectId, RevFeature> objects;
         {
@@ -11,11 +11,18 @@ package org.locationtech.geogig.porcelain;
 
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.locationtech.geogig.di.CanRunDuringConflict;
 import org.locationtech.geogig.plumbing.DiffIndex;
 import org.locationtech.geogig.plumbing.DiffWorkTree;
+import org.locationtech.geogig.plumbing.diff.DiffCountConsumer;
 import org.locationtech.geogig.plumbing.merge.ConflictsQueryOp;
 import org.locationtech.geogig.repository.AbstractGeoGigOp;
 import org.locationtech.geogig.repository.AutoCloseableIterator;
@@ -27,10 +34,38 @@ import org.locationtech.geogig.repository.WorkingTree;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
-
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Computes the status of the working tree and staging area: the number of staged, unstaged, and
+ * conflicted changes, and lazily evaluated iterators over them.
+ * <p>
+ * The unstaged changes are counted on a helper thread while the calling thread counts the staged
+ * changes and the conflicts. Each count is a single tree walk that accounts for whole added or
+ * removed subtrees and buckets by their sizes without traversing them (see
+ * {@link DiffCountConsumer}). The iterators returned by {@link StatusSummary} stop walking the
+ * trees as soon as the {@link #setReportLimit report limit} is reached.
+ */
 @CanRunDuringConflict
 public class StatusOp extends AbstractGeoGigOp<StatusOp.StatusSummary> {
 
+    /**
+     * Helper threads shared by all status calls, at most one per processor and released when
+     * idle. If all of them are busy the unstaged changes are counted on the calling thread.
+     */
+    private static final ExecutorService EXECUTOR;
+    static {
+        final int maxThreads = Runtime.getRuntime().availableProcessors();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(maxThreads, maxThreads, 30,
+                TimeUnit.SECONDS, new SynchronousQueue<>(),
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("geogig-status-%d")
+                        .build(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        EXECUTOR = executor;
+    }
+
     public static class StatusSummary {
 
         private static final Supplier<AutoCloseableIterator<DiffEntry>> empty;
@@ -85,9 +120,15 @@ public class StatusOp extends AbstractGeoGigOp<StatusOp.StatusSummary> {
 
         StatusSummary summary = new StatusSummary();
 
-        summary.countStaged = index.countStaged(null).count();
-        summary.countUnstaged = workTree.countUnstaged(null).count();
-        summary.countConflicted = index.countConflicted(null);
+        Future<Long> countUnstaged = EXECUTOR.submit(() -> workTree.countUnstaged(null).count());
+        try {
+            summary.countStaged = index.countStaged(null).count();
+            summary.countConflicted = index.countConflicted(null);
+        } catch (RuntimeException e) {
+            countUnstaged.cancel(true);
+            throw e;
+        }
+        summary.countUnstaged = get(countUnstaged);
 
         final Long limit = this.limit == null ? null : this.limit;
 
@@ -106,6 +147,18 @@ public class StatusOp extends AbstractGeoGigOp<StatusOp.StatusSummary> {
         return summary;
     }
 
+    private static long get(Future<Long> count) {
+        try {
+            return count.get().longValue();
+        } catch (InterruptedException e) {
+            count.cancel(true);
+            Thread.currentThread().interrupt();
+            throw Throwables.propagate(e);
+        } catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
     /**
      * @param limit {@code null} for no limit, an integer >= 0 to set a limit on the number of
      *        {@link DiffEntry} returned by {@link StatusSummary#getConflicts()},
@@ -66,6 +66,12 @@ public class CreateQuadTree extends AbstractGeoGigOp<Index> {
         return this;
     }
 
+    /**
+     * Optional, if given, the attributes to materialize on the index nodes, such as a time or
+     * category attribute queries are expected to filter on together with a bounding box. Filters
+     * on them are evaluated per feature node while walking the index, see
+     * {@link IndexInfo#FEATURE_ATTRIBUTES_EXTRA_DATA}.
+     */
     public CreateQuadTree setExtraAttributes(@Nullable List<String> extraAttributes) {
         this.extraAttributes = extraAttributes;
         return this;
@@ -18,6 +18,7 @@ import org.eclipse.jdt.annotation.Nullable;
 import org.locationtech.geogig.model.ObjectId;
 import org.locationtech.geogig.model.RevFeatureType;
 import org.locationtech.geogig.model.RevTree;
+import org.locationtech.geogig.plumbing.ResolveTreeCache;
 import org.locationtech.geogig.plumbing.index.BuildFullHistoryIndexOp;
 import org.locationtech.geogig.plumbing.index.BuildIndexOp;
 import org.locationtech.geogig.repository.AbstractGeoGigOp;
@@ -134,6 +135,7 @@ public class UpdateIndexOp extends AbstractGeoGigOp<Index> {
         }
         newIndexInfo = indexDatabase().updateIndexInfo(treeName, geometryAttributeName,
                 oldIndexInfo.getIndexType(), newMetadata);
+        command(ResolveTreeCache.class).call().invalidateIndexes();
 
         RevTree canonicalTree = objectDatabase().getTree(typeTreeRef.getObjectId());
 
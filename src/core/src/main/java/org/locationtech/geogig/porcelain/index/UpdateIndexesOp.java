@@ -32,7 +32,9 @@ import com.vividsolutions.jts.geom.Envelope;
  * Given a {@code refSpec} that resolves to a root tree, finds out which indexes are defined for all
  * its feature type trees, checks whether they need to be updated, and updates the indexes to match
  * the current canonical tree versions.
- *
+ * <p>
+ * Index trees are updated incrementally from the diff between the indexed and current canonical
+ * trees, using {@link BuildIndexOp} in {@link BuildIndexOp#setParallel(boolean) parallel} mode.
  */
 public class UpdateIndexesOp extends AbstractGeoGigOp<List<Index>> {
 
@@ -121,6 +123,7 @@ public class UpdateIndexesOp extends AbstractGeoGigOp<List<Index>> {
                 cmd.setOldCanonicalTree(oldCanonicalTree);
                 cmd.setNewCanonicalTree(newCanonicalTree);
                 cmd.setRevFeatureTypeId(revTypeId);
+                cmd.setParallel(true);
                 RevTree indexTree = cmd.call();
 
                 String id = indexTree.getId().toString().substring(0, 8);
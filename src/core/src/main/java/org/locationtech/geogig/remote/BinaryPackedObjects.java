@@ -14,7 +14,6 @@ import static java.lang.String.format;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -23,10 +22,9 @@ import java.util.Set;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.locationtech.geogig.model.ObjectId;
-import org.locationtech.geogig.model.RevCommit;
 import org.locationtech.geogig.model.RevObject;
+import org.locationtech.geogig.repository.AutoCloseableIterator;
 import org.locationtech.geogig.repository.impl.Deduplicator;
-import org.locationtech.geogig.repository.impl.PostOrderIterator;
 import org.locationtech.geogig.storage.BulkOpListener;
 import org.locationtech.geogig.storage.BulkOpListener.CountingListener;
 import org.locationtech.geogig.storage.ObjectStore;
@@ -35,20 +33,24 @@ import org.locationtech.geogig.storage.impl.ObjectSerializingFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.base.Function;
 import com.google.common.base.Stopwatch;
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
 import com.google.common.base.Throwables;
 import com.google.common.collect.AbstractIterator;
-import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
 
 public final class BinaryPackedObjects {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(BinaryPackedObjects.class);
 
+    /**
+     * Number of objects read off the stream whose existence is checked at once before inserting
+     * the missing ones
+     */
+    private static final int INGEST_BATCH_SIZE = 10_000;
+
     private final ObjectSerializingFactory marshaller;
 
     private final ObjectStore database;
@@ -80,32 +82,11 @@ public final class BinaryPackedObjects {
             }
         }
 
-        LOGGER.info("scanning for previsit list...");
         Stopwatch sw = Stopwatch.createStarted();
-        ImmutableList<ObjectId> needsPrevisit = traverseCommits
-                ? scanForPrevisitList(want, have, deduplicator) : ImmutableList.copyOf(have);
-        LOGGER.info(String.format(
-                "Previsit list built in %s for %,d ids: %s. Calculating reachable content ids...",
-                sw.stop(), needsPrevisit.size(), needsPrevisit));
-
-        deduplicator.reset();
-
-        sw.reset().start();
-        ImmutableList<ObjectId> previsitResults = reachableContentIds(needsPrevisit, deduplicator);
-        LOGGER.info(String.format("reachableContentIds took %s for %,d ids", sw.stop(),
-                previsitResults.size()));
-
-        deduplicator.reset();
-
-        LOGGER.info("obtaining post order iterator on range...");
-        sw.reset().start();
-
-        Iterator<RevObject> objects = PostOrderIterator.range(want,
-                new ArrayList<ObjectId>(previsitResults), database, traverseCommits, deduplicator);
+        ParallelObjectWalk walk = new ParallelObjectWalk(database, deduplicator);
         long objectCount = 0;
-        LOGGER.info("PostOrderIterator.range took {}", sw.stop());
-
-        try {
+        try (AutoCloseableIterator<RevObject> objects = walk.walk(want, have,
+                traverseCommits)) {
             LOGGER.info("writing objects to remote...");
             while (objects.hasNext()) {
                 RevObject object = objects.next();
@@ -119,51 +100,10 @@ public final class BinaryPackedObjects {
                     objectCount, causeMessage));
             throw e;
         }
+        LOGGER.info(String.format("%,d objects written in %s", objectCount, sw.stop()));
         return objectCount;
     }
 
-    /**
-     * Find commits which should be previsited to avoid resending objects that are already on the
-     * receiving end. A commit should be previsited if:
-     * <ul>
-     * <li>It is not going to be visited, and
-     * <li>It is the immediate ancestor of a commit which is going to be previsited.
-     * </ul>
-     * 
-     */
-    private ImmutableList<ObjectId> scanForPrevisitList(List<ObjectId> want, List<ObjectId> have,
-            Deduplicator deduplicator) {
-        /*
-         * @note Implementation note: To find the previsit list, we just iterate over all the
-         * commits that will be visited according to our want and have lists. Any parents of commits
-         * in this traversal which are part of the 'have' list will be in the previsit list.
-         */
-        Iterator<RevCommit> willBeVisited = Iterators.filter( //
-                PostOrderIterator.rangeOfCommits(want, have, database, deduplicator), //
-                RevCommit.class);
-        ImmutableSet.Builder<ObjectId> builder = ImmutableSet.builder();
-
-        while (willBeVisited.hasNext()) {
-            RevCommit next = willBeVisited.next();
-            List<ObjectId> parents = new ArrayList<ObjectId>(next.getParentIds());
-            parents.retainAll(have);
-            builder.addAll(parents);
-        }
-
-        return ImmutableList.copyOf(builder.build());
-    }
-
-    private ImmutableList<ObjectId> reachableContentIds(ImmutableList<ObjectId> needsPrevisit,
-            Deduplicator deduplicator) {
-
-        Function<RevObject, ObjectId> getIdTransformer = (obj) -> obj == null ? null : obj.getId();
-
-        Iterator<ObjectId> reachable = Iterators.transform( //
-                PostOrderIterator.contentsOf(needsPrevisit, database, deduplicator), //
-                getIdTransformer);
-        return ImmutableList.copyOf(reachable);
-    }
-
     public static class IngestResults {
         private long inserted;
 
@@ -202,6 +142,10 @@ public final class BinaryPackedObjects {
     }
 
     /**
+     * Objects are read off the stream in batches, and only the ones in each batch that
+     * {@link ObjectStore#existsAll don't already exist} are handed over to the database for
+     * insertion.
+     * 
      * @return the number of objects parsed from the input stream
      */
     public IngestResults ingest(final InputStream in, final Callback callback) {
@@ -221,8 +165,20 @@ public final class BinaryPackedObjects {
 
         CountingListener countingListener = BulkOpListener.newCountingListener();
         listener = BulkOpListener.composite(countingListener, listener);
-        database.putAll(objects, listener);
-        return new IngestResults(countingListener.inserted(), countingListener.found());
+
+        long existing = 0;
+        Iterator<List<RevObject>> batches = Iterators.partition(objects, INGEST_BATCH_SIZE);
+        while (batches.hasNext()) {
+            List<RevObject> batch = batches.next();
+            Set<ObjectId> present = database.existsAll(Lists.transform(batch, (o) -> o.getId()));
+            Iterator<RevObject> missing = batch.iterator();
+            if (!present.isEmpty()) {
+                existing += present.size();
+                missing = Iterators.filter(missing, (o) -> !present.contains(o.getId()));
+            }
+            database.putAll(missing, listener);
+        }
+        return new IngestResults(countingListener.inserted(), countingListener.found() + existing);
     }
 
     private Iterator<RevObject> streamToObjects(final InputStream in) {
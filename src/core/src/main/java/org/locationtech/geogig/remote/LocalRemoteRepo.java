@@ -430,13 +430,18 @@ class LocalRemoteRepo extends AbstractRemoteRepo {
         if (ids.isEmpty()) {
             return;
         }
+        // don't even fetch the objects the target database already has
+        final Set<ObjectId> missing = Sets.newHashSet(Sets.difference(ids, to.existsAll(ids)));
+        if (missing.isEmpty()) {
+            return;
+        }
         BulkOpListener countingListener = new BulkOpListener() {
             @Override
             public void inserted(ObjectId object, @Nullable Integer storageSizeBytes) {
                 progress.setProgress(progress.getProgress() + 1);
             }
         };
-        to.putAll(from.getAll(ids), countingListener);
+        to.putAll(from.getAll(missing), countingListener);
     }
 
     /**
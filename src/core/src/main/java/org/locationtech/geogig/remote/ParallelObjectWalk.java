@@ -0,0 +1,388 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.remote;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.model.Bucket;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevCommit;
+import org.locationtech.geogig.model.RevObject;
+import org.locationtech.geogig.model.RevTag;
+import org.locationtech.geogig.model.RevTree;
+import org.locationtech.geogig.plumbing.diff.PreOrderDiffWalk;
+import org.locationtech.geogig.plumbing.diff.PreOrderDiffWalk.BucketIndex;
+import org.locationtech.geogig.plumbing.diff.PreOrderDiffWalk.Consumer;
+import org.locationtech.geogig.repository.AutoCloseableIterator;
+import org.locationtech.geogig.repository.NodeRef;
+import org.locationtech.geogig.repository.impl.Deduplicator;
+import org.locationtech.geogig.repository.impl.PostOrderIterator;
+import org.locationtech.geogig.storage.ObjectStore;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Computes and streams the objects reachable from a set of "want" commits that are not reachable
+ * from a set of "have" commits, walking the commit trees concurrently.
+ * <p>
+ * Instead of collecting the ids of all the objects reachable from the "have" commits up front,
+ * each wanted commit's tree is compared against a base tree known to be present at the receiving
+ * end (the tree of its first parent that's either a "have" commit or a commit already streamed by
+ * this walk, or otherwise the tree of any of the "have" commits), using a {@link PreOrderDiffWalk}.
+ * Since trees are content addressed, subtrees and buckets with the same id at both sides are
+ * skipped as a whole without being loaded, and bucket trees are traversed in parallel on the
+ * {@code PreOrderDiffWalk} fork join pool. Feature and feature type objects are never
+ * deserialized to discover their children, only trees are.
+ * <p>
+ * Objects are handed over to the caller through a bounded queue as soon as they're discovered, so
+ * writing them to the output overlaps with the traversal. A commit is only streamed after all the
+ * objects of its tree that had to be sent, so a receiver can consider any commit it got as
+ * complete. Objects already streamed are tracked with the provided {@link Deduplicator}, which
+ * must be thread safe, and trees already streamed are not traversed again.
+ */
+public class ParallelObjectWalk {
+
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("object-walk-%d").build());
+
+    private static final int QUEUE_SIZE = 10_000;
+
+    private static final int BATCH_SIZE = 1_000;
+
+    /**
+     * End of walk marker, compared by identity
+     */
+    private static final ObjectId END = ObjectId.createNoClone(new byte[ObjectId.NUM_BYTES]);
+
+    private final ObjectStore store;
+
+    private final Deduplicator deduplicator;
+
+    public ParallelObjectWalk(final ObjectStore store, final Deduplicator deduplicator) {
+        checkNotNull(store);
+        checkNotNull(deduplicator);
+        this.store = store;
+        this.deduplicator = deduplicator;
+    }
+
+    /**
+     * @param want the tip commits to send
+     * @param have the commits the receiving end already has
+     * @param traverseCommits whether to traverse the history of the {@code want} commits down to
+     *        the {@code have} ones, or to send only the {@code want} commits themselves
+     * @return an iterator over the objects to send, whose {@code close()} method must be called if
+     *         it's not fully traversed
+     */
+    public AutoCloseableIterator<RevObject> walk(final List<ObjectId> want,
+            final List<ObjectId> have, final boolean traverseCommits) {
+
+        final List<ObjectId> tips;
+        if (traverseCommits) {
+            Iterator<RevObject> commits = PostOrderIterator.rangeOfCommits(want, have, store,
+                    deduplicator);
+            tips = ImmutableList.copyOf(Iterators.transform(commits, (c) -> c.getId()));
+        } else {
+            tips = want;
+        }
+        deduplicator.reset();
+
+        WalkIterator iterator = new WalkIterator();
+        Producer producer = new Producer(tips, have, iterator);
+        iterator.producer = producer;
+        iterator.task = EXECUTOR.submit(producer);
+        return iterator;
+    }
+
+    /**
+     * Runs the per commit tree walks sequentially, feeding the discovered ids to the
+     * {@link WalkIterator}'s queue
+     */
+    private class Producer implements Runnable, Consumer {
+
+        private final List<ObjectId> tips;
+
+        private final Set<ObjectId> known;
+
+        private final List<ObjectId> have;
+
+        private final WalkIterator target;
+
+        private volatile boolean cancelled;
+
+        @Nullable
+        private volatile PreOrderDiffWalk currentWalk;
+
+        @Nullable
+        volatile Throwable error;
+
+        Producer(List<ObjectId> tips, List<ObjectId> have, WalkIterator target) {
+            this.tips = tips;
+            this.have = have;
+            this.known = Sets.newHashSet(have);
+            this.target = target;
+        }
+
+        void cancel() {
+            cancelled = true;
+            PreOrderDiffWalk walk = currentWalk;
+            if (walk != null) {
+                walk.abortTraversal();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (ObjectId id : tips) {
+                    if (cancelled) {
+                        break;
+                    }
+                    visit(id);
+                }
+            } catch (Throwable e) {
+                error = e;
+            } finally {
+                target.put(END, () -> cancelled);
+            }
+        }
+
+        private void visit(final ObjectId id) {
+            if (deduplicator.isDuplicate(id)) {
+                return;
+            }
+            final RevObject object = store.get(id);
+            switch (object.getType()) {
+            case COMMIT:
+                RevCommit commit = (RevCommit) object;
+                RevTree tree = store.getTree(commit.getTreeId());
+                walk(baseTree(commit), tree);
+                if (tree.isEmpty()) {
+                    // not reported by the diff walk if the base tree is also empty
+                    emit(tree.getId());
+                }
+                known.add(id);
+                break;
+            case TAG:
+                visit(((RevTag) object).getCommitId());
+                break;
+            case TREE:
+                walk(RevTree.EMPTY, (RevTree) object);
+                break;
+            default:
+                break;
+            }
+            emit(id);
+        }
+
+        private void walk(RevTree base, RevTree tree) {
+            PreOrderDiffWalk walk = new PreOrderDiffWalk(base, tree, store, store);
+            currentWalk = walk;
+            try {
+                walk.walk(this);
+            } finally {
+                currentWalk = null;
+            }
+        }
+
+        private RevTree baseTree(RevCommit commit) {
+            for (ObjectId parentId : commit.getParentIds()) {
+                if (known.contains(parentId)) {
+                    RevCommit parent = store.getIfPresent(parentId, RevCommit.class);
+                    if (parent != null) {
+                        return store.getTree(parent.getTreeId());
+                    }
+                }
+            }
+            for (ObjectId haveId : have) {
+                RevCommit haveCommit = store.getIfPresent(haveId, RevCommit.class);
+                if (haveCommit != null) {
+                    return store.getTree(haveCommit.getTreeId());
+                }
+            }
+            return RevTree.EMPTY;
+        }
+
+        /**
+         * @return {@code true} if the object was not already emitted
+         */
+        private boolean emit(ObjectId id) {
+            if (cancelled || deduplicator.visit(id)) {
+                return false;
+            }
+            target.put(id, () -> cancelled);
+            return true;
+        }
+
+        private void emitMetadata(@Nullable NodeRef left, NodeRef right) {
+            ObjectId metadataId = right.getMetadataId();
+            if (!metadataId.isNull()
+                    && (left == null || !metadataId.equals(left.getMetadataId()))) {
+                emit(metadataId);
+            }
+        }
+
+        @Override
+        public boolean tree(@Nullable NodeRef left, @Nullable NodeRef right) {
+            if (right == null) {
+                return false;
+            }
+            emitMetadata(left, right);
+            // already sent trees don't need to be traversed again
+            return emit(right.getObjectId());
+        }
+
+        @Override
+        public boolean bucket(NodeRef leftParent, NodeRef rightParent, BucketIndex bucketIndex,
+                @Nullable Bucket left, @Nullable Bucket right) {
+            if (right == null) {
+                return false;
+            }
+            return emit(right.getObjectId());
+        }
+
+        @Override
+        public boolean feature(@Nullable NodeRef left, @Nullable NodeRef right) {
+            if (right != null) {
+                emitMetadata(left, right);
+                emit(right.getObjectId());
+            }
+            return !cancelled;
+        }
+
+        @Override
+        public void endTree(@Nullable NodeRef left, @Nullable NodeRef right) {
+            //
+        }
+
+        @Override
+        public void endBucket(NodeRef leftParent, NodeRef rightParent, BucketIndex bucketIndex,
+                @Nullable Bucket left, @Nullable Bucket right) {
+            //
+        }
+    }
+
+    /**
+     * Consumes the ids discovered by the {@link Producer} in batches, fetching the objects in
+     * discovery order
+     */
+    private class WalkIterator extends AbstractIterator<RevObject>
+            implements AutoCloseableIterator<RevObject> {
+
+        private final BlockingQueue<ObjectId> queue = new LinkedBlockingQueue<>(QUEUE_SIZE);
+
+        private Producer producer;
+
+        private Future<?> task;
+
+        private Iterator<RevObject> batch = Collections.emptyIterator();
+
+        private boolean finished;
+
+        void put(ObjectId id, BooleanSupplier cancelled) {
+            try {
+                while (!queue.offer(id, 100, TimeUnit.MILLISECONDS)) {
+                    if (cancelled.getAsBoolean()) {
+                        return;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        protected RevObject computeNext() {
+            if (!batch.hasNext()) {
+                List<ObjectId> ids = nextBatch();
+                if (ids.isEmpty()) {
+                    Throwable error = producer.error;
+                    if (error != null) {
+                        throw Throwables.propagate(error);
+                    }
+                    return endOfData();
+                }
+                batch = fetch(ids);
+            }
+            return batch.next();
+        }
+
+        private List<ObjectId> nextBatch() {
+            List<ObjectId> ids = new ArrayList<>(BATCH_SIZE);
+            if (finished) {
+                return ids;
+            }
+            try {
+                ids.add(queue.take());
+            } catch (InterruptedException e) {
+                close();
+                throw Throwables.propagate(e);
+            }
+            queue.drainTo(ids, BATCH_SIZE - 1);
+            for (int i = 0; i < ids.size(); i++) {
+                if (ids.get(i) == END) {
+                    finished = true;
+                    return ids.subList(0, i);
+                }
+            }
+            return ids;
+        }
+
+        private Iterator<RevObject> fetch(List<ObjectId> ids) {
+            Map<ObjectId, RevObject> objects = new HashMap<>();
+            store.getAll(ids).forEachRemaining((o) -> objects.put(o.getId(), o));
+            List<RevObject> ordered = new ArrayList<>(ids.size());
+            for (ObjectId id : ids) {
+                RevObject object = objects.get(id);
+                if (object == null) {
+                    if (RevTree.EMPTY_TREE_ID.equals(id)) {
+                        object = RevTree.EMPTY;
+                    } else {
+                        throw new NoSuchElementException("Object not found: " + id);
+                    }
+                }
+                ordered.add(object);
+            }
+            return ordered.iterator();
+        }
+
+        @Override
+        public void close() {
+            if (!finished) {
+                finished = true;
+                batch = Collections.emptyIterator();
+                producer.cancel();
+                task.cancel(true);
+                queue.clear();
+            }
+        }
+    }
+}
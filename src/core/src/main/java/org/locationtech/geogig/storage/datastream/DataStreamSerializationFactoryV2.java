@@ -71,8 +71,20 @@ public class DataStreamSerializationFactoryV2 implements ObjectSerializingFactor
         return readInternal(id, rawData);
     }
 
+    /**
+     * Parses the object straight out of {@code data} through a {@link ByteBufferDataInput}
+     */
+    @Override
+    public RevObject read(ObjectId id, byte[] data, int offset, int length) throws IOException {
+        Preconditions.checkNotNull(id);
+        return readObject(id, ByteBufferDataInput.wrap(data, offset, length));
+    }
+
     public RevObject readInternal(@Nullable ObjectId id, InputStream rawData) throws IOException {
-        DataInput in = new DataInputStream(rawData);
+        return readObject(id, new DataInputStream(rawData));
+    }
+
+    private RevObject readObject(@Nullable ObjectId id, DataInput in) throws IOException {
         final TYPE type = format.readHeader(in);
         Serializer<RevObject> serializer = serializer(type);
         RevObject object = serializer.readBody(id, in);
@@ -0,0 +1,105 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.storage.datastream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.util.ArrayDeque;
+
+/**
+ * A reusable, thread confined, buffer to serialize objects into, sparing the allocation of a new
+ * {@link ByteArrayOutputStream} (and the growth of its internal array) per object written.
+ * <p>
+ * Each thread keeps a small pool of buffers, since encoding an object may require nested
+ * buffers (e.g. an object store encoding an object through the LZF serializer, which encodes the
+ * uncompressed object into a buffer of its own before compressing it). Buffers that grew larger
+ * than {@value #MAX_POOLED_SIZE} bytes to fit a big object are not returned to the pool.
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * <code>
+ * try (EncodeBuffer buffer = EncodeBuffer.acquire()) {
+ *     serializer.write(object, buffer);
+ *     store(buffer.bytes(), 0, buffer.size());
+ * }
+ * </code>
+ * </pre>
+ *
+ * Buffers shall not be used after {@link #close() released}, and shall be released by the thread
+ * that acquired them.
+ */
+public final class EncodeBuffer extends ByteArrayOutputStream {
+
+    private static final int INITIAL_SIZE = 4096;
+
+    private static final int MAX_POOLED_SIZE = 1024 * 1024;
+
+    private static final int MAX_POOLED_BUFFERS = 4;
+
+    private static final ThreadLocal<ArrayDeque<EncodeBuffer>> POOL = ThreadLocal
+            .withInitial(ArrayDeque::new);
+
+    private DataOutput dataOutput;
+
+    private boolean inUse;
+
+    private EncodeBuffer() {
+        super(INITIAL_SIZE);
+    }
+
+    /**
+     * @return an empty buffer from the calling thread's pool, or a new one if the pool is empty
+     */
+    public static EncodeBuffer acquire() {
+        EncodeBuffer buffer = POOL.get().pollFirst();
+        if (buffer == null) {
+            buffer = new EncodeBuffer();
+        }
+        buffer.reset();
+        buffer.inUse = true;
+        return buffer;
+    }
+
+    /**
+     * @return the internal byte array, holding the data written so far in its first
+     *         {@link #size()} bytes
+     */
+    public byte[] bytes() {
+        return buf;
+    }
+
+    /**
+     * @return a {@link DataOutput} writing to this buffer, reused across acquisitions
+     */
+    public DataOutput asDataOutput() {
+        if (dataOutput == null) {
+            dataOutput = new DataOutputStream(this);
+        }
+        return dataOutput;
+    }
+
+    /**
+     * Returns this buffer to the calling thread's pool. Calling this method more than once has
+     * no effect.
+     */
+    @Override
+    public void close() {
+        if (!inUse) {
+            return;
+        }
+        inUse = false;
+        ArrayDeque<EncodeBuffer> pool = POOL.get();
+        if (buf.length <= MAX_POOLED_SIZE && pool.size() < MAX_POOLED_BUFFERS) {
+            pool.addFirst(this);
+        }
+    }
+}
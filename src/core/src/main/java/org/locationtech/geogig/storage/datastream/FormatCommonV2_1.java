@@ -12,7 +12,6 @@ package org.locationtech.geogig.storage.datastream;
 import static org.locationtech.geogig.storage.datastream.Varint.readUnsignedVarInt;
 import static org.locationtech.geogig.storage.datastream.Varint.writeUnsignedVarInt;
 
-import java.io.ByteArrayOutputStream;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
@@ -31,6 +30,7 @@ import com.google.common.base.Optional;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.io.ByteStreams;
+import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.GeometryFactory;
 
@@ -59,21 +59,11 @@ public class FormatCommonV2_1 extends FormatCommonV2 {
 
     public static final FormatCommonV2_1 INSTANCE = new FormatCommonV2_1();
 
-    private static final class InternalByteArrayOutputStream extends ByteArrayOutputStream {
-        InternalByteArrayOutputStream() {
-            super(1024);
-        }
-
-        public byte[] intenal() {
-            return super.buf;
-        }
-    }
-
     @Override
     public void writeFeature(RevFeature feature, DataOutput target) throws IOException {
 
-        try (InternalByteArrayOutputStream out = new InternalByteArrayOutputStream()) {
-            final DataOutput data = ByteStreams.newDataOutput(out);
+        try (EncodeBuffer out = EncodeBuffer.acquire()) {
+            final DataOutput data = out.asDataOutput();
             final int attrCount = feature.size();
             final int[] dataOffsets = new int[attrCount];
 
@@ -82,7 +72,7 @@ public class FormatCommonV2_1 extends FormatCommonV2 {
                 Object value = feature.get(i).orNull();
                 FieldType type = FieldType.forValue(value);
                 data.writeByte(type.getTag() & 0xFF);
-                DataStreamValueSerializerV2.write(value, data);
+                writeValue(type, value, data);
                 dataOffsets[i] = offset;
                 offset = out.size();
             }
@@ -102,7 +92,7 @@ public class FormatCommonV2_1 extends FormatCommonV2 {
             }
 
             // <DATA>
-            target.write(out.intenal(), 0, dataSize);
+            target.write(out.bytes(), 0, dataSize);
         }
     }
 
@@ -126,7 +116,7 @@ public class FormatCommonV2_1 extends FormatCommonV2 {
         byte[] data = new byte[dataSize];
         in.readFully(data);
 
-        LazyRevFeature f = new LazyRevFeature(id, dataOffsets, data);
+        LazyRevFeature f = new LazyRevFeature(this, id, dataOffsets, data);
         if (id == null) {
             id = HashObject.hashFeature(f.values());
             f.id = id;
@@ -134,15 +124,51 @@ public class FormatCommonV2_1 extends FormatCommonV2 {
         return f;
     }
 
+    /**
+     * Writes a single attribute value to the feature's {@code <DATA>}, after its type tag
+     */
+    protected void writeValue(FieldType type, @Nullable Object value, DataOutput out)
+            throws IOException {
+        DataStreamValueSerializerV2.write(type, value, out);
+    }
+
+    /**
+     * Reads a single attribute value as written by {@link #writeValue}
+     */
+    protected @Nullable Object readValue(FieldType type, DataInput in) throws IOException {
+        return DataStreamValueSerializerV2.read(type, in);
+    }
+
+    /**
+     * Reads a single geometry attribute value as written by {@link #writeValue}, using the
+     * provided geometry factory
+     */
+    protected Geometry readGeometry(DataInput in, GeometryFactory gf) throws IOException {
+        return DataStreamValueSerializerV2.read(in, gf);
+    }
+
+    /**
+     * Reads the envelope of a geometry attribute value as written by {@link #writeValue}; this
+     * format version needs to decode the whole geometry to compute it
+     * 
+     * @return the geometry envelope, a {@link Envelope#isNull() null envelope} for empty geometries
+     */
+    protected Envelope readEnvelope(FieldType type, DataInput in) throws IOException {
+        return ((Geometry) readValue(type, in)).getEnvelopeInternal();
+    }
+
     private static final class LazyRevFeature implements RevFeature {
 
+        private final FormatCommonV2_1 format;
+
         private final int[] offsets;
 
         private final byte[] data;
 
         private ObjectId id;
 
-        LazyRevFeature(ObjectId id, int[] offsets, byte[] data) {
+        LazyRevFeature(FormatCommonV2_1 format, ObjectId id, int[] offsets, byte[] data) {
+            this.format = format;
             this.id = id;
             this.offsets = offsets;
             this.data = data;
@@ -200,13 +226,33 @@ public class FormatCommonV2_1 extends FormatCommonV2 {
             Geometry value;
             try {
                 in.skipBytes(offset + 1);
-                value = DataStreamValueSerializerV2.read(in, gf);
+                value = format.readGeometry(in, gf);
             } catch (IOException e) {
                 throw Throwables.propagate(e);
             }
             return Optional.of(value);
         }
 
+        @Override
+        public Optional<Envelope> getEnvelope(final int index) {
+            final int offset = offsets[index];
+            final int tagValue = data[offset] & 0xFF;
+            final FieldType type = FieldType.valueOf(tagValue);
+            final Class<?> binding = type.getBinding();
+            if (binding == null || !Geometry.class.isAssignableFrom(binding)) {
+                return Optional.absent();
+            }
+            DataInput in = ByteStreams.newDataInput(data);
+            Envelope env;
+            try {
+                in.skipBytes(offset + 1);
+                env = format.readEnvelope(type, in);
+            } catch (IOException e) {
+                throw Throwables.propagate(e);
+            }
+            return env.isNull() ? Optional.absent() : Optional.of(env);
+        }
+
         @Override
         public void forEach(Consumer<Object> consumer) {
             final int size = size();
@@ -228,7 +274,7 @@ public class FormatCommonV2_1 extends FormatCommonV2 {
             Object value;
             try {
                 in.skipBytes(offset + 1);
-                value = DataStreamValueSerializerV2.read(type, in);
+                value = format.readValue(type, in);
             } catch (IOException e) {
                 throw Throwables.propagate(e);
             }
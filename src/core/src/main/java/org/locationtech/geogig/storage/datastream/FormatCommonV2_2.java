@@ -0,0 +1,65 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.storage.datastream;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.model.FieldType;
+import org.locationtech.geogig.model.RevFeature;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+/**
+ * Format common v2.2, differs from {@link FormatCommonV2_1 v2.1} only in {@link RevFeature}
+ * serialization, where geometry attribute values are encoded with the compact
+ * {@link GeometrySerializer fixed precision delta varint encoding} instead of WKB, which also
+ * stores the geometry envelope so that {@link RevFeature#getEnvelope(int)} doesn't need to decode
+ * the geometry.
+ * <p>
+ * The layout of the feature header and data is the same as in v2.1.
+ */
+public class FormatCommonV2_2 extends FormatCommonV2_1 {
+
+    public static final FormatCommonV2_2 INSTANCE = new FormatCommonV2_2();
+
+    @Override
+    protected void writeValue(FieldType type, @Nullable Object value, DataOutput out)
+            throws IOException {
+        if (value instanceof Geometry) {
+            GeometrySerializer.INSTANCE.write(value, out);
+        } else {
+            super.writeValue(type, value, out);
+        }
+    }
+
+    @Override
+    protected @Nullable Object readValue(FieldType type, DataInput in) throws IOException {
+        final Class<?> binding = type.getBinding();
+        if (binding != null && Geometry.class.isAssignableFrom(binding)) {
+            return GeometrySerializer.INSTANCE.read(in);
+        }
+        return super.readValue(type, in);
+    }
+
+    @Override
+    protected Geometry readGeometry(DataInput in, GeometryFactory gf) throws IOException {
+        return GeometrySerializer.INSTANCE.read(in, gf);
+    }
+
+    @Override
+    protected Envelope readEnvelope(FieldType type, DataInput in) throws IOException {
+        return GeometrySerializer.INSTANCE.readEnvelope(in);
+    }
+}
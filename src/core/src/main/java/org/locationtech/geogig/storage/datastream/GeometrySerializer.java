@@ -1,4 +1,4 @@
-/* Copyright (c) 2014-2016 Boundless and others.
+/* Copyright (c) 2014-2017 Boundless and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Distribution License v1.0
  * which accompanies this distribution, and is available at
@@ -9,10 +9,12 @@
  */
 package org.locationtech.geogig.storage.datastream;
 
-import static org.locationtech.geogig.storage.datastream.Varint.readSignedVarInt;
+import static org.locationtech.geogig.storage.datastream.Varint.readSignedVarLong;
 import static org.locationtech.geogig.storage.datastream.Varint.readUnsignedVarInt;
-import static org.locationtech.geogig.storage.datastream.Varint.writeSignedVarInt;
+import static org.locationtech.geogig.storage.datastream.Varint.readUnsignedVarLong;
+import static org.locationtech.geogig.storage.datastream.Varint.writeSignedVarLong;
 import static org.locationtech.geogig.storage.datastream.Varint.writeUnsignedVarInt;
+import static org.locationtech.geogig.storage.datastream.Varint.writeUnsignedVarLong;
 
 import java.io.DataInput;
 import java.io.DataOutput;
@@ -21,26 +23,68 @@ import java.io.IOException;
 import org.locationtech.geogig.storage.datastream.DataStreamValueSerializerV2.ValueSerializer;
 
 import com.google.common.base.Preconditions;
-import com.google.common.base.Throwables;
 import com.vividsolutions.jts.geom.CoordinateSequence;
+import com.vividsolutions.jts.geom.CoordinateSequenceFactory;
 import com.vividsolutions.jts.geom.CoordinateSequenceFilter;
+import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.GeometryCollection;
 import com.vividsolutions.jts.geom.GeometryFactory;
 import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.LinearRing;
 import com.vividsolutions.jts.geom.MultiLineString;
 import com.vividsolutions.jts.geom.MultiPoint;
 import com.vividsolutions.jts.geom.MultiPolygon;
 import com.vividsolutions.jts.geom.Point;
 import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.geom.impl.PackedCoordinateSequence;
 import com.vividsolutions.jts.geom.impl.PackedCoordinateSequenceFactory;
 
 /**
- * This is work in progress and not ready for production. It'll be a serialization format for JTS
- * geometries more compact than WKB, and ideally would support different precision models.
+ * Serialization format for JTS geometries more compact than WKB, modeled after TWKB: ordinates are
+ * stored as fixed precision integers, each one as a zig-zag varint delta from the previous
+ * ordinate of the same dimension, carrying over across the parts of multi geometries and
+ * collections.
+ * <p>
+ * Unlike TWKB the encoding is lossless, since features are identified by the hash of their
+ * values. The precision (number of decimal digits) is chosen per geometry as the smallest one that
+ * represents all of its ordinates exactly, and if there's none up to {@link #MAX_PRECISION}, the
+ * ordinates are stored as plain doubles instead.
+ * <p>
+ * Only the X and Y ordinates are encoded, same as the WKB encoding of previous format versions.
+ * <p>
+ * Non empty geometries other than points are preceded by their envelope, so that
+ * {@link #readEnvelope(DataInput)} can get the bounds of a geometry without decoding its
+ * coordinates.
+ * <p>
+ * Format:
+ *
+ * <pre>
+ * <code>
+ * <GEOMETRY>:
+ * - byte: header, geometry type in the lower 3 bits, {@link #ENVELOPE} flag, precision in the upper 4 bits ({@link #RAW} for doubles)
+ * - <ENVELOPE>, if the {@link #ENVELOPE} flag is set
+ * - <BODY>
+ *
+ * <ENVELOPE>:
+ * - signed varlong[2]: min x and min y, unsigned varlong[2]: width and height, or double[4] (min x, min y, max x, max y) if {@link #RAW}
+ *
+ * <BODY>:
+ * - POINT, LINESTRING: <SEQUENCE>
+ * - POLYGON: unsigned varint number of rings, <SEQUENCE>[number of rings]
+ * - MULTIPOINT, MULTILINESTRING, MULTIPOLYGON: unsigned varint number of parts, <BODY>[number of parts]
+ * - GEOMETRYCOLLECTION: unsigned varint number of parts, (byte: part type, <BODY>)[number of parts]
+ *
+ * <SEQUENCE>:
+ * - unsigned varint: number of coordinates
+ * - signed varlong[2 * number of coordinates]: x and y deltas, or double[2 * number of coordinates] if {@link #RAW}
+ * </code>
+ * </pre>
  */
 class GeometrySerializer implements ValueSerializer {
 
+    static final GeometrySerializer INSTANCE = new GeometrySerializer();
+
     private static final int POINT = 0x01;
 
     private static final int LINESTRING = 0x02;
@@ -55,111 +99,421 @@ class GeometrySerializer implements ValueSerializer {
 
     private static final int GEOMETRYCOLLECTION = 0x07;
 
-    private static final double FIXED_PRECISION_FACTOR = 1e7;
+    /**
+     * Maximum number of decimal digits for fixed precision encoding
+     */
+    static final int MAX_PRECISION = 14;
 
-    private static final GeometryFactory GEOMFAC = new GeometryFactory(
-            new PackedCoordinateSequenceFactory());
+    /**
+     * Precision header value for ordinates encoded as doubles
+     */
+    static final int RAW = 0x0F;
 
-    private static abstract class GeometryEncoder {
+    /**
+     * Ordinates scaled beyond this absolute value may not be exactly represented as longs
+     */
+    private static final double MAX_FIXED = 1L << 53;
 
-        abstract void write(DataOutput out) throws IOException;
+    /**
+     * Bits of {@code -0.0}, which can't be encoded as a fixed point value as it would decode as
+     * {@code +0.0}
+     */
+    private static final long NEGATIVE_ZERO_BITS = Double.doubleToRawLongBits(-0.0D);
 
-        abstract Geometry read(DataInput in) throws IOException;
-    }
+    /**
+     * Header flag indicating the body is preceded by the geometry envelope
+     */
+    static final int ENVELOPE = 0x08;
 
-    private static GeometryEncoder[] ENCODERS = new GeometryEncoder[] { //
+    private static final int TYPE_MASK = 0x07;
+
+    private static final double[] SCALES = new double[MAX_PRECISION + 1];
+    static {
+        for (int i = 0; i <= MAX_PRECISION; i++) {
+            SCALES[i] = Math.pow(10, i);
+        }
+    }
 
-    };
+    private static final GeometryFactory GEOMFAC = new GeometryFactory(
+            new PackedCoordinateSequenceFactory());
 
     @Override
     public void write(Object obj, final DataOutput out) throws IOException {
-
         final Geometry geom = (Geometry) obj;
         final int geometryType = getGeometryType(geom);
-        final int typeAndMasks = geometryType;
+        final int precision = precision(geom);
 
-        writeUnsignedVarInt(typeAndMasks, out);
-        geom.apply(new EncodingSequenceFilter(out, true));
+        final boolean writeEnvelope = geometryType != POINT && !geom.isEmpty();
+
+        out.writeByte((precision << 4) | (writeEnvelope ? ENVELOPE : 0) | geometryType);
+        Encoder encoder = new Encoder(out, precision);
+        if (writeEnvelope) {
+            encoder.writeEnvelope(geom.getEnvelopeInternal());
+        }
+        encoder.write(geometryType, geom);
     }
 
     @Override
     public Geometry read(DataInput in) throws IOException {
+        return read(in, GEOMFAC);
+    }
+
+    public Geometry read(DataInput in, GeometryFactory geomFac) throws IOException {
+        final int header = in.readUnsignedByte();
+        final int geometryType = header & TYPE_MASK;
+        final int precision = (header >>> 4) & 0x0F;
+
+        Decoder decoder = new Decoder(in, precision, geomFac);
+        if ((header & ENVELOPE) != 0) {
+            decoder.readEnvelope();
+        }
+        return decoder.read(geometryType);
+    }
+
+    /**
+     * Reads only the envelope of a geometry written by {@link #write}, without decoding its
+     * coordinates, leaving the input positioned at an unspecified location inside the geometry
+     * body.
+     * 
+     * @return the geometry envelope, a {@link Envelope#isNull() null envelope} for empty geometries
+     */
+    public Envelope readEnvelope(DataInput in) throws IOException {
+        final int header = in.readUnsignedByte();
+        final int geometryType = header & TYPE_MASK;
+        final int precision = (header >>> 4) & 0x0F;
+
+        Decoder decoder = new Decoder(in, precision, GEOMFAC);
+        if ((header & ENVELOPE) != 0) {
+            return decoder.readEnvelope();
+        }
+        if (geometryType == POINT && readUnsignedVarInt(in) == 1) {
+            double[] xy = decoder.readCoordinate();
+            return new Envelope(xy[0], xy[0], xy[1], xy[1]);
+        }
+        return new Envelope();
+    }
 
-        final int typeAndMasks = readUnsignedVarInt(in);
+    /**
+     * @return the smallest number of decimal digits up to {@link #MAX_PRECISION} that represents
+     *         all the geometry ordinates exactly, or {@link #RAW} if there's none
+     */
+    static int precision(Geometry geom) {
+        PrecisionFilter filter = new PrecisionFilter();
+        geom.apply(filter);
+        final int precision = filter.precision;
+        if (precision != RAW) {
+            VerifyFilter verify = new VerifyFilter(precision);
+            geom.apply(verify);
+            if (!verify.exact) {
+                return RAW;
+            }
+        }
+        return precision;
+    }
 
-        Geometry geom;
-        if ((typeAndMasks & POINT) == POINT) {
-            geom = GEOMFAC.createPoint(EncodingSequenceFilter.readCoordinate(in));
-        } else if ((typeAndMasks & LINESTRING) == LINESTRING) {
-            CoordinateSequence cs = EncodingSequenceFilter.read(in);
-            geom = GEOMFAC.createLineString(cs);
-        } else {
-            throw new UnsupportedOperationException();
+    private static boolean isExact(final double ordinate, final int precision) {
+        final double scale = SCALES[precision];
+        final double scaled = ordinate * scale;
+        if (!(Math.abs(scaled) <= MAX_FIXED)) {
+            // NaN, infinite, or too large
+            return false;
         }
-        return geom;
+        return Math.round(scaled) / scale == ordinate
+                && Double.doubleToRawLongBits(ordinate) != NEGATIVE_ZERO_BITS;
     }
 
-    private static final class EncodingSequenceFilter implements CoordinateSequenceFilter {
+    private static final class PrecisionFilter implements CoordinateSequenceFilter {
 
-        private DataOutput out;
+        int precision = 0;
 
-        private boolean writeLength;
+        @Override
+        public void filter(CoordinateSequence seq, int i) {
+            precision = Math.max(precision, precision(seq.getOrdinate(i, 0)));
+            precision = Math.max(precision, precision(seq.getOrdinate(i, 1)));
+        }
 
-        public EncodingSequenceFilter(DataOutput out, boolean writeLength) {
-            this.out = out;
-            this.writeLength = writeLength;
+        private int precision(final double ordinate) {
+            // most ordinates need the same precision as the ones already seen
+            if (precision == RAW || isExact(ordinate, precision)) {
+                return precision;
+            }
+            for (int p = precision + 1; p <= MAX_PRECISION; p++) {
+                if (isExact(ordinate, p)) {
+                    return p;
+                }
+            }
+            return RAW;
+        }
+
+        @Override
+        public boolean isDone() {
+            return precision == RAW;
         }
 
         @Override
         public boolean isGeometryChanged() {
             return false;
         }
+    }
+
+    /**
+     * Checks all ordinates are exact at the final precision, as the ones that needed less digits
+     * were only checked against the precision at the time they were visited
+     */
+    private static final class VerifyFilter implements CoordinateSequenceFilter {
+
+        private final int precision;
+
+        boolean exact = true;
+
+        VerifyFilter(int precision) {
+            this.precision = precision;
+        }
+
+        @Override
+        public void filter(CoordinateSequence seq, int i) {
+            exact = isExact(seq.getOrdinate(i, 0), precision)
+                    && isExact(seq.getOrdinate(i, 1), precision);
+        }
 
         @Override
         public boolean isDone() {
-            return false;
+            return !exact;
         }
 
         @Override
-        public void filter(CoordinateSequence seq, int index) {
-            double ordinate1 = seq.getOrdinate(index, 0);
-            double ordinate2 = seq.getOrdinate(index, 1);
-            int fixedO1 = toFixedPrecision(ordinate1);
-            int fixedO2 = toFixedPrecision(ordinate2);
-            try {
-                if (writeLength) {
-                    writeUnsignedVarInt(seq.size(), out);
-                    writeLength = false;
+        public boolean isGeometryChanged() {
+            return false;
+        }
+    }
+
+    private static final class Encoder {
+
+        private final DataOutput out;
+
+        private final boolean raw;
+
+        private final double scale;
+
+        private long lastX, lastY;
+
+        Encoder(DataOutput out, int precision) {
+            this.out = out;
+            this.raw = precision == RAW;
+            this.scale = raw ? 0 : SCALES[precision];
+        }
+
+        void write(final int geometryType, final Geometry geom) throws IOException {
+            switch (geometryType) {
+            case POINT:
+                writeSequence(((Point) geom).getCoordinateSequence());
+                break;
+            case LINESTRING:
+                writeSequence(((LineString) geom).getCoordinateSequence());
+                break;
+            case POLYGON:
+                writePolygon((Polygon) geom);
+                break;
+            case MULTIPOINT:
+            case MULTILINESTRING:
+            case MULTIPOLYGON: {
+                final int partType = geometryType - 3;
+                final int numParts = geom.getNumGeometries();
+                writeUnsignedVarInt(numParts, out);
+                for (int i = 0; i < numParts; i++) {
+                    write(partType, geom.getGeometryN(i));
+                }
+                break;
+            }
+            case GEOMETRYCOLLECTION: {
+                final int numParts = geom.getNumGeometries();
+                writeUnsignedVarInt(numParts, out);
+                for (int i = 0; i < numParts; i++) {
+                    Geometry part = geom.getGeometryN(i);
+                    int partType = getGeometryType(part);
+                    out.writeByte(partType);
+                    write(partType, part);
                 }
-                writeSignedVarInt(fixedO1, out);
-                writeSignedVarInt(fixedO2, out);
-            } catch (IOException e) {
-                throw Throwables.propagate(e);
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown geometry type: " + geometryType);
+            }
+        }
+
+        void writeEnvelope(Envelope env) throws IOException {
+            if (raw) {
+                out.writeDouble(env.getMinX());
+                out.writeDouble(env.getMinY());
+                out.writeDouble(env.getMaxX());
+                out.writeDouble(env.getMaxY());
+            } else {
+                final long minX = Math.round(env.getMinX() * scale);
+                final long minY = Math.round(env.getMinY() * scale);
+                writeSignedVarLong(minX, out);
+                writeSignedVarLong(minY, out);
+                writeUnsignedVarLong(Math.round(env.getMaxX() * scale) - minX, out);
+                writeUnsignedVarLong(Math.round(env.getMaxY() * scale) - minY, out);
             }
         }
 
-        public static CoordinateSequence read(DataInput in) throws IOException {
-            final int len = readUnsignedVarInt(in);
+        private void writePolygon(Polygon poly) throws IOException {
+            if (poly.isEmpty()) {
+                writeUnsignedVarInt(0, out);
+                return;
+            }
+            final int numHoles = poly.getNumInteriorRing();
+            writeUnsignedVarInt(1 + numHoles, out);
+            writeSequence(poly.getExteriorRing().getCoordinateSequence());
+            for (int i = 0; i < numHoles; i++) {
+                writeSequence(poly.getInteriorRingN(i).getCoordinateSequence());
+            }
+        }
 
-            CoordinateSequence cs = GEOMFAC.getCoordinateSequenceFactory().create(len, 2);
-            for (int i = 0; i < len; i++) {
-                cs.setOrdinate(i, 0, toDoublePrecision(readSignedVarInt(in)));
-                cs.setOrdinate(i, 1, toDoublePrecision(readSignedVarInt(in)));
+        private void writeSequence(CoordinateSequence seq) throws IOException {
+            final int size = seq.size();
+            writeUnsignedVarInt(size, out);
+            for (int i = 0; i < size; i++) {
+                final double x = seq.getOrdinate(i, 0);
+                final double y = seq.getOrdinate(i, 1);
+                if (raw) {
+                    out.writeDouble(x);
+                    out.writeDouble(y);
+                } else {
+                    final long fx = Math.round(x * scale);
+                    final long fy = Math.round(y * scale);
+                    writeSignedVarLong(fx - lastX, out);
+                    writeSignedVarLong(fy - lastY, out);
+                    lastX = fx;
+                    lastY = fy;
+                }
             }
-            return cs;
         }
+    }
+
+    private static final class Decoder {
+
+        private final DataInput in;
+
+        private final boolean raw;
 
-        public static CoordinateSequence readCoordinate(DataInput in) throws IOException {
-            CoordinateSequence cs = GEOMFAC.getCoordinateSequenceFactory().create(1, 2);
+        private final double scale;
 
-            cs.setOrdinate(0, 0, toDoublePrecision(readSignedVarInt(in)));
-            cs.setOrdinate(0, 1, toDoublePrecision(readSignedVarInt(in)));
+        private final GeometryFactory geomFac;
 
-            return cs;
+        private final CoordinateSequenceFactory seqFac;
+
+        private long lastX, lastY;
+
+        Decoder(DataInput in, int precision, GeometryFactory geomFac) {
+            this.in = in;
+            this.raw = precision == RAW;
+            this.scale = raw ? 0 : SCALES[precision];
+            this.geomFac = geomFac;
+            CoordinateSequenceFactory seqFac = geomFac.getCoordinateSequenceFactory();
+            // sequences are decoded straight into packed ones, no need to copy them over
+            this.seqFac = seqFac instanceof PackedCoordinateSequenceFactory ? null : seqFac;
+        }
+
+        Geometry read(final int geometryType) throws IOException {
+            switch (geometryType) {
+            case POINT:
+                return geomFac.createPoint(readSequence());
+            case LINESTRING:
+                return geomFac.createLineString(readSequence());
+            case POLYGON:
+                return readPolygon();
+            case MULTIPOINT: {
+                Point[] parts = new Point[readUnsignedVarInt(in)];
+                for (int i = 0; i < parts.length; i++) {
+                    parts[i] = geomFac.createPoint(readSequence());
+                }
+                return geomFac.createMultiPoint(parts);
+            }
+            case MULTILINESTRING: {
+                LineString[] parts = new LineString[readUnsignedVarInt(in)];
+                for (int i = 0; i < parts.length; i++) {
+                    parts[i] = geomFac.createLineString(readSequence());
+                }
+                return geomFac.createMultiLineString(parts);
+            }
+            case MULTIPOLYGON: {
+                Polygon[] parts = new Polygon[readUnsignedVarInt(in)];
+                for (int i = 0; i < parts.length; i++) {
+                    parts[i] = readPolygon();
+                }
+                return geomFac.createMultiPolygon(parts);
+            }
+            case GEOMETRYCOLLECTION: {
+                Geometry[] parts = new Geometry[readUnsignedVarInt(in)];
+                for (int i = 0; i < parts.length; i++) {
+                    int partType = in.readUnsignedByte();
+                    parts[i] = read(partType);
+                }
+                return geomFac.createGeometryCollection(parts);
+            }
+            default:
+                throw new IllegalArgumentException("Unknown geometry type: " + geometryType);
+            }
+        }
+
+        Envelope readEnvelope() throws IOException {
+            if (raw) {
+                double minX = in.readDouble();
+                double minY = in.readDouble();
+                double maxX = in.readDouble();
+                double maxY = in.readDouble();
+                return new Envelope(minX, maxX, minY, maxY);
+            }
+            final long minX = readSignedVarLong(in);
+            final long minY = readSignedVarLong(in);
+            final long maxX = minX + readUnsignedVarLong(in);
+            final long maxY = minY + readUnsignedVarLong(in);
+            return new Envelope(minX / scale, maxX / scale, minY / scale, maxY / scale);
+        }
+
+        double[] readCoordinate() throws IOException {
+            if (raw) {
+                return new double[] { in.readDouble(), in.readDouble() };
+            }
+            lastX += readSignedVarLong(in);
+            lastY += readSignedVarLong(in);
+            return new double[] { lastX / scale, lastY / scale };
+        }
+
+        private Polygon readPolygon() throws IOException {
+            final int numRings = readUnsignedVarInt(in);
+            if (numRings == 0) {
+                return geomFac.createPolygon(null, null);
+            }
+            LinearRing shell = geomFac.createLinearRing(readSequence());
+            LinearRing[] holes = new LinearRing[numRings - 1];
+            for (int i = 0; i < holes.length; i++) {
+                holes[i] = geomFac.createLinearRing(readSequence());
+            }
+            return geomFac.createPolygon(shell, holes);
+        }
+
+        private CoordinateSequence readSequence() throws IOException {
+            final int size = readUnsignedVarInt(in);
+            final double[] coords = new double[2 * size];
+            for (int i = 0; i < coords.length; i += 2) {
+                if (raw) {
+                    coords[i] = in.readDouble();
+                    coords[i + 1] = in.readDouble();
+                } else {
+                    lastX += readSignedVarLong(in);
+                    lastY += readSignedVarLong(in);
+                    coords[i] = lastX / scale;
+                    coords[i + 1] = lastY / scale;
+                }
+            }
+            CoordinateSequence seq = new PackedCoordinateSequence.Double(coords, 2);
+            return seqFac == null ? seq : seqFac.create(seq);
         }
     }
 
-    private int getGeometryType(Geometry geom) {
+    private static int getGeometryType(Geometry geom) {
         Preconditions.checkNotNull(geom, "null geometry");
         if (geom instanceof Point)
             return POINT;
@@ -177,20 +531,4 @@ class GeometrySerializer implements ValueSerializer {
             return GEOMETRYCOLLECTION;
         throw new IllegalArgumentException("Unknown geometry type: " + geom.getClass());
     }
-
-    /**
-     * Converts the requested coordinate from double to fixed precision.
-     */
-    public static int toFixedPrecision(double ordinate) {
-        int fixedPrecisionOrdinate = (int) Math.round(ordinate * FIXED_PRECISION_FACTOR);
-        return fixedPrecisionOrdinate;
-    }
-
-    /**
-     * Converts the requested coordinate from fixed to double precision.
-     */
-    public static double toDoublePrecision(int fixedPrecisionOrdinate) {
-        double ordinate = fixedPrecisionOrdinate / FIXED_PRECISION_FACTOR;
-        return ordinate;
-    }
 }
@@ -18,14 +18,34 @@ import org.locationtech.geogig.model.RevObject;
 import org.locationtech.geogig.storage.impl.ObjectSerializingFactory;
 
 import com.google.common.base.Preconditions;
+import com.ning.compress.lzf.ChunkEncoder;
+import com.ning.compress.lzf.LZFChunk;
+import com.ning.compress.lzf.LZFDecoder;
+import com.ning.compress.lzf.LZFException;
 import com.ning.compress.lzf.LZFInputStream;
 import com.ning.compress.lzf.LZFOutputStream;
+import com.ning.compress.lzf.util.ChunkEncoderFactory;
 
 /**
  * Wrapper Factory that deflates/inflates data written to/read from streams using LZF compression.
+ * <p>
+ * Objects are written through reusable, per thread, buffers and encoders, and objects read out of
+ * byte arrays are inflated in one go into a reusable, per thread, buffer the wrapped factory then
+ * parses, instead of through an {@link LZFInputStream}.
  */
 public class LZFSerializationFactory implements ObjectSerializingFactory {
 
+    /**
+     * Inflated buffers larger than this are not kept around for reuse
+     */
+    private static final int MAX_REUSABLE_BUFFER_SIZE = 1024 * 1024;
+
+    private static final ThreadLocal<ChunkEncoder> CHUNK_ENCODER = ThreadLocal
+            .withInitial(() -> ChunkEncoderFactory.optimalInstance(LZFChunk.MAX_CHUNK_LEN));
+
+    private static final ThreadLocal<byte[]> INFLATE_BUFFER = ThreadLocal
+            .withInitial(() -> new byte[16 * 1024]);
+
     private final ObjectSerializingFactory factory;
 
     public LZFSerializationFactory(final ObjectSerializingFactory factory) {
@@ -41,11 +61,75 @@ public class LZFSerializationFactory implements ObjectSerializingFactory {
         }
     }
 
+    @Override
+    public RevObject read(ObjectId id, byte[] data, int offset, int length) throws IOException {
+        final int inflatedSize = inflatedSize(data, offset, length);
+        byte[] inflated = INFLATE_BUFFER.get();
+        if (inflated.length < inflatedSize) {
+            inflated = new byte[inflatedSize];
+            if (inflatedSize <= MAX_REUSABLE_BUFFER_SIZE) {
+                INFLATE_BUFFER.set(inflated);
+            }
+        }
+        LZFDecoder.decode(data, offset, length, inflated);
+        return factory.read(id, inflated, 0, inflatedSize);
+    }
+
+    /**
+     * Computes the size of the inflated data out of the LZF chunk headers.
+     * <p>
+     * {@link LZFDecoder#calculateUncompressedSize} is not used since it doesn't account for the
+     * offset when checking for the end of the data.
+     */
+    private static int inflatedSize(byte[] data, final int offset, final int length)
+            throws IOException {
+        final int end = offset + length;
+        int size = 0;
+        int ptr = offset;
+        while (ptr < end) {
+            if (ptr + LZFChunk.HEADER_LEN_NOT_COMPRESSED > end
+                    || data[ptr] != LZFChunk.BYTE_Z || data[ptr + 1] != LZFChunk.BYTE_V) {
+                throw new LZFException("Corrupt LZF data at offset " + (ptr - offset));
+            }
+            final int type = data[ptr + 2];
+            final int chunkLength = uint16(data, ptr + 3);
+            if (type == LZFChunk.BLOCK_TYPE_NON_COMPRESSED) {
+                size += chunkLength;
+                ptr += LZFChunk.HEADER_LEN_NOT_COMPRESSED + chunkLength;
+            } else if (type == LZFChunk.BLOCK_TYPE_COMPRESSED
+                    && ptr + LZFChunk.HEADER_LEN_COMPRESSED <= end) {
+                size += uint16(data, ptr + 5);
+                ptr += LZFChunk.HEADER_LEN_COMPRESSED + chunkLength;
+            } else {
+                throw new LZFException("Corrupt LZF data at offset " + (ptr - offset));
+            }
+        }
+        if (ptr != end) {
+            throw new LZFException("Truncated LZF data");
+        }
+        return size;
+    }
+
+    private static int uint16(byte[] data, int ptr) {
+        return ((data[ptr] & 0xFF) << 8) | (data[ptr + 1] & 0xFF);
+    }
+
+    /**
+     * Encodes the object into a reusable {@link EncodeBuffer} and writes it out as LZF chunks
+     * compressed by a reusable, per thread, {@link ChunkEncoder}, producing the same format as an
+     * {@link LZFOutputStream} without allocating one (and its buffers) per object.
+     */
     @Override
     public void write(RevObject o, OutputStream out) throws IOException {
-        // compress the stream
-        try (LZFOutputStream deflatedOutputStream = new LZFOutputStream(out)) {
-            factory.write(o, deflatedOutputStream);
+        try (EncodeBuffer buffer = EncodeBuffer.acquire()) {
+            factory.write(o, buffer);
+            final byte[] data = buffer.bytes();
+            final int size = buffer.size();
+            final ChunkEncoder encoder = CHUNK_ENCODER.get();
+            for (int offset = 0; offset < size; offset += LZFChunk.MAX_CHUNK_LEN) {
+                int length = Math.min(LZFChunk.MAX_CHUNK_LEN, size - offset);
+                encoder.encodeAndWriteChunk(data, offset, length, out);
+            }
         }
     }
 }
@@ -9,8 +9,6 @@
  */
 package org.locationtech.geogig.storage.datastream;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -44,7 +42,8 @@ public class SerializationFactoryProxy implements ObjectSerializingFactory {
     private static final ObjectSerializingFactory[] SUPPORTED_FORMATS = { //
             new LZFSerializationFactory(DataStreamSerializationFactoryV1.INSTANCE), //
             new LZFSerializationFactory(DataStreamSerializationFactoryV2.INSTANCE), //
-            new LZFSerializationFactory(DataStreamSerializationFactoryV2_1.INSTANCE) //
+            new LZFSerializationFactory(DataStreamSerializationFactoryV2_1.INSTANCE), //
+            new LZFSerializationFactory(DataStreamSerializationFactoryV2_2.INSTANCE) //
     };
 
     private static final int MAX_FORMAT_CODE = SUPPORTED_FORMATS.length - 1;
@@ -70,19 +69,27 @@ public class SerializationFactoryProxy implements ObjectSerializingFactory {
         return revObject;
     }
 
+    @Override
+    public RevObject read(ObjectId id, byte[] data, int offset, int length) throws IOException {
+        final int serialVersionHeader = data[offset] & 0xFF;
+        assert serialVersionHeader <= MAX_FORMAT_CODE;
+        final ObjectSerializingFactory serializer = SUPPORTED_FORMATS[serialVersionHeader];
+        return serializer.read(id, data, offset + 1, length - 1);
+    }
+
     /**
      * Reads object from its binary representation as stored in the database.
      */
     public RevObject decode(final ObjectId id, final byte[] bytes) {
-        try (ByteArrayInputStream in = new ByteArrayInputStream(bytes)) {
-            return read(id, in);
+        try {
+            return read(id, bytes, 0, bytes.length);
         } catch (IOException e) {
             throw new RuntimeException("Error reading object " + id, e);
         }
     }
 
     public byte[] encode(final RevObject o) {
-        try (ByteArrayOutputStream bout = new ByteArrayOutputStream()) {
+        try (EncodeBuffer bout = EncodeBuffer.acquire()) {
             write(o, bout);
             byte[] bytes = bout.toByteArray();
             return bytes;
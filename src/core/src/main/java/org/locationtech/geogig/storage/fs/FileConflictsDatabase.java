@@ -13,21 +13,24 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
-import java.sql.SQLException;
+import java.io.Writer;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Queue;
 import java.util.Set;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
@@ -162,11 +165,24 @@ public class FileConflictsDatabase implements ConflictsDatabase {
         return new ConflictsIterator(this, namespace, treePath);
     }
 
+    /**
+     * Reads the next batch of conflicts matching the {@code treePath} filter, starting at the
+     * {@link ReadPosition position} where the previous batch ended, which is updated to the end of
+     * this batch.
+     * <p>
+     * Batches are read straight from the last byte offset, so iterating over all the conflicts
+     * reads the file only once. If the file has been rewritten since the previous batch (i.e.
+     * conflicts were removed while iterating), the byte offset is no longer valid and reading
+     * starts over skipping as many lines as were already read.
+     * 
+     * @return the batch of conflicts, empty if there are no more conflicts, or {@code null} if the
+     *         conflicts file doesn't exist
+     */
     @Nullable
-    private Queue<Conflict> getBatch(@Nullable String namespace, @Nullable String treePath,
-            int offset, int limit) throws SQLException {
+    private List<Conflict> getBatch(@Nullable String namespace, @Nullable String treePath,
+            ReadPosition position, int limit) {
 
-        checkArgument(offset >= 0);
+        checkNotNull(position);
         checkArgument(limit > 0);
 
         synchronized (resolveConflictsMonitor(namespace)) {
@@ -176,25 +192,97 @@ public class FileConflictsDatabase implements ConflictsDatabase {
                 return null;
             }
 
-            try (BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(new FileInputStream(file), Charsets.UTF_8))) {
-
-                Stream<String> stream = reader.lines().parallel();
-                if (null != treePath) {
-                    stream = stream.filter(new ConflictPathFilter(treePath));
+            final Predicate<String> filter = treePath == null ? (p) -> true
+                    : new PathFilter(treePath);
+            try (FileInputStream fileIn = new FileInputStream(file)) {
+                final Object fileKey = fileKey(file);
+                final boolean rewritten = !fileKey.equals(position.fileKey);
+                if (!rewritten) {
+                    fileIn.getChannel().position(position.bytes);
+                }
+                InputStream in = new BufferedInputStream(fileIn, 64 * 1024);
+                ByteArrayOutputStream buff = new ByteArrayOutputStream(256);
+                long bytes = rewritten ? 0L : position.bytes;
+                long lines = 0L;
+                if (rewritten) {
+                    for (; lines < position.lines; lines++) {
+                        int read = readLine(in, buff);
+                        if (read == -1) {
+                            break;
+                        }
+                        bytes += read;
+                    }
+                } else {
+                    lines = position.lines;
                 }
-                stream = stream.skip(offset).limit(limit);
 
-                // used as a concurrent list
-                ConcurrentLinkedQueue<Conflict> list = new ConcurrentLinkedQueue<>();
-                stream.forEach((line) -> list.offer(FileConflictsDatabase.valueOf(line)));
-                return list;
+                List<Conflict> batch = new ArrayList<>();
+                int read;
+                while (batch.size() < limit && (read = readLine(in, buff)) != -1) {
+                    bytes += read;
+                    lines++;
+                    if (buff.size() == 0) {
+                        continue;
+                    }
+                    String line = buff.toString(Charsets.UTF_8.name());
+                    if (filter.test(readPath(line))) {
+                        batch.add(FileConflictsDatabase.valueOf(line));
+                    }
+                }
+                position.fileKey = fileKey;
+                position.bytes = bytes;
+                position.lines = lines;
+                return batch;
             } catch (IOException e) {
                 throw Throwables.propagate(e);
             }
         }
     }
 
+    /**
+     * Reads a {@code '\n'} terminated line into {@code buff}, without the line terminator.
+     * 
+     * @return the number of bytes consumed, including the line terminator, or {@code -1} at the
+     *         end of the stream
+     */
+    private static int readLine(InputStream in, ByteArrayOutputStream buff) throws IOException {
+        buff.reset();
+        int consumed = 0;
+        int b;
+        while ((b = in.read()) != -1) {
+            consumed++;
+            if (b == '\n') {
+                return consumed;
+            }
+            buff.write(b);
+        }
+        return consumed == 0 ? -1 : consumed;
+    }
+
+    /**
+     * @return an identifier of the conflicts file that changes when it's replaced by a rewritten
+     *         one, but not when conflicts are appended to it
+     */
+    private static Object fileKey(File file) throws IOException {
+        BasicFileAttributes attributes = java.nio.file.Files.readAttributes(file.toPath(),
+                BasicFileAttributes.class);
+        Object fileKey = attributes.fileKey();
+        return fileKey == null ? attributes.creationTime() : fileKey;
+    }
+
+    /**
+     * Where a {@link ConflictsIterator} left off reading the conflicts file
+     */
+    private static class ReadPosition {
+
+        @Nullable
+        Object fileKey;
+
+        long bytes;
+
+        long lines;
+    }
+
     @Override
     public long getCountByPrefix(@Nullable String namespace, final @Nullable String treePath) {
 
@@ -280,11 +368,11 @@ public class FileConflictsDatabase implements ConflictsDatabase {
 
         private final int pageSize;
 
-        private int offset = 0;
+        private final ReadPosition position = new ReadPosition();
 
-        private int currentPageSize;
+        private boolean finished;
 
-        private Iterator<Conflict> page;
+        private Iterator<Conflict> page = Collections.emptyIterator();
 
         public ConflictsIterator(FileConflictsDatabase db, @Nullable String namespace,
                 @Nullable String treePath) {
@@ -292,38 +380,26 @@ public class FileConflictsDatabase implements ConflictsDatabase {
             this.pageSize = db.lineProcessingBatchSize;
             this.namespace = namespace;
             this.treePath = treePath;
-            this.page = nextPage();
         }
 
         @Override
         protected Conflict computeNext() {
-            if (page.hasNext()) {
-                return page.next();
-            }
-            if (currentPageSize == 0) {
-                return endOfData();
+            while (!page.hasNext()) {
+                if (finished) {
+                    return endOfData();
+                }
+                page = nextPage();
             }
-            page = nextPage();
-            return computeNext();
+            return page.next();
         }
 
         private Iterator<Conflict> nextPage() {
             @Nullable
-            Queue<Conflict> batch;
-            try {
-                batch = db.getBatch(namespace, treePath, offset, pageSize);
-            } catch (SQLException e) {
-                throw Throwables.propagate(e);
-            }
-            if (batch == null) {
-                this.currentPageSize = 0;
-                this.offset = 0;
-                return Collections.emptyIterator();
+            List<Conflict> batch = db.getBatch(namespace, treePath, position, pageSize);
+            if (batch == null || batch.size() < pageSize) {
+                finished = true;
             }
-            this.offset += pageSize;
-            this.currentPageSize = batch.size();
-            return batch.iterator();
-
+            return batch == null ? Collections.emptyIterator() : batch.iterator();
         }
     }
 
@@ -359,10 +435,12 @@ public class FileConflictsDatabase implements ConflictsDatabase {
             Optional<File> fileOp = findOrCreateConflictsFile(namespace);
             checkState(fileOp.isPresent());
             final File file = fileOp.get();
-            try (OutputStreamWriter writer = new OutputStreamWriter(
-                    new FileOutputStream(file, true), Charsets.UTF_8)) {
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(file, true), Charsets.UTF_8), 64 * 1024)) {
+                StringBuilder line = new StringBuilder();
                 for (Conflict conflict : conflicts) {
-                    writer.write(encode(conflict).append('\n').toString());
+                    line.setLength(0);
+                    writer.append(encode(conflict, line).append('\n'));
                 }
             } catch (IOException e) {
                 throw Throwables.propagate(e);
@@ -636,7 +714,11 @@ public class FileConflictsDatabase implements ConflictsDatabase {
     }
 
     private static StringBuilder encode(Conflict c) {
-        return new StringBuilder(c.getPath()).append('\t').append(c.getAncestor().toString())
+        return encode(c, new StringBuilder());
+    }
+
+    private static StringBuilder encode(Conflict c, StringBuilder sb) {
+        return sb.append(c.getPath()).append('\t').append(c.getAncestor().toString())
                 .append('\t').append(c.getOurs().toString()).append('\t')
                 .append(c.getTheirs().toString());
     }
@@ -11,8 +11,13 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 import org.locationtech.geogig.model.ObjectId;
 import org.locationtech.geogig.model.RevObject;
@@ -116,6 +121,52 @@ public class FileObjectStore extends AbstractObjectStore {
         return f.exists();
     }
 
+    /**
+     * Sorts the ids so that the ones falling into the same directory are looked up together,
+     * listing each directory only once and binary searching its sorted file names instead of
+     * hitting the file system once per id.
+     */
+    @Override
+    public Set<ObjectId> existsAll(final Iterable<ObjectId> ids) {
+        checkNotNull(ids, "ids is null");
+        checkState(isOpen(), "db is closed");
+
+        final List<String> sorted = new ArrayList<>();
+        for (ObjectId id : ids) {
+            sorted.add(id.toString());
+        }
+        Collections.sort(sorted);
+
+        final Set<ObjectId> found = new HashSet<>();
+        final int size = sorted.size();
+        int from = 0;
+        while (from < size) {
+            final String first = sorted.get(from);
+            final String dir = first.substring(0, 4);
+            int to = from + 1;
+            while (to < size && sorted.get(to).startsWith(dir)) {
+                to++;
+            }
+            if (to - from == 1) {
+                if (filePath(first).exists()) {
+                    found.add(ObjectId.valueOf(first));
+                }
+            } else {
+                String[] files = filePath(first).getParentFile().list();
+                if (files != null) {
+                    Arrays.sort(files);
+                    for (String id : sorted.subList(from, to)) {
+                        if (Arrays.binarySearch(files, id) >= 0) {
+                            found.add(ObjectId.valueOf(id));
+                        }
+                    }
+                }
+            }
+            from = to;
+        }
+        return found;
+    }
+
     @Override
     protected InputStream getRawInternal(ObjectId id, boolean failIfNotFound) {
         File f = filePath(id);
@@ -16,11 +16,23 @@ import static org.locationtech.geogig.model.Ref.append;
 
 import java.io.File;
 import java.io.FileDescriptor;
+import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.URI;
 import java.nio.charset.Charset;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.locationtech.geogig.model.ObjectId;
 import org.locationtech.geogig.model.Ref;
@@ -32,11 +44,13 @@ import org.locationtech.geogig.storage.ConfigDatabase;
 import org.locationtech.geogig.storage.StorageType;
 import org.locationtech.geogig.storage.impl.AbstractRefDatabase;
 
+import com.google.common.base.Objects;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMap.Builder;
+import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.collect.Maps;
 import com.google.common.io.Files;
 import com.google.inject.Inject;
@@ -44,11 +58,53 @@ import com.google.inject.Inject;
 /**
  * Provides an implementation of a GeoGig ref database that utilizes the file system for the storage
  * of refs.
+ * <p>
+ * Refs are stored either as "loose" refs, one file per ref under the repository directory, or as
+ * entries of a single sorted {@value #PACKED_REFS} file. Loose refs always take precedence over
+ * packed ones, so updates only ever write the loose file, and {@link #pack()} compacts all loose
+ * refs under {@code refs/} (except the short lived {@link Ref#TRANSACTIONS_PREFIX transaction}
+ * namespaces) into the packed file, which is atomically replaced. Top level refs such as
+ * {@code HEAD} or {@code WORK_HEAD} are never packed.
+ * <p>
+ * Packing happens automatically once {@value #PACK_THRESHOLD_CONFIG_KEY} (defaults to
+ * {@value #DEFAULT_PACK_THRESHOLD}) new loose refs have been created, a value lower than or equal
+ * to zero disables automatic packing.
  */
 public class FileRefDatabase extends AbstractRefDatabase {
 
     private static final Charset CHARSET = Charset.forName("UTF-8");
 
+    /**
+     * Name of the file, relative to the repository directory, where packed refs are stored
+     */
+    public static final String PACKED_REFS = "packed-refs";
+
+    /**
+     * Config key for the number of loose refs created after which they are automatically packed
+     */
+    public static final String PACK_THRESHOLD_CONFIG_KEY = "refs.packThreshold";
+
+    public static final int DEFAULT_PACK_THRESHOLD = 1000;
+
+    private static final String PACKED_REFS_HEADER = "# geogig packed-refs v1";
+
+    private static final String PACKED_REFS_LOCK = PACKED_REFS + ".lock";
+
+    private static final long PACKED_REFS_LOCK_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    /**
+     * Guards loose ref directories from being pruned by {@link #pack()} while refs are being
+     * written or deleted, and keeps {@link #pack()} from packing a ref while it's being removed.
+     * Always acquired before the packed refs file monitor.
+     */
+    private final ReadWriteLock looseRefsLock = new ReentrantReadWriteLock();
+
+    private final AtomicInteger looseRefsCreated = new AtomicInteger();
+
+    private int packThreshold = DEFAULT_PACK_THRESHOLD;
+
+    private volatile PackedRefs packedRefs = PackedRefs.EMPTY;
+
     private final Platform platform;
 
     private final Hints hints;
@@ -90,6 +146,13 @@ public class FileRefDatabase extends AbstractRefDatabase {
                     "Cannot create refs directory '" + refs.getAbsolutePath() + "'");
         }
         this.envHome = repoDir;
+
+        if (configDB != null) {
+            Optional<Integer> threshold = configDB.get(PACK_THRESHOLD_CONFIG_KEY, Integer.class);
+            if (threshold.isPresent()) {
+                this.packThreshold = threshold.get().intValue();
+            }
+        }
     }
 
     /**
@@ -140,10 +203,13 @@ public class FileRefDatabase extends AbstractRefDatabase {
 
     private String getInternal(String name) {
         File refFile = toFile(name);
-        if (!refFile.exists() || refFile.isDirectory()) {
-            return null;
+        String value = null;
+        if (refFile.isFile()) {
+            value = readRef(refFile);
+        }
+        if (value == null) {
+            value = packedRefs().get(name);
         }
-        String value = readRef(refFile);
         return value;
     }
 
@@ -189,18 +255,33 @@ public class FileRefDatabase extends AbstractRefDatabase {
     public String remove(String refName) {
         checkNotNull(refName);
         File refFile = toFile(refName);
-        String oldRef;
-        if (refFile.exists()) {
-            oldRef = readRef(refFile);
-            if (oldRef.startsWith("ref: ")) {
-                oldRef = oldRef.substring("ref: ".length());
+        String oldRef = null;
+        looseRefsLock.readLock().lock();
+        try {
+            synchronized (refFile.getCanonicalPath().intern()) {
+                if (refFile.isFile()) {
+                    oldRef = readRef(refFile);
+                    if (!refFile.delete()) {
+                        throw new RuntimeException(
+                                "Unable to delete ref file '" + refFile.getAbsolutePath() + "'");
+                    }
+                }
             }
-            if (!refFile.delete()) {
-                throw new RuntimeException(
-                        "Unable to delete ref file '" + refFile.getAbsolutePath() + "'");
+            // still holding the loose refs lock, or a concurrent pack() could pack the loose ref
+            // after it's been checked here, and bring it back
+            if (packedRefs().get(refName) != null) {
+                Map<String, String> removed = removePacked(refName, false);
+                if (oldRef == null) {
+                    oldRef = removed.get(refName);
+                }
             }
-        } else {
-            oldRef = null;
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        } finally {
+            looseRefsLock.readLock().unlock();
+        }
+        if (oldRef != null && oldRef.startsWith("ref: ")) {
+            oldRef = oldRef.substring("ref: ".length());
         }
         return oldRef;
     }
@@ -223,12 +304,18 @@ public class FileRefDatabase extends AbstractRefDatabase {
         }
     }
 
+    /**
+     * @return the contents of the loose ref file, or {@code null} if it doesn't exist (e.g. it was
+     *         deleted or packed concurrently)
+     */
     private String readRef(final File refFile) {
         try {
             // make sure no other thread changes the ref as we read it
             synchronized (refFile.getCanonicalPath().intern()) {
                 return Files.readFirstLine(refFile, CHARSET);
             }
+        } catch (FileNotFoundException e) {
+            return null;
         } catch (IOException e) {
             throw Throwables.propagate(e);
         }
@@ -241,11 +328,14 @@ public class FileRefDatabase extends AbstractRefDatabase {
      */
     private void store(String refName, String refValue) {
         final File refFile = toFile(refName);
+        boolean created = false;
+        looseRefsLock.readLock().lock();
         try {
             synchronized (refFile.getCanonicalPath().intern()) {
                 Files.createParentDirs(refFile);
-                checkState(refFile.exists() || refFile.createNewFile(),
-                        "Unable to create file for ref %s", refFile);
+                created = refFile.createNewFile();
+                checkState(created || refFile.exists(), "Unable to create file for ref %s",
+                        refFile);
 
                 FileOutputStream fout = new FileOutputStream(refFile);
                 try {
@@ -261,6 +351,12 @@ public class FileRefDatabase extends AbstractRefDatabase {
         } catch (IOException e) {
             e.printStackTrace();
             throw Throwables.propagate(e);
+        } finally {
+            looseRefsLock.readLock().unlock();
+        }
+        if (created && isPackable(refName) && packThreshold > 0
+                && looseRefsCreated.incrementAndGet() >= packThreshold) {
+            pack();
         }
     }
 
@@ -304,6 +400,14 @@ public class FileRefDatabase extends AbstractRefDatabase {
             namespace = namespace.substring(0, namespace.length() - 1);
         }
         Map<String, String> refs = Maps.newTreeMap();
+        for (Entry<String, String> packed : packedRefs().getAll(namespace).entrySet()) {
+            String refValue = packed.getValue();
+            if (refValue.startsWith("ref: ")) {
+                refValue = refValue.substring("ref: ".length());
+            }
+            refs.put(packed.getKey(), refValue);
+        }
+        // loose refs override packed ones
         findRefs(refsRoot, namespace, refs);
         return ImmutableMap.copyOf(refs);
     }
@@ -332,6 +436,9 @@ public class FileRefDatabase extends AbstractRefDatabase {
             } else if (fileName.length() == 0 || fileName.charAt(0) != '.') {
                 String refName = append(prefix, fileName);
                 String refValue = readRef(f);
+                if (refValue == null) {
+                    continue;
+                }
                 if (refValue.startsWith("ref: ")) {
                     refValue = refValue.substring("ref: ".length());
                 }
@@ -346,12 +453,231 @@ public class FileRefDatabase extends AbstractRefDatabase {
         Preconditions.checkNotNull(namespace, "provided namespace is null");
         Map<String, String> oldvalues = getAll(namespace);
         final File file = toFile(namespace);
-        if (file.exists() && file.isDirectory()) {
-            deleteDir(file);
+        String prefix = namespace.endsWith("/") ? namespace.substring(0, namespace.length() - 1)
+                : namespace;
+        looseRefsLock.readLock().lock();
+        try {
+            if (file.exists() && file.isDirectory()) {
+                deleteDir(file);
+            }
+            if (!packedRefs().getAll(prefix).isEmpty()) {
+                removePacked(prefix, true);
+            }
+        } finally {
+            looseRefsLock.readLock().unlock();
         }
         return oldvalues;
     }
 
+    /**
+     * Compacts all loose refs under {@code refs/} into the {@value #PACKED_REFS} file, except the
+     * ones under the {@link Ref#TRANSACTIONS_PREFIX transactions} namespace, and deletes the loose
+     * ref files that have been packed and didn't change in the meantime.
+     */
+    public void pack() {
+        checkState(envHome != null, "Database not created");
+        // held from collecting the loose refs until they're deleted, so that refs removed
+        // concurrently are either not collected or removed from the packed refs afterwards
+        looseRefsLock.writeLock().lock();
+        try {
+            synchronized (packedRefsFile().getAbsolutePath().intern()) {
+                final File lockFile = lockPackedRefs();
+                final SortedMap<String, String> loose = new TreeMap<>();
+                boolean committed = false;
+                try {
+                    File refsDir = new File(envHome, "refs");
+                    if (refsDir.isDirectory()) {
+                        collectLooseRefs(refsDir, "refs", loose);
+                    }
+                    if (loose.isEmpty()) {
+                        return;
+                    }
+                    SortedMap<String, String> packed = new TreeMap<>(packedRefs().refs);
+                    packed.putAll(loose);
+                    commitPackedRefs(lockFile, packed);
+                    committed = true;
+                } finally {
+                    if (!committed) {
+                        unlockPackedRefs(lockFile);
+                    }
+                }
+                looseRefsCreated.set(0);
+
+                for (Entry<String, String> e : loose.entrySet()) {
+                    File refFile = toFile(e.getKey());
+                    synchronized (refFile.getCanonicalPath().intern()) {
+                        if (e.getValue().equals(readRef(refFile))) {
+                            refFile.delete();
+                        }
+                    }
+                }
+                pruneEmptyDirs(new File(envHome, "refs"));
+            }
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        } finally {
+            looseRefsLock.writeLock().unlock();
+        }
+    }
+
+    private boolean isPackable(String refName) {
+        return refName.startsWith(Ref.REFS_PREFIX) && !refName.startsWith(Ref.TRANSACTIONS_PREFIX);
+    }
+
+    private void collectLooseRefs(File dir, String prefix, Map<String, String> target) {
+        File[] children = dir.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File f : children) {
+            final String fileName = f.getName();
+            final String refName = append(prefix, fileName);
+            if (f.isDirectory()) {
+                if (!isPackable(refName + "/")) {
+                    continue;
+                }
+                collectLooseRefs(f, refName, target);
+            } else if (fileName.length() > 0 && fileName.charAt(0) != '.') {
+                String refValue = readRef(f);
+                if (refValue != null) {
+                    target.put(refName, refValue);
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes the empty directories under {@code dir}, but not {@code dir} itself
+     */
+    private void pruneEmptyDirs(File dir) {
+        File[] children = dir.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File f : children) {
+            if (f.isDirectory()) {
+                pruneEmptyDirs(f);
+                String[] remaining = f.list();
+                if (remaining != null && remaining.length == 0) {
+                    f.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the given ref, or all the refs under the given namespace, from the packed refs file
+     * 
+     * @return the raw values of the packed refs removed
+     */
+    private Map<String, String> removePacked(String name, boolean isNamespace) {
+        synchronized (packedRefsFile().getAbsolutePath().intern()) {
+            final File lockFile = lockPackedRefs();
+            boolean committed = false;
+            try {
+                PackedRefs current = packedRefs();
+                Map<String, String> removed = isNamespace ? current.getAll(name)
+                        : (current.get(name) == null ? ImmutableMap.<String, String> of()
+                                : ImmutableMap.of(name, current.get(name)));
+                if (!removed.isEmpty()) {
+                    SortedMap<String, String> packed = new TreeMap<>(current.refs);
+                    packed.keySet().removeAll(removed.keySet());
+                    commitPackedRefs(lockFile, packed);
+                    committed = true;
+                }
+                return removed;
+            } finally {
+                if (!committed) {
+                    unlockPackedRefs(lockFile);
+                }
+            }
+        }
+    }
+
+    private File packedRefsFile() {
+        return new File(envHome, PACKED_REFS);
+    }
+
+    /**
+     * @return the current packed refs, re-reading the packed refs file only if it changed since
+     *         the last time it was read
+     */
+    private PackedRefs packedRefs() {
+        final File file = packedRefsFile();
+        PackedRefs current = this.packedRefs;
+        BasicFileAttributes attributes;
+        try {
+            attributes = java.nio.file.Files.readAttributes(file.toPath(),
+                    BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            this.packedRefs = PackedRefs.EMPTY;
+            return PackedRefs.EMPTY;
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+        if (!current.isCurrent(attributes)) {
+            current = PackedRefs.read(file, attributes);
+            this.packedRefs = current;
+        }
+        return current;
+    }
+
+    /**
+     * Acquires the packed refs lock file, waiting for up to 30 seconds if another process holds
+     * it
+     */
+    private File lockPackedRefs() {
+        final File lockFile = new File(envHome, PACKED_REFS_LOCK);
+        final long deadline = System.currentTimeMillis() + PACKED_REFS_LOCK_TIMEOUT_MILLIS;
+        try {
+            while (!lockFile.createNewFile()) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IllegalStateException("Unable to lock packed refs, lock file "
+                            + lockFile.getAbsolutePath()
+                            + " exists. Remove it if no other process is using the repository.");
+                }
+                Thread.sleep(10);
+            }
+        } catch (IOException | InterruptedException e) {
+            throw Throwables.propagate(e);
+        }
+        return lockFile;
+    }
+
+    private void unlockPackedRefs(File lockFile) {
+        if (!lockFile.delete()) {
+            throw new RuntimeException(
+                    "Unable to delete lock file " + lockFile.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Writes the packed refs to the lock file and atomically replaces the packed refs file with
+     * it, which also releases the lock
+     */
+    private void commitPackedRefs(File lockFile, SortedMap<String, String> refs) {
+        final File packedFile = packedRefsFile();
+        try {
+            FileOutputStream fout = new FileOutputStream(lockFile);
+            try {
+                StringBuilder sb = new StringBuilder(PACKED_REFS_HEADER).append('\n');
+                for (Entry<String, String> e : refs.entrySet()) {
+                    sb.append(e.getKey()).append(' ').append(e.getValue()).append('\n');
+                }
+                fout.write(sb.toString().getBytes(CHARSET));
+                fout.flush();
+                fout.getFD().sync();
+            } finally {
+                fout.close();
+            }
+            java.nio.file.Files.move(lockFile.toPath(), packedFile.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+        this.packedRefs = PackedRefs.EMPTY;
+    }
+
     /**
      * @param directory
      */
@@ -389,4 +715,68 @@ public class FileRefDatabase extends AbstractRefDatabase {
     public String toString() {
         return String.format("%s[geogig dir: %s]", getClass().getSimpleName(), envHome);
     }
+
+    /**
+     * An immutable snapshot of the contents of the packed refs file, along with the file
+     * attributes used to tell whether it's still current.
+     * <p>
+     * The file is always replaced through a rename, so a change in its {@link
+     * BasicFileAttributes#fileKey() file key} is a reliable change indicator where the file
+     * system supports it, in addition to the modification time and size.
+     */
+    private static class PackedRefs {
+
+        static final PackedRefs EMPTY = new PackedRefs(ImmutableSortedMap.<String, String> of(),
+                null);
+
+        final ImmutableSortedMap<String, String> refs;
+
+        private final BasicFileAttributes attributes;
+
+        PackedRefs(ImmutableSortedMap<String, String> refs, BasicFileAttributes attributes) {
+            this.refs = refs;
+            this.attributes = attributes;
+        }
+
+        boolean isCurrent(BasicFileAttributes current) {
+            return attributes != null
+                    && Objects.equal(attributes.fileKey(), current.fileKey())
+                    && attributes.lastModifiedTime().equals(current.lastModifiedTime())
+                    && attributes.size() == current.size();
+        }
+
+        String get(String name) {
+            return refs.get(name);
+        }
+
+        /**
+         * @return the packed refs under {@code namespace}, which shall not end with a slash
+         */
+        ImmutableSortedMap<String, String> getAll(String namespace) {
+            // '0' is the character following '/'
+            return refs.subMap(namespace + "/", namespace + "0");
+        }
+
+        static PackedRefs read(File file, BasicFileAttributes attributes) {
+            List<String> lines;
+            try {
+                lines = Files.readLines(file, CHARSET);
+            } catch (FileNotFoundException e) {
+                return EMPTY;
+            } catch (IOException e) {
+                throw Throwables.propagate(e);
+            }
+            ImmutableSortedMap.Builder<String, String> builder = ImmutableSortedMap
+                    .naturalOrder();
+            for (String line : lines) {
+                if (line.isEmpty() || line.charAt(0) == '#') {
+                    continue;
+                }
+                int sep = line.indexOf(' ');
+                checkState(sep > 0, "Corrupt packed refs file %s: '%s'", file, line);
+                builder.put(line.substring(0, sep), line.substring(sep + 1));
+            }
+            return new PackedRefs(builder.build(), attributes);
+        }
+    }
 }
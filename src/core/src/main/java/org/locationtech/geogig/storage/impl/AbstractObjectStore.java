@@ -13,14 +13,16 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.metrics.ObjectStoreMetrics;
 import org.locationtech.geogig.model.ObjectId;
 import org.locationtech.geogig.model.RevCommit;
 import org.locationtech.geogig.model.RevFeature;
@@ -31,9 +33,12 @@ import org.locationtech.geogig.model.RevTag;
 import org.locationtech.geogig.model.RevTree;
 import org.locationtech.geogig.storage.BulkOpListener;
 import org.locationtech.geogig.storage.ObjectStore;
+import org.locationtech.geogig.storage.datastream.EncodeBuffer;
 import org.locationtech.geogig.storage.datastream.SerializationFactoryProxy;
 
 import com.google.common.base.Throwables;
+import com.google.common.io.CountingInputStream;
+import com.google.common.io.CountingOutputStream;
 import com.google.common.io.Closeables;
 
 /**
@@ -45,6 +50,8 @@ public abstract class AbstractObjectStore implements ObjectStore {
 
     private ObjectSerializingFactory serializer;
 
+    private final ObjectStoreMetrics metrics = ObjectStoreMetrics.get(getClass());
+
     public AbstractObjectStore() {
         this(new SerializationFactoryProxy());
     }
@@ -109,7 +116,7 @@ public abstract class AbstractObjectStore implements ObjectStore {
         checkNotNull(id, "argument id is null");
         checkState(isOpen(), "db is closed");
 
-        return get(id, true);
+        return getInternal(id, true);
     }
 
     @Override
@@ -117,7 +124,7 @@ public abstract class AbstractObjectStore implements ObjectStore {
         checkNotNull(id, "argument id is null");
         checkState(isOpen(), "db is closed");
 
-        return get(id, false);
+        return getInternal(id, false);
     }
 
     /**
@@ -137,7 +144,7 @@ public abstract class AbstractObjectStore implements ObjectStore {
 
         RevObject obj = null;
         try {
-            obj = get(id, true);
+            obj = getInternal(id, true);
             return clazz.cast(obj);
         } catch (ClassCastException e) {
             throw new IllegalArgumentException(
@@ -153,21 +160,32 @@ public abstract class AbstractObjectStore implements ObjectStore {
         checkNotNull(clazz, "argument class is null");
         checkState(isOpen(), "db is closed");
         try {
-            return clazz.cast(get(id, false));
+            return clazz.cast(getInternal(id, false));
         } catch (ClassCastException e) {
             return null;
         }
 
     }
 
-    private RevObject get(final ObjectId id, boolean failIfNotFound) {
+    /**
+     * Fetches and decodes a single object. This default implementation decodes the stream
+     * returned by {@link #getRawInternal(ObjectId, boolean)}; subclasses may override if they can
+     * get hold of the object's raw data more efficiently, and decode it through
+     * {@link #readObject(ObjectId, byte[], int, int)}.
+     * 
+     * @return the object, or {@code null} if not found and {@code failIfNotFound == false}
+     * @throws IllegalArgumentException if not found and {@code failIfNotFound == true}
+     */
+    @Nullable
+    protected RevObject getInternal(final ObjectId id, boolean failIfNotFound)
+            throws IllegalArgumentException {
         InputStream raw = getRaw(id, failIfNotFound);
         if (null == raw) {
             return null;
         }
         RevObject object;
         try {
-            object = serializer().read(id, raw);
+            object = readObject(id, raw);
         } catch (IOException e) {
             throw Throwables.propagate(e);
         } finally {
@@ -221,10 +239,12 @@ public abstract class AbstractObjectStore implements ObjectStore {
         checkArgument(!object.getId().isNull(), "ObjectId is NULL %s", object);
         checkState(isOpen(), "db is closed");
 
-        ByteArrayOutputStream rawOut = new ByteArrayOutputStream();
-        writeObject(object, rawOut);
+        final byte[] rawData;
+        try (EncodeBuffer rawOut = EncodeBuffer.acquire()) {
+            writeObject(object, rawOut);
+            rawData = rawOut.toByteArray();
+        }
         final ObjectId id = object.getId();
-        final byte[] rawData = rawOut.toByteArray();
         final boolean inserted = putInternal(id, rawData);
         return inserted;
     }
@@ -239,13 +259,13 @@ public abstract class AbstractObjectStore implements ObjectStore {
         checkNotNull(listener, "listener is null");
         checkState(isOpen(), "db is closed");
 
-        ByteArrayOutputStream rawOut = new ByteArrayOutputStream();
         while (objects.hasNext()) {
             RevObject object = objects.next();
-            rawOut.reset();
-
-            writeObject(object, rawOut);
-            final byte[] rawData = rawOut.toByteArray();
+            final byte[] rawData;
+            try (EncodeBuffer rawOut = EncodeBuffer.acquire()) {
+                writeObject(object, rawOut);
+                rawData = rawOut.toByteArray();
+            }
 
             final ObjectId id = object.getId();
             final boolean added = putInternal(id, rawData);
@@ -259,18 +279,75 @@ public abstract class AbstractObjectStore implements ObjectStore {
 
     protected void writeObject(RevObject object, OutputStream target) {
         try {
-            serializer().write(object, target);
+            if (metrics.isEnabled()) {
+                final long start = System.nanoTime();
+                CountingOutputStream counting = new CountingOutputStream(target);
+                serializer().write(object, counting);
+                metrics.recordWritten(object.getType(), counting.getCount(),
+                        System.nanoTime() - start);
+            } else {
+                serializer().write(object, target);
+            }
         } catch (IOException e) {
             throw Throwables.propagate(e);
         }
     }
 
+    /**
+     * Decodes an object from its storage representation, recording its size and decoding time if
+     * the store {@link ObjectStoreMetrics metrics} are enabled
+     */
+    protected RevObject readObject(ObjectId id, InputStream raw) throws IOException {
+        if (!metrics.isEnabled()) {
+            return serializer().read(id, raw);
+        }
+        final long start = System.nanoTime();
+        CountingInputStream counting = new CountingInputStream(raw);
+        RevObject object = serializer().read(id, counting);
+        metrics.recordRead(object.getType(), counting.getCount(), System.nanoTime() - start);
+        return object;
+    }
+
+    /**
+     * Decodes an object out of {@code length} bytes of its storage representation held in
+     * {@code raw}, starting at {@code offset}, without wrapping it in a stream. {@code raw} can be
+     * safely reused once this method returns.
+     */
+    protected RevObject readObject(ObjectId id, byte[] raw, int offset, int length)
+            throws IOException {
+        if (!metrics.isEnabled()) {
+            return serializer().read(id, raw, offset, length);
+        }
+        final long start = System.nanoTime();
+        RevObject object = serializer().read(id, raw, offset, length);
+        metrics.recordRead(object.getType(), length, System.nanoTime() - start);
+        return object;
+    }
+
     /**
      * Stores the raw data for the given id <em>only if it does not exist</em> already, and returns
      * whether the object was actually inserted.
      */
     protected abstract boolean putInternal(ObjectId id, byte[] rawData);
 
+    /**
+     * This default implementation calls {@link #exists(ObjectId)} for each id; subclasses may
+     * override if appropriate.
+     */
+    @Override
+    public Set<ObjectId> existsAll(final Iterable<ObjectId> ids) {
+        checkNotNull(ids, "ids is null");
+        checkState(isOpen(), "db is closed");
+
+        Set<ObjectId> found = new HashSet<>();
+        for (ObjectId id : ids) {
+            if (exists(id)) {
+                found.add(id);
+            }
+        }
+        return found;
+    }
+
     @Override
     public Iterator<RevObject> getAll(final Iterable<ObjectId> ids) {
         checkState(isOpen(), "db is closed");
@@ -11,6 +11,7 @@ package org.locationtech.geogig.storage.impl;
 
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 import org.locationtech.geogig.model.ObjectId;
 import org.locationtech.geogig.model.RevCommit;
@@ -70,6 +71,11 @@ public class ForwardingObjectStore implements ObjectStore {
         return subject.get().exists(id);
     }
 
+    @Override
+    public Set<ObjectId> existsAll(Iterable<ObjectId> ids) {
+        return subject.get().existsAll(ids);
+    }
+
     @Override
     public List<ObjectId> lookUp(String partialId) {
         return subject.get().lookUp(partialId);
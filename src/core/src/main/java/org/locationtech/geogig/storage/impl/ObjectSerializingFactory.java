@@ -9,6 +9,7 @@
  */
 package org.locationtech.geogig.storage.impl;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -26,4 +27,16 @@ public interface ObjectSerializingFactory {
     void write(RevObject o, OutputStream out) throws IOException;
 
     RevObject read(ObjectId id, InputStream in) throws IOException;
+
+    /**
+     * Reads an object out of {@code length} bytes of {@code data}, starting at {@code offset}.
+     * <p>
+     * Allows stores that hold the serialized form of objects in (possibly reused) byte arrays to
+     * avoid wrapping them in streams. Implementations shall not keep references to {@code data}
+     * once the method returns. This default implementation reads from a
+     * {@link ByteArrayInputStream}.
+     */
+    default RevObject read(ObjectId id, byte[] data, int offset, int length) throws IOException {
+        return read(id, new ByteArrayInputStream(data, offset, length));
+    }
 }
@@ -9,6 +9,8 @@
  */
 package org.locationtech.geogig.storage.impl;
 
+import java.util.Map;
+
 import org.locationtech.geogig.model.ObjectId;
 import org.locationtech.geogig.repository.RepositoryConnectionException;
 import org.locationtech.geogig.storage.GraphDatabase;
@@ -88,6 +90,13 @@ public class SynchronizedGraphDatabase implements GraphDatabase {
         }
     }
 
+    public Map<ObjectId, ImmutableList<ObjectId>> getAncestry(Iterable<ObjectId> commitIds,
+            int maxDepth) {
+        synchronized (delegate) {
+            return delegate.getAncestry(commitIds, maxDepth);
+        }
+    }
+
     public int getDepth(final ObjectId commitId) {
         synchronized (delegate) {
             return delegate.getDepth(commitId);
@@ -94,7 +94,9 @@ public class HeapConflictsDatabase implements ConflictsDatabase {
     @Override
     public void addConflicts(@Nullable String namespace, Iterable<Conflict> conflicts) {
         ConcurrentHashMap<String, Conflict> map = get(namespace);
-        map.putAll(Maps.uniqueIndex(conflicts, (c) -> c.getPath()));
+        for (Conflict c : conflicts) {
+            map.put(c.getPath(), c);
+        }
     }
 
     /**
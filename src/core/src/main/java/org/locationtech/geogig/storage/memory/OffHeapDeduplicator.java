@@ -0,0 +1,242 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.storage.memory;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.repository.impl.Deduplicator;
+
+/**
+ * A {@link Deduplicator} that keeps the visited {@link ObjectId}s as raw 20 byte values in open
+ * addressing hash tables backed by direct {@link ByteBuffer}s, so that it can track billions of
+ * objects with no per object heap overhead nor garbage collection pressure, as opposed to
+ * {@link HeapDeduplicator}.
+ * <p>
+ * The ids are spread over a fixed number of independently locked and resized segments, allowing
+ * for concurrent visits with little contention. Direct memory is limited by the
+ * {@code -XX:MaxDirectMemorySize} JVM argument, which defaults to the max heap size; each tracked
+ * id takes between 27 and 54 bytes of it, depending on how full the tables are.
+ * <p>
+ * This class is thread safe.
+ */
+public class OffHeapDeduplicator implements Deduplicator {
+
+    private static final int NUM_SEGMENTS = 256;
+
+    private static final int INITIAL_SEGMENT_CAPACITY = 256;
+
+    /**
+     * Largest power of two number of ids that fit in a single buffer
+     */
+    private static final int MAX_SEGMENT_CAPACITY = 1 << 26;
+
+    private Segment[] segments;
+
+    /**
+     * The {@link ObjectId#NULL null id} is tracked apart since all zeroes marks empty slots
+     */
+    private final AtomicBoolean nullVisited = new AtomicBoolean();
+
+    public OffHeapDeduplicator() {
+        reset();
+    }
+
+    @Override
+    public boolean isDuplicate(ObjectId id) {
+        if (id.isNull()) {
+            return nullVisited.get();
+        }
+        return segment(id).contains(id);
+    }
+
+    @Override
+    public boolean visit(ObjectId id) {
+        if (id.isNull()) {
+            return nullVisited.getAndSet(true);
+        }
+        return !segment(id).add(id);
+    }
+
+    @Override
+    public void removeDuplicates(List<ObjectId> ids) {
+        ids.removeIf((id) -> isDuplicate(id));
+    }
+
+    @Override
+    public synchronized void reset() {
+        Segment[] segments = new Segment[NUM_SEGMENTS];
+        for (int i = 0; i < NUM_SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+        this.segments = segments;
+        nullVisited.set(false);
+    }
+
+    @Override
+    public synchronized void release() {
+        segments = null;
+    }
+
+    /**
+     * @return the number of distinct ids visited so far
+     */
+    public long size() {
+        final Segment[] segments = segments();
+        long size = nullVisited.get() ? 1 : 0;
+        for (Segment s : segments) {
+            size += s.size();
+        }
+        return size;
+    }
+
+    private Segment[] segments() {
+        final Segment[] segments = this.segments;
+        checkState(segments != null, "deduplicator has been released");
+        return segments;
+    }
+
+    /**
+     * Ids are SHA-1 hashes, hence evenly distributed, so the segment is picked by the fifth byte,
+     * independently of the first four ones {@link ObjectId#hashCode()} uses to pick the slot
+     */
+    private Segment segment(ObjectId id) {
+        return segments()[id.byteN(4)];
+    }
+
+    private static class Segment {
+
+        private ByteBuffer table;
+
+        private int capacity;
+
+        private int size;
+
+        Segment() {
+            this.capacity = INITIAL_SEGMENT_CAPACITY;
+            this.table = ByteBuffer.allocateDirect(capacity * ObjectId.NUM_BYTES);
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized boolean contains(ObjectId id) {
+            return find(table, capacity, id) < 0;
+        }
+
+        /**
+         * @return {@code true} if the id was added, {@code false} if it was already present
+         */
+        synchronized boolean add(ObjectId id) {
+            int slot = find(table, capacity, id);
+            if (slot < 0) {
+                return false;
+            }
+            if (size + 1 > capacity - (capacity >>> 2)) {
+                grow();
+                slot = find(table, capacity, id);
+            }
+            write(table, slot, id);
+            size++;
+            return true;
+        }
+
+        private void grow() {
+            checkState(capacity < MAX_SEGMENT_CAPACITY,
+                    "Deduplicator segment capacity exceeded: %s ids", size);
+            final int newCapacity = capacity << 1;
+            final ByteBuffer newTable = ByteBuffer
+                    .allocateDirect(newCapacity * ObjectId.NUM_BYTES);
+            final int newMask = newCapacity - 1;
+            for (int slot = 0; slot < capacity; slot++) {
+                final int offset = slot * ObjectId.NUM_BYTES;
+                if (isEmpty(table, offset)) {
+                    continue;
+                }
+                // ids are unique, just look for the first empty slot
+                int newSlot = spread(hashCode(table, offset)) & newMask;
+                while (!isEmpty(newTable, newSlot * ObjectId.NUM_BYTES)) {
+                    newSlot = (newSlot + 1) & newMask;
+                }
+                final int newOffset = newSlot * ObjectId.NUM_BYTES;
+                for (int i = 0; i < ObjectId.NUM_BYTES; i++) {
+                    newTable.put(newOffset + i, table.get(offset + i));
+                }
+            }
+            this.table = newTable;
+            this.capacity = newCapacity;
+        }
+
+        /**
+         * Linear probing lookup.
+         *
+         * @return the empty slot where {@code id} shall be stored if it's not present, or
+         *         {@code -1} if it's already present
+         */
+        private static int find(ByteBuffer table, int capacity, ObjectId id) {
+            final int mask = capacity - 1;
+            int slot = spread(id.hashCode()) & mask;
+            while (true) {
+                final int offset = slot * ObjectId.NUM_BYTES;
+                if (isEmpty(table, offset)) {
+                    return slot;
+                }
+                if (matches(table, offset, id)) {
+                    return -1;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        /**
+         * Same as {@link ObjectId#hashCode()} for the id stored at {@code offset}
+         */
+        private static int hashCode(ByteBuffer table, int offset) {
+            return 17 ^ ((table.get(offset) & 0xFF)//
+                    | ((table.get(offset + 1) & 0xFF) << 8)//
+                    | ((table.get(offset + 2) & 0xFF) << 16)//
+                    | ((table.get(offset + 3) & 0xFF) << 24));
+        }
+
+        private static int spread(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+
+        private static boolean isEmpty(ByteBuffer table, int offset) {
+            for (int i = 0; i < ObjectId.NUM_BYTES; i += 4) {
+                if (table.getInt(offset + i) != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean matches(ByteBuffer table, int offset, ObjectId id) {
+            for (int i = 0; i < ObjectId.NUM_BYTES; i++) {
+                if ((table.get(offset + i) & 0xFF) != id.byteN(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static void write(ByteBuffer table, int slot, ObjectId id) {
+            final int offset = slot * ObjectId.NUM_BYTES;
+            for (int i = 0; i < ObjectId.NUM_BYTES; i++) {
+                table.put(offset + i, (byte) id.byteN(i));
+            }
+        }
+    }
+}
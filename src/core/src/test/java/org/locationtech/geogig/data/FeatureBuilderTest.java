@@ -9,12 +9,15 @@
  */
 package org.locationtech.geogig.data;
 
+import org.geotools.data.DataUtilities;
 import org.junit.Test;
 import org.locationtech.geogig.model.RevFeature;
 import org.locationtech.geogig.model.impl.RevFeatureBuilder;
+import org.locationtech.geogig.model.impl.RevFeatureTypeBuilder;
 import org.locationtech.geogig.test.integration.RepositoryTestCase;
 import org.opengis.feature.Feature;
 import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
 
 public class FeatureBuilderTest extends RepositoryTestCase {
 
@@ -43,4 +46,28 @@ public class FeatureBuilderTest extends RepositoryTestCase {
         assertEquals(((SimpleFeature) test).getAttributes(),
                 ((SimpleFeature) test2).getAttributes());
     }
+
+    @Test
+    public void testFeatureBuilderProjection() throws Exception {
+        SimpleFeatureType projection = DataUtilities.createSubType(pointsType,
+                new String[] { "pp", "sp" });
+        FeatureBuilder builder = new FeatureBuilder(RevFeatureTypeBuilder.build(pointsType),
+                projection);
+        RevFeature point1 = RevFeatureBuilder.build(points1);
+
+        SimpleFeature test = (SimpleFeature) builder.build(idP1, point1);
+
+        assertEquals(projection, test.getType());
+        assertEquals(2, test.getAttributeCount());
+        assertEquals(points1.getAttribute("pp"), test.getAttribute(0));
+        assertEquals(points1.getAttribute("sp"), test.getAttribute(1));
+        assertEquals(points1.getAttribute("sp"), test.getAttribute("sp"));
+        assertNull(test.getAttribute("ip"));
+        assertEquals(points1.getDefaultGeometry(), test.getDefaultGeometry());
+        assertEquals(points1.getBounds(), test.getBounds());
+
+        test.setAttribute("sp", "modified");
+        assertEquals("modified", test.getAttribute(1));
+        assertEquals(points1.getAttribute("pp"), test.getAttribute(0));
+    }
 }
@@ -0,0 +1,147 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.locationtech.geogig.metrics.CommandMetrics.StoreCall;
+import org.locationtech.geogig.repository.AbstractGeoGigOp;
+
+public class CommandMetricsTest {
+
+    private static class OuterOp extends AbstractGeoGigOp<Void> {
+        @Override
+        protected Void _call() {
+            return null;
+        }
+    }
+
+    private static class InnerOp extends AbstractGeoGigOp<Void> {
+        @Override
+        protected Void _call() {
+            return null;
+        }
+    }
+
+    @Test
+    public void testHistogram() {
+        Histogram histogram = new Histogram(10, 20, 50, 100);
+        assertEquals(0, histogram.getPercentile(50));
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+        histogram.record(1000);
+        assertEquals(101, histogram.getCount());
+        assertEquals(5050 + 1000, histogram.getSum());
+        assertEquals(1000, histogram.getMax());
+        assertEquals(10, histogram.getPercentile(5));
+        assertEquals(100, histogram.getPercentile(90));
+        assertEquals(1000, histogram.getPercentile(100));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+    }
+
+    @Test
+    public void testExponentialHistogramBounds() {
+        Histogram histogram = Histogram.exponential(1, 100);
+        histogram.record(3);
+        assertEquals(3, histogram.getPercentile(50));
+        histogram.record(7);
+        histogram.record(8);
+        assertEquals(8, histogram.getPercentile(100));
+        assertEquals(5, histogram.getPercentile(30));
+    }
+
+    @Test
+    public void testCallTree() {
+        CommandMetrics metrics = new CommandMetrics(true);
+        OuterOp outer = new OuterOp();
+        InnerOp inner = new InnerOp();
+
+        metrics.recordStoreCall(StoreCall.GET, 1);
+        metrics.started(outer);
+        metrics.recordStoreCall(StoreCall.GET_ALL, 100);
+        metrics.started(inner);
+        metrics.recordStoreCall(StoreCall.PUT_ALL, 10);
+        metrics.finished(inner, false);
+        metrics.started(inner);
+        metrics.finished(inner, true);
+        metrics.finished(outer, false);
+
+        assertEquals(1, metrics.getLatency("OuterOp").getCount());
+        assertEquals(2, metrics.getLatency("InnerOp").getCount());
+        assertEquals(1, metrics.getStoreCalls(StoreCall.GET));
+        assertEquals(1, metrics.getStoreCalls(StoreCall.GET_ALL));
+        assertEquals(1, metrics.getStoreCalls(StoreCall.PUT_ALL));
+
+        String report = metrics.getReport();
+        assertTrue(report, report.contains("InnerOp: count=2"));
+        assertTrue(report, report.contains("failures=1"));
+        assertTrue(report, report.contains("    OuterOp: calls=1"));
+        assertTrue(report, report.contains("      InnerOp: calls=2"));
+        assertTrue(report, report.contains("getAll=1/100"));
+        assertTrue(report, report.contains("putAll=1/10"));
+
+        metrics.reset();
+        assertNull(metrics.getLatency("OuterOp"));
+        assertEquals(0, metrics.getStoreCalls(StoreCall.GET));
+    }
+
+    @Test
+    public void testUnbalancedFinish() {
+        CommandMetrics metrics = new CommandMetrics(true);
+        OuterOp outer = new OuterOp();
+        // finished without having started, e.g. if a previous listener's preCall failed
+        metrics.finished(outer, true);
+        assertNull(metrics.getLatency("OuterOp"));
+
+        metrics.started(outer);
+        metrics.finished(new InnerOp(), false);
+        metrics.finished(outer, false);
+        assertNull(metrics.getLatency("InnerOp"));
+        assertNotNull(metrics.getLatency("OuterOp"));
+    }
+
+    @Test
+    public void testNestedCommandNotFinished() {
+        CommandMetrics metrics = new CommandMetrics(true);
+        OuterOp outer = new OuterOp();
+        metrics.started(outer);
+        metrics.started(new InnerOp());
+        // the inner command's frame is dropped along with the outer one
+        metrics.finished(outer, true);
+        assertEquals(0, metrics.runningCommands());
+        assertNotNull(metrics.getLatency("OuterOp"));
+        assertNull(metrics.getLatency("InnerOp"));
+
+        metrics.started(outer);
+        metrics.finished(outer, false);
+        assertEquals(0, metrics.runningCommands());
+        String report = metrics.getReport();
+        assertTrue(report, report.contains("\n    OuterOp: calls=2"));
+    }
+
+    @Test
+    public void testDisabled() {
+        CommandMetrics metrics = new CommandMetrics(false);
+        OuterOp outer = new OuterOp();
+        metrics.started(outer);
+        metrics.recordStoreCall(StoreCall.GET, 1);
+        metrics.finished(outer, false);
+        assertNull(metrics.getLatency("OuterOp"));
+        assertEquals(0, metrics.getStoreCalls(StoreCall.GET));
+    }
+}
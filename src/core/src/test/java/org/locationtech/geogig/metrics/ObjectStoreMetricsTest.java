@@ -0,0 +1,130 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Iterator;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.geogig.metrics.CommandMetrics.StoreCall;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevObject;
+import org.locationtech.geogig.model.RevObject.TYPE;
+import org.locationtech.geogig.model.RevTree;
+import org.locationtech.geogig.storage.BulkOpListener;
+import org.locationtech.geogig.storage.BulkOpListener.CountingListener;
+import org.locationtech.geogig.storage.ObjectDatabase;
+import org.locationtech.geogig.storage.fs.FileObjectDatabase;
+import org.locationtech.geogig.storage.memory.HeapObjectDatabase;
+import org.locationtech.geogig.storage.memory.HeapObjectStore;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
+
+public class ObjectStoreMetricsTest {
+
+    private HeapObjectDatabase backend;
+
+    private ObjectStoreMetrics metrics;
+
+    private ObjectDatabase db;
+
+    @Before
+    public void before() {
+        metrics = ObjectStoreMetrics.get(HeapObjectDatabase.class);
+        metrics.reset();
+        backend = new HeapObjectDatabase();
+        backend.open();
+        db = new InstrumentedObjectDatabase(backend, metrics);
+    }
+
+    @After
+    public void after() {
+        if (db != null) {
+            db.close();
+        }
+        metrics.reset();
+    }
+
+    @Test
+    public void testBackendName() {
+        assertEquals("Heap", ObjectStoreMetrics.backendName(HeapObjectDatabase.class));
+        assertEquals("Heap", ObjectStoreMetrics.backendName(HeapObjectStore.class));
+        assertEquals("File", ObjectStoreMetrics.backendName(FileObjectDatabase.class));
+        assertEquals("ObjectDatabase", ObjectStoreMetrics.backendName(ObjectDatabase.class));
+        assertTrue(ObjectStoreMetrics.get(HeapObjectStore.class) == metrics);
+    }
+
+    @Test
+    public void testEnabledWhileOpen() {
+        assertTrue(metrics.isEnabled());
+        HeapObjectDatabase other = new HeapObjectDatabase();
+        other.open();
+        ObjectDatabase instrumented = new InstrumentedObjectDatabase(other, metrics);
+        instrumented.close();
+        // still enabled for the store that's open
+        assertTrue(metrics.isEnabled());
+        instrumented.close();
+        assertTrue(metrics.isEnabled());
+
+        db.close();
+        assertFalse(metrics.isEnabled());
+        // no longer recorded by the backend once no store is instrumented
+        other.open();
+        other.put(RevTree.EMPTY);
+        other.close();
+        assertEquals(0, metrics.getObjectsWritten(TYPE.TREE));
+
+        db.open();
+        assertTrue(metrics.isEnabled());
+    }
+
+    @Test
+    public void testSingleCalls() {
+        db.put(RevTree.EMPTY);
+        db.getTree(RevTree.EMPTY_TREE_ID);
+        db.exists(RevTree.EMPTY_TREE_ID);
+
+        assertEquals(1, metrics.getLatency(StoreCall.PUT).getCount());
+        assertEquals(1, metrics.getLatency(StoreCall.GET).getCount());
+        assertEquals(1, metrics.getLatency(StoreCall.EXISTS).getCount());
+        assertEquals(1, metrics.getObjectsWritten(TYPE.TREE));
+        assertEquals(1, metrics.getObjectsRead(TYPE.TREE));
+        assertTrue(metrics.getBytesWritten(TYPE.TREE) > 0);
+        assertEquals(metrics.getBytesWritten(TYPE.TREE), metrics.getBytesRead(TYPE.TREE));
+    }
+
+    @Test
+    public void testBulkCalls() {
+        CountingListener listener = BulkOpListener.newCountingListener();
+        db.putAll(Iterators.singletonIterator(RevTree.EMPTY), listener);
+        assertEquals(1, listener.inserted());
+        assertEquals(1, metrics.getLatency(StoreCall.PUT_ALL).getCount());
+
+        ObjectId missing = ObjectId.valueOf("abc123000000000000001234567890abcdef0000");
+        listener = BulkOpListener.newCountingListener();
+        Iterator<RevObject> result = db
+                .getAll(ImmutableList.of(RevTree.EMPTY_TREE_ID, missing), listener);
+        assertEquals(0, metrics.getLatency(StoreCall.GET_ALL).getCount());
+        assertEquals(1, Iterators.size(result));
+        assertEquals(1, listener.found());
+        assertEquals(1, listener.notFound());
+        assertEquals(1, metrics.getLatency(StoreCall.GET_ALL).getCount());
+
+        String report = metrics.getReport();
+        assertTrue(report, report.contains("found=1 not found=1"));
+        assertTrue(report, report.contains("inserted=1"));
+    }
+}
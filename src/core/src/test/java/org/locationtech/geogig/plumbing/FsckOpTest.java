@@ -0,0 +1,151 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.plumbing;
+
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.Ref;
+import org.locationtech.geogig.model.RevCommit;
+import org.locationtech.geogig.model.RevObject.TYPE;
+import org.locationtech.geogig.model.impl.RevFeatureBuilder;
+import org.locationtech.geogig.plumbing.FsckOp.Problem;
+import org.locationtech.geogig.plumbing.FsckOp.ProblemType;
+import org.locationtech.geogig.plumbing.FsckOp.Report;
+import org.locationtech.geogig.repository.NodeRef;
+import org.locationtech.geogig.storage.ObjectDatabase;
+import org.locationtech.geogig.test.integration.RepositoryTestCase;
+
+import com.google.common.collect.ImmutableList;
+
+public class FsckOpTest extends RepositoryTestCase {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Override
+    protected void setUpInternal() throws Exception {
+        // do nothing, call populate() where needed
+    }
+
+    private ObjectId resolve(String refSpec) {
+        return geogig.command(RevParse.class).setRefSpec(refSpec).call().get();
+    }
+
+    @Test
+    public void testEmptyRepository() {
+        Report report = geogig.command(FsckOp.class).call();
+        assertTrue(report.isClean());
+        assertEquals(0, report.getCheckedCount());
+    }
+
+    @Test
+    public void testCleanRepository() throws Exception {
+        List<RevCommit> commits = populate(true, points1, points2, lines1);
+
+        Report report = geogig.command(FsckOp.class).setThreads(2).setBatchSize(1).call();
+        assertTrue(report.getProblems().toString(), report.isClean());
+        assertEquals(commits.size(), report.getChecked(TYPE.COMMIT));
+        assertEquals(3, report.getChecked(TYPE.FEATURE));
+        assertEquals(2, report.getChecked(TYPE.FEATURETYPE));
+    }
+
+    @Test
+    public void testUnknownRef() {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Can't resolve ref 'nonexistent'");
+        geogig.command(FsckOp.class).setRefs(ImmutableList.of("nonexistent")).call();
+    }
+
+    @Test
+    public void testMissingFeature() throws Exception {
+        populate(true, points1, lines1);
+        final ObjectId featureId = resolve("HEAD:" + pointsName + "/" + idP1);
+        geogig.getRepository().objectDatabase().delete(featureId);
+
+        for (boolean verifyHashes : new boolean[] { true, false }) {
+            Report report = geogig.command(FsckOp.class).setVerifyHashes(verifyHashes).call();
+            assertEquals(1, report.getProblemCount());
+            Problem problem = report.getProblems().get(0);
+            assertEquals(ProblemType.MISSING, problem.getType());
+            assertEquals(featureId, problem.getObjectId());
+            assertEquals(TYPE.FEATURE, problem.getObjectType());
+            assertEquals(NodeRef.appendChild(pointsName, idP1), problem.getPath());
+        }
+    }
+
+    @Test
+    public void testMissingTreeReportedOnceForAllRefs() throws Exception {
+        populate(true, points1, lines1);
+        final ObjectId treeId = resolve("HEAD:" + linesName);
+        geogig.getRepository().objectDatabase().delete(treeId);
+
+        Report report = geogig.command(FsckOp.class).call();
+        assertEquals(1, report.getProblemCount());
+        Problem problem = report.getProblems().get(0);
+        assertEquals(ProblemType.MISSING, problem.getType());
+        assertEquals(treeId, problem.getObjectId());
+        assertEquals(TYPE.TREE, problem.getObjectType());
+        assertEquals(linesName, problem.getPath());
+    }
+
+    @Test
+    public void testMissingParentCommit() throws Exception {
+        List<RevCommit> commits = populate(true, points1, points2, points3);
+        final RevCommit first = commits.get(0);
+        geogig.getRepository().objectDatabase().delete(first.getId());
+
+        Report report = geogig.command(FsckOp.class).setRefs(ImmutableList.of(Ref.MASTER))
+                .call();
+        assertEquals(1, report.getProblemCount());
+        Problem problem = report.getProblems().get(0);
+        assertEquals(ProblemType.MISSING, problem.getType());
+        assertEquals(first.getId(), problem.getObjectId());
+        assertEquals(TYPE.COMMIT, problem.getObjectType());
+        assertEquals(Ref.MASTER, problem.getRef());
+        assertEquals(commits.get(1).getId(), problem.getCommitId());
+    }
+
+    @Test
+    public void testCorruptFeature() throws Exception {
+        populate(true, points1, lines1);
+        final ObjectId featureId = resolve("HEAD:" + pointsName + "/" + idP1);
+        ObjectDatabase db = geogig.getRepository().objectDatabase();
+        db.delete(featureId);
+        db.put(RevFeatureBuilder.builder().addValue("corrupt").build(featureId));
+
+        Report report = geogig.command(FsckOp.class).call();
+        assertEquals(1, report.getProblemCount());
+        Problem problem = report.getProblems().get(0);
+        assertEquals(ProblemType.CORRUPT, problem.getType());
+        assertEquals(featureId, problem.getObjectId());
+        assertEquals(NodeRef.appendChild(pointsName, idP1), problem.getPath());
+
+        // existence only checks can't tell
+        assertTrue(geogig.command(FsckOp.class).setVerifyHashes(false).call().isClean());
+    }
+
+    @Test
+    public void testMaxReportedProblems() throws Exception {
+        populate(true, points1, points2, points3);
+        ObjectDatabase db = geogig.getRepository().objectDatabase();
+        db.delete(resolve("HEAD:" + pointsName + "/" + idP1));
+        db.delete(resolve("HEAD:" + pointsName + "/" + idP2));
+        db.delete(resolve("HEAD:" + pointsName + "/" + idP3));
+
+        Report report = geogig.command(FsckOp.class).setMaxReportedProblems(2).call();
+        assertFalse(report.isClean());
+        assertEquals(3, report.getProblemCount());
+        assertEquals(2, report.getProblems().size());
+    }
+}
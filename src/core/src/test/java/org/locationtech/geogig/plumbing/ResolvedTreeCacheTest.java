@@ -0,0 +1,142 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.plumbing;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.Ref;
+import org.locationtech.geogig.model.RevCommit;
+import org.locationtech.geogig.model.RevTree;
+import org.locationtech.geogig.plumbing.index.CreateIndexInfoOp;
+import org.locationtech.geogig.porcelain.CommitOp;
+import org.locationtech.geogig.repository.IndexInfo;
+import org.locationtech.geogig.repository.IndexInfo.IndexType;
+import org.locationtech.geogig.repository.NodeRef;
+import org.locationtech.geogig.repository.impl.GeogigTransaction;
+import org.locationtech.geogig.test.integration.RepositoryTestCase;
+
+import com.google.common.base.Optional;
+
+public class ResolvedTreeCacheTest extends RepositoryTestCase {
+
+    private static final long ONE_MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    @Override
+    protected void setUpInternal() throws Exception {
+        injector.configDatabase().put("user.name", "groldan");
+        injector.configDatabase().put("user.email", "groldan@boundlessgeo.com");
+    }
+
+    @Test
+    public void testSingleInstancePerRepository() {
+        ResolvedTreeCache cache = geogig.command(ResolveTreeCache.class).call();
+        assertNotNull(cache);
+        assertSame(cache, geogig.command(ResolveTreeCache.class).call());
+    }
+
+    @Test
+    public void testResolveRootTreeInvalidatedByUpdateRef() throws Exception {
+        final ResolvedTreeCache cache = geogig.command(ResolveTreeCache.class).call();
+        insertAndAdd(points1);
+        RevCommit c1 = geogig.command(CommitOp.class).setMessage("c1").call();
+        assertEquals(Optional.of(c1.getTreeId()), cache.resolveRootTree(injector, Ref.HEAD));
+
+        insertAndAdd(points2);
+        RevCommit c2 = geogig.command(CommitOp.class).setMessage("c2").call();
+        assertEquals(Optional.of(c2.getTreeId()), cache.resolveRootTree(injector, Ref.HEAD));
+        assertEquals(Optional.of(c1.getTreeId()), cache.resolveRootTree(injector, "HEAD~1"));
+    }
+
+    @Test
+    public void testRefsAreCached() throws Exception {
+        final ResolvedTreeCache cache = new ResolvedTreeCache(ONE_MINUTE);
+        insertAndAdd(points1);
+        RevCommit c1 = geogig.command(CommitOp.class).setMessage("c1").call();
+        insertAndAdd(points2);
+        RevCommit c2 = geogig.command(CommitOp.class).setMessage("c2").call();
+
+        assertEquals(Optional.of(c2.getTreeId()), cache.resolveRootTree(injector, Ref.MASTER));
+        Ref master = cache.resolveRef(injector, Ref.MASTER).get();
+        assertEquals(c2.getId(), master.getObjectId());
+
+        // bypass UpdateRef, the cache shall not notice
+        injector.refDatabase().putRef(Ref.MASTER, c1.getId().toString());
+        assertEquals(Optional.of(c2.getTreeId()), cache.resolveRootTree(injector, Ref.MASTER));
+        assertEquals(c2.getId(), cache.resolveRef(injector, Ref.MASTER).get().getObjectId());
+
+        cache.invalidateRefs();
+        assertEquals(Optional.of(c1.getTreeId()), cache.resolveRootTree(injector, Ref.MASTER));
+        assertEquals(c1.getId(), cache.resolveRef(injector, Ref.MASTER).get().getObjectId());
+    }
+
+    @Test
+    public void testZeroMaxAgeDisablesRefCaching() throws Exception {
+        final ResolvedTreeCache cache = new ResolvedTreeCache(0);
+        insertAndAdd(points1);
+        RevCommit c1 = geogig.command(CommitOp.class).setMessage("c1").call();
+        insertAndAdd(points2);
+        RevCommit c2 = geogig.command(CommitOp.class).setMessage("c2").call();
+
+        assertEquals(Optional.of(c2.getTreeId()), cache.resolveRootTree(injector, Ref.MASTER));
+        injector.refDatabase().putRef(Ref.MASTER, c1.getId().toString());
+        assertEquals(Optional.of(c1.getTreeId()), cache.resolveRootTree(injector, Ref.MASTER));
+    }
+
+    @Test
+    public void testResolveTreeRef() throws Exception {
+        final ResolvedTreeCache cache = geogig.command(ResolveTreeCache.class).call();
+        insertAndAdd(points1, lines1);
+        RevCommit c1 = geogig.command(CommitOp.class).setMessage("c1").call();
+
+        RevTree root = injector.objectDatabase().getTree(c1.getTreeId());
+        Optional<NodeRef> expected = geogig.command(FindTreeChild.class).setParent(root)
+                .setChildPath(pointsName).call();
+        assertTrue(expected.isPresent());
+
+        assertEquals(expected, cache.resolveTreeRef(injector, Ref.HEAD, pointsName));
+        assertEquals(expected, cache.resolveTreeRef(injector, c1.getTreeId(), pointsName));
+        assertFalse(cache.resolveTreeRef(injector, Ref.HEAD, "nonexistent").isPresent());
+        assertFalse(
+                cache.resolveTreeRef(injector, RevTree.EMPTY_TREE_ID, pointsName).isPresent());
+    }
+
+    @Test
+    public void testTransactionRefsKeptApart() throws Exception {
+        final ResolvedTreeCache cache = geogig.command(ResolveTreeCache.class).call();
+        insertAndAdd(points1);
+        geogig.command(CommitOp.class).setMessage("c1").call();
+        final ObjectId workHead = cache.resolveRootTree(injector, Ref.WORK_HEAD).get();
+
+        GeogigTransaction tx = geogig.command(TransactionBegin.class).call();
+        try {
+            insert(tx, points2);
+            ObjectId txWorkHead = cache.resolveRootTree(tx, Ref.WORK_HEAD).get();
+            assertFalse(workHead.equals(txWorkHead));
+            assertEquals(workHead, cache.resolveRootTree(injector, Ref.WORK_HEAD).get());
+        } finally {
+            tx.abort();
+        }
+    }
+
+    @Test
+    public void testIndexInfoInvalidatedByCreateIndex() throws Exception {
+        final ResolvedTreeCache cache = geogig.command(ResolveTreeCache.class).call();
+        insertAndAdd(points1);
+        geogig.command(CommitOp.class).setMessage("c1").call();
+
+        assertFalse(cache.getIndexInfo(injector, pointsName, "pp").isPresent());
+
+        IndexInfo index = geogig.command(CreateIndexInfoOp.class).setTreeName(pointsName)
+                .setAttributeName("pp").setIndexType(IndexType.QUADTREE).call();
+        assertEquals(Optional.of(index), cache.getIndexInfo(injector, pointsName, "pp"));
+    }
+}
@@ -183,6 +183,17 @@ public class DepthTreeIteratorTest extends Assert {
         assertEquals(numSubTrees, list(mixedBucketsTree, Strategy.RECURSIVE_TREES_ONLY).size());
     }
 
+    @Test
+    public void testReadAhead() {
+        for (Strategy strategy : Strategy.values()) {
+            List<NodeRef> expected = Lists
+                    .newArrayList(iterator(featuresBucketsTree, strategy).setReadAhead(1));
+            assertEquals(strategy.toString(), expected, list(featuresBucketsTree, strategy));
+            assertEquals(strategy.toString(), expected, Lists
+                    .newArrayList(iterator(featuresBucketsTree, strategy).setReadAhead(5)));
+        }
+    }
+
     private List<NodeRef> list(RevTree tree, Strategy strategy) {
         List<NodeRef> refs = Lists.newArrayList(iterator(tree, strategy));
         return refs;
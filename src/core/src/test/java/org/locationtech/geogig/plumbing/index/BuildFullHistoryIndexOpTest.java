@@ -20,7 +20,9 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.locationtech.geogig.model.Node;
+import org.locationtech.geogig.model.ObjectId;
 import org.locationtech.geogig.model.RevTree;
+import org.locationtech.geogig.plumbing.ResolveTreeish;
 import org.locationtech.geogig.porcelain.BranchCreateOp;
 import org.locationtech.geogig.porcelain.CheckoutOp;
 import org.locationtech.geogig.porcelain.RemoveOp;
@@ -31,6 +33,7 @@ import org.locationtech.geogig.repository.Repository;
 import org.locationtech.geogig.storage.IndexDatabase;
 import org.locationtech.geogig.test.integration.RepositoryTestCase;
 
+import com.google.common.base.Optional;
 import com.vividsolutions.jts.geom.Envelope;
 
 public class BuildFullHistoryIndexOpTest extends RepositoryTestCase {
@@ -100,6 +103,29 @@ public class BuildFullHistoryIndexOpTest extends RepositoryTestCase {
         assertEquals(4, treesUpdated);
     }
 
+    @Test
+    public void testBuildFullHistoryIndexesAllVersions() {
+        indexInfo = createIndex();
+        for (long memoryBudget : new long[] { 1, Long.MAX_VALUE }) {
+            int treesUpdated = geogig.command(BuildFullHistoryIndexOp.class)//
+                    .setTreeRefSpec(indexInfo.getTreeName())//
+                    .setMemoryBudget(memoryBudget)//
+                    .call();
+            assertEquals(4, treesUpdated);
+
+            for (String refSpec : new String[] { "master", "master~1", "master~2", "branch1" }) {
+                Optional<ObjectId> treeId = geogig.command(ResolveTreeish.class)
+                        .setTreeish(refSpec + ":" + indexInfo.getTreeName()).call();
+                assertTrue(treeId.isPresent());
+                Optional<ObjectId> indexTreeId = indexdb.resolveIndexedTree(indexInfo,
+                        treeId.get());
+                assertTrue(refSpec, indexTreeId.isPresent());
+                RevTree canonical = getRepository().objectDatabase().getTree(treeId.get());
+                assertEquals(canonical.size(), indexdb.getTree(indexTreeId.get()).size());
+            }
+        }
+    }
+
     @Test
     public void testBuildFullHistoryNoAttributeName() {
         indexInfo = createIndex();
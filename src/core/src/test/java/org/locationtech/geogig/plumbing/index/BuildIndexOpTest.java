@@ -118,6 +118,35 @@ public class BuildIndexOpTest extends RepositoryTestCase {
         verifyMaterializedNodes(newIndexTree);
     }
 
+    @Test
+    public void testParallelCreatesSameIndex() {
+        indexInfo = createIndex();
+        checkParallelCreatesSameIndex();
+    }
+
+    @Test
+    public void testParallelCreatesSameMaterializedIndex() {
+        indexInfo = createIndex("x", "y", "xystr");
+        RevTree indexTree = checkParallelCreatesSameIndex();
+        verifyMaterializedNodes(indexTree);
+    }
+
+    @Test
+    public void testParallelRemovesAllEntriesFromIndex() {
+        indexInfo = createIndex("x", "y", "xystr");
+        createIndexFor(worldPointsTree);
+
+        RevTree deletedNodesIndexTree = updateIndex(worldPointsTree, RevTree.EMPTY, true);
+        assertEquals(RevTree.EMPTY, deletedNodesIndexTree);
+    }
+
+    private RevTree checkParallelCreatesSameIndex() {
+        RevTree sequential = updateIndex(RevTree.EMPTY, worldPointsTree, false);
+        RevTree parallel = updateIndex(RevTree.EMPTY, worldPointsTree, true);
+        assertEquals(sequential.getId(), parallel.getId());
+        return parallel;
+    }
+
     private RevTree checkUpdatesNodes() {
         final RevTree oldCanonicalTree = worldPointsTree;
         final RevTree newCanonicalTree;
@@ -167,9 +196,15 @@ public class BuildIndexOpTest extends RepositoryTestCase {
     }
 
     private RevTree updateIndex(final RevTree oldCanonicalTree, final RevTree newCanonicalTree) {
+        return updateIndex(oldCanonicalTree, newCanonicalTree, false);
+    }
+
+    private RevTree updateIndex(final RevTree oldCanonicalTree, final RevTree newCanonicalTree,
+            final boolean parallel) {
 
         Repository repo = getRepository();
         BuildIndexOp command = repo.command(BuildIndexOp.class);
+        command.setParallel(parallel);
         command.setIndex(indexInfo);
         command.setOldCanonicalTree(oldCanonicalTree);
         command.setNewCanonicalTree(newCanonicalTree);
@@ -0,0 +1,179 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.remote;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.geogig.model.Node;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevCommit;
+import org.locationtech.geogig.model.RevFeature;
+import org.locationtech.geogig.model.RevObject;
+import org.locationtech.geogig.model.RevObject.TYPE;
+import org.locationtech.geogig.model.RevTree;
+import org.locationtech.geogig.model.impl.CanonicalTreeBuilder;
+import org.locationtech.geogig.model.impl.CommitBuilder;
+import org.locationtech.geogig.model.impl.RevObjectTestSupport;
+import org.locationtech.geogig.model.impl.RevTreeBuilder;
+import org.locationtech.geogig.repository.AutoCloseableIterator;
+import org.locationtech.geogig.repository.impl.PostOrderIterator;
+import org.locationtech.geogig.storage.memory.HeapDeduplicator;
+import org.locationtech.geogig.storage.memory.HeapObjectStore;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+public class ParallelObjectWalkTest {
+
+    private HeapObjectStore store;
+
+    private RevCommit commit1;
+
+    private RevCommit commit2;
+
+    @Before
+    public void before() {
+        store = new HeapObjectStore();
+        store.open();
+
+        RevTreeBuilder layer = CanonicalTreeBuilder.create(store);
+        for (int i = 0; i < 2000; i++) {
+            layer.put(feature("f" + i, i));
+        }
+        RevTree layer1 = layer.build();
+        store.put(layer1);
+        commit1 = commit(root(layer1));
+
+        layer = CanonicalTreeBuilder.create(store, layer1);
+        for (int i = 0; i < 10; i++) {
+            layer.put(feature("f" + i, -i - 1));
+        }
+        for (int i = 2000; i < 2005; i++) {
+            layer.put(feature("f" + i, i));
+        }
+        RevTree layer2 = layer.build();
+        store.put(layer2);
+        commit2 = commit(root(layer2), commit1.getId());
+    }
+
+    @After
+    public void after() {
+        store.close();
+    }
+
+    private Node feature(String name, int value) {
+        RevFeature feature = RevObjectTestSupport.feature(name, Integer.valueOf(value));
+        store.put(feature);
+        return Node.create(name, feature.getId(), ObjectId.NULL, TYPE.FEATURE, null);
+    }
+
+    private RevTree root(RevTree layer) {
+        RevTree root = CanonicalTreeBuilder.create(store)
+                .put(Node.create("layer", layer.getId(), ObjectId.NULL, TYPE.TREE, null))
+                .build();
+        store.put(root);
+        return root;
+    }
+
+    private RevCommit commit(RevTree root, ObjectId... parents) {
+        RevCommit commit = new CommitBuilder().setTreeId(root.getId())
+                .setParentIds(ImmutableList.copyOf(parents)).setMessage("commit").build();
+        store.put(commit);
+        return commit;
+    }
+
+    private List<ObjectId> walk(List<ObjectId> want, List<ObjectId> have,
+            boolean traverseCommits) {
+        ParallelObjectWalk walk = new ParallelObjectWalk(store, new HeapDeduplicator());
+        List<ObjectId> ids = new ArrayList<>();
+        try (AutoCloseableIterator<RevObject> objects = walk.walk(want, have, traverseCommits)) {
+            objects.forEachRemaining((o) -> ids.add(o.getId()));
+        }
+        return ids;
+    }
+
+    private Set<ObjectId> reachable(ObjectId id) {
+        Set<ObjectId> ids = new HashSet<>();
+        PostOrderIterator.all(id, store, new HeapDeduplicator())
+                .forEachRemaining((o) -> ids.add(o.getId()));
+        return ids;
+    }
+
+    @Test
+    public void testAll() {
+        List<ObjectId> ids = walk(ImmutableList.of(commit2.getId()), ImmutableList.of(), true);
+        assertEquals(reachable(commit2.getId()), new HashSet<>(ids));
+        assertEquals("duplicates found", ids.size(), new HashSet<>(ids).size());
+
+        int commit1Index = ids.indexOf(commit1.getId());
+        int commit2Index = ids.indexOf(commit2.getId());
+        assertTrue(commit1Index < commit2Index);
+        assertEquals(ids.size() - 1, commit2Index);
+        assertTrue(ids.indexOf(commit1.getTreeId()) < commit1Index);
+    }
+
+    @Test
+    public void testHave() {
+        List<ObjectId> ids = walk(ImmutableList.of(commit2.getId()),
+                ImmutableList.of(commit1.getId()), true);
+
+        Set<ObjectId> expected = Sets.difference(reachable(commit2.getId()),
+                reachable(commit1.getId()));
+        assertEquals(expected, new HashSet<>(ids));
+        assertEquals(commit2.getId(), ids.get(ids.size() - 1));
+        assertFalse(ids.contains(commit1.getId()));
+    }
+
+    @Test
+    public void testNoTraverseCommits() {
+        List<ObjectId> ids = walk(ImmutableList.of(commit2.getId()),
+                ImmutableList.of(commit1.getId()), false);
+        Set<ObjectId> expected = Sets.difference(reachable(commit2.getId()),
+                reachable(commit1.getId()));
+        assertEquals(expected, new HashSet<>(ids));
+
+        // commit1 is not known to the receiver, but commit2 is diffed against it once sent
+        ids = walk(ImmutableList.of(commit1.getId(), commit2.getId()), ImmutableList.of(),
+                false);
+        assertEquals(reachable(commit2.getId()), new HashSet<>(ids));
+        assertEquals(ids.size(), new HashSet<>(ids).size());
+        assertTrue(ids.indexOf(commit1.getId()) < ids.indexOf(commit2.getId()));
+    }
+
+    @Test
+    public void testNothingToSend() {
+        List<ObjectId> ids = walk(ImmutableList.of(commit1.getId()),
+                ImmutableList.of(commit1.getId()), true);
+        assertTrue(ids.isEmpty());
+    }
+
+    @Test
+    public void testCloseEarly() {
+        ParallelObjectWalk walk = new ParallelObjectWalk(store, new HeapDeduplicator());
+        AutoCloseableIterator<RevObject> objects = walk
+                .walk(Lists.newArrayList(commit2.getId()), ImmutableList.of(), true);
+        for (int i = 0; i < 10; i++) {
+            objects.next();
+        }
+        objects.close();
+        assertFalse(objects.hasNext());
+    }
+}
@@ -0,0 +1,129 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.storage.datastream;
+
+import static com.google.common.io.ByteStreams.newDataOutput;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Test;
+
+import com.google.common.io.ByteArrayDataOutput;
+
+public class ByteBufferDataInputTest {
+
+    @Test
+    public void testReadAll() throws IOException {
+        ByteArrayDataOutput out = newDataOutput();
+        out.writeBoolean(true);
+        out.writeBoolean(false);
+        out.writeByte(-2);
+        out.writeByte(254);
+        out.writeShort(-1000);
+        out.writeShort(65000);
+        out.writeChar('g');
+        out.writeInt(Integer.MIN_VALUE);
+        out.writeLong(Long.MAX_VALUE);
+        out.writeFloat(1.5f);
+        out.writeDouble(-0.25);
+        out.writeUTF("geogig áé");
+        out.write(new byte[] { 1, 2, 3 });
+
+        final byte[] bytes = out.toByteArray();
+        // read out of the middle of a larger array
+        byte[] data = new byte[bytes.length + 10];
+        System.arraycopy(bytes, 0, data, 5, bytes.length);
+
+        ByteBufferDataInput in = ByteBufferDataInput.wrap(data, 5, bytes.length);
+        assertTrue(in.readBoolean());
+        assertFalse(in.readBoolean());
+        assertEquals(-2, in.readByte());
+        assertEquals(254, in.readUnsignedByte());
+        assertEquals(-1000, in.readShort());
+        assertEquals(65000, in.readUnsignedShort());
+        assertEquals('g', in.readChar());
+        assertEquals(Integer.MIN_VALUE, in.readInt());
+        assertEquals(Long.MAX_VALUE, in.readLong());
+        assertEquals(1.5f, in.readFloat(), 0f);
+        assertEquals(-0.25, in.readDouble(), 0d);
+        assertEquals("geogig áé", in.readUTF());
+        byte[] tail = new byte[3];
+        in.readFully(tail);
+        assertArrayEquals(new byte[] { 1, 2, 3 }, tail);
+        assertEquals(0, in.remaining());
+    }
+
+    @Test
+    public void testBigEndianRegardlessOfBufferOrder() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(new byte[] { 0, 0, 0, 1 }).flip();
+        assertEquals(1, new ByteBufferDataInput(buffer).readInt());
+    }
+
+    @Test
+    public void testSkipBytes() throws IOException {
+        ByteBufferDataInput in = ByteBufferDataInput.wrap(new byte[] { 1, 2, 3, 4 }, 0, 4);
+        assertEquals(2, in.skipBytes(2));
+        assertEquals(3, in.readByte());
+        assertEquals(1, in.skipBytes(10));
+        assertEquals(0, in.skipBytes(1));
+    }
+
+    @SuppressWarnings("deprecation")
+    @Test
+    public void testReadLine() throws IOException {
+        final byte[] data = "first\nsecond\r\nthird\rfourth \u00e9\n\n\rlast"
+                .getBytes("ISO-8859-1");
+        ByteBufferDataInput in = ByteBufferDataInput.wrap(data, 0, data.length);
+        DataInputStream expected = new DataInputStream(new ByteArrayInputStream(data));
+        String line;
+        do {
+            line = expected.readLine();
+            assertEquals(line, in.readLine());
+        } while (line != null);
+        assertEquals(0, in.remaining());
+        assertNull(in.readLine());
+
+        // a trailing carriage return is consumed without reading past the limit
+        in = ByteBufferDataInput.wrap(new byte[] { 'a', '\r', '\n' }, 0, 2);
+        assertEquals("a", in.readLine());
+        assertEquals(0, in.remaining());
+    }
+
+    @Test
+    public void testEOF() throws IOException {
+        ByteBufferDataInput in = ByteBufferDataInput.wrap(new byte[] { 1, 2, 3, 4, 5 }, 1, 3);
+        try {
+            in.readInt();
+            fail("expected EOFException");
+        } catch (EOFException expected) {
+            assertEquals(3, in.remaining());
+        }
+        in.readShort();
+        in.readByte();
+        try {
+            in.readByte();
+            fail("expected EOFException");
+        } catch (EOFException expected) {
+            assertEquals(0, in.remaining());
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.storage.datastream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+public class EncodeBufferTest {
+
+    @Test
+    public void testReusedOnceReleased() throws IOException {
+        EncodeBuffer buffer;
+        try (EncodeBuffer b = EncodeBuffer.acquire()) {
+            b.asDataOutput().writeInt(1);
+            assertEquals(4, b.size());
+            buffer = b;
+        }
+        try (EncodeBuffer b = EncodeBuffer.acquire()) {
+            assertSame(buffer, b);
+            assertEquals(0, b.size());
+        }
+    }
+
+    @Test
+    public void testNestedAcquisitions() {
+        try (EncodeBuffer outer = EncodeBuffer.acquire()) {
+            try (EncodeBuffer inner = EncodeBuffer.acquire()) {
+                assertNotSame(outer, inner);
+            }
+        }
+    }
+
+    @Test
+    public void testLargeBuffersNotPooled() {
+        EncodeBuffer buffer;
+        try (EncodeBuffer b = EncodeBuffer.acquire()) {
+            b.write(new byte[2 * 1024 * 1024], 0, 2 * 1024 * 1024);
+            buffer = b;
+        }
+        try (EncodeBuffer b = EncodeBuffer.acquire()) {
+            assertNotSame(buffer, b);
+        }
+    }
+
+    @Test
+    public void testCloseIsIdempotent() {
+        EncodeBuffer buffer = EncodeBuffer.acquire();
+        buffer.close();
+        buffer.close();
+        try (EncodeBuffer b1 = EncodeBuffer.acquire(); EncodeBuffer b2 = EncodeBuffer.acquire()) {
+            assertSame(buffer, b1);
+            assertNotSame(b1, b2);
+        }
+    }
+}
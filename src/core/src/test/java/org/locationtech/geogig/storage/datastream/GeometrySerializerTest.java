@@ -0,0 +1,173 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.storage.datastream;
+
+import static com.google.common.io.ByteStreams.newDataInput;
+import static com.google.common.io.ByteStreams.newDataOutput;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import com.google.common.io.ByteArrayDataOutput;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.impl.CoordinateArraySequence;
+import com.vividsolutions.jts.geom.impl.PackedCoordinateSequence;
+import com.vividsolutions.jts.io.WKBWriter;
+import com.vividsolutions.jts.io.WKTReader;
+
+public class GeometrySerializerTest {
+
+    private final GeometrySerializer serializer = GeometrySerializer.INSTANCE;
+
+    @Test
+    public void testAllGeometryTypes() throws Exception {
+        roundTrip("POINT(1 2)");
+        roundTrip("POINT EMPTY");
+        roundTrip("LINESTRING(0 0, 1.5 1.25, -180 -90, 180 90)");
+        roundTrip("LINESTRING EMPTY");
+        roundTrip("POLYGON((0 0, 10 0, 10 10, 0 10, 0 0))");
+        roundTrip("POLYGON((0 0, 10 0, 10 10, 0 10, 0 0), (1 1, 2 1, 2 2, 1 1))");
+        roundTrip("POLYGON EMPTY");
+        roundTrip("MULTIPOINT((1 1), (-2.5 3))");
+        roundTrip("MULTIPOINT EMPTY");
+        roundTrip("MULTILINESTRING((0 0, 1 1), (2 2, 3.333 3))");
+        roundTrip("MULTIPOLYGON(((0 0, 1 0, 1 1, 0 0)), "
+                + "((5 5, 6 5, 6 6, 5 5), (5.1 5.1, 5.2 5.1, 5.2 5.2, 5.1 5.1)))");
+        roundTrip("GEOMETRYCOLLECTION(POINT(1 1), LINESTRING(0 0, 1 1), "
+                + "POLYGON((0 0, 1 0, 1 1, 0 0)))");
+        roundTrip("GEOMETRYCOLLECTION(MULTIPOINT((1 1)), GEOMETRYCOLLECTION(POINT(2 2)))");
+        roundTrip("GEOMETRYCOLLECTION EMPTY");
+    }
+
+    @Test
+    public void testPrecision() throws Exception {
+        assertEquals(0, GeometrySerializer.precision(geom("POINT(1 -2)")));
+        assertEquals(3, GeometrySerializer.precision(geom("LINESTRING(1.5 2, 1.123 0)")));
+        assertEquals(7, GeometrySerializer.precision(geom("POINT(-73.9856719 40.7484405)")));
+        assertEquals(GeometrySerializer.RAW,
+                GeometrySerializer.precision(geom("POINT(0.1234567890123456 1)")));
+        assertEquals(GeometrySerializer.RAW, GeometrySerializer.precision(geom("POINT(1e300 1)")));
+    }
+
+    @Test
+    public void testLossless() throws Exception {
+        GeometryFactory gf = new GeometryFactory();
+        Coordinate[] coords = new Coordinate[1000];
+        for (int i = 0; i < coords.length; i++) {
+            coords[i] = new Coordinate(Math.PI * i, Math.E * -i);
+        }
+        roundTrip(gf.createLineString(coords));
+
+        coords = new Coordinate[] { new Coordinate(0.1, 0.2), new Coordinate(1d / 3, 2d / 3) };
+        roundTrip(gf.createLineString(coords));
+    }
+
+    @Test
+    public void testNegativeZero() throws Exception {
+        assertEquals(GeometrySerializer.RAW, GeometrySerializer.precision(geom("POINT(-0.0 1)")));
+        assertEquals(GeometrySerializer.RAW,
+                GeometrySerializer.precision(geom("LINESTRING(1.5 2, 0 -0.0)")));
+
+        Geometry geom = geom("LINESTRING(1.5 2, -0.0 -0.0, 0 0)");
+        Geometry decoded = roundTrip(geom);
+        Coordinate[] expected = geom.getCoordinates();
+        Coordinate[] actual = decoded.getCoordinates();
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(Double.doubleToRawLongBits(expected[i].x),
+                    Double.doubleToRawLongBits(actual[i].x));
+            assertEquals(Double.doubleToRawLongBits(expected[i].y),
+                    Double.doubleToRawLongBits(actual[i].y));
+        }
+        assertEquals(geom.hashCode(), decoded.hashCode());
+        assertEquals(geom("POINT(-0.0 0)").hashCode(), roundTrip("POINT(-0.0 0)").hashCode());
+    }
+
+    @Test
+    public void testDecodesPackedSequences() throws Exception {
+        Geometry decoded = roundTrip("LINESTRING(0 0, 1 1, 2 2)");
+        assertTrue(((LineString) decoded)
+                .getCoordinateSequence() instanceof PackedCoordinateSequence.Double);
+
+        // other sequence factories get a copy
+        GeometryFactory gf = new GeometryFactory();
+        decoded = serializer.read(newDataInput(encode(geom("LINESTRING(0 0, 1 1)"))), gf);
+        assertEquals(geom("LINESTRING(0 0, 1 1)"), decoded);
+        assertTrue(((LineString) decoded)
+                .getCoordinateSequence() instanceof CoordinateArraySequence);
+    }
+
+    @Test
+    public void testReadEnvelope() throws Exception {
+        assertEnvelope("POINT(1 2)");
+        assertEnvelope("POINT EMPTY");
+        assertEnvelope("LINESTRING(0 0, 1.5 1.25, -180 -90, 180 90)");
+        assertEnvelope("LINESTRING EMPTY");
+        assertEnvelope("POLYGON((0 0, 10 0, 10 10, 0 10, 0 0), (1 1, 2 1, 2 2, 1 1))");
+        assertEnvelope("MULTIPOINT((1 1), (-2.5 3))");
+        assertEnvelope("GEOMETRYCOLLECTION(POINT(1 1), LINESTRING(0 0, -1 -1))");
+        assertEnvelope("GEOMETRYCOLLECTION EMPTY");
+        assertEnvelope("LINESTRING(0.1234567890123456 1, 3 -0.1234567890123456)");
+    }
+
+    private void assertEnvelope(String wkt) throws Exception {
+        Geometry geom = geom(wkt);
+        Envelope expected = geom.getEnvelopeInternal();
+        Envelope actual = serializer.readEnvelope(newDataInput(encode(geom)));
+        assertEquals(wkt, expected, actual);
+        // the envelope doesn't get in the way of decoding the geometry
+        roundTrip(geom);
+    }
+
+    @Test
+    public void testSize() throws Exception {
+        GeometryFactory gf = new GeometryFactory();
+        Coordinate[] coords = new Coordinate[1000];
+        for (int i = 0; i < coords.length; i++) {
+            // 7 decimal digits
+            double x = (-739856719 + i * 100) / 1e7;
+            double y = (407484405 - i * 100) / 1e7;
+            coords[i] = new Coordinate(x, y);
+        }
+        Geometry line = roundTrip(gf.createLineString(coords));
+        int wkbSize = new WKBWriter().write(line).length;
+        int size = encode(line).length;
+        assertTrue(String.format("expected at least 3x smaller than WKB: %d vs %d", size, wkbSize),
+                3 * size < wkbSize);
+    }
+
+    private Geometry geom(String wkt) throws Exception {
+        return new WKTReader().read(wkt);
+    }
+
+    private Geometry roundTrip(String wkt) throws Exception {
+        return roundTrip(geom(wkt));
+    }
+
+    private Geometry roundTrip(Geometry geom) throws IOException {
+        byte[] encoded = encode(geom);
+        Geometry decoded = serializer.read(newDataInput(encoded));
+        assertTrue(String.format("expected %s, got %s", geom, decoded), geom.equalsExact(decoded));
+        assertEquals(geom.getGeometryType(), decoded.getGeometryType());
+        return decoded;
+    }
+
+    private byte[] encode(Geometry geom) throws IOException {
+        ByteArrayDataOutput out = newDataOutput();
+        serializer.write(geom, out);
+        return out.toByteArray();
+    }
+}
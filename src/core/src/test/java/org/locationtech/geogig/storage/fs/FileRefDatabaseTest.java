@@ -9,18 +9,187 @@
  */
 package org.locationtech.geogig.storage.fs;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.Ref;
+import org.locationtech.geogig.model.impl.RevObjectTestSupport;
 import org.locationtech.geogig.repository.Platform;
 import org.locationtech.geogig.storage.ConfigDatabase;
 import org.locationtech.geogig.storage.RefDatabase;
 import org.locationtech.geogig.test.integration.repository.RefDatabaseTest;
 
+import com.google.common.collect.ImmutableMap;
+
 public class FileRefDatabaseTest extends RefDatabaseTest {
 
+    private ConfigDatabase configDB;
+
     @Override
     protected RefDatabase createDatabase(Platform platform) throws Exception {
-        ConfigDatabase configDB = new IniFileConfigDatabase(platform);
+        configDB = new IniFileConfigDatabase(platform);
 
         return new FileRefDatabase(platform, configDB, null);
     }
 
+    private File repoDir() {
+        return new File(new File(tmpFolder.getRoot(), "repo"), ".geogig");
+    }
+
+    private String id(String s) {
+        return RevObjectTestSupport.hashString(s).toString();
+    }
+
+    @Test
+    public void testPack() {
+        refDb.putRef("refs/heads/master", id("master"));
+        refDb.putRef("refs/heads/branch1", id("branch1"));
+        refDb.putRef("refs/tags/tag1", id("tag1"));
+        refDb.putSymRef("refs/remotes/origin/HEAD", "refs/remotes/origin/master");
+        refDb.putRef(Ref.HEAD, id("head"));
+
+        ((FileRefDatabase) refDb).pack();
+
+        assertTrue(new File(repoDir(), FileRefDatabase.PACKED_REFS).exists());
+        assertFalse(new File(repoDir(), "refs/heads/master").exists());
+        assertFalse(new File(repoDir(), "refs/heads").exists());
+        assertFalse(new File(repoDir(), "refs/remotes").exists());
+        assertTrue(new File(repoDir(), "refs").exists());
+        assertTrue("top level refs shall not be packed", new File(repoDir(), Ref.HEAD).exists());
+
+        assertEquals(id("master"), refDb.getRef("refs/heads/master"));
+        assertEquals(id("tag1"), refDb.getRef("refs/tags/tag1"));
+        assertEquals("refs/remotes/origin/master", refDb.getSymRef("refs/remotes/origin/HEAD"));
+        assertEquals(id("head"), refDb.getRef(Ref.HEAD));
+
+        assertEquals(ImmutableMap.of("refs/heads/branch1", id("branch1"), "refs/heads/master",
+                id("master")), refDb.getAll(Ref.HEADS_PREFIX));
+        assertEquals(ImmutableMap.of("refs/remotes/origin/HEAD", "refs/remotes/origin/master"),
+                refDb.getAll(Ref.REMOTES_PREFIX));
+    }
+
+    @Test
+    public void testLooseOverridesPacked() {
+        refDb.putRef("refs/heads/master", id("master"));
+        ((FileRefDatabase) refDb).pack();
+
+        refDb.putRef("refs/heads/master", id("master2"));
+        refDb.putRef("refs/heads/branch1", id("branch1"));
+        assertTrue(new File(repoDir(), "refs/heads/master").exists());
+
+        assertEquals(id("master2"), refDb.getRef("refs/heads/master"));
+        assertEquals(ImmutableMap.of("refs/heads/branch1", id("branch1"), "refs/heads/master",
+                id("master2")), refDb.getAll(Ref.HEADS_PREFIX));
+
+        ((FileRefDatabase) refDb).pack();
+        assertFalse(new File(repoDir(), "refs/heads/master").exists());
+        assertEquals(id("master2"), refDb.getRef("refs/heads/master"));
+    }
+
+    @Test
+    public void testRemovePacked() {
+        refDb.putRef("refs/heads/master", id("master"));
+        refDb.putRef("refs/heads/branch1", id("branch1"));
+        ((FileRefDatabase) refDb).pack();
+        refDb.putRef("refs/heads/branch1", id("branch1.2"));
+
+        assertEquals(id("master"), refDb.remove("refs/heads/master"));
+        assertNull(refDb.getRef("refs/heads/master"));
+
+        assertEquals(id("branch1.2"), refDb.remove("refs/heads/branch1"));
+        assertNull("packed value shall be removed too", refDb.getRef("refs/heads/branch1"));
+        assertTrue(refDb.getAll(Ref.HEADS_PREFIX).isEmpty());
+    }
+
+    @Test
+    public void testRemoveAllPacked() {
+        refDb.putRef("refs/remotes/origin/master", id("master"));
+        refDb.putRef("refs/remotes/origin/branch1", id("branch1"));
+        refDb.putRef("refs/remotes/upstream/master", id("upstream"));
+        ((FileRefDatabase) refDb).pack();
+        refDb.putRef("refs/remotes/origin/branch2", id("branch2"));
+
+        Map<String, String> removed = refDb.removeAll("refs/remotes/origin");
+        assertEquals(ImmutableMap.of("refs/remotes/origin/branch1", id("branch1"),
+                "refs/remotes/origin/branch2", id("branch2"), "refs/remotes/origin/master",
+                id("master")), removed);
+
+        assertEquals(ImmutableMap.of("refs/remotes/upstream/master", id("upstream")),
+                refDb.getAll(Ref.REMOTES_PREFIX));
+    }
+
+    @Test
+    public void testTransactionRefsNotPacked() {
+        String txRef = Ref.append(Ref.TRANSACTIONS_PREFIX, "tx1/refs/heads/master");
+        refDb.putRef(txRef, ObjectId.NULL.toString());
+        refDb.putRef("refs/heads/master", id("master"));
+        ((FileRefDatabase) refDb).pack();
+
+        assertTrue(new File(repoDir(), txRef).exists());
+        assertEquals(ImmutableMap.of(txRef, ObjectId.NULL.toString()),
+                refDb.getAll(Ref.append(Ref.TRANSACTIONS_PREFIX, "tx1")));
+    }
+
+    @Test
+    public void testConcurrentRemoveAndPack() throws Exception {
+        final FileRefDatabase db = (FileRefDatabase) refDb;
+        final int count = 2000;
+
+        final AtomicBoolean removing = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> packer = executor.submit(() -> {
+                while (removing.get()) {
+                    db.pack();
+                }
+            });
+            Future<?> remover = executor.submit(() -> {
+                try {
+                    for (int i = 0; i < count; i++) {
+                        String name = "refs/heads/branch" + i;
+                        db.putRef(name, id(name));
+                        assertEquals(id(name), db.remove(name));
+                    }
+                } finally {
+                    removing.set(false);
+                }
+            });
+            remover.get();
+            packer.get();
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(ImmutableMap.of(), db.getAll(Ref.HEADS_PREFIX));
+    }
+
+    @Test
+    public void testAutoPack() throws Exception {
+        refDb.close();
+        configDB.put(FileRefDatabase.PACK_THRESHOLD_CONFIG_KEY, 3);
+        refDb.create();
+
+        refDb.putRef("refs/tags/tag1", id("tag1"));
+        refDb.putRef("refs/tags/tag2", id("tag2"));
+        assertFalse(new File(repoDir(), FileRefDatabase.PACKED_REFS).exists());
+        // updating an existing loose ref doesn't count
+        refDb.putRef("refs/tags/tag2", id("tag2.2"));
+        assertFalse(new File(repoDir(), FileRefDatabase.PACKED_REFS).exists());
+
+        refDb.putRef("refs/tags/tag3", id("tag3"));
+        assertTrue(new File(repoDir(), FileRefDatabase.PACKED_REFS).exists());
+        assertFalse(new File(repoDir(), "refs/tags").exists());
+        assertEquals(ImmutableMap.of("refs/tags/tag1", id("tag1"), "refs/tags/tag2", id("tag2.2"),
+                "refs/tags/tag3", id("tag3")), refDb.getAll(Ref.TAGS_PREFIX));
+    }
 }
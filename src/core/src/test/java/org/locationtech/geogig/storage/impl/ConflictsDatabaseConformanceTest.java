@@ -35,8 +35,12 @@ import org.locationtech.geogig.storage.ConflictsDatabase;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
+import com.google.common.collect.ContiguousSet;
+import com.google.common.collect.DiscreteDomain;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Range;
 import com.google.common.collect.Sets;
 
 public abstract class ConflictsDatabaseConformanceTest<T extends ConflictsDatabase> {
@@ -158,6 +162,25 @@ public abstract class ConflictsDatabaseConformanceTest<T extends ConflictsDataba
         assertEquals(c3, conflicts.getConflict(ns, c3.getPath()).get());
     }
 
+    @Test
+    public void testAddConflictsSinglePass() {
+        final String ns = UUID.randomUUID().toString();
+        final int size = 5_432;
+        // an iterable that can only be iterated once, as the ones streamed by a merge
+        final Iterator<Conflict> source = Iterators.transform(
+                ContiguousSet.create(Range.closedOpen(0, size), DiscreteDomain.integers())
+                        .iterator(),
+                (i) -> createTestConflict("roads/" + i));
+        Iterable<Conflict> singlePass = () -> source;
+
+        conflicts.addConflicts(ns, singlePass);
+
+        assertEquals(size, conflicts.getCountByPrefix(ns, null));
+        assertEquals(size, Iterators.size(conflicts.getByPrefix(ns, "roads")));
+        assertEquals(createTestConflict("roads/5431"),
+                conflicts.getConflict(ns, "roads/5431").get());
+    }
+
     @Test
     public void testHasConflicts() {
         final String ns = UUID.randomUUID().toString();
@@ -18,6 +18,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.After;
 import org.junit.Before;
@@ -34,6 +35,7 @@ import org.locationtech.geogig.storage.GraphDatabase.GraphNode;
 import org.locationtech.geogig.test.TestPlatform;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 
 /**
  * Abstract test suite for {@link GraphDatabase} implementations.
@@ -315,6 +317,42 @@ public abstract class GraphDatabaseTest {
         assertEquals(0, parents.size());
     }
 
+    @Test
+    public void testGetAncestry() {
+        ObjectId rootId = RevObjectTestSupport.hashString("root");
+        database.put(rootId, ImmutableList.of());
+        ObjectId commit1 = RevObjectTestSupport.hashString("c1");
+        database.put(commit1, ImmutableList.of(rootId));
+        ObjectId commit2 = RevObjectTestSupport.hashString("c2");
+        database.put(commit2, ImmutableList.of(commit1));
+        ObjectId commit3 = RevObjectTestSupport.hashString("c3");
+        database.put(commit3, ImmutableList.of(rootId));
+        ObjectId commit4 = RevObjectTestSupport.hashString("c4");
+        database.put(commit4, ImmutableList.of(commit2, commit3));
+        ObjectId nonexistent = RevObjectTestSupport.hashString("nonexistent");
+
+        Map<ObjectId, ImmutableList<ObjectId>> ancestry;
+        ancestry = database.getAncestry(ImmutableList.of(commit4), Integer.MAX_VALUE);
+        assertEquals(5, ancestry.size());
+        assertEquals(ImmutableSet.of(commit2, commit3), ImmutableSet.copyOf(ancestry.get(commit4)));
+        assertEquals(ImmutableList.of(commit1), ancestry.get(commit2));
+        assertEquals(ImmutableList.of(rootId), ancestry.get(commit3));
+        assertEquals(ImmutableList.of(rootId), ancestry.get(commit1));
+        assertEquals(ImmutableList.of(), ancestry.get(rootId));
+
+        ancestry = database.getAncestry(ImmutableList.of(commit4), 2);
+        assertEquals(ImmutableSet.of(commit4, commit2, commit3), ancestry.keySet());
+
+        ancestry = database.getAncestry(ImmutableList.of(commit2, commit3), 1);
+        assertEquals(ImmutableSet.of(commit2, commit3), ancestry.keySet());
+
+        ancestry = database.getAncestry(ImmutableList.of(commit4), 0);
+        assertTrue(ancestry.isEmpty());
+
+        ancestry = database.getAncestry(ImmutableList.of(nonexistent), Integer.MAX_VALUE);
+        assertEquals(ImmutableList.of(), ancestry.get(nonexistent));
+    }
+
     @Test
     public void testUpdateNode() {
         ObjectId nodeId = RevObjectTestSupport.hashString("node");
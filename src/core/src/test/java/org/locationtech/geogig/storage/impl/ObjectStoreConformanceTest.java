@@ -199,6 +199,7 @@ public abstract class ObjectStoreConformanceTest {
         checkClosed(() -> db.deleteAll(emptyIterator()));
         checkClosed(() -> db.deleteAll(emptyIterator(), NOOP_LISTENER));
         checkClosed(() -> db.exists(RevTree.EMPTY_TREE_ID));
+        checkClosed(() -> db.existsAll(ImmutableList.of()));
         checkClosed(() -> db.get(RevTree.EMPTY_TREE_ID));
         checkClosed(() -> db.get(RevTree.EMPTY_TREE_ID, RevTree.class));
         checkClosed(() -> db.getAll(ImmutableList.of()));
@@ -219,6 +220,7 @@ public abstract class ObjectStoreConformanceTest {
         checkNullArgument(() -> db.deleteAll(null, NOOP_LISTENER));
         checkNullArgument(() -> db.deleteAll(emptyIterator(), null));
         checkNullArgument(() -> db.exists(null));
+        checkNullArgument(() -> db.existsAll(null));
         checkNullArgument(() -> db.get(null));
         checkNullArgument(() -> db.get(null, RevTree.class));
         checkNullArgument(() -> db.get(RevTree.EMPTY_TREE_ID, null));
@@ -315,6 +317,27 @@ public abstract class ObjectStoreConformanceTest {
         assertTrue(db.exists(o.getId()));
     }
 
+    @Test
+    public void testExistsAll() {
+        ImmutableList<RevObject> objs = ImmutableList.of(feature(0, null, "some value"),
+                feature(1, "value", new Integer(111)), feature(2, (Object) null),
+                RevTree.EMPTY);
+        db.putAll(objs.iterator());
+
+        ObjectId notInDb1 = RevObjectTestSupport.hashString("fake1");
+        ObjectId notInDb2 = RevObjectTestSupport.hashString("fake2");
+
+        Function<RevObject, ObjectId> toId = p -> p.getId();
+        List<ObjectId> ids = Lists.newArrayList(concat(singletonIterator(notInDb1),
+                transform(objs.iterator(), toId), singletonIterator(notInDb2)));
+
+        Set<ObjectId> expected = Sets.newHashSet(transform(objs.iterator(), toId));
+        assertEquals(expected, db.existsAll(ids));
+        assertEquals(expected, db.existsAll(Sets.newHashSet(ids)));
+        assertTrue(db.existsAll(ImmutableList.of(notInDb1, notInDb2)).isEmpty());
+        assertTrue(db.existsAll(ImmutableList.of()).isEmpty());
+    }
+
     @Test
     public void testGet() {
         RevFeature o = feature(0, null, "some value");
@@ -0,0 +1,131 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.storage.memory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.geogig.model.ObjectId;
+
+import com.google.common.collect.Lists;
+
+public class OffHeapDeduplicatorTest {
+
+    private OffHeapDeduplicator deduplicator;
+
+    @Before
+    public void before() {
+        deduplicator = new OffHeapDeduplicator();
+    }
+
+    @After
+    public void after() {
+        deduplicator.release();
+    }
+
+    private static ObjectId id(int i) {
+        return ObjectId.createNoClone(ObjectId.HASH_FUNCTION.hashInt(i).asBytes());
+    }
+
+    @Test
+    public void testVisit() {
+        ObjectId id = id(1);
+        assertFalse(deduplicator.isDuplicate(id));
+        assertFalse(deduplicator.visit(id));
+        assertTrue(deduplicator.isDuplicate(id));
+        assertTrue(deduplicator.visit(id));
+        assertFalse(deduplicator.isDuplicate(id(2)));
+        assertEquals(1, deduplicator.size());
+    }
+
+    @Test
+    public void testVisitNullId() {
+        assertFalse(deduplicator.isDuplicate(ObjectId.NULL));
+        assertFalse(deduplicator.visit(ObjectId.NULL));
+        assertTrue(deduplicator.visit(ObjectId.NULL));
+        assertEquals(1, deduplicator.size());
+    }
+
+    @Test
+    public void testGrow() {
+        final int count = 200_000;
+        for (int i = 0; i < count; i++) {
+            assertFalse(deduplicator.visit(id(i)));
+        }
+        assertEquals(count, deduplicator.size());
+        for (int i = 0; i < count; i++) {
+            assertTrue(deduplicator.isDuplicate(id(i)));
+        }
+        assertFalse(deduplicator.isDuplicate(id(count)));
+    }
+
+    @Test
+    public void testRemoveDuplicates() {
+        deduplicator.visit(id(1));
+        deduplicator.visit(id(3));
+        List<ObjectId> ids = Lists.newArrayList(id(1), id(2), id(3), id(4));
+        deduplicator.removeDuplicates(ids);
+        assertEquals(Lists.newArrayList(id(2), id(4)), ids);
+    }
+
+    @Test
+    public void testReset() {
+        deduplicator.visit(id(1));
+        deduplicator.visit(ObjectId.NULL);
+        deduplicator.reset();
+        assertEquals(0, deduplicator.size());
+        assertFalse(deduplicator.isDuplicate(id(1)));
+        assertFalse(deduplicator.isDuplicate(ObjectId.NULL));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testReleased() {
+        deduplicator.release();
+        deduplicator.visit(id(1));
+    }
+
+    @Test
+    public void testConcurrentVisits() throws Exception {
+        final int threads = 8;
+        final int count = 50_000;
+        final AtomicInteger firstVisits = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < count; i++) {
+                        if (!deduplicator.visit(id(i))) {
+                            firstVisits.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(count, firstVisits.get());
+        assertEquals(count, deduplicator.size());
+    }
+}
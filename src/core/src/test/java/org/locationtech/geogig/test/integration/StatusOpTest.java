@@ -12,6 +12,11 @@ package org.locationtech.geogig.test.integration;
 import org.junit.Test;
 import org.locationtech.geogig.porcelain.StatusOp;
 import org.locationtech.geogig.porcelain.StatusOp.StatusSummary;
+import org.locationtech.geogig.repository.AutoCloseableIterator;
+import org.locationtech.geogig.repository.DiffEntry;
+
+import com.google.common.base.Supplier;
+import com.google.common.collect.Iterators;
 
 public class StatusOpTest extends RepositoryTestCase {
 
@@ -66,6 +71,44 @@ public class StatusOpTest extends RepositoryTestCase {
         assertEquals(3, summary.getCountStaged());
     }
 
+    @Test
+    public void testStagedAndUnstagedCounts() throws Exception {
+        insertAndAdd(points2);
+        insert(points1_modified, points3);
+        StatusSummary summary = geogig.command(StatusOp.class).call();
+        // features plus their parent tree
+        assertEquals(2, summary.getCountStaged());
+        assertEquals(3, summary.getCountUnstaged());
+        assertEquals(0, summary.getCountConflicts());
+        assertEquals(2, size(summary.getStaged()));
+        assertEquals(3, size(summary.getUnstaged()));
+    }
+
+    @Test
+    public void testReportLimit() throws Exception {
+        insertAndAdd(points2, points3);
+        insert(points1_modified, lines1, lines2);
+
+        StatusSummary summary = geogig.command(StatusOp.class).setReportLimit(2L).call();
+        // the counts are not limited
+        assertEquals(3, summary.getCountStaged());
+        assertEquals(5, summary.getCountUnstaged());
+        assertEquals(2, size(summary.getStaged()));
+        assertEquals(2, size(summary.getUnstaged()));
+
+        summary = geogig.command(StatusOp.class).setReportLimit(0L).call();
+        assertEquals(3, summary.getCountStaged());
+        assertEquals(5, summary.getCountUnstaged());
+        assertEquals(0, size(summary.getStaged()));
+        assertEquals(0, size(summary.getUnstaged()));
+    }
+
+    private int size(Supplier<AutoCloseableIterator<DiffEntry>> diffs) {
+        try (AutoCloseableIterator<DiffEntry> it = diffs.get()) {
+            return Iterators.size(it);
+        }
+    }
+
     private void assertAllFieldsNotNull(StatusSummary summary) {
         assertNotNull(summary);
         assertNotNull(summary.getStaged());
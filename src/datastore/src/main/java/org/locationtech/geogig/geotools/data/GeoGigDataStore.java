@@ -14,10 +14,14 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.geotools.data.DataStore;
+import org.geotools.data.Query;
 import org.geotools.data.Transaction;
+import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.data.simple.SimpleFeatureSource;
 import org.geotools.data.store.ContentDataStore;
 import org.geotools.data.store.ContentEntry;
@@ -31,6 +35,7 @@ import org.locationtech.geogig.model.RevTree;
 import org.locationtech.geogig.model.SymRef;
 import org.locationtech.geogig.plumbing.ForEachRef;
 import org.locationtech.geogig.plumbing.RefParse;
+import org.locationtech.geogig.plumbing.ResolveTreeCache;
 import org.locationtech.geogig.plumbing.RevParse;
 import org.locationtech.geogig.plumbing.TransactionBegin;
 import org.locationtech.geogig.porcelain.AddOp;
@@ -49,6 +54,8 @@ import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
 import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
@@ -90,6 +97,16 @@ public class GeoGigDataStore extends ContentDataStore implements DataStore {
     /** When the configured head is not a branch, we disallow transactions */
     private boolean allowTransactions = true;
 
+    private static final int TYPE_REFS_CACHE_SECONDS = 5;
+
+    /**
+     * Short lived cache of the feature type tree refs of the root trees queried recently, keyed by
+     * root tree id, which spares walking the whole root tree for every query. Root trees are
+     * immutable, so entries never get stale, they're just evicted after a few seconds.
+     */
+    private final Cache<ObjectId, List<NodeRef>> typeRefsByRootTree = CacheBuilder.newBuilder()
+            .maximumSize(16).expireAfterWrite(TYPE_REFS_CACHE_SECONDS, TimeUnit.SECONDS).build();
+
     public GeoGigDataStore(Repository geogig) {
         super();
         Preconditions.checkNotNull(geogig);
@@ -182,8 +199,9 @@ public class GeoGigDataStore extends ContentDataStore implements DataStore {
      */
     @Nullable
     public String getCheckedOutBranch() {
-        Optional<Ref> head = getCommandLocator(null).command(RefParse.class).setName(Ref.HEAD)
-                .call();
+        final Context context = getCommandLocator(null);
+        Optional<Ref> head = context.command(ResolveTreeCache.class).call().resolveRef(context,
+                Ref.HEAD);
         if (!head.isPresent()) {
             return null;
         }
@@ -275,10 +293,24 @@ public class GeoGigDataStore extends ContentDataStore implements DataStore {
     private List<NodeRef> findTypeRefs(@Nullable Transaction tx) {
 
         final String rootRef = getRootRef(tx);
-        Context commandLocator = getCommandLocator(tx);
-        List<NodeRef> typeTrees = commandLocator.command(FindFeatureTypeTrees.class)
-                .setRootTreeRef(rootRef).call();
-        return typeTrees;
+        final Context commandLocator = getCommandLocator(tx);
+        final Optional<ObjectId> rootTreeId;
+        try {
+            rootTreeId = commandLocator.command(ResolveTreeCache.class).call()
+                    .resolveRootTree(commandLocator, rootRef);
+        } catch (IllegalArgumentException noSuchRef) {
+            return ImmutableList.of();
+        }
+        if (!rootTreeId.isPresent() || RevTree.EMPTY_TREE_ID.equals(rootTreeId.get())) {
+            return ImmutableList.of();
+        }
+        final ObjectId treeId = rootTreeId.get();
+        try {
+            return typeRefsByRootTree.get(treeId, () -> commandLocator
+                    .command(FindFeatureTypeTrees.class).setRootTreeRef(treeId.toString()).call());
+        } catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
     }
 
     String getRootRef(@Nullable Transaction tx) {
@@ -352,6 +384,32 @@ public class GeoGigDataStore extends ContentDataStore implements DataStore {
                 "removeSchema not yet supported by geogig DataStore");
     }
 
+    /**
+     * Runs several queries against the same feature type at once, walking its tree, or its spatial
+     * index, a single time and routing each feature to the queries whose filter it matches.
+     * <p>
+     * Useful when rendering a meta-tile or seeding tiles, where many queries over adjacent bounding
+     * boxes would otherwise repeat the same tree traversal once per tile. Queries are run against
+     * the datastore's configured {@link #getOrFigureOutHead() HEAD}, and can't be paged.
+     * 
+     * @param typeName the feature type name to query
+     * @param queries the queries to run, usually BBOX filters with the same properties
+     * @return a feature collection per query, in the same order, holding the features matching the
+     *         query
+     */
+    public List<SimpleFeatureCollection> getFeatures(final String typeName,
+            final List<Query> queries) throws IOException {
+        Preconditions.checkNotNull(typeName, "typeName");
+        Preconditions.checkNotNull(queries, "queries");
+
+        final Name name = name(typeName);
+        final ContentEntry entry = ensureEntry(name);
+
+        GeogigFeatureSource featureSource = new GeogigFeatureSource(entry);
+        featureSource.setTransaction(Transaction.AUTO_COMMIT);
+        return featureSource.getFeatures(queries);
+    }
+
     public static enum ChangeType {
         ADDED, REMOVED, CHANGED_NEW, CHANGED_OLD;
     }
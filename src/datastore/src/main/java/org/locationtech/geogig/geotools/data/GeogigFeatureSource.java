@@ -10,20 +10,32 @@
 package org.locationtech.geogig.geotools.data;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import org.eclipse.jdt.annotation.Nullable;
+import org.geotools.data.DataUtilities;
 import org.geotools.data.FeatureReader;
 import org.geotools.data.FeatureSource;
 import org.geotools.data.Query;
 import org.geotools.data.QueryCapabilities;
 import org.geotools.data.Transaction;
+import org.geotools.data.collection.ListFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.data.store.ContentEntry;
 import org.geotools.data.store.ContentFeatureSource;
 import org.geotools.data.store.ContentState;
+import org.geotools.factory.CommonFactoryFinder;
 import org.geotools.factory.Hints;
+import org.geotools.feature.SchemaException;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.filter.spatial.ReprojectingFilterVisitor;
 import org.geotools.filter.visitor.SimplifyingFilterVisitor;
+import org.geotools.filter.visitor.SpatialFilterVisitor;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.renderer.ScreenMap;
 import org.locationtech.geogig.geotools.data.GeoGigDataStore.ChangeType;
@@ -31,7 +43,7 @@ import org.locationtech.geogig.geotools.data.reader.FeatureReaderBuilder;
 import org.locationtech.geogig.model.ObjectId;
 import org.locationtech.geogig.model.RevFeatureType;
 import org.locationtech.geogig.model.RevTree;
-import org.locationtech.geogig.plumbing.RevObjectParse;
+import org.locationtech.geogig.plumbing.ResolveTreeCache;
 import org.locationtech.geogig.repository.Context;
 import org.locationtech.geogig.repository.NodeRef;
 import org.locationtech.geogig.repository.WorkingTree;
@@ -41,6 +53,7 @@ import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.feature.type.Name;
 import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory2;
 import org.opengis.filter.sort.SortBy;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 
@@ -53,6 +66,8 @@ import com.vividsolutions.jts.geom.GeometryFactory;
  */
 class GeogigFeatureSource extends ContentFeatureSource {
 
+    private static final FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2();
+
     private GeoGigDataStore.ChangeType changeType;
 
     private String oldRoot;
@@ -287,6 +302,95 @@ class GeogigFeatureSource extends ContentFeatureSource {
 
     }
 
+    /**
+     * Runs several queries at once, walking the type tree, or its spatial index, a single time for
+     * the union of their bounds, and routing each feature to the queries whose filter it matches.
+     * <p>
+     * Meant for queries over nearby areas, like the tiles of a meta-tile or a tile seeding job,
+     * that would otherwise traverse the same upper levels of the tree and decode the same buckets
+     * once per query. Sorting and screen map hints are ignored, and paged queries are not
+     * supported.
+     * 
+     * @return one feature collection per query, in the same order, with the features matching the
+     *         query filter and the query properties
+     */
+    public List<SimpleFeatureCollection> getFeatures(final List<Query> queries)
+            throws IOException {
+        Preconditions.checkNotNull(queries, "queries is null");
+        Preconditions.checkArgument(!queries.isEmpty(), "no queries provided");
+
+        final SimpleFeatureType fullSchema = getAbsoluteSchema();
+        final int numQueries = queries.size();
+        final Filter[] filters = new Filter[numQueries];
+        final List<ListFeatureCollection> results = new ArrayList<>(numQueries);
+
+        // properties needed by any of the queries and their filters, null means all properties
+        @Nullable
+        Set<String> properties = new HashSet<>();
+        for (int i = 0; i < numQueries; i++) {
+            final Query query = queries.get(i);
+            Preconditions.checkArgument(
+                    query.getStartIndex() == null && query.isMaxFeaturesUnlimited(),
+                    "Paged queries are not supported in a batch: %s", query);
+
+            final Filter filter = reprojectFilter(query.getFilter(), fullSchema);
+            final String[] propertyNames = query.getPropertyNames();
+            final SimpleFeatureType schema;
+            if (propertyNames == Query.ALL_NAMES) {
+                schema = fullSchema;
+                properties = null;
+            } else {
+                try {
+                    schema = DataUtilities.createSubType(fullSchema, propertyNames);
+                } catch (SchemaException e) {
+                    throw new IOException(e.getMessage(), e);
+                }
+                if (properties != null) {
+                    properties.addAll(Arrays.asList(propertyNames));
+                }
+            }
+            if (properties != null) {
+                properties.addAll(Arrays.asList(DataUtilities.attributeNames(filter, fullSchema)));
+            }
+            filters[i] = filter;
+            results.add(new ListFeatureCollection(schema));
+        }
+
+        final Query batchQuery = new Query(fullSchema.getTypeName());
+        batchQuery.setFilter(numQueries == 1 ? filters[0] : ff.or(Arrays.asList(filters)));
+        batchQuery.setPropertyNames(properties == null ? Query.ALL_NAMES
+                : properties.toArray(new String[properties.size()]));
+        Object geometryFactory = queries.get(0).getHints().get(Hints.JTS_GEOMETRY_FACTORY);
+        if (geometryFactory != null) {
+            batchQuery.getHints().put(Hints.JTS_GEOMETRY_FACTORY, geometryFactory);
+        }
+
+        try (FeatureReader<SimpleFeatureType, SimpleFeature> features = getReaderInternal(
+                batchQuery)) {
+            while (features.hasNext()) {
+                final SimpleFeature feature = features.next();
+                for (int i = 0; i < numQueries; i++) {
+                    if (filters[i].evaluate(feature)) {
+                        ListFeatureCollection result = results.get(i);
+                        SimpleFeatureType schema = result.getSchema();
+                        result.add(schema.equals(feature.getFeatureType()) ? feature
+                                : SimpleFeatureBuilder.retype(feature, schema));
+                    }
+                }
+            }
+        }
+        return new ArrayList<SimpleFeatureCollection>(results);
+    }
+
+    private static Filter reprojectFilter(Filter filter, SimpleFeatureType schema) {
+        SpatialFilterVisitor spatialFilterVisitor = new SpatialFilterVisitor();
+        filter.accept(spatialFilterVisitor, null);
+        if (spatialFilterVisitor.hasSpatialFilter()) {
+            filter = (Filter) filter.accept(new ReprojectingFilterVisitor(ff, schema), null);
+        }
+        return filter;
+    }
+
     private boolean isNaturalOrder(@Nullable SortBy[] sortBy) {
         if (sortBy == null || sortBy.length == 0
                 || (sortBy.length == 1 && SortBy.NATURAL_ORDER.equals(sortBy[0]))) {
@@ -365,12 +469,14 @@ class GeogigFeatureSource extends ContentFeatureSource {
      * @return
      */
     RevTree getTypeTree() {
-        String refSpec = getRootRef() + ":" + getTypeTreePath();
+        final String rootRef = getRootRef();
+        final String treePath = getTypeTreePath();
         Context commandLocator = getCommandLocator();
-        Optional<RevTree> ref = commandLocator.command(RevObjectParse.class).setRefSpec(refSpec)
-                .call(RevTree.class);
-        Preconditions.checkState(ref.isPresent(), "Ref %s not found on working tree", refSpec);
-        return ref.get();
+        Optional<NodeRef> ref = commandLocator.command(ResolveTreeCache.class).call()
+                .resolveTreeRef(commandLocator, rootRef, treePath);
+        Preconditions.checkState(ref.isPresent(), "Ref %s not found on working tree",
+                rootRef + ":" + treePath);
+        return commandLocator.objectDatabase().getTree(ref.get().getObjectId());
     }
 
     private String getRootRef() {
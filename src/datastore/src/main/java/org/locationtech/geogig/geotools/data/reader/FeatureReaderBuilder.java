@@ -39,8 +39,8 @@ import org.locationtech.geogig.model.ObjectId;
 import org.locationtech.geogig.model.Ref;
 import org.locationtech.geogig.model.RevTree;
 import org.locationtech.geogig.plumbing.DiffTree;
-import org.locationtech.geogig.plumbing.FindTreeChild;
-import org.locationtech.geogig.plumbing.ResolveTreeish;
+import org.locationtech.geogig.plumbing.ResolveTreeCache;
+import org.locationtech.geogig.plumbing.ResolvedTreeCache;
 import org.locationtech.geogig.porcelain.index.Index;
 import org.locationtech.geogig.repository.AutoCloseableIterator;
 import org.locationtech.geogig.repository.Context;
@@ -54,9 +54,12 @@ import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.feature.type.AttributeDescriptor;
 import org.opengis.feature.type.GeometryDescriptor;
+import org.opengis.filter.And;
 import org.opengis.filter.Filter;
 import org.opengis.filter.FilterFactory2;
 import org.opengis.filter.Id;
+import org.opengis.filter.expression.Expression;
+import org.opengis.filter.expression.PropertyName;
 import org.opengis.filter.identity.FeatureId;
 import org.opengis.filter.identity.Identifier;
 import org.opengis.filter.sort.SortBy;
@@ -67,6 +70,7 @@ import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
+import com.google.common.base.Strings;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
@@ -216,15 +220,20 @@ public class FeatureReaderBuilder {
 
         // properties needed by the output schema and the in-process filter, null means all
         // properties, empty list means no-properties needed
-        final @Nullable Set<String> requiredProperties = resolveRequiredProperties(nativeFilter);
+        final @Nullable Set<String> requiredProperties;
         // properties present in the RevTree nodes' extra data
         final Set<String> materializedProperties;
+        // the part of the filter evaluated against the RevTree nodes' extra data while walking the
+        // index, if the filter is not a simple BBOX and only refers to materialized properties,
+        // possibly combined with BBOX filters (e.g. a BBOX and a time range on an index with a time
+        // filter attribute)
+        final @Nullable Filter materializedFilter;
         // whether the RevTree nodes contain all required properties (hence no need to fetch
         // RevFeatures from the database)
         final boolean indexContainsAllRequiredProperties;
         // whether the filter is fully supported by the NodeRef filtering (hence no need for
         // pos-processing filtering). This is the case if the filter is a simple BBOX, Id, or
-        // INCLUDE, or all the required properties are present in the index Nodes
+        // INCLUDE, or it can be evaluated against the index Nodes
         final boolean filterIsFullySupported;
 
         final ObjectId featureTypeId = typeRef.getMetadataId();
@@ -279,10 +288,14 @@ public class FeatureReaderBuilder {
             }
 
             materializedProperties = resolveMaterializedProperties(headIndex);
+            materializedFilter = resolveMaterializedFilter(nativeFilter, materializedProperties,
+                    geometryAttribute.getLocalName());
+            requiredProperties = resolveRequiredProperties(nativeFilter,
+                    materializedFilter != null);
             indexContainsAllRequiredProperties = materializedProperties
                     .containsAll(requiredProperties);
             filterIsFullySupported = filterIsFullySupported(nativeFilter,
-                    indexContainsAllRequiredProperties);
+                    materializedFilter != null);
             treeSource = headIndex.isPresent() ? repo.indexDatabase() : repo.objectDatabase();
         }
 
@@ -295,7 +308,7 @@ public class FeatureReaderBuilder {
         diffOp.setDefaultMetadataId(featureTypeId);
         diffOp.setPreserveIterationOrder(shallPreserveIterationOrder());
         diffOp.setPathFilter(resolveFidFilter(nativeFilter));
-        diffOp.setCustomFilter(resolveNodeRefFilter());
+        diffOp.setCustomFilter(resolveNodeRefFilter(materializedFilter));
         diffOp.setBoundsFilter(resolveBoundsFilter(nativeFilter, newFeatureTypeTree, treeSource));
         diffOp.setChangeTypeFilter(resolveChangeType());
         diffOp.setOldTree(oldFeatureTypeTree);
@@ -332,7 +345,8 @@ public class FeatureReaderBuilder {
                     geometryFactory);
         } else {
             BulkFeatureRetriever retriever = new BulkFeatureRetriever(featureSource);
-            features = retriever.getGeoToolsFeatures(featureRefs, fullSchema, geometryFactory);
+            features = retriever.getGeoToolsFeatures(featureRefs, fullSchema, resultSchema,
+                    geometryFactory);
         }
 
         if (!filterIsFullySupported) {
@@ -401,12 +415,14 @@ public class FeatureReaderBuilder {
 
         Optional<Index>[] indexes = NO_INDEX;
         final IndexDatabase indexDatabase = repo.indexDatabase();
-        Optional<IndexInfo> indexInfo = indexDatabase.getIndexInfo(treeName, attributeName);
+        final ResolvedTreeCache cache = repo.command(ResolveTreeCache.class).call();
+        Optional<IndexInfo> indexInfo = cache.getIndexInfo(repo, treeName, attributeName);
         if (indexInfo.isPresent()) {
             IndexInfo info = indexInfo.get();
-            Optional<Index> oldIndex = resolveIndex(oldCanonical, info, indexDatabase);
+            Optional<Index> oldIndex = resolveIndex(oldCanonical, info, indexDatabase, cache);
             if (oldIndex.isPresent()) {
-                Optional<Index> newIndex = resolveIndex(newCanonical, info, indexDatabase);
+                Optional<Index> newIndex = resolveIndex(newCanonical, info, indexDatabase,
+                        cache);
                 if (newIndex.isPresent()) {
                     indexes = new Optional[2];
                     indexes[0] = oldIndex;
@@ -420,23 +436,18 @@ public class FeatureReaderBuilder {
     private Optional<NodeRef> resolveCanonicalTree(@Nullable String head, String treeName) {
         Optional<NodeRef> treeRef = Optional.absent();
         if (head != null) {
-            Optional<ObjectId> rootTree = repo.command(ResolveTreeish.class).setTreeish(head)
-                    .call();
-            if (rootTree.isPresent()) {
-                RevTree tree = repo.objectDatabase().getTree(rootTree.get());
-                treeRef = repo.command(FindTreeChild.class).setParent(tree).setChildPath(treeName)
-                        .call();
-            }
+            ResolvedTreeCache cache = repo.command(ResolveTreeCache.class).call();
+            treeRef = cache.resolveTreeRef(repo, head, treeName);
         }
         return treeRef;
     }
 
     private Optional<Index> resolveIndex(ObjectId canonicalTreeId, IndexInfo indexInfo,
-            IndexDatabase indexDatabase) {
+            IndexDatabase indexDatabase, ResolvedTreeCache cache) {
 
         Index index = new Index(indexInfo, RevTree.EMPTY_TREE_ID, indexDatabase);
         if (!RevTree.EMPTY_TREE_ID.equals(canonicalTreeId)) {
-            Optional<ObjectId> indexedTree = indexDatabase.resolveIndexedTree(indexInfo,
+            Optional<ObjectId> indexedTree = cache.resolveIndexedTree(repo, indexInfo,
                     canonicalTreeId);
             if (indexedTree.isPresent()) {
                 index = new Index(indexInfo, indexedTree.get(), indexDatabase);
@@ -446,16 +457,81 @@ public class FeatureReaderBuilder {
     }
 
     private boolean filterIsFullySupported(Filter nativeFilter,
-            boolean indexContainsAllRequiredProperties) {
+            boolean filterIsEvaluatedOnIndex) {
 
         boolean filterSupported = Filter.INCLUDE.equals(nativeFilter) || //
                 nativeFilter instanceof BBOX || //
                 nativeFilter instanceof Id || //
-                indexContainsAllRequiredProperties;
+                filterIsEvaluatedOnIndex;
 
         return filterSupported;
     }
 
+    /**
+     * Resolves the part of the filter that's to be evaluated against the attribute values
+     * materialized on the index nodes while walking the index tree, if any.
+     * <p>
+     * That is the case if the filter, or each non {@code BBOX} child of an {@link And} filter,
+     * only refers to materialized properties. For example, a BBOX and a time range filter on an
+     * index that materializes the time attribute, in which case the BBOX filter is resolved by the
+     * bounds filter, pruning whole buckets, and the time range filter discards features out of
+     * range node by node, before they're fetched. The time range doesn't prune buckets, since they
+     * carry no attribute value ranges.
+     * <p>
+     * An {@code And} filter is only resolved this way if it has at most one {@code BBOX} child, and
+     * it's against the indexed geometry attribute, since the bounds filter is the union of all the
+     * {@code BBOX} filters and tests the node bounds of the indexed geometry only.
+     * <p>
+     * Not applicable to diff queries, since a changed feature is reported if either its old or
+     * new version is accepted.
+     * 
+     * @return the filter to evaluate on the index nodes, or {@code null} if the filter can't be
+     *         fully evaluated on the index nodes or it's a simple BBOX, Id, or INCLUDE filter
+     */
+    private @Nullable Filter resolveMaterializedFilter(Filter nativeFilter,
+            Set<String> materializedProperties, String geometryAttribute) {
+
+        if (materializedProperties.isEmpty() || oldHeadRef != null
+                || Filter.INCLUDE.equals(nativeFilter) || nativeFilter instanceof BBOX
+                || nativeFilter instanceof Id) {
+            return null;
+        }
+        final List<Filter> children = nativeFilter instanceof And
+                ? ((And) nativeFilter).getChildren() : ImmutableList.of(nativeFilter);
+
+        List<Filter> attributeFilters = new ArrayList<>(children.size());
+        boolean bboxFound = false;
+        for (Filter child : children) {
+            if (child instanceof BBOX) {
+                if (bboxFound || !isBBOXOn(geometryAttribute, (BBOX) child)) {
+                    return null;
+                }
+                bboxFound = true;
+                continue;
+            }
+            Set<String> attributes = requiredAttributes(child);
+            if (attributes.isEmpty() || !materializedProperties.containsAll(attributes)) {
+                return null;
+            }
+            attributeFilters.add(child);
+        }
+        if (attributeFilters.isEmpty()) {
+            return null;
+        }
+        return attributeFilters.size() == 1 ? attributeFilters.get(0)
+                : filterFactory.and(attributeFilters);
+    }
+
+    private boolean isBBOXOn(String geometryAttribute, BBOX bbox) {
+        Expression property = bbox.getExpression1();
+        if (!(property instanceof PropertyName)) {
+            return false;
+        }
+        String propertyName = ((PropertyName) property).getPropertyName();
+        // an empty property name stands for the default geometry
+        return Strings.isNullOrEmpty(propertyName) || geometryAttribute.equals(propertyName);
+    }
+
     private Set<String> resolveMaterializedProperties(Optional<Index> index) {
         Set<String> availableAtts = ImmutableSet.of();
         if (index.isPresent()) {
@@ -470,12 +546,16 @@ public class FeatureReaderBuilder {
      * properties requested by {@link #propertyNames} and any other property needed to evaluate the
      * {@link #filter} in-process.
      */
-    private Set<String> resolveRequiredProperties(Filter nativeFilter) {
+    private Set<String> resolveRequiredProperties(Filter nativeFilter,
+            boolean filterIsEvaluatedOnIndex) {
         if (outputSchemaPropertyNames == Query.ALL_NAMES) {
             return fullSchemaAttributeNames;
         }
 
-        final Set<String> filterAttributes = requiredAttributes(nativeFilter);
+        // if the filter is evaluated against the index nodes, there's no need to evaluate it
+        // in-process
+        final Set<String> filterAttributes = filterIsEvaluatedOnIndex ? Collections.emptySet()
+                : requiredAttributes(nativeFilter);
 
         if (outputSchemaPropertyNames.length == 0
                 /* Query.NO_NAMES */ && filterAttributes.isEmpty()) {
@@ -581,11 +661,17 @@ public class FeatureReaderBuilder {
         }
     }
 
-    private Predicate<Bounded> resolveNodeRefFilter() {
+    private Predicate<Bounded> resolveNodeRefFilter(@Nullable Filter materializedFilter) {
         Predicate<Bounded> predicate = Predicates.alwaysTrue();
+        if (materializedFilter != null) {
+            SimpleFeatureType filterSchema = resolveOutputSchema(
+                    requiredAttributes(materializedFilter));
+            predicate = new MaterializedAttributesPredicate(materializedFilter, filterSchema);
+        }
         final boolean ignore = Boolean.getBoolean("geogig.ignorescreenmap");
         if (screenMap != null && !ignore) {
-            predicate = new ScreenMapPredicate(screenMap);
+            // the screen map shall only account for the features that pass the filter
+            predicate = Predicates.and(predicate, new ScreenMapPredicate(screenMap));
         }
         return predicate;
     }
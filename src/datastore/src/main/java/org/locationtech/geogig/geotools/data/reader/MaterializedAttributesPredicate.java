@@ -0,0 +1,76 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.geotools.data.reader;
+
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.locationtech.geogig.model.Bounded;
+import org.locationtech.geogig.model.Bucket;
+import org.locationtech.geogig.model.RevObject.TYPE;
+import org.locationtech.geogig.repository.IndexInfo;
+import org.locationtech.geogig.repository.NodeRef;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.filter.Filter;
+
+import com.google.common.base.Predicate;
+
+/**
+ * Filters out feature {@link NodeRef node refs} whose {@link IndexInfo#getMaterializedAttributes
+ * materialized attribute} values don't match a geotools {@link Filter}, so that non matching
+ * features are discarded while walking the index tree, before they're fetched from the repository
+ * or built out of the index.
+ * <p>
+ * Used to evaluate the non spatial part of queries on materialized attributes, like a time range
+ * or category filter, while the bounding box part is resolved by the bounds filter.
+ * {@link Bucket buckets} and tree nodes carry no attribute values and are always accepted, hence
+ * this predicate never prunes a whole bucket.
+ * <p>
+ * This predicate is thread safe.
+ */
+class MaterializedAttributesPredicate implements Predicate<Bounded> {
+
+    private final Filter filter;
+
+    private final SimpleFeatureType filterSchema;
+
+    /**
+     * @param filter the filter to evaluate
+     * @param filterSchema the feature type containing the attributes the filter refers to, all of
+     *        which shall be materialized on the index nodes
+     */
+    public MaterializedAttributesPredicate(Filter filter, SimpleFeatureType filterSchema) {
+        this.filter = filter;
+        this.filterSchema = filterSchema;
+    }
+
+    @Override
+    public boolean apply(@Nullable Bounded b) {
+        if (b == null) {
+            return false;
+        }
+        if (!(b instanceof NodeRef) || ((NodeRef) b).getType() != TYPE.FEATURE) {
+            return true;
+        }
+        final NodeRef node = (NodeRef) b;
+        final Map<String, Object> values = IndexInfo.getMaterializedAttributes(node.getNode());
+        final List<AttributeDescriptor> descriptors = filterSchema.getAttributeDescriptors();
+        final Object[] attributes = new Object[descriptors.size()];
+        for (int i = 0; i < attributes.length; i++) {
+            attributes[i] = values.get(descriptors.get(i).getLocalName());
+        }
+        SimpleFeature feature = SimpleFeatureBuilder.build(filterSchema, attributes, node.name());
+        return filter.evaluate(feature);
+    }
+}
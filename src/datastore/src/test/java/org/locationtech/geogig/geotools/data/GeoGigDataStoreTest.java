@@ -12,6 +12,7 @@ package org.locationtech.geogig.geotools.data;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
@@ -24,6 +25,7 @@ import org.geotools.data.Transaction;
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.data.simple.SimpleFeatureIterator;
 import org.geotools.data.simple.SimpleFeatureSource;
+import org.geotools.factory.CommonFactoryFinder;
 import org.geotools.feature.NameImpl;
 import org.geotools.geometry.jts.GeometryBuilder;
 import org.junit.Test;
@@ -39,6 +41,7 @@ import org.locationtech.geogig.test.integration.RepositoryTestCase;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.feature.type.Name;
+import org.opengis.filter.FilterFactory2;
 
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
@@ -382,6 +385,38 @@ public class GeoGigDataStoreTest extends RepositoryTestCase {
         testDiffFeatures(c4, c2, 1, 0, 1);
     }
 
+    @Test
+    public void testGetFeaturesBatch() throws Exception {
+        insertAndAdd(points1, points2, points3);
+        insertAndAdd(lines1);
+        commit();
+
+        FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2();
+        Query q1 = new Query(pointsName, ff.bbox("pp", 0, 0, 1.5, 1.5, "EPSG:4326"));
+        Query q2 = new Query(pointsName, ff.bbox("pp", 1.5, 1.5, 3.5, 3.5, "EPSG:4326"),
+                new String[] { "sp" });
+        Query q3 = new Query(pointsName, ff.bbox("pp", 10, 10, 11, 11, "EPSG:4326"));
+
+        List<SimpleFeatureCollection> results = dataStore.getFeatures(pointsName,
+                Arrays.asList(q1, q2, q3));
+        assertEquals(3, results.size());
+
+        assertEquals(Arrays.asList(idP1), toIdList(results.get(0)));
+        assertEquals(pointsType.getAttributeCount(),
+                results.get(0).getSchema().getAttributeCount());
+
+        List<String> ids = new ArrayList<>(toIdList(results.get(1)));
+        Collections.sort(ids);
+        assertEquals(Arrays.asList(idP2, idP3), ids);
+        assertEquals(1, results.get(1).getSchema().getAttributeCount());
+        for (SimpleFeature f : toList(results.get(1))) {
+            assertEquals(1, f.getAttributeCount());
+            assertNotNull(f.getAttribute("sp"));
+        }
+
+        assertTrue(toList(results.get(2)).isEmpty());
+    }
+
     private void testDiffFeatures(ObjectId oldRoot, ObjectId newRoot, int expectedAdded,
             int expectedRemoved, int expectedChanged) throws IOException {
 
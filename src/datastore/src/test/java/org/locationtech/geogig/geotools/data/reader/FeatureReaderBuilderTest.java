@@ -235,6 +235,74 @@ public class FeatureReaderBuilderTest extends RepositoryTestCase {
         assertTrue(resultatts.contains("sp"));
     }
 
+    @Test
+    public void testExtraAttributesBBOXAndAttributeFilter() throws Exception {
+        Index index = createIndex("ip");
+
+        FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2();
+        Filter bbox = ff.bbox("pp", 0, 0, 2.5, 2.5, "EPSG:4326");
+        Filter range = ff.greaterOrEqual(ff.property("ip"), ff.literal(2000));
+        Query query = new Query(pointsName, ff.and(bbox, range));
+
+        verifyFeatures(query, points2);
+        verifyUsesIndex(index);
+    }
+
+    /**
+     * The bounds filter is the union of all the BBOX filters, so more than one BBOX can't be
+     * resolved by it alone and the filter has to be evaluated in-process
+     */
+    @Test
+    public void testExtraAttributesTwoBBOXAndAttributeFilter() throws Exception {
+        Index index = createIndex("ip");
+
+        FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2();
+        Filter bbox1 = ff.bbox("pp", 0, 0, 2.5, 2.5, "EPSG:4326");
+        Filter bbox2 = ff.bbox("pp", 1.5, 1.5, 3.5, 3.5, "EPSG:4326");
+        Filter range = ff.greaterOrEqual(ff.property("ip"), ff.literal(2000));
+        Query query = new Query(pointsName, ff.and(Lists.newArrayList(bbox1, bbox2, range)));
+
+        verifyFeatures(query, points2);
+        verifyUsesIndex(index);
+    }
+
+    @Test
+    public void testExtraAttributesAttributeFilter() throws Exception {
+        Index index = createIndex("ip");
+
+        FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2();
+        Filter range = ff.between(ff.property("ip"), ff.literal(1500), ff.literal(3500));
+        Query query = new Query(pointsName, range);
+
+        verifyFeatures(query, points2, points3);
+        verifyUsesIndex(index);
+    }
+
+    /**
+     * A filter evaluated against the index extra attributes doesn't need to include them
+     * in the resulting schema if not explicitly requested
+     */
+    @Test
+    public void testResultingSchemaExtraAttributesOptimization() {
+        createIndex("ip");
+        Query query = new Query();
+        query.setPropertyNames(Lists.newArrayList("sp"));
+
+        FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2();
+        Filter bbox = ff.bbox("pp", 0, 0, 2.5, 2.5, "EPSG:4326");
+        Filter range = ff.less(ff.property("ip"), ff.literal(2000));
+        query.setFilter(ff.and(bbox, range));
+
+        FeatureReader<SimpleFeatureType, SimpleFeature> reader = getReader(query);
+
+        SimpleFeatureType resultType = reader.getFeatureType();
+        assertEquals(1, resultType.getAttributeCount());
+        assertEquals("sp", resultType.getDescriptor(0).getLocalName());
+
+        assertTrue(reader instanceof FeatureReaderAdapter);
+        assertEquals(1, Iterators.size(((FeatureReaderAdapter) reader).iterator));
+    }
+
     @Test
     public void testIgnoreIndex() {
         createIndex();
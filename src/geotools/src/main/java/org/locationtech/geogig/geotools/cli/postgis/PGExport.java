@@ -9,26 +9,46 @@
  */
 package org.locationtech.geogig.geotools.cli.postgis;
 
+import java.io.IOException;
+
 import org.geotools.data.DataStore;
 import org.geotools.factory.Hints;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.locationtech.geogig.cli.CLICommand;
+import org.locationtech.geogig.cli.CommandFailedException;
+import org.locationtech.geogig.cli.GeogigCLI;
+import org.locationtech.geogig.cli.InvalidParameterException;
 import org.locationtech.geogig.cli.annotation.ReadOnly;
 import org.locationtech.geogig.geotools.cli.DataStoreExport;
 import org.locationtech.geogig.geotools.plumbing.ExportOp;
+import org.locationtech.geogig.geotools.plumbing.GeoToolsOpException;
+import org.locationtech.geogig.geotools.postgis.PGBulkWriter;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevObject.TYPE;
+import org.locationtech.geogig.plumbing.ResolveObjectType;
+import org.locationtech.geogig.plumbing.RevParse;
+import org.locationtech.geogig.repository.ProgressListener;
 import org.opengis.feature.Feature;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 
+import com.beust.jcommander.Parameter;
 import com.beust.jcommander.Parameters;
 import com.beust.jcommander.ParametersDelegate;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.base.Optional;
 
 /**
  * Exports features from a feature type into a PostGIS database.
+ * <p>
+ * Unless {@code --alter} or {@code --geotools} are given, features are loaded through the
+ * PostgreSQL binary {@code COPY} protocol by a {@link PGBulkWriter}, with indexes created after
+ * the load. In that case an existing table is dropped and re-created when {@code --overwrite} is
+ * given, instead of truncated.
  * 
  * @see ExportOp
+ * @see PGBulkWriter
  */
 @ReadOnly
 @Parameters(commandNames = "export", commandDescription = "Export to PostGIS")
@@ -40,8 +60,84 @@ public class PGExport extends DataStoreExport implements CLICommand {
     @ParametersDelegate
     public PGCommonArgs commonArgs = new PGCommonArgs();
 
+    @Parameter(names = {
+            "--geotools" }, description = "Export through the GeoTools PostGIS datastore instead of using COPY")
+    public boolean geotools;
+
+    @Parameter(names = {
+            "--threads" }, description = "Number of parallel COPY streams (and database connections) to use")
+    public int threads = PGBulkWriter.DEFAULT_PARALLELISM;
+
     final PGSupport support = new PGSupport();
 
+    @Override
+    protected void runInternal(GeogigCLI cli) throws IOException {
+        if (geotools || alter) {
+            super.runInternal(cli);
+            return;
+        }
+        if (args.size() != 2) {
+            printUsage(cli);
+            throw new CommandFailedException();
+        }
+        final String path = args.get(0);
+        final String tableName = args.get(1);
+        checkParameter(path != null && !path.isEmpty(), "No path specified.");
+        checkParameter(tableName != null && !tableName.isEmpty(), "No table name specified");
+        final String sourceTreeIsh = path.contains(":") ? path : "WORK_HEAD:" + path;
+        checkParameter(!sourceTreeIsh.endsWith(":"), "No path specified.");
+        checkParameter(threads > 0, "--threads must be > 0");
+
+        ObjectId featureTypeId = null;
+        if (sFeatureTypeId != null) {
+            Optional<ObjectId> id = cli.getGeogig().command(RevParse.class)
+                    .setRefSpec(sFeatureTypeId).call();
+            checkParameter(id.isPresent(), "Invalid feature type reference", sFeatureTypeId);
+            TYPE type = cli.getGeogig().command(ResolveObjectType.class).setObjectId(id.get())
+                    .call();
+            checkParameter(type.equals(TYPE.FEATURETYPE),
+                    "Provided reference does not resolve to a feature type: ", sFeatureTypeId);
+            featureTypeId = id.get();
+        }
+
+        PGBulkWriter writer = newBulkWriter();
+        final ProgressListener progress = cli.getProgressListener();
+        try {
+            writer.export(cli.getGeogig().getContext(), sourceTreeIsh, tableName, featureTypeId,
+                    progress);
+        } catch (IllegalArgumentException iae) {
+            throw new InvalidParameterException(iae.getMessage(), iae);
+        } catch (GeoToolsOpException e) {
+            switch (e.statusCode) {
+            case TABLE_ALREADY_EXISTS:
+                throw new CommandFailedException(
+                        "The selected table already exists. Use -o to overwrite", true);
+            case MIXED_FEATURE_TYPES:
+                throw new CommandFailedException(
+                        "The selected tree contains mixed feature types. Use --defaulttype or --featuretype <feature_type_ref> to export.",
+                        true);
+            default:
+                throw new CommandFailedException("Could not export. Error:" + e.statusCode.name(),
+                        e);
+            }
+        } catch (RuntimeException e) {
+            throw new CommandFailedException("Could not export. Error:" + e.getMessage(), e);
+        }
+        if (progress.isCanceled()) {
+            cli.getConsole().println("Export to " + tableName + " canceled");
+            return;
+        }
+        cli.getConsole().println(sourceTreeIsh + " exported successfully to " + tableName);
+    }
+
+    @VisibleForTesting
+    PGBulkWriter newBulkWriter() {
+        return new PGBulkWriter(commonArgs.host, commonArgs.port, commonArgs.database,
+                commonArgs.schema, commonArgs.username, commonArgs.password)
+                        .setParallelism(threads).setOverwrite(overwrite)
+                        .setDefaultFeatureTypeOnly(defaultType);
+    }
+
     @Override
     protected DataStore getDataStore() {
         return support.getDataStore(commonArgs);
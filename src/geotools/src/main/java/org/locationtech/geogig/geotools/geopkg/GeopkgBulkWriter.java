@@ -0,0 +1,672 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.geotools.geopkg;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static java.lang.String.format;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.geopkg.FeatureEntry;
+import org.geotools.geopkg.GeoPackage;
+import org.geotools.referencing.CRS;
+import org.locationtech.geogig.data.retrieve.BackgroundingIterator;
+import org.locationtech.geogig.data.retrieve.BulkFeatureRetriever;
+import org.locationtech.geogig.geotools.plumbing.ExportOp.BBoxPredicate;
+import org.locationtech.geogig.geotools.plumbing.GeoToolsOpException;
+import org.locationtech.geogig.geotools.plumbing.GeoToolsOpException.StatusCode;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevFeature;
+import org.locationtech.geogig.model.RevFeatureType;
+import org.locationtech.geogig.model.RevObject.TYPE;
+import org.locationtech.geogig.model.RevTree;
+import org.locationtech.geogig.plumbing.FindTreeChild;
+import org.locationtech.geogig.plumbing.ResolveTreeish;
+import org.locationtech.geogig.plumbing.diff.DepthTreeIterator;
+import org.locationtech.geogig.plumbing.diff.DepthTreeIterator.Strategy;
+import org.locationtech.geogig.repository.AutoCloseableIterator;
+import org.locationtech.geogig.repository.Context;
+import org.locationtech.geogig.repository.FeatureInfo;
+import org.locationtech.geogig.repository.NodeRef;
+import org.locationtech.geogig.repository.ProgressListener;
+import org.locationtech.geogig.storage.ObjectDatabase;
+import org.locationtech.geogig.storage.ObjectStore;
+import org.opengis.feature.type.GeometryDescriptor;
+import org.opengis.feature.type.PropertyDescriptor;
+import org.opengis.referencing.FactoryException;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Predicate;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Iterators;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryCollection;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.MultiLineString;
+import com.vividsolutions.jts.geom.MultiPoint;
+import com.vividsolutions.jts.geom.MultiPolygon;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.io.ByteOrderValues;
+import com.vividsolutions.jts.io.WKBWriter;
+
+/**
+ * Writes GeoGig feature trees straight to GeoPackage feature tables using plain JDBC, bypassing
+ * the GeoTools {@code SimpleFeatureStore} API.
+ * <p>
+ * For each exported layer the writer:
+ * <ul>
+ * <li>creates the feature table and registers it in {@code gpkg_contents},
+ * {@code gpkg_geometry_columns} and {@code gpkg_spatial_ref_sys};
+ * <li>encodes each {@link RevFeature} value straight to its JDBC representation, geometries to
+ * GeoPackage binary blobs, without building intermediate GeoTools features;
+ * <li>inserts the rows, as well as the {@code <table>_fids} geopackage to geogig feature id
+ * mappings, through batched prepared statements inside a single transaction, so that a failed or
+ * cancelled export leaves no trace of the table;
+ * <li>builds the spatial index once all the features have been written.
+ * </ul>
+ * <p>
+ * Fetching features from the object store, encoding them, and writing them to the database run as
+ * a pipeline on separate threads.
+ * <p>
+ * If the geopackage file is created by this writer, synchronous writes and on disk journaling are
+ * disabled for the duration of the load, since there's nothing to lose if it's interrupted.
+ * Otherwise the file's journal mode is preserved and writes are only synced at critical moments
+ * ({@code synchronous = NORMAL}), so an interrupted export doesn't corrupt an existing
+ * geopackage.
+ */
+public class GeopkgBulkWriter implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(GeopkgBulkWriter.class);
+
+    public static final int DEFAULT_BATCH_SIZE = 1_000;
+
+    /**
+     * Size of the encoded rows queue between the encoding and writing threads
+     */
+    private static final int ENCODE_QUEUE_SIZE = 1_000;
+
+    private final File geopackageFile;
+
+    private final GeoPackage geopackage;
+
+    /**
+     * Whether the geopackage file didn't exist, or was empty, before this writer was created
+     */
+    private final boolean created;
+
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    public GeopkgBulkWriter(final File geopackageFile) throws IOException {
+        checkNotNull(geopackageFile);
+        this.geopackageFile = geopackageFile;
+        this.created = !geopackageFile.exists() || geopackageFile.length() == 0;
+        this.geopackage = new GeoPackage(geopackageFile);
+        this.geopackage.init();
+    }
+
+    /**
+     * @param batchSize number of rows sent to the database on each JDBC batch
+     */
+    public GeopkgBulkWriter setBatchSize(int batchSize) {
+        checkArgument(batchSize > 0, "batch size must be > 0");
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    @Override
+    public void close() {
+        geopackage.close();
+    }
+
+    /**
+     * Exports the features of the feature tree {@code treeSpec} resolves to, to a new
+     * {@code tableName} feature table.
+     *
+     * @param context the repository context
+     * @param treeSpec the feature tree to export, in the form {@code <commit-ish>:<tree path>}
+     * @param tableName the name of the feature table to create, must not exist
+     * @param bboxFilter optional bounding box filter, features that don't intersect it are not
+     *        exported
+     * @param nodeFilter optional filter for the feature nodes to export, applied before fetching
+     *        the features
+     * @param progress progress listener, checked for cancellation between batches
+     * @return the number of features exported, zero if cancelled
+     */
+    public long export(final Context context, final String treeSpec, final String tableName,
+            final @Nullable ReferencedEnvelope bboxFilter,
+            final @Nullable Predicate<NodeRef> nodeFilter, final ProgressListener progress) {
+
+        checkArgument(treeSpec.indexOf(':') > 0, "Invalid tree spec: %s", treeSpec);
+        final String rootTreeish = treeSpec.substring(0, treeSpec.indexOf(':'));
+        final String treePath = treeSpec.substring(treeSpec.indexOf(':') + 1);
+
+        final ObjectDatabase database = context.objectDatabase();
+        final Optional<ObjectId> rootTreeId = context.command(ResolveTreeish.class)
+                .setTreeish(rootTreeish).call();
+        checkArgument(rootTreeId.isPresent(), "Invalid tree spec: %s", rootTreeish);
+        final RevTree rootTree = database.getTree(rootTreeId.get());
+
+        final Optional<NodeRef> typeTreeRef = context.command(FindTreeChild.class)
+                .setParent(rootTree).setChildPath(treePath).call();
+        checkArgument(typeTreeRef.isPresent(), "Type tree %s does not exist", treeSpec);
+        checkArgument(TYPE.TREE.equals(typeTreeRef.get().getType()),
+                "%s did not resolve to a tree", treeSpec);
+
+        final ObjectId defaultMetadataId = typeTreeRef.get().getMetadataId();
+        final RevFeatureType featureType = database.getFeatureType(defaultMetadataId);
+        final RevTree typeTree = database.getTree(typeTreeRef.get().getObjectId());
+
+        DepthTreeIterator iterator = new DepthTreeIterator("", defaultMetadataId, typeTree,
+                database, Strategy.FEATURES_ONLY);
+        if (bboxFilter != null) {
+            iterator.setBoundsFilter(new BBoxPredicate(database, bboxFilter, defaultMetadataId));
+        }
+        Iterator<NodeRef> nodes = iterator;
+        if (nodeFilter != null) {
+            nodes = Iterators.filter(nodes, nodeFilter);
+        }
+
+        progress.started();
+        progress.setDescription("Exporting from " + treeSpec + " to " + tableName + "... ");
+        final long count = export(tableName, featureType, nodes, database, typeTree.size(),
+                progress);
+        progress.complete();
+        return count;
+    }
+
+    /**
+     * Exports the features pointed to by {@code nodes} to a new {@code tableName} feature table.
+     * <p>
+     * The table is created and filled in a single transaction, which is rolled back if the export
+     * fails or is cancelled.
+     *
+     * @param tableName the name of the feature table to create, must not exist
+     * @param featureType the feature type of the exported feature tree, used to create the table
+     * @param nodes the feature nodes to export, their metadata id must resolve to
+     *        {@code featureType}
+     * @param store the object store where to fetch the features from
+     * @param expectedSize the expected number of features, for progress reporting purposes
+     * @param progress progress listener, checked for cancellation between batches
+     * @return the number of features exported, zero if cancelled
+     */
+    public long export(final String tableName, final RevFeatureType featureType,
+            final Iterator<NodeRef> nodes, final ObjectStore store, final long expectedSize,
+            final ProgressListener progress) {
+
+        checkNotNull(tableName);
+        checkNotNull(featureType);
+
+        final TableEncoder encoder = new TableEncoder(tableName, featureType);
+
+        long count = 0;
+        try (Connection cx = geopackage.getDataSource().getConnection()) {
+            checkState(!tableExists(cx, tableName), "Table '%s' already exists", tableName);
+            final String[] pragmas = setUpConnection(cx);
+            try {
+                encoder.srid = resolveSRID(featureType);
+                createTable(cx, encoder);
+
+                BulkFeatureRetriever retriever = new BulkFeatureRetriever(store);
+                AutoCloseableIterator<FeatureInfo> features = retriever.getGeoGIGFeatures(nodes,
+                        true);
+                AutoCloseableIterator<Object[]> rows = AutoCloseableIterator.transform(features,
+                        (f) -> encoder.encode(f));
+                try (BackgroundingIterator<Object[]> encoded = new BackgroundingIterator<>(rows,
+                        ENCODE_QUEUE_SIZE)) {
+                    count = insert(cx, encoder, encoded, expectedSize, progress);
+                }
+                if (progress.isCanceled()) {
+                    // drops the table and its gpkg_contents and gpkg_geometry_columns entries
+                    cx.rollback();
+                    return 0L;
+                }
+                updateContents(cx, encoder);
+                cx.commit();
+            } catch (SQLException | RuntimeException e) {
+                cx.rollback();
+                if (e.getCause() instanceof GeoToolsOpException) {
+                    // thrown from the encoding thread
+                    throw (GeoToolsOpException) e.getCause();
+                }
+                throw e;
+            } finally {
+                tearDownConnection(cx, pragmas);
+            }
+        } catch (SQLException e) {
+            throw Throwables.propagate(e);
+        }
+
+        createSpatialIndex(tableName);
+        return count;
+    }
+
+    private boolean tableExists(Connection cx, String tableName) throws SQLException {
+        final String sql = "SELECT 1 FROM gpkg_contents WHERE table_name = ?";
+        try (PreparedStatement st = cx.prepareStatement(log(sql))) {
+            st.setString(1, tableName);
+            try (ResultSet rs = st.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    /**
+     * @return the connection's {@code synchronous} and {@code journal_mode} settings, to be
+     *         restored by {@link #tearDownConnection}
+     */
+    private String[] setUpConnection(Connection cx) throws SQLException {
+        final String[] pragmas = { pragma(cx, "synchronous"), pragma(cx, "journal_mode") };
+        try (Statement st = cx.createStatement()) {
+            if (created) {
+                st.execute(log("PRAGMA synchronous = OFF"));
+                st.execute(log("PRAGMA journal_mode = MEMORY"));
+            } else {
+                st.execute(log("PRAGMA synchronous = NORMAL"));
+            }
+            st.execute(log("PRAGMA temp_store = MEMORY"));
+            // negative means KiB instead of pages
+            st.execute(log("PRAGMA cache_size = -65536"));
+        }
+        cx.setAutoCommit(false);
+        return pragmas;
+    }
+
+    private void tearDownConnection(Connection cx, String[] pragmas) throws SQLException {
+        cx.setAutoCommit(true);
+        try (Statement st = cx.createStatement()) {
+            st.execute(log("PRAGMA journal_mode = " + pragmas[1]));
+            st.execute(log("PRAGMA synchronous = " + pragmas[0]));
+        }
+    }
+
+    private String pragma(Connection cx, String name) throws SQLException {
+        try (Statement st = cx.createStatement();
+                ResultSet rs = st.executeQuery(log("PRAGMA " + name))) {
+            checkState(rs.next(), "PRAGMA %s returned no value", name);
+            return rs.getString(1);
+        }
+    }
+
+    private int resolveSRID(RevFeatureType featureType) {
+        GeometryDescriptor geometryDescriptor = featureType.type().getGeometryDescriptor();
+        if (geometryDescriptor == null) {
+            return -1;
+        }
+        CoordinateReferenceSystem crs = geometryDescriptor.getCoordinateReferenceSystem();
+        if (crs == null) {
+            return -1;
+        }
+        Integer srid;
+        try {
+            srid = CRS.lookupEpsgCode(crs, true);
+        } catch (FactoryException e) {
+            throw Throwables.propagate(e);
+        }
+        if (srid == null) {
+            return -1;
+        }
+        try {
+            geopackage.addCRS(srid.intValue());
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+        return srid.intValue();
+    }
+
+    private void createTable(Connection cx, TableEncoder encoder) throws SQLException {
+        final String tableName = encoder.tableName;
+        try (Statement st = cx.createStatement()) {
+            StringBuilder sql = new StringBuilder("CREATE TABLE \"").append(tableName)
+                    .append("\" (fid INTEGER PRIMARY KEY AUTOINCREMENT");
+            for (int i = 0; i < encoder.columnNames.length; i++) {
+                sql.append(", \"").append(encoder.columnNames[i]).append("\" ")
+                        .append(encoder.columnTypes[i]);
+            }
+            sql.append(')');
+            st.execute(log(sql.toString()));
+
+            sql = new StringBuilder("CREATE TABLE IF NOT EXISTS \"").append(tableName)
+                    .append("_fids\" (gpkg_fid VARCHAR, geogig_fid VARCHAR, PRIMARY KEY(gpkg_fid))");
+            st.execute(log(sql.toString()));
+        }
+
+        String sql = "INSERT INTO gpkg_contents (table_name, data_type, identifier, srs_id) "
+                + "VALUES (?, 'features', ?, ?)";
+        try (PreparedStatement ps = cx.prepareStatement(log(sql))) {
+            ps.setString(1, tableName);
+            ps.setString(2, tableName);
+            ps.setInt(3, encoder.srid);
+            ps.executeUpdate();
+        }
+        if (encoder.geometryIndex > -1) {
+            sql = "INSERT INTO gpkg_geometry_columns "
+                    + "(table_name, column_name, geometry_type_name, srs_id, z, m) "
+                    + "VALUES (?, ?, ?, ?, 0, 0)";
+            try (PreparedStatement ps = cx.prepareStatement(log(sql))) {
+                ps.setString(1, tableName);
+                ps.setString(2, encoder.columnNames[encoder.geometryIndex]);
+                ps.setString(3, encoder.columnTypes[encoder.geometryIndex]);
+                ps.setInt(4, encoder.srid);
+                ps.executeUpdate();
+            }
+        }
+    }
+
+    private long insert(final Connection cx, final TableEncoder encoder,
+            final Iterator<Object[]> rows, final long expectedSize,
+            final ProgressListener progress) throws SQLException {
+
+        final String tableName = encoder.tableName;
+        final int ncols = encoder.columnNames.length;
+
+        StringBuilder sql = new StringBuilder("INSERT INTO \"").append(tableName)
+                .append("\" (fid");
+        for (String col : encoder.columnNames) {
+            sql.append(", \"").append(col).append('"');
+        }
+        sql.append(") VALUES (?");
+        for (int i = 0; i < ncols; i++) {
+            sql.append(", ?");
+        }
+        sql.append(')');
+
+        final String fidsSql = format("INSERT INTO \"%s_fids\" VALUES (?, ?)", tableName);
+
+        long count = 0;
+        try (PreparedStatement ps = cx.prepareStatement(log(sql.toString()));
+                PreparedStatement fids = cx.prepareStatement(log(fidsSql))) {
+            while (rows.hasNext()) {
+                final Object[] row = rows.next();
+                final long fid = ((Long) row[0]).longValue();
+                ps.setLong(1, fid);
+                for (int i = 1; i <= ncols; i++) {
+                    ps.setObject(i + 1, row[i]);
+                }
+                ps.addBatch();
+                fids.setString(1, String.valueOf(fid));
+                fids.setString(2, (String) row[ncols + 1]);
+                fids.addBatch();
+                count++;
+                if (count % batchSize == 0) {
+                    ps.executeBatch();
+                    fids.executeBatch();
+                    if (expectedSize > 0) {
+                        progress.setProgress((count * 100f) / expectedSize);
+                    }
+                    if (progress.isCanceled()) {
+                        return count;
+                    }
+                }
+            }
+            ps.executeBatch();
+            fids.executeBatch();
+        }
+        return count;
+    }
+
+    private void updateContents(Connection cx, TableEncoder encoder) throws SQLException {
+        final Envelope bounds = encoder.bounds;
+        if (bounds.isNull()) {
+            return;
+        }
+        final String sql = "UPDATE gpkg_contents SET min_x = ?, min_y = ?, max_x = ?, max_y = ? "
+                + "WHERE table_name = ?";
+        try (PreparedStatement ps = cx.prepareStatement(log(sql))) {
+            ps.setDouble(1, bounds.getMinX());
+            ps.setDouble(2, bounds.getMinY());
+            ps.setDouble(3, bounds.getMaxX());
+            ps.setDouble(4, bounds.getMaxY());
+            ps.setString(5, encoder.tableName);
+            ps.executeUpdate();
+        }
+    }
+
+    private void createSpatialIndex(final String tableName) {
+        try {
+            FeatureEntry entry = geopackage.feature(tableName);
+            checkState(entry != null, "Table '%s' does not exist", tableName);
+            if (entry.getGeometryColumn() != null && !geopackage.hasSpatialIndex(entry)) {
+                geopackage.createSpatialIndex(entry);
+            }
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    private static String log(String sql) {
+        LOG.debug(sql);
+        return sql;
+    }
+
+    @Override
+    public String toString() {
+        return format("%s[%s]", getClass().getSimpleName(), geopackageFile);
+    }
+
+    /**
+     * Maps a feature type to the table columns and encodes {@link FeatureInfo}s to rows of JDBC
+     * values.
+     * <p>
+     * Encoded rows are {@code Object[]} with the geopackage fid at index zero, followed by the
+     * attribute values, followed by the geogig feature id.
+     * <p>
+     * Not thread safe, must be called sequentially from the encoding thread.
+     */
+    private static class TableEncoder {
+
+        final String tableName;
+
+        final ObjectId featureTypeId;
+
+        final String[] columnNames;
+
+        final String[] columnTypes;
+
+        private final Class<?>[] bindings;
+
+        final int geometryIndex;
+
+        int srid = -1;
+
+        final Envelope bounds = new Envelope();
+
+        private long nextFid = 1;
+
+        private final WKBWriter wkbWriter = new WKBWriter(2, ByteOrderValues.LITTLE_ENDIAN);
+
+        private final SimpleDateFormat dateFormat;
+
+        private final SimpleDateFormat dateTimeFormat;
+
+        TableEncoder(String tableName, RevFeatureType featureType) {
+            this.tableName = tableName;
+            this.featureTypeId = featureType.getId();
+            List<PropertyDescriptor> descriptors = featureType.descriptors();
+            final int size = descriptors.size();
+            this.columnNames = new String[size];
+            this.columnTypes = new String[size];
+            this.bindings = new Class<?>[size];
+            GeometryDescriptor geometryDescriptor = featureType.type().getGeometryDescriptor();
+            int geomIndex = -1;
+            for (int i = 0; i < size; i++) {
+                PropertyDescriptor descriptor = descriptors.get(i);
+                Class<?> binding = descriptor.getType().getBinding();
+                columnNames[i] = descriptor.getName().getLocalPart();
+                columnTypes[i] = sqlType(binding);
+                bindings[i] = binding;
+                if (geometryDescriptor != null
+                        && geometryDescriptor.getName().equals(descriptor.getName())) {
+                    geomIndex = i;
+                }
+            }
+            this.geometryIndex = geomIndex;
+
+            TimeZone utc = TimeZone.getTimeZone("UTC");
+            this.dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+            this.dateFormat.setTimeZone(utc);
+            this.dateTimeFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+            this.dateTimeFormat.setTimeZone(utc);
+        }
+
+        /**
+         * @return the GeoPackage column type for the given attribute binding
+         */
+        private static String sqlType(Class<?> binding) {
+            if (Geometry.class.isAssignableFrom(binding)) {
+                if (Point.class.equals(binding)) {
+                    return "POINT";
+                } else if (LineString.class.isAssignableFrom(binding)) {
+                    return "LINESTRING";
+                } else if (Polygon.class.equals(binding)) {
+                    return "POLYGON";
+                } else if (MultiPoint.class.equals(binding)) {
+                    return "MULTIPOINT";
+                } else if (MultiLineString.class.equals(binding)) {
+                    return "MULTILINESTRING";
+                } else if (MultiPolygon.class.equals(binding)) {
+                    return "MULTIPOLYGON";
+                } else if (GeometryCollection.class.equals(binding)) {
+                    return "GEOMETRYCOLLECTION";
+                }
+                return "GEOMETRY";
+            }
+            if (Boolean.class.equals(binding)) {
+                return "BOOLEAN";
+            } else if (Byte.class.equals(binding)) {
+                return "TINYINT";
+            } else if (Short.class.equals(binding)) {
+                return "SMALLINT";
+            } else if (Integer.class.equals(binding) || Long.class.equals(binding)
+                    || BigInteger.class.equals(binding)) {
+                return "INTEGER";
+            } else if (Float.class.equals(binding)) {
+                return "FLOAT";
+            } else if (Double.class.equals(binding) || BigDecimal.class.equals(binding)) {
+                return "DOUBLE";
+            } else if (java.sql.Date.class.equals(binding)) {
+                return "DATE";
+            } else if (Date.class.isAssignableFrom(binding)
+                    && !java.sql.Time.class.equals(binding)) {
+                return "DATETIME";
+            } else if (byte[].class.equals(binding)) {
+                return "BLOB";
+            }
+            return "TEXT";
+        }
+
+        Object[] encode(FeatureInfo info) {
+            if (!featureTypeId.equals(info.getFeatureTypeId())) {
+                throw new GeoToolsOpException(StatusCode.MIXED_FEATURE_TYPES);
+            }
+            final RevFeature feature = info.getFeature();
+            final int size = columnNames.length;
+            final Object[] row = new Object[size + 2];
+            row[0] = Long.valueOf(nextFid++);
+            for (int i = 0; i < size; i++) {
+                Optional<Object> value = feature.get(i);
+                row[i + 1] = value.isPresent() ? toJDBC(value.get(), bindings[i]) : null;
+            }
+            row[size + 1] = info.getName();
+            return row;
+        }
+
+        @Nullable
+        private Object toJDBC(Object value, Class<?> binding) {
+            if (value instanceof Geometry) {
+                return encodeGeometry((Geometry) value);
+            }
+            if (value instanceof Number || value instanceof Boolean || value instanceof String
+                    || value instanceof byte[]) {
+                if (value instanceof BigDecimal) {
+                    return Double.valueOf(((BigDecimal) value).doubleValue());
+                } else if (value instanceof BigInteger) {
+                    return Long.valueOf(((BigInteger) value).longValue());
+                }
+                return value;
+            }
+            if (value instanceof java.sql.Date) {
+                return dateFormat.format((Date) value);
+            }
+            if (value instanceof java.sql.Time) {
+                return value.toString();
+            }
+            if (value instanceof Date) {
+                return dateTimeFormat.format((Date) value);
+            }
+            return String.valueOf(value);
+        }
+
+        /**
+         * Encodes a geometry as a GeoPackage binary blob: the {@code GP} magic, version, flags,
+         * srs id, and envelope header, followed by the little endian WKB of the geometry.
+         */
+        @Nullable
+        private byte[] encodeGeometry(Geometry geom) {
+            final boolean empty = geom.isEmpty();
+            if (empty && geom instanceof Point) {
+                // empty points can't be represented in WKB
+                return null;
+            }
+            // points don't carry an envelope, the geometry itself is as small as one
+            final boolean writeEnvelope = !empty && !(geom instanceof Point);
+            final byte[] wkb = wkbWriter.write(geom);
+
+            int flags = 0x01;// little endian
+            if (writeEnvelope) {
+                flags |= 0x01 << 1;// envelope is [minx, maxx, miny, maxy], 32 bytes
+            }
+            if (empty) {
+                flags |= 0x01 << 4;
+            }
+            ByteBuffer buff = ByteBuffer.allocate(8 + (writeEnvelope ? 32 : 0) + wkb.length);
+            buff.order(ByteOrder.LITTLE_ENDIAN);
+            buff.put((byte) 'G').put((byte) 'P');
+            buff.put((byte) 0);// version
+            buff.put((byte) flags);
+            buff.putInt(srid);
+            if (!empty) {
+                Envelope env = geom.getEnvelopeInternal();
+                bounds.expandToInclude(env);
+                if (writeEnvelope) {
+                    buff.putDouble(env.getMinX());
+                    buff.putDouble(env.getMaxX());
+                    buff.putDouble(env.getMinY());
+                    buff.putDouble(env.getMaxY());
+                }
+            }
+            buff.put(wkb);
+            return buff.array();
+        }
+    }
+}
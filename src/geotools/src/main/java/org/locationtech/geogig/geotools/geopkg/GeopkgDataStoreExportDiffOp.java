@@ -10,6 +10,7 @@
 package org.locationtech.geogig.geotools.geopkg;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -38,11 +39,17 @@ import com.google.common.base.Throwables;
  * Exports changes between two commits to a geopackage file. The features that were changed between
  * the two commits are written to a table in the geopackage, and the change types are logged in a
  * change table.
+ * <p>
+ * By default features are written straight to the geopackage file through a
+ * {@link GeopkgBulkWriter}, {@link #setBulkWrite(boolean) setBulkWrite(false)} makes it go through
+ * the GeoTools {@link DataStore} API instead.
  */
 public class GeopkgDataStoreExportDiffOp extends DataStoreExportOp<File> {
 
     private File geopackage;
 
+    private boolean bulkWrite = true;
+
     private final ConcurrentMap<String, String> fidMappings = new ConcurrentHashMap<String, String>();
 
     private final AtomicLong nextId = new AtomicLong(1);
@@ -80,6 +87,16 @@ public class GeopkgDataStoreExportDiffOp extends DataStoreExportOp<File> {
         return this;
     }
 
+    /**
+     * @param bulkWrite whether to write the features straight to the geopackage file through a
+     *        {@link GeopkgBulkWriter} (the default), or through the GeoTools datastore API
+     * @return {@code this}
+     */
+    public GeopkgDataStoreExportDiffOp setBulkWrite(boolean bulkWrite) {
+        this.bulkWrite = bulkWrite;
+        return this;
+    }
+
     @Override
     protected void export(final String refSpec, final DataStore targetStore,
             final String targetTableName, final ProgressListener progress) {
@@ -99,10 +116,22 @@ public class GeopkgDataStoreExportDiffOp extends DataStoreExportOp<File> {
             }
         }
 
-        super.export(refSpec, targetStore, targetTableName, progress);
+        if (bulkWrite) {
+            try (GeopkgBulkWriter writer = new GeopkgBulkWriter(geopackage)) {
+                // only fetch the features that were part of the diff
+                writer.export(context(), refSpec, targetTableName, getBBoxFilter(),
+                        (n) -> changedNodes.containsKey(n.name()), progress);
+            } catch (IOException e) {
+                throw Throwables.propagate(e);
+            }
+        } else {
+            super.export(refSpec, targetStore, targetTableName, progress);
+        }
 
         try {
-            format.createFIDMappingTable(fidMappings, targetTableName);
+            if (!bulkWrite) {
+                format.createFIDMappingTable(fidMappings, targetTableName);
+            }
             // create change log
             format.createChangeLog(targetTableName, changedNodes);
         } catch (Exception e) {
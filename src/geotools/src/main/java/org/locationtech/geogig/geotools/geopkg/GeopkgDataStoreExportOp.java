@@ -34,17 +34,24 @@ import com.google.common.base.Throwables;
  * Enabling the GeoGig geopackage interchange format extension is enabled through the
  * {@link #setInterchangeFormat(boolean) interchangeFormat} argument.
  * <p>
+ * By default features are written straight to the geopackage file through a
+ * {@link GeopkgBulkWriter}, {@link #setBulkWrite(boolean) setBulkWrite(false)} makes it go through
+ * the GeoTools {@link DataStore} API instead.
+ * <p>
  * Implementation detail: since the GeoTools geopackage datastore does not expose the file it writes
  * to, it shall be given as an argument through {@link #setDatabaseFile(File)}, while the
  * {@link DataStore} given at {@link #setDataStore} must already be a geopackage one.
  * 
  * @see DataStoreExportOp
  * @see GeopkgAuditExport
+ * @see GeopkgBulkWriter
  */
 public class GeopkgDataStoreExportOp extends DataStoreExportOp<File> {
 
     private boolean enableInterchangeFormat;
 
+    private boolean bulkWrite = true;
+
     private File geopackage;
 
     private final ConcurrentMap<String, String> fidMappings = new ConcurrentHashMap<String, String>();
@@ -62,21 +69,40 @@ public class GeopkgDataStoreExportOp extends DataStoreExportOp<File> {
     }
 
     /**
-     * Overrides to call {@code super.export} and then enable the geopackage interchange format
-     * after the data has been exported for the given layer. {@inheritDoc}
+     * @param bulkWrite whether to write the features straight to the geopackage file through a
+     *        {@link GeopkgBulkWriter} (the default), or through the GeoTools datastore API
+     */
+    public GeopkgDataStoreExportOp setBulkWrite(boolean bulkWrite) {
+        this.bulkWrite = bulkWrite;
+        return this;
+    }
+
+    /**
+     * Overrides to either export the layer through a {@link GeopkgBulkWriter} or call
+     * {@code super.export}, and then enable the geopackage interchange format after the data has
+     * been exported for the given layer. {@inheritDoc}
      */
     @Override
     protected void export(final String refSpec, final DataStore targetStore,
             final String targetTableName, final ProgressListener progress) {
 
-        super.export(refSpec, targetStore, targetTableName, progress);
-
-        InterchangeFormat format = new InterchangeFormat(geopackage, context());
-
-        try {
-            format.createFIDMappingTable(fidMappings, targetTableName);
-        } catch (IOException e) {
-            Throwables.propagate(e);
+        if (bulkWrite) {
+            try (GeopkgBulkWriter writer = new GeopkgBulkWriter(geopackage)) {
+                writer.export(context(), refSpec, targetTableName, getBBoxFilter(), null,
+                        progress);
+            } catch (IOException e) {
+                throw Throwables.propagate(e);
+            }
+        } else {
+            super.export(refSpec, targetStore, targetTableName, progress);
+
+            InterchangeFormat format = new InterchangeFormat(geopackage, context());
+
+            try {
+                format.createFIDMappingTable(fidMappings, targetTableName);
+            } catch (IOException e) {
+                Throwables.propagate(e);
+            }
         }
 
         if (enableInterchangeFormat) {
@@ -110,6 +110,14 @@ public abstract class DataStoreExportOp<T> extends AbstractGeoGigOp<T> {
         return this;
     }
 
+    /**
+     * @return the bounding box filter to apply to all exported layers, or {@code null}
+     */
+    @Nullable
+    protected ReferencedEnvelope getBBoxFilter() {
+        return bboxFilter;
+    }
+
     @Override
     protected T _call() {
 
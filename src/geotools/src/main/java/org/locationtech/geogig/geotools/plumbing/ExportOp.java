@@ -509,7 +509,7 @@ public class ExportOp extends AbstractGeoGigOp<SimpleFeatureStore> {
         return this;
     }
 
-    private static class BBoxPredicate implements Predicate<Bounded> {
+    public static class BBoxPredicate implements Predicate<Bounded> {
 
         private final ObjectStore store;
 
@@ -19,7 +19,7 @@ public class GeoToolsOpException extends RuntimeException {
      * Enumeration of possible status codes that indicate what type of exception occurred.
      */
     public enum StatusCode {
-        ALL_AND_TABLE_DEFINED, DATASTORE_NOT_DEFINED, TABLE_NOT_DEFINED, NO_FEATURES_FOUND, TABLE_NOT_FOUND, UNABLE_TO_GET_NAMES, UNABLE_TO_GET_FEATURES, UNABLE_TO_INSERT, UNABLE_TO_ADD, CANNOT_CREATE_FEATURESTORE, ALTER_AND_ALL_DEFINED, MIXED_FEATURE_TYPES, INCOMPATIBLE_FEATURE_TYPE
+        ALL_AND_TABLE_DEFINED, DATASTORE_NOT_DEFINED, TABLE_NOT_DEFINED, NO_FEATURES_FOUND, TABLE_NOT_FOUND, UNABLE_TO_GET_NAMES, UNABLE_TO_GET_FEATURES, UNABLE_TO_INSERT, UNABLE_TO_ADD, CANNOT_CREATE_FEATURESTORE, ALTER_AND_ALL_DEFINED, MIXED_FEATURE_TYPES, INCOMPATIBLE_FEATURE_TYPE, TABLE_ALREADY_EXISTS
     }
 
     /**
@@ -0,0 +1,513 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.geotools.postgis;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.lang.String.format;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.geotools.referencing.CRS;
+import org.locationtech.geogig.data.retrieve.BulkFeatureRetriever;
+import org.locationtech.geogig.geotools.plumbing.GeoToolsOpException;
+import org.locationtech.geogig.geotools.plumbing.GeoToolsOpException.StatusCode;
+import org.locationtech.geogig.model.Bucket;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevFeatureType;
+import org.locationtech.geogig.model.RevObject.TYPE;
+import org.locationtech.geogig.model.RevTree;
+import org.locationtech.geogig.plumbing.FindTreeChild;
+import org.locationtech.geogig.plumbing.ResolveTreeish;
+import org.locationtech.geogig.plumbing.diff.DepthTreeIterator;
+import org.locationtech.geogig.plumbing.diff.DepthTreeIterator.Strategy;
+import org.locationtech.geogig.repository.AutoCloseableIterator;
+import org.locationtech.geogig.repository.Context;
+import org.locationtech.geogig.repository.FeatureInfo;
+import org.locationtech.geogig.repository.NodeRef;
+import org.locationtech.geogig.repository.ProgressListener;
+import org.locationtech.geogig.storage.ObjectDatabase;
+import org.locationtech.geogig.storage.ObjectStore;
+import org.opengis.feature.type.GeometryDescriptor;
+import org.opengis.referencing.FactoryException;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Writes GeoGig feature trees straight to PostGIS tables using the PostgreSQL binary {@code COPY}
+ * protocol, bypassing the GeoTools {@code SimpleFeatureStore} API.
+ * <p>
+ * For each exported tree the writer:
+ * <ul>
+ * <li>creates the target table with a {@code fid} column holding the geogig feature ids and one
+ * column per attribute, with no constraints nor indexes;
+ * <li>splits the tree's top level buckets in as many contiguous ranges as the configured
+ * parallelism, and streams each range through its own {@code COPY ... FROM STDIN (FORMAT binary)}
+ * on a separate connection, encoding {@link org.locationtech.geogig.model.RevFeature RevFeature}
+ * values (geometries as EWKB) without building intermediate GeoTools features;
+ * <li>once all the streams for all the trees finished, adds the {@code fid} primary key and the
+ * {@code GIST} index on the geometry column, and analyzes the table.
+ * </ul>
+ * <p>
+ * Several trees can be exported in one go with {@link #export(Context, Map, ProgressListener)},
+ * in which case the copy streams of all of them share the same pool of connections.
+ * <p>
+ * If any stream fails, or the export is canceled, all the tables created by the export are
+ * dropped.
+ */
+public class PGBulkWriter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PGBulkWriter.class);
+
+    public static final int DEFAULT_PARALLELISM = Math.max(2,
+            Math.min(8, Runtime.getRuntime().availableProcessors()));
+
+    /**
+     * Number of features between progress updates and cancellation checks
+     */
+    private static final int PROGRESS_INTERVAL = 1_000;
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final String url;
+
+    private final String schema;
+
+    private final String user;
+
+    private final String password;
+
+    private int parallelism = DEFAULT_PARALLELISM;
+
+    private boolean overwrite;
+
+    private boolean defaultFeatureTypeOnly;
+
+    public PGBulkWriter(final String host, final int port, final String database,
+            final String schema, final String user, final String password) {
+        checkNotNull(host);
+        checkNotNull(database);
+        checkNotNull(schema);
+        this.url = format("jdbc:postgresql://%s:%d/%s", host, port, database);
+        this.schema = schema;
+        this.user = user;
+        this.password = password;
+    }
+
+    /**
+     * @param parallelism max number of concurrent copy streams, and hence database connections
+     */
+    public PGBulkWriter setParallelism(int parallelism) {
+        checkArgument(parallelism > 0, "parallelism must be > 0");
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * @param overwrite whether to drop and re-create target tables that already exist, instead of
+     *        failing
+     */
+    public PGBulkWriter setOverwrite(boolean overwrite) {
+        this.overwrite = overwrite;
+        return this;
+    }
+
+    /**
+     * @param defaultFeatureTypeOnly whether to export only the features of each tree's default
+     *        feature type, skipping the others, instead of failing if the trees contain mixed
+     *        feature types
+     */
+    public PGBulkWriter setDefaultFeatureTypeOnly(boolean defaultFeatureTypeOnly) {
+        this.defaultFeatureTypeOnly = defaultFeatureTypeOnly;
+        return this;
+    }
+
+    /**
+     * Exports the features of the feature tree {@code treeSpec} resolves to, to a new
+     * {@code tableName} table.
+     *
+     * @param context the repository context
+     * @param treeSpec the feature tree to export, in the form {@code <commit-ish>:<tree path>}
+     * @param tableName the name of the table to create
+     * @param featureTypeId if given, only the features of this feature type are exported and the
+     *        table is created after it; otherwise the tree's default feature type is used and,
+     *        unless {@link #setDefaultFeatureTypeOnly default feature type only} is set, all its
+     *        features must comply to it
+     * @param progress progress listener
+     * @return the number of features exported, zero if the export was canceled
+     * @throws GeoToolsOpException with {@code MIXED_FEATURE_TYPES} status code if the tree
+     *         contains features of a feature type other than the one used to create the table and
+     *         no feature type filter applies, or with {@code TABLE_ALREADY_EXISTS} status code if
+     *         the table already exists and overwrite is not set
+     */
+    public long export(final Context context, final String treeSpec, final String tableName,
+            final @Nullable ObjectId featureTypeId, final ProgressListener progress) {
+
+        TableExport export = resolve(context, treeSpec, tableName, featureTypeId);
+        return export(context.objectDatabase(), ImmutableMap.of(tableName, export), progress);
+    }
+
+    /**
+     * Exports several feature trees concurrently.
+     *
+     * @param context the repository context
+     * @param tables mapping of target table names to the feature trees to export to them, in the
+     *        form {@code <commit-ish>:<tree path>}
+     * @param progress progress listener
+     * @return the total number of features exported, zero if the export was canceled
+     * @throws GeoToolsOpException with {@code TABLE_ALREADY_EXISTS} status code if any of the
+     *         tables already exists and overwrite is not set
+     */
+    public long export(final Context context, final Map<String, String> tables,
+            final ProgressListener progress) {
+        ImmutableMap.Builder<String, TableExport> exports = ImmutableMap.builder();
+        tables.forEach((tableName, treeSpec) -> exports.put(tableName,
+                resolve(context, treeSpec, tableName, null)));
+        return export(context.objectDatabase(), exports.build(), progress);
+    }
+
+    private TableExport resolve(final Context context, final String treeSpec,
+            final String tableName, final @Nullable ObjectId featureTypeId) {
+
+        checkNotNull(tableName);
+        checkArgument(treeSpec.indexOf(':') > 0, "Invalid tree spec: %s", treeSpec);
+        final String rootTreeish = treeSpec.substring(0, treeSpec.indexOf(':'));
+        final String treePath = treeSpec.substring(treeSpec.indexOf(':') + 1);
+
+        final ObjectDatabase database = context.objectDatabase();
+        final Optional<ObjectId> rootTreeId = context.command(ResolveTreeish.class)
+                .setTreeish(rootTreeish).call();
+        checkArgument(rootTreeId.isPresent(), "Invalid tree spec: %s", rootTreeish);
+        final RevTree rootTree = database.getTree(rootTreeId.get());
+
+        final Optional<NodeRef> typeTreeRef = context.command(FindTreeChild.class)
+                .setParent(rootTree).setChildPath(treePath).call();
+        checkArgument(typeTreeRef.isPresent(), "Type tree %s does not exist", treeSpec);
+        checkArgument(TYPE.TREE.equals(typeTreeRef.get().getType()),
+                "%s did not resolve to a tree", treeSpec);
+
+        TableExport export = new TableExport();
+        export.treeSpec = treeSpec;
+        export.tableName = tableName;
+        export.defaultMetadataId = typeTreeRef.get().getMetadataId();
+        export.tree = database.getTree(typeTreeRef.get().getObjectId());
+        if (featureTypeId == null) {
+            export.featureTypeFilter = defaultFeatureTypeOnly ? export.defaultMetadataId : null;
+            export.featureType = database.getFeatureType(export.defaultMetadataId);
+        } else {
+            export.featureTypeFilter = featureTypeId;
+            export.featureType = database.getFeatureType(featureTypeId);
+        }
+        export.srid = resolveSRID(export.featureType);
+        return export;
+    }
+
+    private long export(final ObjectStore store, final Map<String, TableExport> exports,
+            final ProgressListener progress) {
+
+        final long expectedSize = exports.values().stream().mapToLong((e) -> e.tree.size())
+                .sum();
+        progress.started();
+        progress.setDescription(format("Exporting %s... ", exports.keySet()));
+
+        final List<String> created = new ArrayList<>();
+        final ExecutorService executor = Executors.newFixedThreadPool(parallelism,
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("pg-copy-%d").build());
+        final AtomicLong count = new AtomicLong();
+        try {
+            try (Connection cx = connect()) {
+                for (TableExport export : exports.values()) {
+                    createTable(cx, export);
+                    created.add(export.tableName);
+                }
+            }
+
+            List<Future<?>> copies = new ArrayList<>();
+            for (TableExport export : exports.values()) {
+                for (Iterator<NodeRef> range : partition(export, store)) {
+                    copies.add(executor.submit(() -> copy(export, range, store, count,
+                            expectedSize, progress)));
+                }
+            }
+            await(copies);
+            if (progress.isCanceled()) {
+                dropTables(created);
+                return 0L;
+            }
+
+            progress.setDescription("Creating indexes...");
+            List<Future<?>> indexes = new ArrayList<>();
+            for (TableExport export : exports.values()) {
+                indexes.add(executor.submit(() -> createIndexes(export)));
+            }
+            await(indexes);
+        } catch (RuntimeException | SQLException e) {
+            executor.shutdownNow();
+            dropTables(created);
+            throw Throwables.propagate(e);
+        } finally {
+            executor.shutdownNow();
+        }
+        progress.complete();
+        return count.get();
+    }
+
+    private void await(List<Future<?>> futures) {
+        try {
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            throw Throwables.propagate(e);
+        } catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        } finally {
+            futures.forEach((f) -> f.cancel(true));
+        }
+    }
+
+    /**
+     * Splits the tree into at most {@code parallelism} node iterators, each traversing a
+     * contiguous range of the root tree's buckets
+     */
+    private List<Iterator<NodeRef>> partition(final TableExport export, final ObjectStore store) {
+        final RevTree tree = export.tree;
+        final ObjectId metadataId = export.defaultMetadataId;
+        List<Iterator<NodeRef>> ranges = new ArrayList<>();
+        if (tree.buckets().isEmpty()) {
+            ranges.add(new DepthTreeIterator("", metadataId, tree, store,
+                    Strategy.FEATURES_ONLY));
+        } else {
+            List<Bucket> buckets = new ArrayList<>(tree.buckets().values());
+            int rangeSize = (int) Math.ceil((double) buckets.size() / parallelism);
+            for (List<Bucket> range : Lists.partition(buckets, rangeSize)) {
+                Iterator<Iterator<NodeRef>> iterators = Iterators.transform(range.iterator(),
+                        (b) -> new DepthTreeIterator("", metadataId,
+                                store.getTree(b.getObjectId()), store, Strategy.FEATURES_ONLY));
+                ranges.add(Iterators.concat(iterators));
+            }
+        }
+        if (export.featureTypeFilter != null) {
+            final ObjectId typeFilter = export.featureTypeFilter;
+            ranges = Lists.transform(ranges, (r) -> Iterators.filter(r,
+                    (n) -> typeFilter.equals(n.getMetadataId())));
+        }
+        return ranges;
+    }
+
+    private void copy(final TableExport export, final Iterator<NodeRef> nodes,
+            final ObjectStore store, final AtomicLong count, final long expectedSize,
+            final ProgressListener progress) {
+
+        final PGCopyEncoder encoder = new PGCopyEncoder(export.featureType, export.srid);
+
+        StringBuilder sql = new StringBuilder("COPY ").append(table(export.tableName))
+                .append(" (\"fid\"");
+        for (String col : encoder.columnNames) {
+            sql.append(", ").append(escape(col));
+        }
+        sql.append(") FROM STDIN (FORMAT binary)");
+
+        BulkFeatureRetriever retriever = new BulkFeatureRetriever(store);
+        try (Connection cx = connect();
+                AutoCloseableIterator<FeatureInfo> features = retriever.getGeoGIGFeatures(nodes,
+                        true)) {
+            cx.setAutoCommit(false);
+            PGCopyOutputStream copyStream = new PGCopyOutputStream(cx.unwrap(PGConnection.class),
+                    log(sql.toString()));
+            try {
+                DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(copyStream, COPY_BUFFER_SIZE));
+                encoder.writeHeader(out);
+                long streamCount = 0;
+                while (features.hasNext()) {
+                    encoder.encode(features.next(), out);
+                    streamCount++;
+                    if (streamCount % PROGRESS_INTERVAL == 0) {
+                        long total = count.addAndGet(PROGRESS_INTERVAL);
+                        if (expectedSize > 0) {
+                            progress.setProgress((total * 100f) / expectedSize);
+                        }
+                        if (progress.isCanceled() || Thread.currentThread().isInterrupted()) {
+                            copyStream.cancelCopy();
+                            return;
+                        }
+                    }
+                }
+                count.addAndGet(streamCount % PROGRESS_INTERVAL);
+                encoder.writeTrailer(out);
+                out.flush();
+                copyStream.endCopy();
+            } catch (IOException | RuntimeException e) {
+                if (copyStream.isActive()) {
+                    copyStream.cancelCopy();
+                }
+                cx.rollback();
+                throw e;
+            }
+            cx.commit();
+        } catch (SQLException | IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    private void createTable(final Connection cx, final TableExport export) throws SQLException {
+        final String tableName = export.tableName;
+        final boolean exists = tableExists(cx, tableName);
+        if (exists && !overwrite) {
+            throw new GeoToolsOpException(StatusCode.TABLE_ALREADY_EXISTS,
+                    format("Table '%s' already exists", tableName));
+        }
+        try (Statement st = cx.createStatement()) {
+            if (exists) {
+                st.execute(log(format("DROP TABLE %s", table(tableName))));
+            }
+            PGCopyEncoder encoder = new PGCopyEncoder(export.featureType, export.srid);
+            StringBuilder sql = new StringBuilder("CREATE TABLE ").append(table(tableName))
+                    .append(" (\"fid\" VARCHAR");
+            for (int i = 0; i < encoder.columnNames.length; i++) {
+                sql.append(", ").append(escape(encoder.columnNames[i])).append(' ')
+                        .append(encoder.columnTypes[i]);
+            }
+            sql.append(')');
+            st.execute(log(sql.toString()));
+        }
+    }
+
+    private void createIndexes(final TableExport export) {
+        final String tableName = export.tableName;
+        final GeometryDescriptor geometryDescriptor = export.featureType.type()
+                .getGeometryDescriptor();
+        try (Connection cx = connect(); Statement st = cx.createStatement()) {
+            st.execute(log(format("ALTER TABLE %s ADD PRIMARY KEY (\"fid\")", table(tableName))));
+            if (geometryDescriptor != null) {
+                String column = geometryDescriptor.getLocalName();
+                st.execute(log(format("CREATE INDEX %s ON %s USING GIST (%s)",
+                        escape(format("spatial_%s_%s", tableName, column).toLowerCase()),
+                        table(tableName), escape(column))));
+            }
+            st.execute(log(format("ANALYZE %s", table(tableName))));
+        } catch (SQLException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    private void dropTables(List<String> tables) {
+        try (Connection cx = connect(); Statement st = cx.createStatement()) {
+            for (String tableName : tables) {
+                st.execute(log(format("DROP TABLE IF EXISTS %s", table(tableName))));
+            }
+        } catch (SQLException e) {
+            LOG.warn("Error dropping tables {} after failed or canceled export", tables, e);
+        }
+    }
+
+    private boolean tableExists(Connection cx, String tableName) throws SQLException {
+        final String sql = "SELECT 1 FROM information_schema.tables "
+                + "WHERE table_schema = ? AND table_name = ?";
+        try (PreparedStatement st = cx.prepareStatement(log(sql))) {
+            st.setString(1, schema);
+            st.setString(2, tableName);
+            try (ResultSet rs = st.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private int resolveSRID(RevFeatureType featureType) {
+        GeometryDescriptor geometryDescriptor = featureType.type().getGeometryDescriptor();
+        if (geometryDescriptor == null) {
+            return 0;
+        }
+        CoordinateReferenceSystem crs = geometryDescriptor.getCoordinateReferenceSystem();
+        if (crs == null) {
+            return 0;
+        }
+        try {
+            Integer srid = CRS.lookupEpsgCode(crs, true);
+            return srid == null ? 0 : srid.intValue();
+        } catch (FactoryException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    private Connection connect() throws SQLException {
+        return DriverManager.getConnection(url, user, password);
+    }
+
+    private String table(String tableName) {
+        return escape(schema) + "." + escape(tableName);
+    }
+
+    private static String escape(String identifier) {
+        return '"' + identifier.replace("\"", "\"\"") + '"';
+    }
+
+    private static String log(String sql) {
+        LOG.debug(sql);
+        return sql;
+    }
+
+    @Override
+    public String toString() {
+        return format("%s[%s, schema: %s]", getClass().getSimpleName(), url, schema);
+    }
+
+    private static class TableExport {
+
+        String treeSpec;
+
+        String tableName;
+
+        RevTree tree;
+
+        ObjectId defaultMetadataId;
+
+        @Nullable
+        ObjectId featureTypeFilter;
+
+        RevFeatureType featureType;
+
+        int srid;
+
+        @Override
+        public String toString() {
+            return format("%s -> %s", treeSpec, tableName);
+        }
+    }
+}
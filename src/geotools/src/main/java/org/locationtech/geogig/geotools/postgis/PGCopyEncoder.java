@@ -0,0 +1,322 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.geotools.postgis;
+
+import static com.google.common.base.Charsets.UTF_8;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import org.locationtech.geogig.geotools.plumbing.GeoToolsOpException;
+import org.locationtech.geogig.geotools.plumbing.GeoToolsOpException.StatusCode;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevFeature;
+import org.locationtech.geogig.model.RevFeatureType;
+import org.locationtech.geogig.repository.FeatureInfo;
+import org.opengis.feature.type.GeometryDescriptor;
+import org.opengis.feature.type.PropertyDescriptor;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Strings;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryCollection;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.MultiLineString;
+import com.vividsolutions.jts.geom.MultiPoint;
+import com.vividsolutions.jts.geom.MultiPolygon;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.io.ByteOrderValues;
+import com.vividsolutions.jts.io.WKBWriter;
+
+/**
+ * Maps a feature type to PostgreSQL table columns and encodes {@link FeatureInfo}s as tuples of
+ * the PostgreSQL binary {@code COPY} format.
+ * <p>
+ * The table's first column is a {@code fid VARCHAR} holding the geogig feature id, followed by one
+ * column per attribute. Geometries are encoded as EWKB, which is what PostGIS' {@code geometry}
+ * binary input function expects.
+ * <p>
+ * Not thread safe, each copy stream shall use its own instance.
+ */
+class PGCopyEncoder {
+
+    private static final byte[] HEADER = { 'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r',
+            '\n', 0 };
+
+    /**
+     * PostgreSQL epoch, {@code 2000-01-01}, in days since the unix epoch
+     */
+    private static final long PG_EPOCH_DAYS = 10_957L;
+
+    /**
+     * PostgreSQL epoch, {@code 2000-01-01T00:00:00Z}, in milliseconds since the unix epoch
+     */
+    private static final long PG_EPOCH_MILLIS = PG_EPOCH_DAYS * 24 * 60 * 60 * 1000;
+
+    private static final short NUMERIC_NEG = 0x4000;
+
+    final ObjectId featureTypeId;
+
+    final String[] columnNames;
+
+    final String[] columnTypes;
+
+    private final Class<?>[] bindings;
+
+    final int geometryIndex;
+
+    private final int srid;
+
+    private final WKBWriter ewkbWriter;
+
+    PGCopyEncoder(final RevFeatureType featureType, final int srid) {
+        this.featureTypeId = featureType.getId();
+        this.srid = srid;
+        this.ewkbWriter = new WKBWriter(2, ByteOrderValues.BIG_ENDIAN, srid > 0);
+
+        List<PropertyDescriptor> descriptors = featureType.descriptors();
+        final int size = descriptors.size();
+        this.columnNames = new String[size];
+        this.columnTypes = new String[size];
+        this.bindings = new Class<?>[size];
+        GeometryDescriptor geometryDescriptor = featureType.type().getGeometryDescriptor();
+        int geomIndex = -1;
+        for (int i = 0; i < size; i++) {
+            PropertyDescriptor descriptor = descriptors.get(i);
+            Class<?> binding = descriptor.getType().getBinding();
+            columnNames[i] = descriptor.getName().getLocalPart();
+            columnTypes[i] = sqlType(binding, srid);
+            bindings[i] = binding;
+            if (geometryDescriptor != null
+                    && geometryDescriptor.getName().equals(descriptor.getName())) {
+                geomIndex = i;
+            }
+        }
+        this.geometryIndex = geomIndex;
+    }
+
+    /**
+     * @return the PostgreSQL column type for the given attribute binding
+     */
+    static String sqlType(Class<?> binding, int srid) {
+        if (Geometry.class.isAssignableFrom(binding)) {
+            String type = "GEOMETRY";
+            if (Point.class.equals(binding)) {
+                type = "POINT";
+            } else if (LineString.class.isAssignableFrom(binding)) {
+                type = "LINESTRING";
+            } else if (Polygon.class.equals(binding)) {
+                type = "POLYGON";
+            } else if (MultiPoint.class.equals(binding)) {
+                type = "MULTIPOINT";
+            } else if (MultiLineString.class.equals(binding)) {
+                type = "MULTILINESTRING";
+            } else if (MultiPolygon.class.equals(binding)) {
+                type = "MULTIPOLYGON";
+            } else if (GeometryCollection.class.equals(binding)) {
+                type = "GEOMETRYCOLLECTION";
+            }
+            return srid > 0 ? String.format("geometry(%s, %d)", type, srid)
+                    : String.format("geometry(%s)", type);
+        }
+        if (Boolean.class.equals(binding)) {
+            return "BOOLEAN";
+        } else if (Byte.class.equals(binding) || Short.class.equals(binding)) {
+            return "SMALLINT";
+        } else if (Integer.class.equals(binding)) {
+            return "INTEGER";
+        } else if (Long.class.equals(binding)) {
+            return "BIGINT";
+        } else if (Float.class.equals(binding)) {
+            return "REAL";
+        } else if (Double.class.equals(binding)) {
+            return "DOUBLE PRECISION";
+        } else if (BigDecimal.class.equals(binding) || BigInteger.class.equals(binding)) {
+            return "NUMERIC";
+        } else if (java.sql.Date.class.equals(binding)) {
+            return "DATE";
+        } else if (java.sql.Time.class.equals(binding)) {
+            return "TIME";
+        } else if (Date.class.isAssignableFrom(binding)) {
+            return "TIMESTAMP";
+        } else if (byte[].class.equals(binding)) {
+            return "BYTEA";
+        } else if (UUID.class.equals(binding)) {
+            return "UUID";
+        }
+        return "VARCHAR";
+    }
+
+    /**
+     * Writes the binary copy signature, flags, and (empty) header extension area
+     */
+    public void writeHeader(DataOutput out) throws IOException {
+        out.write(HEADER);
+        out.writeInt(0);
+        out.writeInt(0);
+    }
+
+    public void writeTrailer(DataOutput out) throws IOException {
+        out.writeShort(-1);
+    }
+
+    public void encode(final FeatureInfo info, final DataOutput out) throws IOException {
+        if (!featureTypeId.equals(info.getFeatureTypeId())) {
+            throw new GeoToolsOpException(StatusCode.MIXED_FEATURE_TYPES);
+        }
+        final RevFeature feature = info.getFeature();
+        final int size = columnNames.length;
+        out.writeShort(size + 1);
+        writeBytes(info.getName().getBytes(UTF_8), out);
+        for (int i = 0; i < size; i++) {
+            Optional<Object> value = feature.get(i);
+            if (value.isPresent()) {
+                writeValue(value.get(), bindings[i], out);
+            } else {
+                out.writeInt(-1);
+            }
+        }
+    }
+
+    private void writeValue(final Object value, final Class<?> binding, final DataOutput out)
+            throws IOException {
+
+        if (value instanceof Geometry) {
+            writeGeometry((Geometry) value, out);
+        } else if (value instanceof Boolean) {
+            out.writeInt(1);
+            out.writeBoolean(((Boolean) value).booleanValue());
+        } else if (Byte.class.equals(binding) || Short.class.equals(binding)) {
+            out.writeInt(2);
+            out.writeShort(((Number) value).shortValue());
+        } else if (Integer.class.equals(binding)) {
+            out.writeInt(4);
+            out.writeInt(((Number) value).intValue());
+        } else if (Long.class.equals(binding)) {
+            out.writeInt(8);
+            out.writeLong(((Number) value).longValue());
+        } else if (Float.class.equals(binding)) {
+            out.writeInt(4);
+            out.writeFloat(((Number) value).floatValue());
+        } else if (Double.class.equals(binding)) {
+            out.writeInt(8);
+            out.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof BigDecimal) {
+            writeNumeric((BigDecimal) value, out);
+        } else if (value instanceof BigInteger) {
+            writeNumeric(new BigDecimal((BigInteger) value), out);
+        } else if (value instanceof java.sql.Date) {
+            out.writeInt(4);
+            long days = ((java.sql.Date) value).toLocalDate().toEpochDay();
+            out.writeInt((int) (days - PG_EPOCH_DAYS));
+        } else if (value instanceof java.sql.Time) {
+            out.writeInt(8);
+            long nanos = ((java.sql.Time) value).toLocalTime().toNanoOfDay();
+            out.writeLong(nanos / 1000);
+        } else if (value instanceof Date && Date.class.isAssignableFrom(binding)) {
+            out.writeInt(8);
+            out.writeLong(toMicros((Date) value));
+        } else if (value instanceof byte[]) {
+            writeBytes((byte[]) value, out);
+        } else if (value instanceof UUID) {
+            UUID uuid = (UUID) value;
+            out.writeInt(16);
+            out.writeLong(uuid.getMostSignificantBits());
+            out.writeLong(uuid.getLeastSignificantBits());
+        } else {
+            writeBytes(String.valueOf(value).getBytes(UTF_8), out);
+        }
+    }
+
+    /**
+     * @return microseconds since the PostgreSQL epoch
+     */
+    private static long toMicros(Date date) {
+        final long millis = date.getTime() - PG_EPOCH_MILLIS;
+        if (date instanceof java.sql.Timestamp) {
+            long seconds = Math.floorDiv(millis, 1000L);
+            int nanos = ((java.sql.Timestamp) date).getNanos();
+            return seconds * 1_000_000L + nanos / 1000;
+        }
+        return millis * 1000L;
+    }
+
+    private void writeGeometry(Geometry geom, DataOutput out) throws IOException {
+        if (geom.isEmpty() && geom instanceof Point) {
+            // empty points can't be represented in WKB
+            out.writeInt(-1);
+            return;
+        }
+        if (srid > 0) {
+            geom.setSRID(srid);
+        }
+        writeBytes(ewkbWriter.write(geom), out);
+    }
+
+    private static void writeBytes(byte[] bytes, DataOutput out) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Writes a {@code numeric} value as its sign, display scale, weight of the first base 10000
+     * digit, and the base 10000 digits themselves, without leading or trailing zero digits.
+     */
+    static void writeNumeric(final BigDecimal value, final DataOutput out) throws IOException {
+        final int dscale = Math.max(0, value.scale());
+        BigDecimal abs = value.abs();
+        if (abs.scale() < 0) {
+            abs = abs.setScale(0);
+        }
+        final String plain = abs.toPlainString();
+        final int dot = plain.indexOf('.');
+        final String intPart = dot == -1 ? plain : plain.substring(0, dot);
+        final String fracPart = dot == -1 ? "" : plain.substring(dot + 1);
+
+        final int intPad = (4 - intPart.length() % 4) % 4;
+        final int fracPad = (4 - fracPart.length() % 4) % 4;
+        final String digits = Strings.repeat("0", intPad) + intPart + fracPart
+                + Strings.repeat("0", fracPad);
+
+        final short[] groups = new short[digits.length() / 4];
+        for (int i = 0; i < groups.length; i++) {
+            groups[i] = Short.parseShort(digits.substring(4 * i, 4 * i + 4));
+        }
+        int weight = (intPart.length() + intPad) / 4 - 1;
+        int start = 0;
+        while (start < groups.length && groups[start] == 0) {
+            start++;
+            weight--;
+        }
+        int end = groups.length;
+        while (end > start && groups[end - 1] == 0) {
+            end--;
+        }
+        final int ndigits = end - start;
+        if (ndigits == 0) {
+            weight = 0;
+        }
+
+        out.writeInt(8 + 2 * ndigits);
+        out.writeShort(ndigits);
+        out.writeShort(weight);
+        out.writeShort(value.signum() < 0 ? NUMERIC_NEG : 0);
+        out.writeShort(dscale);
+        for (int i = start; i < end; i++) {
+            out.writeShort(groups[i]);
+        }
+    }
+}
@@ -9,6 +9,12 @@
  */
 package org.locationtech.geogig.geotools.cli.postgis;
 
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
 import java.util.Arrays;
 
 import org.junit.Rule;
@@ -19,6 +25,9 @@ import org.locationtech.geogig.cli.Console;
 import org.locationtech.geogig.cli.GeogigCLI;
 import org.locationtech.geogig.cli.InvalidParameterException;
 import org.locationtech.geogig.geotools.cli.TestHelper;
+import org.locationtech.geogig.geotools.plumbing.GeoToolsOpException;
+import org.locationtech.geogig.geotools.plumbing.GeoToolsOpException.StatusCode;
+import org.locationtech.geogig.geotools.postgis.PGBulkWriter;
 import org.locationtech.geogig.porcelain.CommitOp;
 import org.locationtech.geogig.test.integration.RepositoryTestCase;
 
@@ -60,6 +69,7 @@ public class PGExportTest extends RepositoryTestCase {
     public void testExport() throws Exception {
 
         PGExport exportCommand = new PGExport();
+        exportCommand.geotools = true;
         exportCommand.args = Arrays.asList("Points", "Points");
         exportCommand.support.dataStoreFactory = TestHelper.createTestFactory();
         exportCommand.run(cli);
@@ -68,6 +78,7 @@ public class PGExportTest extends RepositoryTestCase {
     @Test
     public void testNullDataStore() throws Exception {
         PGExport exportCommand = new PGExport();
+        exportCommand.geotools = true;
         exportCommand.args = Arrays.asList("Points", "Points");
         exportCommand.support.dataStoreFactory = TestHelper.createNullTestFactory();
         exception.expect(CommandFailedException.class);
@@ -86,6 +97,7 @@ public class PGExportTest extends RepositoryTestCase {
     @Test
     public void testExportToTableThatExists() throws Exception {
         PGExport exportCommand = new PGExport();
+        exportCommand.geotools = true;
         exportCommand.args = Arrays.asList("Points", "table1");
         exportCommand.support.dataStoreFactory = TestHelper.createTestFactory();
         exception.expect(CommandFailedException.class);
@@ -95,6 +107,7 @@ public class PGExportTest extends RepositoryTestCase {
     @Test
     public void testExportToTableThatExistsWithOverwrite() throws Exception {
         PGExport exportCommand = new PGExport();
+        exportCommand.geotools = true;
         exportCommand.args = Arrays.asList("WORK_HEAD:Points", "testTable");
         exportCommand.support.dataStoreFactory = TestHelper.createTestFactory();
         exportCommand.run(cli);
@@ -157,4 +170,48 @@ public class PGExportTest extends RepositoryTestCase {
         exception.expect(InvalidParameterException.class);
         exportCommand.run(cli);
     }
+
+    private PGExport copyExport(final PGBulkWriter writer) {
+        return new PGExport() {
+            @Override
+            PGBulkWriter newBulkWriter() {
+                return writer;
+            }
+        };
+    }
+
+    @Test
+    public void testCopyExport() throws Exception {
+        PGBulkWriter writer = mock(PGBulkWriter.class);
+        when(writer.export(any(), any(), any(), any(), any())).thenReturn(3L);
+        PGExport exportCommand = copyExport(writer);
+        exportCommand.args = Arrays.asList("Points", "Points");
+        exportCommand.run(cli);
+        verify(writer).export(any(), eq("WORK_HEAD:Points"), eq("Points"), any(), any());
+    }
+
+    @Test
+    public void testCopyExportToTableThatExists() throws Exception {
+        PGBulkWriter writer = mock(PGBulkWriter.class);
+        when(writer.export(any(), any(), any(), any(), any())).thenThrow(
+                new GeoToolsOpException(StatusCode.TABLE_ALREADY_EXISTS, "already exists"));
+        PGExport exportCommand = copyExport(writer);
+        exportCommand.args = Arrays.asList("Points", "Points");
+        exception.expect(CommandFailedException.class);
+        exception.expectMessage("The selected table already exists. Use -o to overwrite");
+        exportCommand.run(cli);
+    }
+
+    @Test
+    public void testCopyExportFailure() throws Exception {
+        PGBulkWriter writer = mock(PGBulkWriter.class);
+        when(writer.export(any(), any(), any(), any(), any()))
+                .thenThrow(new IllegalStateException("Connection refused"));
+        PGExport exportCommand = copyExport(writer);
+        exportCommand.args = Arrays.asList("Points", "Points");
+        exportCommand.overwrite = true;
+        exception.expect(CommandFailedException.class);
+        exception.expectMessage("Connection refused");
+        exportCommand.run(cli);
+    }
 }
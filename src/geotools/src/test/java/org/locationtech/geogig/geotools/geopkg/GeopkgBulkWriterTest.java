@@ -0,0 +1,219 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.geotools.geopkg;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.Set;
+
+import org.geotools.data.DataStore;
+import org.geotools.data.Query;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.data.simple.SimpleFeatureSource;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.geopkg.FeatureEntry;
+import org.geotools.geopkg.GeoPackage;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.locationtech.geogig.geotools.cli.geopkg.GeoPackageTestSupport;
+import org.locationtech.geogig.porcelain.CommitOp;
+import org.locationtech.geogig.repository.DefaultProgressListener;
+import org.locationtech.geogig.repository.NodeRef;
+import org.locationtech.geogig.repository.ProgressListener;
+import org.locationtech.geogig.test.integration.RepositoryTestCase;
+import org.opengis.feature.Feature;
+import org.opengis.feature.simple.SimpleFeature;
+
+import com.google.common.base.Predicate;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+
+public class GeopkgBulkWriterTest extends RepositoryTestCase {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    private GeoPackageTestSupport support;
+
+    private File file;
+
+    @Override
+    protected void setUpInternal() throws Exception {
+        support = new GeoPackageTestSupport(tempFolder.getRoot());
+        file = support.createEmptyDatabase();
+        insertAndAdd(points1, points2, points3, lines1, lines2, lines3);
+        geogig.command(CommitOp.class).setAll(true).call();
+    }
+
+    private long export(String treeSpec, String table, ReferencedEnvelope bbox,
+            Predicate<NodeRef> filter)
+            throws Exception {
+        return export(treeSpec, table, bbox, filter, new DefaultProgressListener());
+    }
+
+    private long export(String treeSpec, String table, ReferencedEnvelope bbox,
+            Predicate<NodeRef> filter, ProgressListener progress) throws Exception {
+        try (GeopkgBulkWriter writer = new GeopkgBulkWriter(file)) {
+            writer.setBatchSize(2);
+            return writer.export(geogig.getContext(), treeSpec, table, bbox, filter, progress);
+        }
+    }
+
+    private String journalMode() throws Exception {
+        GeoPackage geopkg = new GeoPackage(file);
+        try (Connection cx = geopkg.getDataSource().getConnection();
+                Statement st = cx.createStatement();
+                ResultSet rs = st.executeQuery("PRAGMA journal_mode")) {
+            assertTrue(rs.next());
+            return rs.getString(1);
+        } finally {
+            geopkg.close();
+        }
+    }
+
+    @Test
+    public void testExport() throws Exception {
+        assertEquals(3, export("HEAD:" + pointsName, pointsName, null, null));
+        assertEquals(3, export("HEAD:" + linesName, linesName, null, null));
+
+        DataStore store = support.createDataStore(file);
+        try {
+            assertFeatures(store, pointsName, points1, points2, points3);
+            assertFeatures(store, linesName, lines1, lines2, lines3);
+        } finally {
+            store.dispose();
+        }
+
+        GeoPackage geopkg = new GeoPackage(file);
+        try {
+            FeatureEntry entry = geopkg.feature(pointsName);
+            assertNotNull(entry);
+            assertTrue(geopkg.hasSpatialIndex(entry));
+            try (Connection cx = geopkg.getDataSource().getConnection();
+                    GeopkgGeogigMetadata metadata = new GeopkgGeogigMetadata(cx)) {
+                Map<String, String> mappings = metadata.getFidMappings(pointsName);
+                assertEquals(ImmutableSet.of(idP1, idP2, idP3),
+                        Sets.newHashSet(mappings.values()));
+            }
+        } finally {
+            geopkg.close();
+        }
+    }
+
+    @Test
+    public void testExportBBoxFilter() throws Exception {
+        ReferencedEnvelope bbox = (ReferencedEnvelope) points1.getBounds();
+        assertEquals(1, export("HEAD:" + pointsName, pointsName, bbox, null));
+
+        DataStore store = support.createDataStore(file);
+        try {
+            assertFeatures(store, pointsName, points1);
+        } finally {
+            store.dispose();
+        }
+    }
+
+    @Test
+    public void testExportNodeFilter() throws Exception {
+        assertEquals(2, export("HEAD:" + pointsName, pointsName, null,
+                (n) -> !idP2.equals(n.name())));
+
+        DataStore store = support.createDataStore(file);
+        try {
+            assertFeatures(store, pointsName, points1, points3);
+        } finally {
+            store.dispose();
+        }
+    }
+
+    @Test
+    public void testExportExistingTable() throws Exception {
+        export("HEAD:" + pointsName, pointsName, null, null);
+        exception.expect(IllegalStateException.class);
+        exception.expectMessage("already exists");
+        export("HEAD:" + pointsName, pointsName, null, null);
+    }
+
+    @Test
+    public void testExportCancelled() throws Exception {
+        DefaultProgressListener progress = new DefaultProgressListener();
+        progress.cancel();
+        assertEquals(0, export("HEAD:" + pointsName, pointsName, null, null, progress));
+
+        GeoPackage geopkg = new GeoPackage(file);
+        try {
+            assertNull(geopkg.feature(pointsName));
+        } finally {
+            geopkg.close();
+        }
+        // nothing left behind, the table can be exported again
+        assertEquals(3, export("HEAD:" + pointsName, pointsName, null, null));
+    }
+
+    @Test
+    public void testExportFailureRollsBack() throws Exception {
+        try {
+            export("HEAD:" + pointsName, pointsName, null, (n) -> {
+                if (idP3.equals(n.name())) {
+                    throw new IllegalStateException("failed");
+                }
+                return true;
+            });
+            fail("Expected exception");
+        } catch (RuntimeException e) {
+            // may come wrapped from the encoding thread
+            assertEquals("failed", Throwables.getRootCause(e).getMessage());
+        }
+        GeoPackage geopkg = new GeoPackage(file);
+        try {
+            assertNull(geopkg.feature(pointsName));
+        } finally {
+            geopkg.close();
+        }
+        assertEquals(3, export("HEAD:" + pointsName, pointsName, null, null));
+    }
+
+    @Test
+    public void testExportPreservesJournalModeOfExistingFile() throws Exception {
+        GeoPackage geopkg = new GeoPackage(file);
+        try (Connection cx = geopkg.getDataSource().getConnection();
+                Statement st = cx.createStatement()) {
+            st.execute("PRAGMA journal_mode = WAL");
+        } finally {
+            geopkg.close();
+        }
+        assertEquals("wal", journalMode());
+        export("HEAD:" + pointsName, pointsName, null, null);
+        assertEquals("wal", journalMode());
+    }
+
+    private void assertFeatures(DataStore store, String typeName,
+            Feature... expected) throws Exception {
+        SimpleFeatureSource source = store.getFeatureSource(typeName);
+        assertEquals(expected.length, source.getCount(Query.ALL));
+
+        Set<Object> expectedGeoms = Sets.newHashSet();
+        for (Feature f : expected) {
+            expectedGeoms.add(((SimpleFeature) f).getDefaultGeometry());
+        }
+        Set<Object> actualGeoms = Sets.newHashSet();
+        try (SimpleFeatureIterator it = source.getFeatures().features()) {
+            while (it.hasNext()) {
+                actualGeoms.add(it.next().getDefaultGeometry());
+            }
+        }
+        assertEquals(expectedGeoms, actualGeoms);
+    }
+}
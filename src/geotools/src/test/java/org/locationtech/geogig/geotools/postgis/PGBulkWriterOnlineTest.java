@@ -0,0 +1,158 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.geotools.postgis;
+
+import static java.lang.String.format;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.Test;
+import org.locationtech.geogig.geotools.cli.test.functional.IniPGProperties;
+import org.locationtech.geogig.geotools.plumbing.GeoToolsOpException;
+import org.locationtech.geogig.geotools.plumbing.GeoToolsOpException.StatusCode;
+import org.locationtech.geogig.repository.DefaultProgressListener;
+import org.locationtech.geogig.repository.ProgressListener;
+import org.locationtech.geogig.test.integration.RepositoryTestCase;
+
+/**
+ * Runs {@link PGBulkWriter} exports against the PostGIS database configured in
+ * {@code $HOME/.geogig-pg-tests.properties}
+ */
+public class PGBulkWriterOnlineTest extends RepositoryTestCase {
+
+    private final IniPGProperties properties = new IniPGProperties();
+
+    private String tableName;
+
+    @Override
+    protected void setUpInternal() throws Exception {
+        tableName = format("pgbulkwriter_test_%d", System.nanoTime());
+        populate(false, points1, points2, points3, lines1, lines2);
+    }
+
+    @Override
+    protected void tearDownInternal() throws Exception {
+        execute(format("DROP TABLE IF EXISTS \"%s\"", tableName));
+    }
+
+    private String property(String key) {
+        return properties.get(key, String.class).get();
+    }
+
+    private PGBulkWriter writer() {
+        return new PGBulkWriter(property("database.host"),
+                Integer.parseInt(property("database.port")), property("database.database"),
+                property("database.schema"), property("database.user"),
+                property("database.password")).setParallelism(2);
+    }
+
+    private Connection connect() throws SQLException {
+        String url = format("jdbc:postgresql://%s:%s/%s", property("database.host"),
+                property("database.port"), property("database.database"));
+        return DriverManager.getConnection(url, property("database.user"),
+                property("database.password"));
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Connection cx = connect(); Statement st = cx.createStatement()) {
+            st.execute(sql);
+        }
+    }
+
+    private String query(String sql) throws SQLException {
+        try (Connection cx = connect();
+                Statement st = cx.createStatement();
+                ResultSet rs = st.executeQuery(sql)) {
+            return rs.next() ? rs.getString(1) : null;
+        }
+    }
+
+    private boolean tableExists() throws SQLException {
+        return null != query(format(
+                "SELECT 1 FROM information_schema.tables WHERE table_schema = '%s' AND table_name = '%s'",
+                property("database.schema"), tableName));
+    }
+
+    private String count() throws SQLException {
+        return query(format("SELECT count(*) FROM \"%s\"", tableName));
+    }
+
+    private long export(PGBulkWriter writer, String treeSpec, ProgressListener progress) {
+        return writer.export(repo.context(), treeSpec, tableName, null, progress);
+    }
+
+    @Test
+    public void testExport() throws Exception {
+        assertEquals(3L, export(writer(), "WORK_HEAD:Points", new DefaultProgressListener()));
+        assertEquals("3", count());
+        assertEquals("POINT", query(format("SELECT DISTINCT GeometryType(\"pp\") FROM \"%s\"",
+                tableName)));
+        assertEquals("p", query(format(
+                "SELECT contype FROM pg_constraint WHERE conrelid = '\"%s\"'::regclass",
+                tableName)));
+    }
+
+    @Test
+    public void testExportToExistingTable() throws Exception {
+        export(writer(), "WORK_HEAD:Points", new DefaultProgressListener());
+        try {
+            export(writer(), "WORK_HEAD:Lines", new DefaultProgressListener());
+            fail("Expected GeoToolsOpException");
+        } catch (GeoToolsOpException e) {
+            assertEquals(StatusCode.TABLE_ALREADY_EXISTS, e.statusCode);
+        }
+        // left untouched
+        assertEquals("3", count());
+        assertEquals("POINT", query(format("SELECT DISTINCT GeometryType(\"pp\") FROM \"%s\"",
+                tableName)));
+    }
+
+    @Test
+    public void testExportOverwrite() throws Exception {
+        export(writer(), "WORK_HEAD:Points", new DefaultProgressListener());
+        assertEquals(2L, export(writer().setOverwrite(true), "WORK_HEAD:Lines",
+                new DefaultProgressListener()));
+        assertEquals("2", count());
+        assertEquals("LINESTRING", query(
+                format("SELECT DISTINCT GeometryType(\"pp\") FROM \"%s\"", tableName)));
+    }
+
+    @Test
+    public void testExportCanceled() throws Exception {
+        DefaultProgressListener progress = new DefaultProgressListener();
+        progress.cancel();
+        assertEquals(0L, export(writer(), "WORK_HEAD:Points", progress));
+        assertFalse(tableExists());
+    }
+
+    @Test
+    public void testFailedExportDropsTable() throws Exception {
+        ProgressListener progress = new DefaultProgressListener() {
+            @Override
+            public void setDescription(String description) {
+                super.setDescription(description);
+                if (description.startsWith("Creating indexes")) {
+                    throw new IllegalStateException("failed");
+                }
+            }
+        };
+        try {
+            export(writer(), "WORK_HEAD:Points", progress);
+            fail("Expected ISE");
+        } catch (IllegalStateException e) {
+            assertEquals("failed", e.getMessage());
+        }
+        assertFalse(tableExists());
+    }
+}
@@ -0,0 +1,152 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.geotools.postgis;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+
+import org.geotools.data.DataUtilities;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.geogig.geotools.plumbing.GeoToolsOpException;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevFeature;
+import org.locationtech.geogig.model.RevFeatureType;
+import org.locationtech.geogig.model.impl.RevFeatureBuilder;
+import org.locationtech.geogig.model.impl.RevFeatureTypeBuilder;
+import org.locationtech.geogig.repository.FeatureInfo;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.io.WKBReader;
+import com.vividsolutions.jts.io.WKTReader;
+
+public class PGCopyEncoderTest {
+
+    private RevFeatureType featureType;
+
+    @Before
+    public void before() throws Exception {
+        SimpleFeatureType type = DataUtilities.createType("http://geogig.org", "Points",
+                "sp:String,ip:Integer,lp:Long,dp:Double,bd:java.math.BigDecimal,pp:Point:srid=4326");
+        featureType = RevFeatureTypeBuilder.build(type);
+    }
+
+    @Test
+    public void testColumnTypes() {
+        PGCopyEncoder encoder = new PGCopyEncoder(featureType, 4326);
+        assertArrayEquals(new String[] { "sp", "ip", "lp", "dp", "bd", "pp" },
+                encoder.columnNames);
+        assertArrayEquals(new String[] { "VARCHAR", "INTEGER", "BIGINT", "DOUBLE PRECISION",
+                "NUMERIC", "geometry(POINT, 4326)" }, encoder.columnTypes);
+        assertEquals(5, encoder.geometryIndex);
+
+        encoder = new PGCopyEncoder(featureType, 0);
+        assertEquals("geometry(POINT)", encoder.columnTypes[5]);
+    }
+
+    @Test
+    public void testEncode() throws Exception {
+        PGCopyEncoder encoder = new PGCopyEncoder(featureType, 4326);
+        Geometry point = new WKTReader().read("POINT(1 2)");
+        RevFeature feature = RevFeatureBuilder.builder().addValue("a string")
+                .addValue(Integer.valueOf(1)).addValue(null).addValue(Double.valueOf(0.5))
+                .addValue(new BigDecimal("1")).addValue(point).build();
+
+        ByteArrayOutputStream buff = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buff);
+        encoder.writeHeader(out);
+        encoder.encode(FeatureInfo.insert(feature, featureType.getId(), "Points/1"), out);
+        encoder.writeTrailer(out);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(buff.toByteArray()));
+        byte[] signature = new byte[11];
+        in.readFully(signature);
+        assertArrayEquals("PGCOPY\n\377\r\n\0".getBytes("ISO-8859-1"), signature);
+        assertEquals(0, in.readInt());// flags
+        assertEquals(0, in.readInt());// header extension length
+
+        assertEquals(7, in.readShort());
+        assertEquals("1", readString(in));
+        assertEquals("a string", readString(in));
+        assertEquals(4, in.readInt());
+        assertEquals(1, in.readInt());
+        assertEquals(-1, in.readInt());
+        assertEquals(8, in.readInt());
+        assertEquals(0.5, in.readDouble(), 0d);
+        assertEquals(10, in.readInt());
+        in.skipBytes(10);
+        byte[] ewkb = new byte[in.readInt()];
+        in.readFully(ewkb);
+        Geometry decoded = new WKBReader().read(ewkb);
+        assertEquals(point, decoded);
+        assertEquals(4326, decoded.getSRID());
+
+        assertEquals(-1, in.readShort());
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    public void testEncodeMixedFeatureTypes() throws Exception {
+        PGCopyEncoder encoder = new PGCopyEncoder(featureType, 4326);
+        RevFeature feature = RevFeatureBuilder.builder().addValue("a string").build();
+        ObjectId otherType = ObjectId.valueOf("abc123000000000000001234567890abcdef0000");
+        try {
+            encoder.encode(FeatureInfo.insert(feature, otherType, "Points/1"),
+                    new DataOutputStream(new ByteArrayOutputStream()));
+            fail("Expected GeoToolsOpException");
+        } catch (GeoToolsOpException e) {
+            assertEquals(GeoToolsOpException.StatusCode.MIXED_FEATURE_TYPES, e.statusCode);
+        }
+    }
+
+    @Test
+    public void testNumeric() throws Exception {
+        assertNumeric("0", 0, 0, 0, 0);
+        assertNumeric("0.00", 0, 0, 0, 2);
+        assertNumeric("1", 1, 0, 0, 0, 1);
+        assertNumeric("12345.678", 3, 1, 0, 3, 1, 2345, 6780);
+        assertNumeric("-0.5", 1, -1, 0x4000, 1, 5000);
+        assertNumeric("10000", 1, 1, 0, 0, 1);
+        assertNumeric("0.00001", 1, -2, 0, 5, 1000);
+        assertNumeric("1E+5", 1, 1, 0, 0, 10);
+    }
+
+    private void assertNumeric(String value, int ndigits, int weight, int sign, int dscale,
+            int... digits) throws IOException {
+        ByteArrayOutputStream buff = new ByteArrayOutputStream();
+        PGCopyEncoder.writeNumeric(new BigDecimal(value), new DataOutputStream(buff));
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(buff.toByteArray()));
+        assertEquals(8 + 2 * ndigits, in.readInt());
+        assertEquals(ndigits, in.readShort());
+        assertEquals(weight, in.readShort());
+        assertEquals(sign, in.readShort());
+        assertEquals(dscale, in.readShort());
+        for (int d : digits) {
+            assertEquals(d, in.readShort());
+        }
+        assertEquals(-1, in.read());
+    }
+
+    private String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+}
@@ -74,6 +74,11 @@ class PGConflictsDatabase implements ConflictsDatabase {
 
     private static final String NULL_NAMESPACE = "";
 
+    /**
+     * Number of rows inserted per statement by {@link #addConflicts}
+     */
+    private static final int INSERT_BATCH_SIZE = 1000;
+
     private final String conflictsTable;
 
     private final int repositoryId;
@@ -128,41 +133,40 @@ class PGConflictsDatabase implements ConflictsDatabase {
         }
     }
 
+    /**
+     * Inserts the conflicts with multi-row {@code INSERT} statements of up to
+     * {@link #INSERT_BATCH_SIZE} rows each, all in a single transaction, consuming the
+     * {@code conflicts} iterable as it goes so that it's never held in memory as a whole.
+     */
     @Override
     public void addConflicts(@Nullable String ns, Iterable<Conflict> conflicts) {
         Preconditions.checkNotNull(conflicts);
         final String namespace = namespace(ns);
 
-        final String sql = format(
-                "INSERT INTO %s (repository, namespace, path, ancestor, ours, theirs) VALUES (?,?,?,?,?,?)",
-                conflictsTable);
-
         try (Connection cx = PGStorage.newConnection(dataSource)) {
             cx.setAutoCommit(false);
-            try (PreparedStatement ps = cx.prepareStatement(sql)) {
-                for (Conflict conflict : conflicts) {
-                    final String path = conflict.getPath();
-                    Preconditions.checkNotNull(path);
-
-                    ps.setInt(1, repositoryId);
-                    ps.setString(2, namespace);
-                    ps.setString(3, path);
-                    ObjectId ancestor = conflict.getAncestor();
-                    if (ancestor.isNull()) {
-                        ps.setNull(4, java.sql.Types.OTHER, "bytea");
+            PreparedStatement fullBatch = null;
+            try {
+                for (List<Conflict> batch : Iterables.partition(conflicts, INSERT_BATCH_SIZE)) {
+                    if (batch.size() == INSERT_BATCH_SIZE) {
+                        if (fullBatch == null) {
+                            fullBatch = cx.prepareStatement(insertSql(INSERT_BATCH_SIZE));
+                        }
+                        insert(fullBatch, namespace, batch);
                     } else {
-                        ps.setBytes(4, ancestor.getRawValue());
+                        try (PreparedStatement ps = cx.prepareStatement(insertSql(batch.size()))) {
+                            insert(ps, namespace, batch);
+                        }
                     }
-                    ps.setBytes(5, conflict.getOurs().getRawValue());
-                    ps.setBytes(6, conflict.getTheirs().getRawValue());
-                    ps.addBatch();
                 }
-                ps.executeBatch();
                 cx.commit();
             } catch (SQLException e) {
                 cx.rollback();
                 throw e;
             } finally {
+                if (fullBatch != null) {
+                    fullBatch.close();
+                }
                 cx.setAutoCommit(true);
             }
         } catch (SQLException e) {
@@ -170,6 +174,37 @@ class PGConflictsDatabase implements ConflictsDatabase {
         }
     }
 
+    private String insertSql(final int rows) {
+        StringBuilder sb = new StringBuilder("INSERT INTO ").append(conflictsTable)
+                .append(" (repository, namespace, path, ancestor, ours, theirs) VALUES ");
+        for (int i = 0; i < rows; i++) {
+            sb.append(i == 0 ? "" : ",").append("(?,?,?,?,?,?)");
+        }
+        return sb.toString();
+    }
+
+    private void insert(PreparedStatement ps, final String namespace, List<Conflict> batch)
+            throws SQLException {
+        int index = 0;
+        for (Conflict conflict : batch) {
+            final String path = conflict.getPath();
+            Preconditions.checkNotNull(path);
+
+            ps.setInt(++index, repositoryId);
+            ps.setString(++index, namespace);
+            ps.setString(++index, path);
+            ObjectId ancestor = conflict.getAncestor();
+            if (ancestor.isNull()) {
+                ps.setNull(++index, java.sql.Types.OTHER, "bytea");
+            } else {
+                ps.setBytes(++index, ancestor.getRawValue());
+            }
+            ps.setBytes(++index, conflict.getOurs().getRawValue());
+            ps.setBytes(++index, conflict.getTheirs().getRawValue());
+        }
+        ps.executeUpdate();
+    }
+
     @Override
     public Optional<Conflict> getConflict(@Nullable String namespace, String path) {
         checkNotNull(path);
@@ -282,10 +317,15 @@ class PGConflictsDatabase implements ConflictsDatabase {
         return new ConflictsIterator(this, namespace, treePath);
     }
 
-    List<Conflict> getBatch(@Nullable String namespace, @Nullable String treePath, int offset,
-            int limit) throws SQLException {
+    /**
+     * Returns the next {@code limit} conflicts sorted by path, whose paths are greater than
+     * {@code fromPath}, if given. Paging by the last path returned uses the primary key index to
+     * seek to the start of each page, instead of scanning all the previous pages like an
+     * {@code OFFSET} would.
+     */
+    List<Conflict> getBatch(@Nullable String namespace, @Nullable String treePath,
+            @Nullable String fromPath, int limit) throws SQLException {
 
-        checkArgument(offset >= 0);
         checkArgument(limit > 0);
 
         final String sql;
@@ -295,8 +335,10 @@ class PGConflictsDatabase implements ConflictsDatabase {
             if (treePath != null) {
                 sb.append(" AND (path = ? OR path LIKE ?)");
             }
-            sb.append(" ORDER BY repository, namespace, path OFFSET ").append(offset)
-                    .append(" LIMIT ").append(limit);
+            if (fromPath != null) {
+                sb.append(" AND path > ?");
+            }
+            sb.append(" ORDER BY repository, namespace, path LIMIT ").append(limit);
             sql = sb.toString();
         }
 
@@ -305,11 +347,15 @@ class PGConflictsDatabase implements ConflictsDatabase {
             try (PreparedStatement ps = cx.prepareStatement(sql)) {
                 ps.setInt(1, repositoryId);
                 ps.setString(2, namespace(namespace));
+                int index = 3;
                 if (treePath != null) {
-                    ps.setString(3, treePath);
-                    ps.setString(4, treePath + "/%");
+                    ps.setString(index++, treePath);
+                    ps.setString(index++, treePath + "/%");
                 }
-                log(sql, LOG, repositoryId, namespace);
+                if (fromPath != null) {
+                    ps.setString(index++, fromPath);
+                }
+                log(sql, LOG, repositoryId, namespace, fromPath);
                 try (ResultSet rs = ps.executeQuery()) {
                     while (rs.next()) {
                         String path = rs.getString(1);
@@ -337,7 +383,8 @@ class PGConflictsDatabase implements ConflictsDatabase {
 
         private final int pageSize = 1000;
 
-        private int offset = 0;
+        @Nullable
+        private String lastPath;
 
         private int currentPageSize;
 
@@ -366,11 +413,13 @@ class PGConflictsDatabase implements ConflictsDatabase {
         private Iterator<Conflict> nextPage() {
             List<Conflict> batch;
             try {
-                batch = db.getBatch(namespace, treePath, offset, pageSize);
+                batch = db.getBatch(namespace, treePath, lastPath, pageSize);
             } catch (SQLException e) {
                 throw Throwables.propagate(e);
             }
-            this.offset += pageSize;
+            if (!batch.isEmpty()) {
+                this.lastPath = batch.get(batch.size() - 1).getPath();
+            }
             this.currentPageSize = batch.size();
             return batch.iterator();
         }
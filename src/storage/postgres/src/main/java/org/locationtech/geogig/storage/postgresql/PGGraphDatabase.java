@@ -23,10 +23,14 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
+import java.util.Map;
+import java.util.Set;
 
 import javax.sql.DataSource;
 
@@ -42,8 +46,8 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
-import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 
 /**
@@ -272,37 +276,113 @@ public class PGGraphDatabase implements GraphDatabase {
         return mapped;
     }
 
+    /**
+     * Overrides the default implementation to fetch the whole ancestry with a single recursive
+     * query instead of a query per commit.
+     * <p>
+     * The commit ids are traversed as their separate hash columns rather than as {@code OBJECTID}
+     * values since composite values can't be hashed to compute the recursive {@code UNION}. When
+     * the depth is unbounded the depth column is left out, so every commit is visited only once
+     * regardless of how many paths lead to it.
+     */
     @Override
-    public int getDepth(ObjectId commitId) {
-        int depth = 0;
+    public Map<ObjectId, ImmutableList<ObjectId>> getAncestry(Iterable<ObjectId> commitIds,
+            int maxDepth) {
+        Preconditions.checkNotNull(commitIds, "commitIds is null");
+        Preconditions.checkArgument(maxDepth >= 0, "maxDepth must be >= 0: %s", maxDepth);
+
+        final List<PGId> start = new ArrayList<>();
+        for (ObjectId id : ImmutableSet.copyOf(commitIds)) {
+            start.add(PGId.valueOf(id));
+        }
+        if (start.isEmpty() || maxDepth == 0) {
+            return new HashMap<>();
+        }
+        final boolean bounded = maxDepth != Integer.MAX_VALUE;
+
+        final String value = bounded ? "(?::integer,?::bigint,?::bigint,0)"
+                : "(?::integer,?::bigint,?::bigint)";
+        final String values = String.join(",", Collections.nCopies(start.size(), value));
+        final String sql = format("WITH RECURSIVE ancestry(h1,h2,h3%s) AS (VALUES %s"//
+                + " UNION SELECT (e.dst).h1,(e.dst).h2,(e.dst).h3%s FROM ancestry a"//
+                + " JOIN %s e ON e.src = CAST(ROW(a.h1,a.h2,a.h3) AS OBJECTID)%s)"//
+                + " SELECT a.h1,a.h2,a.h3,(e.dst).h1,(e.dst).h2,(e.dst).h3"//
+                + " FROM (SELECT DISTINCT h1,h2,h3 FROM ancestry) a"//
+                + " LEFT JOIN %s e ON e.src = CAST(ROW(a.h1,a.h2,a.h3) AS OBJECTID)", //
+                bounded ? ",depth" : "", //
+                values, //
+                bounded ? ",a.depth+1" : "", //
+                EDGES, //
+                bounded ? " WHERE a.depth+1 < ?" : "", //
+                EDGES);
 
-        Queue<PGId> q = Lists.newLinkedList();
+        Map<ObjectId, List<ObjectId>> parents = new HashMap<>();
         try (Connection cx = PGStorage.newConnection(dataSource)) {
-            Iterables.addAll(q, outgoing(PGId.valueOf(commitId), cx));
-
-            List<PGId> next = Lists.newArrayList();
-            while (!q.isEmpty()) {
-                depth++;
-                while (!q.isEmpty()) {
-                    PGId n = q.poll();
-                    List<PGId> parents = Lists.newArrayList(outgoing(n, cx));
-                    if (parents.size() == 0) {
-                        return depth;
+            try (PreparedStatement ps = cx.prepareStatement(log(sql, LOG, start, maxDepth))) {
+                int index = 1;
+                for (PGId id : start) {
+                    id.setArgs(ps, index);
+                    index += 3;
+                }
+                if (bounded) {
+                    ps.setInt(index, maxDepth);
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        ObjectId commit = PGId.valueOf(rs, 1).toObjectId();
+                        List<ObjectId> commitParents = parents.get(commit);
+                        if (commitParents == null) {
+                            commitParents = new ArrayList<>(2);
+                            parents.put(commit, commitParents);
+                        }
+                        PGId parent = PGId.valueOf(rs, 4);
+                        if (!rs.wasNull()) {
+                            commitParents.add(parent.toObjectId());
+                        }
                     }
-
-                    Iterables.addAll(next, parents);
                 }
-
-                q.addAll(next);
-                next.clear();
             }
         } catch (SQLException e) {
             throw propagate(e);
         }
 
+        Map<ObjectId, ImmutableList<ObjectId>> ancestry = new HashMap<>();
+        parents.forEach((commit, commitParents) -> ancestry.put(commit,
+                ImmutableList.copyOf(commitParents)));
+        return ancestry;
+    }
+
+    @Override
+    public int getDepth(ObjectId commitId) {
+        final Map<ObjectId, ImmutableList<ObjectId>> ancestry = getAncestry(
+                ImmutableList.of(commitId), Integer.MAX_VALUE);
+
+        int depth = 0;
+        Set<ObjectId> generation = new HashSet<>(parents(ancestry, commitId));
+        Set<ObjectId> visited = new HashSet<>();
+        while (!generation.isEmpty()) {
+            depth++;
+            Set<ObjectId> next = new HashSet<>();
+            for (ObjectId id : generation) {
+                List<ObjectId> parents = parents(ancestry, id);
+                if (parents.isEmpty()) {
+                    return depth;
+                }
+                if (visited.add(id)) {
+                    next.addAll(parents);
+                }
+            }
+            generation = next;
+        }
         return depth;
     }
 
+    private static List<ObjectId> parents(Map<ObjectId, ImmutableList<ObjectId>> ancestry,
+            ObjectId commitId) {
+        ImmutableList<ObjectId> parents = ancestry.get(commitId);
+        return parents == null ? ImmutableList.of() : parents;
+    }
+
     /**
      * Assigns a property key/value pair to a node.
      */
@@ -52,6 +52,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import javax.sql.DataSource;
 
 import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.metrics.ObjectStoreMetrics;
 import org.locationtech.geogig.model.ObjectId;
 import org.locationtech.geogig.model.RevCommit;
 import org.locationtech.geogig.model.RevFeature;
@@ -83,6 +84,7 @@ import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
+import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.Futures;
@@ -108,6 +110,8 @@ public class PGObjectStore implements ObjectStore {
 
     private static final SerializationFactoryProxy encoder = new SerializationFactoryProxy();
 
+    private static final ObjectStoreMetrics metrics = ObjectStoreMetrics.get(PGObjectStore.class);
+
     protected DataSource dataSource;
 
     private ExecutorService executor = null;
@@ -122,6 +126,16 @@ public class PGObjectStore implements ObjectStore {
 
     private int putAllBatchSize = DEFAULT_PUT_ALL_PARTITION_SIZE;
 
+    /**
+     * Per table name, whether it ignores duplicate inserts through a rule, as created on
+     * PostgreSQL versions prior to 9.5, or through a unique index. Resolved on first insert to
+     * each table, as the tables of a database may have been created by different server versions
+     * (e.g. the index tables are created on demand for repositories that predate them).
+     * 
+     * @see PGStorage#migrateObjectsTables
+     */
+    private final ConcurrentMap<String, Boolean> ignoreDuplicatesRules = new ConcurrentHashMap<>();
+
     @Inject
     public PGObjectStore(final ConfigDatabase configdb, final Hints hints)
             throws URISyntaxException {
@@ -190,6 +204,18 @@ public class PGObjectStore implements ObjectStore {
         ObjectStoreSharedResources.release(connectionConfig, prefix);
         executor = null;
         byteCache = null;
+        ignoreDuplicatesRules.clear();
+    }
+
+    /**
+     * @return the statement to insert an object into the given table, ignoring the insert if the
+     *         object already exists
+     */
+    String insertSql(final String tableName) {
+        final Boolean ignoreDuplicatesRule = ignoreDuplicatesRules.computeIfAbsent(tableName,
+                (table) -> PGStorage.usesIgnoreDuplicatesRule(dataSource, table));
+        return format("INSERT INTO %s (id, object) VALUES (ROW(?,?,?),?)%s", tableName,
+                ignoreDuplicatesRule.booleanValue() ? "" : " ON CONFLICT DO NOTHING");
     }
 
     @VisibleForTesting
@@ -227,6 +253,45 @@ public class PGObjectStore implements ObjectStore {
         }
     }
 
+    /**
+     * Looks up the byte cache first, and then queries the remaining ids in partitions of
+     * {@code getAllBatchSize} ids with an {@code ((id).h1) = ANY(?)} clause, concurrently on the
+     * shared executor, same as {@link #getAll(Iterable, BulkOpListener, Class) getAll} does but
+     * without fetching the objects contents.
+     */
+    @Override
+    public Set<ObjectId> existsAll(final Iterable<ObjectId> ids) {
+        checkNotNull(ids, "ids is null");
+        checkState(isOpen(), "Database is closed");
+        config.checkRepositoryExists();
+
+        final Set<ObjectId> found = new HashSet<>();
+        final List<Future<List<ObjectId>>> partitions = new ArrayList<>();
+        Set<ObjectId> partition = new HashSet<>();
+        for (ObjectId id : ids) {
+            if (byteCache.getIfPresent(id) != null) {
+                found.add(id);
+                continue;
+            }
+            partition.add(id);
+            if (partition.size() == getAllBatchSize) {
+                partitions.add(existsAll(partition));
+                partition = new HashSet<>();
+            }
+        }
+        if (!partition.isEmpty()) {
+            partitions.add(existsAll(partition));
+        }
+        for (Future<List<ObjectId>> result : partitions) {
+            try {
+                found.addAll(result.get());
+            } catch (InterruptedException | ExecutionException e) {
+                throw propagate(e);
+            }
+        }
+        return found;
+    }
+
     @Override
     public List<ObjectId> lookUp(final String partialId) {
         checkNotNull(partialId, "argument partialId is null");
@@ -388,7 +453,7 @@ public class PGObjectStore implements ObjectStore {
         if (!cached.isEmpty()) {
 
             Map<ObjectId, T> cachedObjects = Maps.transformEntries(cached, (id, bytes) -> {
-                RevObject o = encoder.decode(id, bytes);
+                RevObject o = decode(id, bytes);
                 if (type.isAssignableFrom(o.getClass())) {
                     listener.found(id, Integer.valueOf(bytes.length));
                     return type.cast(o);
@@ -407,6 +472,26 @@ public class PGObjectStore implements ObjectStore {
         return Iterators.concat(hits, stream);
     }
 
+    private static RevObject decode(ObjectId id, byte[] bytes) {
+        if (!metrics.isEnabled()) {
+            return encoder.decode(id, bytes);
+        }
+        final long start = System.nanoTime();
+        RevObject object = encoder.decode(id, bytes);
+        metrics.recordRead(object.getType(), bytes.length, System.nanoTime() - start);
+        return object;
+    }
+
+    private static byte[] encode(RevObject object) {
+        if (!metrics.isEnabled()) {
+            return encoder.encode(object);
+        }
+        final long start = System.nanoTime();
+        byte[] bytes = encoder.encode(object);
+        metrics.recordWritten(object.getType(), bytes.length, System.nanoTime() - start);
+        return bytes;
+    }
+
     private static class GetAllIterator<T extends RevObject> extends AbstractIterator<T> {
 
         private Iterator<ObjectId> ids;
@@ -460,14 +545,33 @@ public class PGObjectStore implements ObjectStore {
             final int getAllPartitionSize = db.getAllBatchSize;
 
             int concurrency = db.threadPoolSize;
-            for (int j = 0; j < concurrency && ids.hasNext(); j++) {
-                Set<ObjectId> idList = new HashSet<>();
-                for (int i = 0; i < getAllPartitionSize && ids.hasNext(); i++) {
-                    idList.add(ids.next());
+            if (TYPE.FEATURE.equals(type)) {
+                // query the features table partitions directly and concurrently instead of
+                // letting the planner scan all of them for each batch
+                ListMultimap<String, ObjectId> perPartition = ArrayListMultimap.create();
+                for (int i = 0; i < concurrency * getAllPartitionSize && ids.hasNext(); i++) {
+                    ObjectId id = ids.next();
+                    perPartition.put(db.tableNameForType(type, PGId.valueOf(id)), id);
+                }
+                for (String partition : perPartition.keySet()) {
+                    for (List<ObjectId> idList : Iterables.partition(perPartition.get(partition),
+                            getAllPartitionSize)) {
+                        checkState(db.isOpen(), "Database is closed");
+                        list.add(db.getAll(new HashSet<>(idList), dataSource, listener, type,
+                                partition));
+                    }
+                }
+            } else {
+                for (int j = 0; j < concurrency && ids.hasNext(); j++) {
+                    Set<ObjectId> idList = new HashSet<>();
+                    for (int i = 0; i < getAllPartitionSize && ids.hasNext(); i++) {
+                        idList.add(ids.next());
+                    }
+                    checkState(db.isOpen(), "Database is closed");
+                    Future<List<RevObject>> objects = db.getAll(idList, dataSource, listener,
+                            type, null);
+                    list.add(objects);
                 }
-                checkState(db.isOpen(), "Database is closed");
-                Future<List<RevObject>> objects = db.getAll(idList, dataSource, listener, type);
-                list.add(objects);
             }
             final Function<Future<List<RevObject>>, List<RevObject>> function = (objs) -> {
                 try {
@@ -494,13 +598,13 @@ public class PGObjectStore implements ObjectStore {
         final ObjectId id = object.getId();
         final PGId pgid = PGId.valueOf(id);
         final String tableName = tableNameForType(object.getType(), pgid);
-        final String sql = format("INSERT INTO %s (id, object) VALUES (ROW(?,?,?),?)", tableName);
+        final String sql = insertSql(tableName);
 
         try (Connection cx = PGStorage.newConnection(dataSource)) {
             cx.setAutoCommit(true);
             try (PreparedStatement ps = cx.prepareStatement(log(sql, LOG, id, object))) {
                 pgid.setArgs(ps, 1);
-                byte[] blob = encoder.encode(object);
+                byte[] blob = encode(object);
                 ps.setBytes(4, blob);
 
                 final int updateCount = ps.executeUpdate();
@@ -587,7 +691,7 @@ public class PGObjectStore implements ObjectStore {
             DataSource ds) {
         byte[] cached = byteCache.getIfPresent(id);
         if (cached != null) {
-            return encoder.decode(id, cached);
+            return decode(id, cached);
         }
 
         final PGId pgid = PGId.valueOf(id);
@@ -623,7 +727,7 @@ public class PGObjectStore implements ObjectStore {
             return null;
         }
 
-        RevObject obj = encoder.decode(id, bytes);
+        RevObject obj = decode(id, bytes);
         // Only cache tree objects
         if (obj.getType().equals(TYPE.TREE)) {
             byteCache.put(id, bytes);
@@ -632,10 +736,11 @@ public class PGObjectStore implements ObjectStore {
     }
 
     private Future<List<RevObject>> getAll(final Set<ObjectId> ids, final DataSource ds,
-            final BulkOpListener listener, final @Nullable TYPE type) {
+            final BulkOpListener listener, final @Nullable TYPE type,
+            final @Nullable String tableName) {
         checkState(isOpen(), "Database is closed");
 
-        GetAllOp getAllOp = new GetAllOp(ids, listener, this, type);
+        GetAllOp getAllOp = new GetAllOp(ids, listener, this, type, tableName);
         // Avoid deadlocking by running the task synchronously if we are already in one of the
         // threads on the executor.
         if (Thread.currentThread().getThreadGroup().equals(threadGroup)) {
@@ -650,6 +755,59 @@ public class PGObjectStore implements ObjectStore {
         return future;
     }
 
+    private Future<List<ObjectId>> existsAll(final Set<ObjectId> ids) {
+        ExistsAllOp existsAllOp = new ExistsAllOp(ids, this);
+        // Avoid deadlocking by running the task synchronously if we are already in one of the
+        // threads on the executor.
+        if (Thread.currentThread().getThreadGroup().equals(threadGroup)) {
+            try {
+                return Futures.immediateFuture(existsAllOp.call());
+            } catch (Exception e) {
+                propagate(e);
+            }
+        }
+        return executor.submit(existsAllOp);
+    }
+
+    private static class ExistsAllOp implements Callable<List<ObjectId>> {
+
+        private final Set<ObjectId> queryIds;
+
+        private final PGObjectStore db;
+
+        public ExistsAllOp(Set<ObjectId> ids, PGObjectStore db) {
+            this.queryIds = ids;
+            this.db = db;
+        }
+
+        @Override
+        public List<ObjectId> call() throws Exception {
+            checkState(db.isOpen(), "Database is closed");
+
+            final String sql = format(
+                    "SELECT ((id).h1), ((id).h2),((id).h3) FROM %s WHERE ((id).h1) = ANY(?)",
+                    db.objectsTable());
+
+            List<ObjectId> found = new ArrayList<>(queryIds.size());
+            try (Connection cx = PGStorage.newConnection(db.dataSource)) {
+                try (PreparedStatement ps = cx.prepareStatement(log(sql, LOG, queryIds))) {
+                    ps.setFetchSize(queryIds.size());
+                    ps.setArray(1, GetAllOp.toJDBCArray(cx, queryIds));
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            ObjectId id = PGId.valueOf(rs, 1).toObjectId();
+                            // the resultset may contain more due to hash1 clashes
+                            if (queryIds.contains(id)) {
+                                found.add(id);
+                            }
+                        }
+                    }
+                }
+            }
+            return found;
+        }
+    }
+
     private static class GetAllOp implements Callable<List<RevObject>> {
 
         private final Set<ObjectId> queryIds;
@@ -663,19 +821,28 @@ public class PGObjectStore implements ObjectStore {
         @Nullable
         private final TYPE type;
 
+        @Nullable
+        private final String tableName;
+
+        /**
+         * @param tableName the table to query, or {@code null} to query the table for the given
+         *        type
+         */
         public GetAllOp(Set<ObjectId> ids, BulkOpListener listener, PGObjectStore db,
-                @Nullable TYPE type) {
+                @Nullable TYPE type, @Nullable String tableName) {
             this.queryIds = ids;
             this.callback = listener;
             this.db = db;
             this.type = type;
+            this.tableName = tableName;
             this.byteCache = db.byteCache;
         }
 
         @Override
         public List<RevObject> call() throws Exception {
             checkState(db.isOpen(), "Database is closed");
-            final String tableName = db.tableNameForType(type, null);
+            final String tableName = this.tableName == null ? db.tableNameForType(type, null)
+                    : this.tableName;
 
             final int queryCount = queryIds.size();
             List<RevObject> found = new ArrayList<>(queryCount);
@@ -711,7 +878,7 @@ public class PGObjectStore implements ObjectStore {
                                 if (queryIds.contains(id)) {
                                     bytes = rs.getBytes(4);
 
-                                    RevObject obj = encoder.decode(id, bytes);
+                                    RevObject obj = decode(id, bytes);
                                     if (type == null || type.equals(obj.getType())) {
                                         queryIds.remove(id);
                                         callback.found(id, Integer.valueOf(bytes.length));
@@ -736,7 +903,7 @@ public class PGObjectStore implements ObjectStore {
             return found;
         }
 
-        private Array toJDBCArray(Connection cx, final Collection<ObjectId> queryIds)
+        private static Array toJDBCArray(Connection cx, final Collection<ObjectId> queryIds)
                 throws SQLException {
             Array array;
             Object[] arr = new Object[queryIds.size()];
@@ -895,7 +1062,7 @@ public class PGObjectStore implements ObjectStore {
 
             PreparedStatement stmt = perTableStatements.get(tableName);
             if (stmt == null) {
-                String sql = format("INSERT INTO %s (id, object) VALUES(ROW(?,?,?),?)", tableName);
+                String sql = objectStore.insertSql(tableName);
                 stmt = cx.prepareStatement(sql);
                 perTableStatements.put(tableName, stmt);
             }
@@ -919,7 +1086,7 @@ public class PGObjectStore implements ObjectStore {
 
         final Iterator<List<EncodedObject>> encoded = Iterators.partition(Iterators.transform(
                 objects,
-                (obj) -> new EncodedObject(obj.getId(), obj.getType(), encoder.encode(obj))),
+                (obj) -> new EncodedObject(obj.getId(), obj.getType(), encode(obj))),
                 putAllBatchSize);
 
         final BlockingQueue<List<EncodedObject>> queue = new ArrayBlockingQueue<>(2 + maxTasks);
@@ -28,10 +28,12 @@ import java.util.Map;
 
 import javax.sql.DataSource;
 
+import org.eclipse.jdt.annotation.Nullable;
 import org.locationtech.geogig.repository.impl.RepositoryBusyException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
@@ -247,6 +249,17 @@ public class PGStorage {
     }
 
     public static void createTables(final Environment config) {
+        createTables(config, null);
+    }
+
+    /**
+     * @param uniqueIndexes whether the objects tables shall ignore duplicate inserts through
+     *        unique indexes or rules, {@code null} to use unique indexes if the server supports
+     *        them
+     * @see #createObjectsTables
+     */
+    @VisibleForTesting
+    static void createTables(final Environment config, final @Nullable Boolean uniqueIndexes) {
 
         final TableNames tables = config.getTables();
         final String reposTable = tables.repositories();
@@ -279,6 +292,8 @@ public class PGStorage {
 
                 cx.setAutoCommit(false);
 
+                final boolean objectsUniqueIndexes = uniqueIndexes == null
+                        ? supportsOnConflict(cx) : uniqueIndexes.booleanValue();
                 PGStorage.createObjectIdCompositeType(cx);
                 PGStorage.run(cx, "SET constraint_exclusion=ON");
 
@@ -289,8 +304,8 @@ public class PGStorage {
                 createRefsTable(cx, tables);
                 createConflictsTable(cx, tables);
                 createBlobsTable(cx, tables);
-                createIndexTables(cx, tables);
-                createObjectsTables(cx, tables);
+                createIndexTables(cx, tables, objectsUniqueIndexes);
+                createObjectsTables(cx, tables, objectsUniqueIndexes);
                 createGraphTables(cx, tables);
                 cx.commit();
             } catch (SQLException | RuntimeException e) {
@@ -421,6 +436,11 @@ public class PGStorage {
     }
 
     public static void createIndexTables(Connection cx, TableNames tables) throws SQLException {
+        createIndexTables(cx, tables, supportsOnConflict(cx));
+    }
+
+    private static void createIndexTables(Connection cx, TableNames tables,
+            boolean uniqueIndexes) throws SQLException {
         String indexTable = tables.index();
         String sql = format(
                 "CREATE TABLE %s (repository INTEGER, treeName TEXT, attributeName TEXT, strategy TEXT, metadata BYTEA"
@@ -438,7 +458,7 @@ public class PGStorage {
         String indexObjects = tables.indexObjects();
         sql = format(OBJECT_TABLE_STMT, indexObjects);
         run(cx, sql);
-        createIgnoreDuplicatesRule(cx, indexObjects);
+        createIgnoreDuplicates(cx, indexObjects, uniqueIndexes);
         createObjectTableIndex(cx, indexObjects);
     }
 
@@ -462,8 +482,17 @@ public class PGStorage {
      * TODO: compare performance in case we also created indexes for the "abstract" tables (object
      * and object_feature), have read somewhere that otherwise you'll get sequential scans from the
      * query planner that can be avoided.
+     * <p>
+     * On PostgreSQL 9.5 or newer, duplicate inserts are ignored through a unique index on the
+     * object id and {@code INSERT ... ON CONFLICT DO NOTHING}, and the features table partitions
+     * are only populated by {@link PGObjectStore} inserting straight into them. On older versions
+     * each table gets a rule to ignore duplicate inserts, and inserts to the features table are
+     * routed to its partitions by a trigger.
+     * 
+     * @see #migrateObjectsTables
      */
-    private static void createObjectsTables(Connection cx, TableNames tables) throws SQLException {
+    private static void createObjectsTables(Connection cx, TableNames tables,
+            boolean uniqueIndexes) throws SQLException {
         String objectsTable = tables.objects();
         String sql = format(OBJECT_TABLE_STMT, objectsTable);
         run(cx, sql);
@@ -473,14 +502,141 @@ public class PGStorage {
                 tables.tags(), tables.trees());
         for (String tableName : childTables) {
             createObjectChildTable(cx, tableName, objectsTable);
-            createIgnoreDuplicatesRule(cx, tableName);
+            createIgnoreDuplicates(cx, tableName, uniqueIndexes);
             createObjectTableIndex(cx, tableName);
         }
 
         createObjectChildTable(cx, tables.features(), objectsTable);
         // createForbiddenInsertsToAbstractTableRule(cx, tables.features());
 
-        createPartitionedChildTables(cx, tables.features());
+        createPartitionedChildTables(cx, tables.features(), uniqueIndexes);
+    }
+
+    /**
+     * @return whether the server supports {@code INSERT ... ON CONFLICT DO NOTHING} (PostgreSQL
+     *         9.5+)
+     */
+    static boolean supportsOnConflict(Connection cx) throws SQLException {
+        DatabaseMetaData md = cx.getMetaData();
+        final int major = md.getDatabaseMajorVersion();
+        final int minor = md.getDatabaseMinorVersion();
+        return major > 9 || (major == 9 && minor >= 5);
+    }
+
+    private static void createIgnoreDuplicates(Connection cx, String tableName,
+            boolean uniqueIndex) throws SQLException {
+        if (uniqueIndex) {
+            createObjectTableUniqueIndex(cx, tableName);
+        } else {
+            createIgnoreDuplicatesRule(cx, tableName);
+        }
+    }
+
+    static String ignoreDuplicatesRuleName(String tableName) {
+        return stripSchema(tableName) + "_ignore_duplicate_inserts";
+    }
+
+    private static String partitioningTriggerName(String parentTable) {
+        return stripSchema(String.format("%s_partitioning_insert_trigger", parentTable));
+    }
+
+    /**
+     * Whether duplicate inserts to the given objects table are ignored through a rule, as
+     * opposed to a unique index that requires inserts to use {@code ON CONFLICT DO NOTHING}
+     * 
+     * @see #migrateObjectsTables
+     */
+    static boolean usesIgnoreDuplicatesRule(DataSource ds, String tableName) {
+        try (Connection cx = PGStorage.newConnection(ds)) {
+            return usesIgnoreDuplicatesRule(cx, tableName);
+        } catch (SQLException e) {
+            throw propagate(e);
+        }
+    }
+
+    private static boolean usesIgnoreDuplicatesRule(Connection cx, String tableName)
+            throws SQLException {
+        final String sql = "SELECT 1 FROM pg_rules WHERE schemaname = ? AND tablename = ? AND rulename = ?";
+        try (PreparedStatement ps = cx.prepareStatement(sql)) {
+            ps.setString(1, schema(tableName));
+            ps.setString(2, stripSchema(tableName));
+            ps.setString(3, ignoreDuplicatesRuleName(tableName));
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    /**
+     * Migrates the objects tables created by PostgreSQL versions prior to 9.5, where duplicate
+     * inserts are ignored through rules and inserts to the features table are routed to its
+     * partitions by a row level trigger, to the layout where duplicates are ignored through unique
+     * indexes and {@code ON CONFLICT DO NOTHING}, and {@link PGObjectStore} inserts straight into
+     * the features table partitions.
+     * <p>
+     * Objects tables are shared by all the repositories in the same database schema, so all of
+     * them are migrated at once. The migration runs in a single transaction and should not be run
+     * while other processes are writing to the database.
+     * 
+     * @return the number of tables migrated, zero if the tables already use the new layout
+     * @throws IllegalStateException if the server is older than PostgreSQL 9.5
+     */
+    public static int migrateObjectsTables(final Environment config) {
+        checkNotNull(config);
+        final TableNames tables = config.getTables();
+
+        List<String> objectTables = Lists.newArrayList(tables.commits(), tables.featureTypes(),
+                tables.tags(), tables.trees());
+        objectTables.addAll(tables.featurePartitions());
+
+        final DataSource dataSource = PGStorage.newDataSource(config);
+        try {
+            if (tableExists(dataSource, tables.indexObjects())) {
+                objectTables.add(tables.indexObjects());
+            }
+            try (Connection cx = PGStorage.newConnection(dataSource)) {
+                checkState(supportsOnConflict(cx),
+                        "PostgreSQL 9.5 or newer is required to migrate the objects tables");
+                cx.setAutoCommit(false);
+                try {
+                    int migrated = 0;
+                    for (String tableName : objectTables) {
+                        if (usesIgnoreDuplicatesRule(cx, tableName)) {
+                            migrateObjectsTable(cx, tableName);
+                            migrated++;
+                        }
+                    }
+                    final String trigger = partitioningTriggerName(tables.features());
+                    run(cx, format("DROP TRIGGER IF EXISTS %s ON %s", trigger,
+                            tables.features()));
+                    run(cx, format("DROP FUNCTION IF EXISTS %s()", trigger));
+                    cx.commit();
+                    return migrated;
+                } catch (SQLException | RuntimeException e) {
+                    cx.rollback();
+                    Throwables.propagateIfInstanceOf(e, SQLException.class);
+                    throw Throwables.propagate(e);
+                } finally {
+                    cx.setAutoCommit(true);
+                }
+            }
+        } catch (SQLException e) {
+            throw propagate(e);
+        } finally {
+            PGStorage.closeDataSource(dataSource);
+        }
+    }
+
+    private static void migrateObjectsTable(Connection cx, String tableName)
+            throws SQLException {
+        run(cx, format("LOCK TABLE %s IN EXCLUSIVE MODE", tableName));
+        run(cx, format("DROP RULE IF EXISTS %s ON %s", ignoreDuplicatesRuleName(tableName),
+                tableName));
+        // the rule doesn't prevent concurrent inserts of the same object
+        run(cx, format(
+                "DELETE FROM %s a USING %s b WHERE ((a.id).h1) = ((b.id).h1) AND a.id = b.id AND a.ctid < b.ctid",
+                tableName, tableName));
+        createObjectTableUniqueIndex(cx, tableName);
     }
 
     private static void createObjectChildTable(Connection cx, String tableName, String parentTable)
@@ -498,15 +654,21 @@ public class PGStorage {
 
     private static void createIgnoreDuplicatesRule(Connection cx, String tableName)
             throws SQLException {
-        String rulePrefix = stripSchema(tableName);
-
-        String rule = "CREATE OR REPLACE RULE " + rulePrefix
-                + "_ignore_duplicate_inserts AS ON INSERT TO " + tableName
+        String rule = "CREATE OR REPLACE RULE " + ignoreDuplicatesRuleName(tableName)
+                + " AS ON INSERT TO " + tableName
                 + " WHERE (EXISTS ( SELECT 1 FROM " + tableName
                 + " WHERE ((id).h1) = (NEW.id).h1 AND id = NEW.id))" + " DO INSTEAD NOTHING;";
         run(cx, rule);
     }
 
+    private static void createObjectTableUniqueIndex(Connection cx, String tableName)
+            throws SQLException {
+
+        String index = String.format("CREATE UNIQUE INDEX %s_objectid_unique ON %s (id)",
+                stripSchema(tableName), tableName);
+        run(cx, index);
+    }
+
     private static void createObjectTableIndex(Connection cx, String tableName)
             throws SQLException {
 
@@ -515,15 +677,14 @@ public class PGStorage {
         run(cx, index);
     }
 
-    private static void createPartitionedChildTables(final Connection cx, final String parentTable)
-            throws SQLException {
+    private static void createPartitionedChildTables(final Connection cx, final String parentTable,
+            final boolean uniqueIndexes) throws SQLException {
         final int min = Integer.MIN_VALUE;
         final long max = (long) Integer.MAX_VALUE + 1;
         final int numTables = 16;
         final int step = (int) (((long) max - (long) min) / numTables);
 
-        final String triggerFunction = stripSchema(
-                String.format("%s_partitioning_insert_trigger", parentTable));
+        final String triggerFunction = partitioningTriggerName(parentTable);
         StringBuilder funcSql = new StringBuilder(
                 String.format("CREATE OR REPLACE FUNCTION %s()\n", triggerFunction));
         funcSql.append("RETURNS TRIGGER AS $$\n");
@@ -544,7 +705,7 @@ public class PGStorage {
             String sql = partitionedObjectTableDDL(tableName, parentTable, curr, next);
 
             run(cx, sql);
-            createIgnoreDuplicatesRule(cx, tableName);
+            createIgnoreDuplicates(cx, tableName, uniqueIndexes);
             createObjectTableIndex(cx, tableName);
 
             funcSql.append(i == 0 ? "IF" : "ELSIF");
@@ -562,6 +723,10 @@ public class PGStorage {
         funcSql.append("$$\n");
         funcSql.append("LANGUAGE plpgsql;\n");
 
+        if (uniqueIndexes) {
+            // PGObjectStore inserts straight into the partitions
+            return;
+        }
         String sql = funcSql.toString();
         run(cx, sql);
 
@@ -9,6 +9,7 @@
  */
 package org.locationtech.geogig.storage.postgresql;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import com.google.common.base.Preconditions;
@@ -94,6 +95,19 @@ class TableNames {
         return name("object_feature");
     }
 
+    /**
+     * @return the names of all the partitions of the {@link #features() features} table, as
+     *         returned by {@link #features(int)}
+     */
+    public List<String> featurePartitions() {
+        final int numTables = 16;
+        List<String> partitions = new ArrayList<>(numTables);
+        for (int i = 0; i < numTables; i++) {
+            partitions.add(String.format("%s_%d", features(), i));
+        }
+        return partitions;
+    }
+
     public String featureTypes() {
         return name("object_featuretype");
     }
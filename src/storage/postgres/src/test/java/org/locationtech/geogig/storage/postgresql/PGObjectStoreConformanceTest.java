@@ -9,30 +9,46 @@
  */
 package org.locationtech.geogig.storage.postgresql;
 
+import static java.lang.String.format;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
+
+import javax.sql.DataSource;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.junit.After;
 import org.junit.Rule;
 import org.junit.Test;
 import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevFeature;
 import org.locationtech.geogig.model.RevObject;
+import org.locationtech.geogig.model.RevObject.TYPE;
 import org.locationtech.geogig.model.impl.RevObjectTestSupport;
 import org.locationtech.geogig.repository.Hints;
 import org.locationtech.geogig.repository.Platform;
 import org.locationtech.geogig.storage.BulkOpListener;
+import org.locationtech.geogig.storage.BulkOpListener.CountingListener;
 import org.locationtech.geogig.storage.ConfigDatabase;
 import org.locationtech.geogig.storage.ObjectStore;
 import org.locationtech.geogig.storage.impl.ObjectStoreConformanceTest;
 
 import com.google.common.base.Throwables;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 
 public class PGObjectStoreConformanceTest extends ObjectStoreConformanceTest {
 
@@ -114,4 +130,57 @@ public class PGObjectStoreConformanceTest extends ObjectStoreConformanceTest {
         assertTrue(objects.hasNext());
         assertEquals(originalObject, objects.next());
     }
+
+    @Test
+    public void testDuplicateInsertsIgnored() throws SQLException {
+        final RevFeature feature = RevObjectTestSupport.feature(0, null, "some value");
+        assertTrue(db.put(feature));
+        assertFalse(db.put(feature));
+        db.putAll(Iterators.forArray(feature, feature));
+
+        PGObjectStore store = (PGObjectStore) db;
+        String table = store.tableNameForType(TYPE.FEATURE, PGId.valueOf(feature.getId()));
+        assertEquals(1, count(table));
+        assertEquals(feature, db.get(feature.getId()));
+    }
+
+    @Test
+    public void testGetAllFeaturesFromSeveralPartitions() {
+        final PGObjectStore store = (PGObjectStore) db;
+        List<ObjectId> ids = new ArrayList<>();
+        Set<RevObject> expected = new HashSet<>();
+        Set<String> partitions = new HashSet<>();
+        for (int i = 0; i < 500; i++) {
+            RevFeature feature = RevObjectTestSupport.feature(i, "value " + i);
+            expected.add(feature);
+            ids.add(feature.getId());
+            partitions.add(store.tableNameForType(TYPE.FEATURE, PGId.valueOf(feature.getId())));
+        }
+        assertTrue(partitions.size() > 1);
+        db.putAll(expected.iterator());
+
+        for (int i = 0; i < 10; i++) {
+            ids.add(RevObjectTestSupport.hashString("missing " + i));
+        }
+        CountingListener listener = BulkOpListener.newCountingListener();
+        Set<RevFeature> features = Sets
+                .newHashSet(db.getAll(ids, listener, RevFeature.class));
+        assertEquals(expected, features);
+        assertEquals(500, listener.found());
+        assertEquals(10, listener.notFound());
+    }
+
+    private int count(String table) throws SQLException {
+        DataSource dataSource = PGStorage.newDataSource(testConfig.getEnvironment());
+        try (Connection cx = dataSource.getConnection()) {
+            try (Statement st = cx.createStatement()) {
+                try (ResultSet rs = st.executeQuery(format("SELECT count(*) FROM %s", table))) {
+                    rs.next();
+                    return rs.getInt(1);
+                }
+            }
+        } finally {
+            PGStorage.closeDataSource(dataSource);
+        }
+    }
 }
@@ -10,6 +10,7 @@
 package org.locationtech.geogig.storage.postgresql;
 
 import static java.lang.String.format;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -19,17 +20,22 @@ import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.List;
 
 import javax.sql.DataSource;
 
 import org.junit.Before;
 import org.junit.Rule;
+import org.junit.Assume;
 import org.junit.Test;
+import org.locationtech.geogig.model.RevFeature;
+import org.locationtech.geogig.model.impl.RevObjectTestSupport;
 import org.locationtech.geogig.repository.impl.RepositoryBusyException;
 import org.locationtech.geogig.storage.postgresql.Environment.ConnectionConfig;
 
 import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
 
 public class PGStorageTest {
 
@@ -154,6 +160,150 @@ public class PGStorageTest {
         PGStorage.closeDataSource(source);
     }
 
+    @Test
+    public void testMigrateObjectsTables() throws Exception {
+        assumeServerSupportsOnConflict();
+        testConfig.createLegacyTables();
+        PGStorage.createNewRepo(config);
+
+        final TableNames tables = config.getTables();
+        final List<String> objectTables = Lists.newArrayList(tables.commits(),
+                tables.featureTypes(), tables.tags(), tables.trees(), tables.indexObjects());
+        objectTables.addAll(tables.featurePartitions());
+
+        final RevFeature feature = RevObjectTestSupport.feature(0, null, "some value");
+        final String partition = tables.features(PGId.valueOf(feature.getId()).hash1());
+
+        final DataSource ds = PGStorage.newDataSource(config);
+        try {
+            for (String table : objectTables) {
+                assertTrue(table, PGStorage.usesIgnoreDuplicatesRule(ds, table));
+            }
+            assertEquals(1, countTriggers(ds, tables.features()));
+
+            try (PGConfigDatabase configdb = new PGConfigDatabase(config)) {
+                PGObjectDatabase db = new PGObjectDatabase(configdb, config, false);
+                db.open();
+                try {
+                    assertTrue(db.put(feature));
+                    assertFalse(db.put(feature));
+                } finally {
+                    db.close();
+                }
+            }
+            // a duplicate inserted concurrently, the rule doesn't prevent them
+            String rule = PGStorage.ignoreDuplicatesRuleName(partition);
+            execute(ds, format("ALTER TABLE %s DISABLE RULE %s", partition, rule));
+            execute(ds, format("INSERT INTO %s SELECT * FROM %s", partition, partition));
+            execute(ds, format("ALTER TABLE %s ENABLE RULE %s", partition, rule));
+            assertEquals(2, count(ds, partition));
+
+            assertEquals(objectTables.size(), PGStorage.migrateObjectsTables(config));
+
+            for (String table : objectTables) {
+                assertFalse(table, PGStorage.usesIgnoreDuplicatesRule(ds, table));
+            }
+            assertEquals(0, countTriggers(ds, tables.features()));
+            assertEquals(1, count(ds, partition));
+            assertEquals(0, PGStorage.migrateObjectsTables(config));
+
+            try (PGConfigDatabase configdb = new PGConfigDatabase(config)) {
+                PGObjectDatabase db = new PGObjectDatabase(configdb, config, false);
+                db.open();
+                try {
+                    assertFalse(db.put(feature));
+                    assertEquals(feature, db.get(feature.getId()));
+                    assertTrue(db.put(RevObjectTestSupport.feature(1, null, "another value")));
+                } finally {
+                    db.close();
+                }
+            }
+            assertEquals(1, count(ds, partition));
+        } finally {
+            PGStorage.closeDataSource(ds);
+        }
+    }
+
+    /**
+     * The index tables are created on demand for repositories that predate them, and hence may
+     * not use the same layout than the other objects tables
+     */
+    @Test
+    public void testMixedObjectsTablesLayout() throws Exception {
+        assumeServerSupportsOnConflict();
+        testConfig.createLegacyTables();
+        PGStorage.createNewRepo(config);
+
+        final TableNames tables = config.getTables();
+        final RevFeature feature = RevObjectTestSupport.feature(0, null, "some value");
+        final DataSource ds = PGStorage.newDataSource(config);
+        try {
+            execute(ds, format("DROP TABLE %s, %s, %s", tables.index(), tables.indexMappings(),
+                    tables.indexObjects()));
+
+            try (PGConfigDatabase configdb = new PGConfigDatabase(config)) {
+                PGObjectDatabase objects = new PGObjectDatabase(configdb, config, false);
+                PGIndexDatabase index = new PGIndexDatabase(configdb, config, false);
+                objects.open();
+                index.open();
+                try {
+                    assertTrue(PGStorage.usesIgnoreDuplicatesRule(ds, tables.commits()));
+                    assertFalse(PGStorage.usesIgnoreDuplicatesRule(ds, tables.indexObjects()));
+
+                    assertTrue(objects.put(feature));
+                    assertFalse(objects.put(feature));
+                    assertTrue(index.put(feature));
+                    assertFalse(index.put(feature));
+                } finally {
+                    index.close();
+                    objects.close();
+                }
+            }
+            assertEquals(1, count(ds, tables.indexObjects()));
+        } finally {
+            PGStorage.closeDataSource(ds);
+        }
+    }
+
+    private void assumeServerSupportsOnConflict() throws SQLException {
+        final DataSource ds = PGStorage.newDataSource(config);
+        try (Connection cx = ds.getConnection()) {
+            Assume.assumeTrue(PGStorage.supportsOnConflict(cx));
+        } finally {
+            PGStorage.closeDataSource(ds);
+        }
+    }
+
+    private void execute(DataSource ds, String sql) throws SQLException {
+        try (Connection cx = ds.getConnection()) {
+            try (Statement st = cx.createStatement()) {
+                st.execute(sql);
+            }
+        }
+    }
+
+    private int count(DataSource ds, String table) throws SQLException {
+        return queryInt(ds, format("SELECT count(*) FROM %s", table));
+    }
+
+    private int countTriggers(DataSource ds, String table) throws SQLException {
+        return queryInt(ds, format("SELECT count(*) FROM pg_trigger t"
+                + " JOIN pg_class c ON t.tgrelid = c.oid JOIN pg_namespace n ON c.relnamespace = n.oid"
+                + " WHERE n.nspname = '%s' AND c.relname = '%s' AND NOT t.tgisinternal",
+                PGStorage.schema(table), PGStorage.stripSchema(table)));
+    }
+
+    private int queryInt(DataSource ds, String sql) throws SQLException {
+        try (Connection cx = ds.getConnection()) {
+            try (Statement st = cx.createStatement()) {
+                try (ResultSet rs = st.executeQuery(sql)) {
+                    rs.next();
+                    return rs.getInt(1);
+                }
+            }
+        }
+    }
+
     private void assertTableExist(DataSource ds, String table) {
         assertTrue(format("Table %s does not exist", table), tableExists(ds, table));
     }
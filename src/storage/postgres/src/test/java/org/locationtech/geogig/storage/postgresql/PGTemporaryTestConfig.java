@@ -126,6 +126,16 @@ public class PGTemporaryTestConfig extends ExternalResource {
         return environment;
     }
 
+    /**
+     * Creates the repository tables with the objects tables layout of PostgreSQL versions prior to
+     * 9.5, where duplicate inserts are ignored through rules
+     * 
+     * @see PGStorage#migrateObjectsTables(Environment)
+     */
+    public void createLegacyTables() {
+        PGStorage.createTables(getEnvironment(), false);
+    }
+
     public String getRepoURL() {
         Environment env = getEnvironment();
         String url = props.buildRepoURL(env.getRepositoryName(), env.getTables().getPrefix());
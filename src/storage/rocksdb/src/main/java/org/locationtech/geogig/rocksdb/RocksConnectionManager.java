@@ -17,6 +17,8 @@ import java.util.Map;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.locationtech.geogig.storage.impl.ConnectionManager;
+import org.rocksdb.BlockBasedTableConfig;
+import org.rocksdb.BloomFilter;
 import org.rocksdb.ColumnFamilyDescriptor;
 import org.rocksdb.ColumnFamilyHandle;
 import org.rocksdb.ColumnFamilyOptions;
@@ -164,6 +166,9 @@ class RocksConnectionManager extends ConnectionManager<DBConfig, DBHandle> {
         // cause the Windows jar doesn't come with
         // snappy and hence fails
         colFamilyOptions.setCompressionType(CompressionType.NO_COMPRESSION);
+        // bloom filters let existence checks of missing keys skip reading data blocks
+        colFamilyOptions.setTableFormatConfig(
+                new BlockBasedTableConfig().setFilter(new BloomFilter(10, false)));
         return colFamilyOptions;
     }
 
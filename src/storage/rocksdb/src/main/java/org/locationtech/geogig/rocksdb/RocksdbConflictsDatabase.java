@@ -58,6 +58,11 @@ class RocksdbConflictsDatabase implements ConflictsDatabase {
 
     private static final String NULL_TX_ID = ".default";
 
+    /**
+     * Maximum number of conflicts to buffer in a {@link WriteBatch} before writing it out
+     */
+    private static final int WRITE_BATCH_SIZE = 10_000;
+
     private ConcurrentMap<String/* TxID */, DBHandle> dbsByTransaction = new ConcurrentHashMap<>();
 
     RocksdbConflictsDatabase(File baseDirectory) {
@@ -264,13 +269,20 @@ class RocksdbConflictsDatabase implements ConflictsDatabase {
     public void addConflicts(@Nullable String txId, Iterable<Conflict> conflicts) {
         try (RocksDBReference dbRef = getOrCreateDb(txId)) {
             ConflictSerializer serializer = new ConflictSerializer();
-            try (WriteBatch batch = new WriteBatch()) {
+            try (WriteBatch batch = new WriteBatch();
+                    WriteOptions writeOptions = new WriteOptions()) {
+                int batchSize = 0;
                 for (Conflict c : conflicts) {
                     byte[] key = key(c.getPath());
                     byte[] value = serializer.write(c);
                     batch.put(key, value);
+                    if (++batchSize == WRITE_BATCH_SIZE) {
+                        dbRef.db().write(writeOptions, batch);
+                        batch.clear();
+                        batchSize = 0;
+                    }
                 }
-                try (WriteOptions writeOptions = new WriteOptions()) {
+                if (batchSize > 0) {
                     dbRef.db().write(writeOptions, batch);
                 }
             } catch (Exception e) {
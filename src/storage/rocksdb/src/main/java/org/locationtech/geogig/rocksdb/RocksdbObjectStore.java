@@ -15,16 +15,19 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.TreeSet;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.locationtech.geogig.model.ObjectId;
@@ -52,11 +55,33 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
 import com.google.inject.Inject;
 
 public class RocksdbObjectStore extends AbstractObjectStore implements ObjectStore {
 
+    private static final int DEFAULT_READ_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Read buffers grown larger than this to fit a big object are not kept around for reuse
+     */
+    private static final int MAX_REUSABLE_READ_BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * Per thread buffer objects are read into and decoded from, sparing the allocation of a byte
+     * array and an input stream per object read
+     */
+    private static final ThreadLocal<ReadBuffer> READ_BUFFER = ThreadLocal
+            .withInitial(ReadBuffer::new);
+
+    private static class ReadBuffer {
+
+        byte[] bytes = new byte[DEFAULT_READ_BUFFER_SIZE];
+
+        int size;
+    }
+
     private volatile boolean open;
 
     protected final String path;
@@ -178,6 +203,52 @@ public class RocksdbObjectStore extends AbstractObjectStore implements ObjectSto
         return null;
     }
 
+    /**
+     * Reads and decodes the object straight out of the calling thread's {@link ReadBuffer}
+     */
+    @Override
+    protected @Nullable RevObject getInternal(ObjectId id, boolean failIfNotFound)
+            throws IllegalArgumentException {
+        checkOpen();
+        final ReadBuffer buffer = READ_BUFFER.get();
+        try (RocksDBReference dbRef = dbhandle.getReference()) {
+            if (read(dbRef.db(), null, id.getRawValue(), buffer)) {
+                return readObject(id, buffer.bytes, 0, buffer.size);
+            }
+        } catch (RocksDBException | IOException e) {
+            throw Throwables.propagate(e);
+        }
+        if (failIfNotFound) {
+            throw new IllegalArgumentException("object does not exist: " + id);
+        }
+        return null;
+    }
+
+    /**
+     * Reads the value for {@code key} into {@code buffer}, growing it if needed
+     * 
+     * @return {@code true} if found, with the value held in the first {@link ReadBuffer#size size}
+     *         bytes of {@link ReadBuffer#bytes buffer.bytes}, {@code false} otherwise
+     */
+    private boolean read(RocksDB db, @Nullable ReadOptions readOptions, byte[] key,
+            ReadBuffer buffer) throws RocksDBException {
+        if (buffer.bytes.length > MAX_REUSABLE_READ_BUFFER_SIZE) {
+            buffer.bytes = new byte[DEFAULT_READ_BUFFER_SIZE];
+        }
+        int size = get(db, readOptions, key, buffer.bytes);
+        if (size > buffer.bytes.length) {
+            buffer.bytes = new byte[size];
+            size = get(db, readOptions, key, buffer.bytes);
+        }
+        buffer.size = size;
+        return size != RocksDB.NOT_FOUND;
+    }
+
+    private static int get(RocksDB db, @Nullable ReadOptions readOptions, byte[] key,
+            byte[] value) throws RocksDBException {
+        return readOptions == null ? db.get(key, value) : db.get(readOptions, key, value);
+    }
+
     @Nullable
     private byte[] getRawInternal(byte[] key) throws IllegalArgumentException {
         checkOpen();
@@ -212,6 +283,41 @@ public class RocksdbObjectStore extends AbstractObjectStore implements ObjectSto
         return size != RocksDB.NOT_FOUND;
     }
 
+    /**
+     * Probes the ids in key order so that consecutive lookups hit the same index and data blocks,
+     * relying on the column family's bloom filter ({@link RocksDB#keyMayExist keyMayExist}) to
+     * discard most missing keys without reading any data block, and on zero length reads for the
+     * remaining ones so that object contents are not copied over.
+     */
+    @Override
+    public Set<ObjectId> existsAll(final Iterable<ObjectId> ids) {
+        checkNotNull(ids, "ids is null");
+        checkOpen();
+
+        final TreeSet<ObjectId> sorted = new TreeSet<>();
+        Iterables.addAll(sorted, ids);
+
+        final Set<ObjectId> found = new HashSet<>();
+        final byte[] keybuff = new byte[ObjectId.NUM_BYTES];
+        final StringBuffer value = new StringBuffer();
+        try (RocksDBReference dbRef = dbhandle.getReference(); ReadOptions ro = new ReadOptions()) {
+            ro.setFillCache(false);
+            ro.setVerifyChecksums(false);
+            final RocksDB db = dbRef.db();
+            for (ObjectId id : sorted) {
+                id.getRawValue(keybuff);
+                value.setLength(0);
+                if (db.keyMayExist(ro, keybuff, value)
+                        && db.get(ro, keybuff, NO_DATA) != RocksDB.NOT_FOUND) {
+                    found.add(id);
+                }
+            }
+        } catch (RocksDBException e) {
+            throw Throwables.propagate(e);
+        }
+        return found;
+    }
+
     @Override
     public void delete(ObjectId objectId) {
         checkNotNull(objectId, "argument objectId is null");
@@ -243,27 +349,23 @@ public class RocksdbObjectStore extends AbstractObjectStore implements ObjectSto
 
             private byte[] keybuff = new byte[ObjectId.NUM_BYTES];
 
-            private byte[] valueBuff = new byte[64 * 1024];
-
             private ReadOptions readOps = bulkReadOptions;
 
             @Override
             protected T computeNext() {
                 checkOpen();
+                // fetched on each call in case the iterator is handed over to another thread
+                final ReadBuffer buffer = READ_BUFFER.get();
                 try (RocksDBReference dbRef = dbhandle.getReference()) {
                     while (oids.hasNext()) {
                         ObjectId id = oids.next();
                         id.getRawValue(keybuff);
-                        final int size = dbRef.db().get(readOps, keybuff, valueBuff);
-                        if (RocksDB.NOT_FOUND == size) {
+                        if (!read(dbRef.db(), readOps, keybuff, buffer)) {
                             listener.notFound(id);
                             continue;
                         }
-                        if (size > valueBuff.length) {
-                            valueBuff = dbRef.db().get(readOps, keybuff);
-                        }
-                        RevObject object = serializer().read(id,
-                                new ByteArrayInputStream(valueBuff));
+                        final int size = buffer.size;
+                        RevObject object = readObject(id, buffer.bytes, 0, size);
                         if (type.isInstance(object)) {
                             listener.found(id, Integer.valueOf(size));
                             return type.cast(object);
@@ -14,7 +14,12 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.List;
+
 import org.junit.Test;
+import org.locationtech.geogig.model.RevFeature;
+import org.locationtech.geogig.model.RevObject;
+import org.locationtech.geogig.model.impl.RevFeatureBuilder;
 import org.locationtech.geogig.repository.Hints;
 import org.locationtech.geogig.repository.Platform;
 import org.locationtech.geogig.storage.BlobStore;
@@ -25,6 +30,9 @@ import org.locationtech.geogig.storage.datastream.SerializationFactoryProxy;
 import org.locationtech.geogig.storage.fs.IniFileConfigDatabase;
 import org.locationtech.geogig.storage.impl.ObjectStoreConformanceTest;
 
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+
 public class RocksdbObjectStoreConformanceTest extends ObjectStoreConformanceTest {
 
     private Platform platform = null;
@@ -77,6 +85,26 @@ public class RocksdbObjectStoreConformanceTest extends ObjectStoreConformanceTes
 
     }
 
+    /**
+     * Objects larger than the reusable read buffer are read into a larger one, which is discarded
+     * on the next read
+     */
+    @Test
+    public void testGetObjectsLargerThanReadBuffer() {
+        final RevFeature small = RevFeatureBuilder.builder().addValue("small").build();
+        final RevFeature large = RevFeatureBuilder.builder()
+                .addValue(Strings.repeat("large ", 1024 * 1024)).build();
+        db.putAll(ImmutableList.of(small, large).iterator());
+
+        assertEquals(large, db.get(large.getId()));
+        assertEquals(small, db.get(small.getId()));
+        assertEquals(large, db.get(large.getId()));
+
+        List<RevObject> all = ImmutableList.copyOf(db.getAll(
+                ImmutableList.of(small.getId(), large.getId(), small.getId(), large.getId())));
+        assertEquals(ImmutableList.of(small, large, small, large), all);
+    }
+
     @Test
     public void testSerializer() {
         assertTrue(database.serializer() instanceof SerializationFactoryProxy);
@@ -9,32 +9,61 @@
  */
 package org.locationtech.geogig.rest;
 
+import java.net.URI;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Queue;
 import java.util.UUID;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
+import org.eclipse.jdt.annotation.Nullable;
 import org.locationtech.geogig.repository.AbstractGeoGigOp;
 import org.locationtech.geogig.repository.Context;
 import org.locationtech.geogig.repository.DefaultProgressListener;
+import org.locationtech.geogig.repository.Repository;
 import org.locationtech.geogig.repository.impl.GeogigTransaction;
+import org.locationtech.geogig.rest.repository.RepositoryProvider;
+import org.locationtech.geogig.rest.repository.RepositoryProvider.Lease;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
+/**
+ * Runs long running commands in the background, so that web API requests can return right away
+ * and clients poll for the command status and progress through the {@link TaskStatusResource}.
+ * <p>
+ * Commands run on a fixed size thread pool, whose size can be set through the
+ * {@code org.locationtech.geogig.web.async.threads} system property and defaults to the number of
+ * available processors. At most {@code org.locationtech.geogig.web.async.maxTasksPerRepository}
+ * commands (2 by default, zero meaning no limit) run concurrently against the same repository, the
+ * others wait in {@link Status#WAITING} status for their turn, so that a few busy repositories
+ * don't starve the others.
+ * <p>
+ * Commands run after the request that started them has completed, so they can be given a
+ * {@link RepositoryProvider#lease(org.restlet.data.Request) lease} on their repository to keep it
+ * open until they finish, whether they succeed, fail, or are cancelled.
+ */
 public class AsyncContext {
 
     public static final String CONTEXT_KEY = "GeoGigAsyncContext";
 
+    public static final String THREADS_PROPERTY = "org.locationtech.geogig.web.async.threads";
+
+    public static final String MAX_TASKS_PER_REPOSITORY_PROPERTY = "org.locationtech.geogig.web.async.maxTasksPerRepository";
+
     public static enum Status {
         WAITING {
             @Override
@@ -85,8 +114,24 @@ public class AsyncContext {
 
     private AtomicLong ID_SEQ = new AtomicLong();
 
+    private final int maxTasksPerRepository;
+
+    /**
+     * Per repository queues of commands, guarded by {@code this}
+     */
+    private final Map<Object, RepositoryQueue> queues = new HashMap<>();
+
     private AsyncContext() {
-        int nThreads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        this(Integer.getInteger(THREADS_PROPERTY,
+                Math.max(2, Runtime.getRuntime().availableProcessors())),
+                Integer.getInteger(MAX_TASKS_PER_REPOSITORY_PROPERTY, 2));
+    }
+
+    private AsyncContext(int nThreads, int maxTasksPerRepository) {
+        Preconditions.checkArgument(nThreads > 0, "nThreads must be > 0: %s", nThreads);
+        Preconditions.checkArgument(maxTasksPerRepository >= 0,
+                "maxTasksPerRepository must be >= 0: %s", maxTasksPerRepository);
+        this.maxTasksPerRepository = maxTasksPerRepository;
         ThreadFactory threadFactory = new ThreadFactoryBuilder().setDaemon(true)
                 .setNameFormat("GeoGIG async tasks-%d").build();
         this.commandExecutor = Executors.newScheduledThreadPool(nThreads, threadFactory);
@@ -98,6 +143,16 @@ public class AsyncContext {
         return new AsyncContext();
     }
 
+    /**
+     * @param nThreads the number of threads to run commands on
+     * @param maxTasksPerRepository the maximum number of commands to run concurrently against the
+     *        same repository, zero meaning no limit
+     */
+    @VisibleForTesting
+    public static AsyncContext createNew(int nThreads, int maxTasksPerRepository) {
+        return new AsyncContext(nThreads, maxTasksPerRepository);
+    }
+
     @VisibleForTesting
     public void shutDown() {
         commandExecutor.shutdown();
@@ -118,15 +173,88 @@ public class AsyncContext {
     }
 
     public <T> AsyncCommand<T> run(AbstractGeoGigOp<T> command, String description) {
+        return run(command, description, null);
+    }
 
-        CommandCall<T> callable = new CommandCall<T>(command);
-        Future<T> future = commandExecutor.submit(callable);
+    /**
+     * Runs the command in the background, closing the given lease once it's finished
+     * 
+     * @param lease a lease on the command's repository, so that it's kept open while the command
+     *        waits for its turn and runs
+     */
+    public <T> AsyncCommand<T> run(AbstractGeoGigOp<T> command, String description,
+            @Nullable Lease lease) {
+
+        CommandCall<T> callable = new CommandCall<T>(command, lease);
+        FutureTask<T> future = new FutureTask<>(callable);
         String taskId = String.valueOf(ID_SEQ.incrementAndGet());
         AsyncCommand<T> asyncCommand = new AsyncCommand<T>(taskId, callable, future, description);
         commands.put(asyncCommand.getTaskId(), asyncCommand);
+        try {
+            submit(repositoryKey(command), future);
+        } catch (RuntimeException e) {
+            commands.remove(asyncCommand.getTaskId());
+            callable.release();
+            throw e;
+        }
         return asyncCommand;
     }
 
+    private static class RepositoryQueue {
+
+        int running;
+
+        final Queue<Runnable> waiting = new ArrayDeque<>();
+    }
+
+    private Object repositoryKey(AbstractGeoGigOp<?> command) {
+        Repository repository = command.context().repository();
+        if (repository == null) {
+            return this;
+        }
+        URI location = repository.getLocation();
+        return location == null ? repository : location;
+    }
+
+    private synchronized void submit(final Object repositoryKey, final Runnable task) {
+        if (maxTasksPerRepository == 0) {
+            commandExecutor.execute(task);
+            return;
+        }
+        RepositoryQueue queue = queues.get(repositoryKey);
+        if (queue == null) {
+            queue = new RepositoryQueue();
+            queues.put(repositoryKey, queue);
+        }
+        if (queue.running < maxTasksPerRepository) {
+            queue.running++;
+            commandExecutor.execute(() -> runAndScheduleNext(repositoryKey, task));
+        } else {
+            queue.waiting.add(task);
+        }
+    }
+
+    private void runAndScheduleNext(final Object repositoryKey, final Runnable task) {
+        try {
+            task.run();
+        } finally {
+            scheduleNext(repositoryKey);
+        }
+    }
+
+    private synchronized void scheduleNext(final Object repositoryKey) {
+        RepositoryQueue queue = queues.get(repositoryKey);
+        Runnable next = queue.waiting.poll();
+        if (next == null) {
+            queue.running--;
+            if (queue.running == 0) {
+                queues.remove(repositoryKey);
+            }
+        } else {
+            commandExecutor.execute(() -> runAndScheduleNext(repositoryKey, next));
+        }
+    }
+
     public Optional<AsyncCommand<?>> getAndPruneIfFinished(final String taskId) {
         Optional<AsyncCommand<?>> cmd = get(taskId);
         if (cmd.isPresent() && cmd.get().isDone()) {
@@ -245,20 +373,28 @@ public class AsyncContext {
 
         private final DefaultProgressListener progress = new DefaultProgressListener();
 
+        @Nullable
+        private final Lease lease;
+
         public CommandCall(AbstractGeoGigOp<T> command) {
+            this(command, null);
+        }
+
+        CommandCall(AbstractGeoGigOp<T> command, @Nullable Lease lease) {
             this.command = command;
             this.commandClass = command.getClass();
             this.status = Status.WAITING;
+            this.lease = lease;
         }
 
         @Override
         public T call() throws Exception {
-            if (command.getProgressListener().isCanceled()) {
-                this.status = Status.CANCELLED;
-                return null;
-            }
-            this.status = Status.RUNNING;
             try {
+                if (command.getProgressListener().isCanceled()) {
+                    this.status = Status.CANCELLED;
+                    return null;
+                }
+                this.status = Status.RUNNING;
                 command.setProgressListener(progress);
                 T result = command.call();
                 if (command.getProgressListener().isCanceled()) {
@@ -270,6 +406,14 @@ public class AsyncContext {
             } catch (Throwable e) {
                 this.status = Status.FAILED;
                 throw e;
+            } finally {
+                release();
+            }
+        }
+
+        void release() {
+            if (lease != null) {
+                lease.close();
             }
         }
     }
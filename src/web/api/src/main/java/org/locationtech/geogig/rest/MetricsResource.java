@@ -0,0 +1,42 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.rest;
+
+import org.locationtech.geogig.metrics.CommandMetrics;
+import org.restlet.Context;
+import org.restlet.data.MediaType;
+import org.restlet.data.Request;
+import org.restlet.data.Response;
+import org.restlet.resource.Representation;
+import org.restlet.resource.Resource;
+import org.restlet.resource.StringRepresentation;
+import org.restlet.resource.Variant;
+
+/**
+ * Resource for {@code /metrics}, sends the {@link CommandMetrics#getReport() command metrics
+ * report} as plain text.
+ * <p>
+ * The report exposes the inner workings of the server and, like the rest of the web API, is not
+ * authenticated, so applications shall only attach this resource when explicitly configured to
+ * do so, and on servers whose access is restricted otherwise.
+ */
+public class MetricsResource extends Resource {
+
+    @Override
+    public void init(Context context, Request request, Response response) {
+        super.init(context, request, response);
+        getVariants().add(new Variant(MediaType.TEXT_PLAIN));
+    }
+
+    @Override
+    public Representation getRepresentation(Variant variant) {
+        return new StringRepresentation(CommandMetrics.get().getReport(), MediaType.TEXT_PLAIN);
+    }
+}
@@ -146,6 +146,8 @@ public class TaskResultDownloadResource extends Resource {
             return MediaType.TEXT_XML;
         } else if ("json".equalsIgnoreCase(extension)) {
             return Variants.JSON.getMediaType();
+        } else if ("csv".equalsIgnoreCase(extension)) {
+            return Variants.CSV_MEDIA_TYPE;
         }
 
         return MediaType.APPLICATION_OCTET_STREAM;
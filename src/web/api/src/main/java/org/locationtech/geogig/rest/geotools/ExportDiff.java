@@ -142,7 +142,8 @@ public class ExportDiff extends AbstractWebAPICommand {
         if (asyncContext == null) {
             asyncContext = AsyncContext.get();
         }
-        final AsyncCommand<?> asyncCommand = asyncContext.run(command, commandDescription);
+        final AsyncCommand<?> asyncCommand = asyncContext.run(command, commandDescription,
+                context.leaseRepository().orNull());
 
         Function<MediaType, Representation> rep = new Function<MediaType, Representation>() {
 
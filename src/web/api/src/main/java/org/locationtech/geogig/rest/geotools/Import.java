@@ -193,7 +193,7 @@ public class Import extends AbstractWebAPICommand {
             asyncContext = AsyncContext.get();
         }
         final AsyncContext.AsyncCommand<?> asyncCommand = asyncContext.run(command,
-                commandDescription);
+                commandDescription, context.leaseRepository().orNull());
 
         Function<MediaType, Representation> rep = new Function<MediaType, Representation>() {
 
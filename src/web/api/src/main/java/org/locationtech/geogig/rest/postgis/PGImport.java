@@ -27,6 +27,7 @@ import org.locationtech.geogig.rest.AsyncContext;
 import org.locationtech.geogig.rest.TransactionalResource;
 import org.locationtech.geogig.rest.Variants;
 import org.locationtech.geogig.rest.geotools.ImportRepresentation;
+import org.locationtech.geogig.web.api.RESTUtils;
 import org.restlet.data.Form;
 import org.restlet.data.MediaType;
 import org.restlet.data.Request;
@@ -69,7 +70,8 @@ public class PGImport extends TransactionalResource {
         AsyncContext.AsyncCommand<RevTree> asyncCommand;
 
         URI repo = context.repository().getLocation();
-        asyncCommand = AsyncContext.get().run(command, getCommandDescription(table, all, repo));
+        asyncCommand = AsyncContext.get().run(command, getCommandDescription(table, all, repo),
+                RESTUtils.repositoryProvider(request).lease(request).orNull());
 
         final String rootPath = request.getRootRef().toString();
         MediaType mediaType = variant.getMediaType();
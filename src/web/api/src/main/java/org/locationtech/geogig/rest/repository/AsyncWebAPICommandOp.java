@@ -0,0 +1,142 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.rest.repository;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.locationtech.geogig.rest.Variants.CSV_MEDIA_TYPE;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.locationtech.geogig.repository.AbstractGeoGigOp;
+import org.locationtech.geogig.rest.AsyncCommandRepresentation;
+import org.locationtech.geogig.rest.AsyncContext;
+import org.locationtech.geogig.rest.AsyncContext.AsyncCommand;
+import org.locationtech.geogig.rest.CommandRepresentationFactory;
+import org.locationtech.geogig.rest.TaskResultDownloadResource;
+import org.locationtech.geogig.rest.repository.CommandResource.RestletContext;
+import org.locationtech.geogig.web.api.AbstractWebAPICommand;
+import org.locationtech.geogig.web.api.RESTUtils;
+import org.locationtech.geogig.web.api.StreamWriterException;
+import org.locationtech.geogig.web.api.StreamingWriter;
+import org.restlet.data.MediaType;
+import org.restlet.resource.Representation;
+
+import com.google.common.base.Throwables;
+import com.google.common.io.Files;
+
+/**
+ * Runs a web API command in the background through the {@link AsyncContext}, for the
+ * {@code async=true} request parameter.
+ * <p>
+ * The command response is written to a temporary file in the requested format rather than held in
+ * memory until the client asks for it, and served by {@link TaskResultDownloadResource} at
+ * {@code tasks/<taskId>/download}. The command's progress listener is the task's one, so the
+ * commands that report progress can be followed and cancelled through the task status resource.
+ */
+public class AsyncWebAPICommandOp extends AbstractGeoGigOp<File> {
+
+    private AbstractWebAPICommand command;
+
+    private RestletContext commandContext;
+
+    private MediaType format;
+
+    private String commandName;
+
+    AsyncWebAPICommandOp setCommand(String commandName, AbstractWebAPICommand command,
+            RestletContext commandContext, MediaType format) {
+        this.commandName = commandName;
+        this.command = command;
+        this.commandContext = commandContext;
+        this.format = format;
+        return this;
+    }
+
+    @Override
+    protected File _call() {
+        checkNotNull(command, "command not set");
+        command.setProgressListener(getProgressListener());
+        command.run(commandContext);
+
+        Representation response = commandContext.getRepresentation(format, null);
+        final String extension;
+        if (CSV_MEDIA_TYPE.equals(format)) {
+            extension = ".csv";
+        } else if (MediaType.APPLICATION_JSON.equals(format)) {
+            extension = ".json";
+        } else {
+            extension = ".xml";
+        }
+        File file = null;
+        try {
+            file = File.createTempFile("geogig-" + commandName + "-", extension);
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+                response.write(out);
+            }
+        } catch (IOException e) {
+            if (file != null) {
+                file.delete();
+            }
+            throw Throwables.propagate(e);
+        }
+        return file;
+    }
+
+    public static class RepresentationFactory implements CommandRepresentationFactory<File> {
+
+        @Override
+        public boolean supports(Class<? extends AbstractGeoGigOp<?>> cmdClass) {
+            return AsyncWebAPICommandOp.class.equals(cmdClass);
+        }
+
+        @Override
+        public AsyncCommandRepresentation<File> newRepresentation(AsyncCommand<File> cmd,
+                MediaType mediaType, String baseURL, boolean cleanup) {
+            return new TaskRepresentation(mediaType, cmd, baseURL, cleanup);
+        }
+    }
+
+    /**
+     * Encodes the link to download the command response once the task is finished
+     */
+    private static class TaskRepresentation extends AsyncCommandRepresentation<File> {
+
+        TaskRepresentation(MediaType mediaType, AsyncCommand<File> cmd, String baseURL,
+                boolean cleanup) {
+            super(mediaType, cmd, baseURL, cleanup);
+        }
+
+        @Override
+        protected void writeResultBody(StreamingWriter w, File result)
+                throws StreamWriterException {
+            final String link = "tasks/" + super.cmd.getTaskId() + "/download";
+            w.writeStartElement("atom:link");
+            w.writeAttribute("xmlns:atom", "http://www.w3.org/2005/Atom");
+            w.writeAttribute("rel", "alternate");
+            w.writeAttribute("href", RESTUtils.buildHref(baseURL, link, null));
+            w.writeAttribute("type", mediaType(result).toString());
+            w.writeEndElement();
+        }
+
+        private MediaType mediaType(File result) {
+            String extension = Files.getFileExtension(result.getName());
+            if ("csv".equals(extension)) {
+                return CSV_MEDIA_TYPE;
+            } else if ("json".equals(extension)) {
+                return MediaType.APPLICATION_JSON;
+            }
+            return MediaType.APPLICATION_XML;
+        }
+    }
+}
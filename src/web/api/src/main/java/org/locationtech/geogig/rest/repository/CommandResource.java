@@ -16,6 +16,7 @@ import static org.locationtech.geogig.rest.Variants.XML;
 import static org.locationtech.geogig.rest.Variants.getVariantByExtension;
 import static org.locationtech.geogig.web.api.RESTUtils.getGeogig;
 
+import java.io.File;
 import java.util.List;
 import java.util.UUID;
 import java.util.function.Function;
@@ -24,7 +25,11 @@ import java.util.logging.Logger;
 
 import org.locationtech.geogig.repository.Repository;
 import org.locationtech.geogig.repository.impl.RepositoryBusyException;
+import org.locationtech.geogig.rest.AsyncContext;
+import org.locationtech.geogig.rest.AsyncContext.AsyncCommand;
+import org.locationtech.geogig.rest.Representations;
 import org.locationtech.geogig.rest.RestletException;
+import org.locationtech.geogig.web.api.AbstractWebAPICommand;
 import org.locationtech.geogig.web.api.CommandBuilder;
 import org.locationtech.geogig.web.api.CommandContext;
 import org.locationtech.geogig.web.api.CommandResponse;
@@ -46,11 +51,17 @@ import org.restlet.resource.Representation;
 import org.restlet.resource.Resource;
 import org.restlet.resource.Variant;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 
 /**
- *
+ * Runs the web API commands.
+ * <p>
+ * Commands run within the request unless the {@code async=true} parameter is given, in which case
+ * the command is run in the background by the {@link AsyncContext} and the response is the task
+ * status, to be polled at {@code tasks/<taskId>} until the command finishes, and whose command
+ * response can then be downloaded from {@code tasks/<taskId>/download}.
  */
 public class CommandResource extends Resource {
 
@@ -174,9 +185,13 @@ public class CommandResource extends Resource {
             geogig = getGeogig(request);
             Preconditions.checkState(geogig.isPresent());
             RestletContext ctx = new RestletContext(geogig.get(), request);
-            command.run(ctx);
-            rep = ctx.getRepresentation(format, getJSONPCallback());
-            getResponse().setStatus(command.getStatus());
+            if (isAsync()) {
+                rep = runAsync(ctx, format);
+            } else {
+                command.run(ctx);
+                rep = ctx.getRepresentation(format, getJSONPCallback());
+                getResponse().setStatus(command.getStatus());
+            }
         } catch (RepositoryBusyException ex) {
             rep = formatBusyException(ex, format);
             getResponse().setStatus(Status.SERVER_ERROR_SERVICE_UNAVAILABLE);
@@ -197,6 +212,34 @@ public class CommandResource extends Resource {
         return rep;
     }
 
+    private boolean isAsync() {
+        return Boolean.parseBoolean(options.getFirstValue("async"))
+                && command instanceof AbstractWebAPICommand;
+    }
+
+    private Representation runAsync(RestletContext ctx, MediaType format) {
+        final String commandName = getCommandName();
+        AsyncCommand<File> task = runAsync(AsyncContext.get(), commandName,
+                (AbstractWebAPICommand) command, ctx, format);
+        final String baseURL = getRequest().getRootRef().toString();
+        MediaType taskFormat = format == CSV_MEDIA_TYPE ? MediaType.APPLICATION_XML : format;
+        return Representations.newRepresentation(task, taskFormat, baseURL, false);
+    }
+
+    /**
+     * Runs the command in the background with its own lease on the repository, since the
+     * request's one is released as soon as the task status is sent, and the repository would
+     * otherwise be closed under the command if evicted from the repository provider's pool
+     */
+    @VisibleForTesting
+    static AsyncCommand<File> runAsync(AsyncContext asyncContext, String commandName,
+            AbstractWebAPICommand command, RestletContext ctx, MediaType format) {
+        AsyncWebAPICommandOp op = new AsyncWebAPICommandOp();
+        op.setContext(ctx.context());
+        op.setCommand(commandName, command, ctx, format);
+        return asyncContext.run(op, commandName, ctx.leaseRepository().orNull());
+    }
+
     private Representation formatBusyException(RepositoryBusyException ex, MediaType format) {
         Logger logger = getLogger();
         if (logger.isLoggable(Level.FINE)) {
@@ -340,5 +383,10 @@ public class CommandResource extends Resource {
             return RESTUtils.repositoryProvider(request);
         }
 
+        @Override
+        public Optional<RepositoryProvider.Lease> leaseRepository() {
+            return getRepositoryProvider().lease(request);
+        }
+
     }
 }
@@ -28,6 +28,47 @@ public interface RepositoryProvider {
 
     public Optional<Repository> getGeogig(Request request);
 
+    /**
+     * A hold on a repository that keeps it open until the lease is {@link #close() closed}, see
+     * {@link RepositoryProvider#lease(Request)}
+     */
+    public interface Lease extends AutoCloseable {
+
+        public Repository repository();
+
+        /**
+         * Releases the lease, calling it more than once has no effect
+         */
+        @Override
+        public void close();
+    }
+
+    /**
+     * Leases the repository that resolves from the request argument, for work that outlives the
+     * request, like commands run in the background. The provider won't close the repository until
+     * the lease is closed, regardless of the request having completed.
+     * <p>
+     * The default implementation is for providers that don't close repositories on their own, and
+     * returns a lease that does nothing when closed.
+     */
+    public default Optional<Lease> lease(Request request) {
+        final Optional<Repository> repository = getGeogig(request);
+        if (!repository.isPresent()) {
+            return Optional.absent();
+        }
+        return Optional.<Lease> of(new Lease() {
+            @Override
+            public Repository repository() {
+                return repository.get();
+            }
+
+            @Override
+            public void close() {
+                // nothing to release
+            }
+        });
+    }
+
     /**
      * Deletes the repository that resolved from the request argument.
      * <p>
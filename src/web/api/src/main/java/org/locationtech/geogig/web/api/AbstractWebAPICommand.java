@@ -13,6 +13,8 @@ import java.util.UUID;
 
 import org.locationtech.geogig.plumbing.TransactionResolve;
 import org.locationtech.geogig.repository.Context;
+import org.locationtech.geogig.repository.DefaultProgressListener;
+import org.locationtech.geogig.repository.ProgressListener;
 import org.locationtech.geogig.repository.Repository;
 import org.locationtech.geogig.repository.impl.GeogigTransaction;
 import org.locationtech.geogig.rest.RestletException;
@@ -31,6 +33,8 @@ public abstract class AbstractWebAPICommand implements WebAPICommand {
 
     private Status commandStatus = Status.SUCCESS_OK;
 
+    private ProgressListener progressListener = new DefaultProgressListener();
+
     protected AbstractWebAPICommand(ParameterSet options) {
         setTransactionId(options.getFirstValue("transactionId", null));
     }
@@ -127,6 +131,24 @@ public abstract class AbstractWebAPICommand implements WebAPICommand {
         }
     }
 
+    /**
+     * @return the listener long running commands report their progress to and check for
+     *         cancellation
+     */
+    public ProgressListener getProgressListener() {
+        return progressListener;
+    }
+
+    /**
+     * Mutator for the progress listener, set when the command runs asynchronously so that its
+     * progress can be polled and it can be cancelled
+     * 
+     * @param progressListener the listener to report progress to
+     */
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
     public void run(CommandContext context) {
         Repository repo = context.getRepository();
         if (requiresOpenRepo() && (null == repo || !repo.isOpen())) {
@@ -18,6 +18,8 @@ import org.restlet.data.MediaType;
 import org.restlet.data.Method;
 import org.restlet.resource.Representation;
 
+import com.google.common.base.Optional;
+
 /**
  *
  */
@@ -52,4 +54,15 @@ public interface CommandContext {
 
     RepositoryProvider getRepositoryProvider();
 
+    /**
+     * Leases this context's repository for commands that keep using it once the request has
+     * completed, see {@link RepositoryProvider#lease(org.restlet.data.Request)}
+     * 
+     * @return the lease, to be closed once the repository is no longer needed, or absent if the
+     *         repository is not provided by a {@code RepositoryProvider}
+     */
+    default Optional<RepositoryProvider.Lease> leaseRepository() {
+        return Optional.absent();
+    }
+
 }
@@ -87,6 +87,7 @@ public class Fetch extends AbstractWebAPICommand {
         final Context geogig = this.getRepositoryContext(context);
 
         FetchOp command = geogig.command(FetchOp.class);
+        command.setProgressListener(getProgressListener());
 
         if (remote != null) {
             command.addRemote(remote);
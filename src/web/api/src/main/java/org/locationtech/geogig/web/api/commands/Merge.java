@@ -110,6 +110,7 @@ public class Merge extends AbstractWebAPICommand {
 
         MergeOp merge = geogig.command(MergeOp.class);
         merge.setAuthor(authorName.orNull(), authorEmail.orNull());
+        merge.setProgressListener(getProgressListener());
 
         final Optional<ObjectId> oid = geogig.command(RevParse.class).setRefSpec(commit)
                 .call();
@@ -122,6 +122,7 @@ public class Pull extends AbstractWebAPICommand {
         PullOp command = geogig.command(PullOp.class)
                 .setAuthor(authorName.orNull(), authorEmail.orNull()).setRemote(remoteName)
                 .setAll(fetchAll).addRefSpec(refSpec);
+        command.setProgressListener(getProgressListener());
         try {
             final PullResult result = command.call();
             context.setResponseContent(new CommandResponse() {
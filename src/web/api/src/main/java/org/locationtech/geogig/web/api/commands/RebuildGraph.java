@@ -58,7 +58,8 @@ public class RebuildGraph extends AbstractWebAPICommand {
     protected void runInternal(CommandContext context) {
         final Context geogig = this.getRepositoryContext(context);
 
-        final ImmutableList<ObjectId> updatedObjects = geogig.command(RebuildGraphOp.class).call();
+        final ImmutableList<ObjectId> updatedObjects = geogig.command(RebuildGraphOp.class)
+                .setProgressListener(getProgressListener()).call();
 
         context.setResponseContent(new CommandResponse() {
             @Override
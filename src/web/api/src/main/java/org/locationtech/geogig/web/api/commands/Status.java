@@ -76,6 +76,8 @@ public class Status extends AbstractWebAPICommand {
 
         final String pathFilter = null;
         final Optional<Ref> currHead = geogig.command(RefParse.class).setName(Ref.HEAD).call();
+        // stop the diff walks once the requested page has been found
+        final Long maxDiffs = limit < 0 ? null : Long.valueOf(Math.max(0, offset) + (long) limit);
 
         context.setResponseContent(new CommandResponse() {
             @Override
@@ -90,10 +92,10 @@ public class Status extends AbstractWebAPICommand {
                     }
                 }
 
-                writer.writeStaged(geogig.command(DiffIndex.class).addFilter(pathFilter), offset,
-                        limit);
-                writer.writeUnstaged(geogig.command(DiffWorkTree.class).setFilter(pathFilter),
-                        offset, limit);
+                writer.writeStaged(geogig.command(DiffIndex.class).addFilter(pathFilter)
+                        .setMaxDiffs(maxDiffs), offset, limit);
+                writer.writeUnstaged(geogig.command(DiffWorkTree.class).setFilter(pathFilter)
+                        .setMaxDiffs(maxDiffs), offset, limit);
                 writer.writeUnmerged(geogig.command(ConflictsQueryOp.class).call(), offset, limit);
 
                 writer.finish();
@@ -0,0 +1,168 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.locationtech.geogig.repository.AbstractGeoGigOp;
+import org.locationtech.geogig.repository.Context;
+import org.locationtech.geogig.repository.Repository;
+import org.locationtech.geogig.rest.AsyncContext.AsyncCommand;
+import org.locationtech.geogig.rest.repository.RepositoryProvider;
+import org.locationtech.geogig.web.api.TestContext;
+
+public class AsyncContextTest {
+
+    @Rule
+    public TestContext testContext = new TestContext();
+
+    private AsyncContext asyncContext;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private final AtomicInteger running = new AtomicInteger();
+
+    private final AtomicInteger maxRunning = new AtomicInteger();
+
+    @Before
+    public void before() {
+        asyncContext = AsyncContext.createNew(4, 1);
+    }
+
+    @After
+    public void after() {
+        asyncContext.shutDown();
+    }
+
+    private class BlockingOp extends AbstractGeoGigOp<Integer> {
+
+        final CountDownLatch started = new CountDownLatch(1);
+
+        @Override
+        protected Integer _call() {
+            int current = running.incrementAndGet();
+            maxRunning.accumulateAndGet(current, Math::max);
+            started.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                running.decrementAndGet();
+            }
+            return current;
+        }
+    }
+
+    private class FailingOp extends AbstractGeoGigOp<Integer> {
+        @Override
+        protected Integer _call() {
+            throw new IllegalStateException("failed");
+        }
+    }
+
+    private class TestLease implements RepositoryProvider.Lease {
+
+        final AtomicInteger closed = new AtomicInteger();
+
+        @Override
+        public Repository repository() {
+            return testContext.get().getRepository();
+        }
+
+        @Override
+        public void close() {
+            closed.incrementAndGet();
+        }
+    }
+
+    @Test
+    public void testLeaseClosedWhenFinished() throws Exception {
+        BlockingOp op = new BlockingOp();
+        op.setContext(testContext.get().context());
+        TestLease lease = new TestLease();
+
+        AsyncCommand<Integer> task = asyncContext.run(op, "blocking", lease);
+        op.started.await(10, TimeUnit.SECONDS);
+        assertEquals(0, lease.closed.get());
+
+        release.countDown();
+        assertEquals(Integer.valueOf(1), task.get());
+        assertEquals(AsyncContext.Status.FINISHED, task.getStatus());
+        assertEquals(1, lease.closed.get());
+    }
+
+    @Test
+    public void testLeaseClosedWhenFailed() throws Exception {
+        FailingOp op = new FailingOp();
+        op.setContext(testContext.get().context());
+        TestLease lease = new TestLease();
+
+        AsyncCommand<Integer> task = asyncContext.run(op, "failing", lease);
+        try {
+            task.get();
+            fail("Expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertEquals(AsyncContext.Status.FAILED, task.getStatus());
+        assertEquals(1, lease.closed.get());
+    }
+
+    @Test
+    public void testLeaseClosedWhenCancelled() throws Exception {
+        BlockingOp op = new BlockingOp();
+        op.setContext(testContext.get().context());
+        TestLease lease = new TestLease();
+
+        AsyncCommand<Integer> task = asyncContext.run(op, "blocking", lease);
+        op.started.await(10, TimeUnit.SECONDS);
+        task.tryCancel();
+        release.countDown();
+        task.get();
+        assertEquals(AsyncContext.Status.CANCELLED, task.getStatus());
+        assertEquals(1, lease.closed.get());
+    }
+
+    @Test
+    public void testMaxTasksPerRepository() throws Exception {
+        final Context context = testContext.get().context();
+
+        BlockingOp op1 = new BlockingOp();
+        op1.setContext(context);
+        BlockingOp op2 = new BlockingOp();
+        op2.setContext(context);
+
+        AsyncCommand<Integer> first = asyncContext.run(op1, "first");
+        AsyncCommand<Integer> second = asyncContext.run(op2, "second");
+
+        op1.started.await(10, TimeUnit.SECONDS);
+        Thread.sleep(100);
+        assertFalse(second.isDone());
+        assertEquals(1, op2.started.getCount());
+
+        release.countDown();
+        assertEquals(Integer.valueOf(1), first.get());
+        assertEquals(Integer.valueOf(1), second.get());
+        assertEquals(1, maxRunning.get());
+    }
+}
@@ -100,4 +100,31 @@ public class StatusTest extends AbstractWebOpTest {
         assertTrue(TestData.jsonEquals(TestData.toJSONArray(expectedUnstaged), unstaged, false));
     }
 
+    @Test
+    public void testStatusPaging() throws Exception {
+        Repository geogig = testContext.get().getRepository();
+        TestData testData = new TestData(geogig);
+        testData.init();
+        testData.checkout("master");
+        testData.addAndCommit("Initial commit", TestData.point1, TestData.point2);
+        testData.insert(TestData.point1_modified);
+        testData.remove(TestData.point2);
+
+        // offset + limit must not overflow
+        ParameterSet options = TestParams.of("offset", "1", "limit",
+                String.valueOf(Integer.MAX_VALUE));
+        buildCommand(options).run(testContext.get());
+
+        JsonObject response = getJSONResponse().getJsonObject("response");
+        assertTrue(response.getBoolean("success"));
+        assertEquals(1, response.getJsonArray("unstaged").size());
+
+        options = TestParams.of("offset", "0", "limit", "1");
+        buildCommand(options).run(testContext.get());
+
+        response = getJSONResponse().getJsonObject("response");
+        assertTrue(response.getBoolean("success"));
+        assertEquals(1, response.getJsonArray("unstaged").size());
+    }
+
 }
@@ -0,0 +1,167 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.web;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.restlet.Context;
+import org.restlet.Filter;
+import org.restlet.data.Request;
+import org.restlet.data.Response;
+import org.restlet.data.Status;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Restlet {@link Filter} that bounds the number of requests being served concurrently, so that a
+ * burst of clients can't exhaust the server's worker threads.
+ * <p>
+ * Two limits are applied: one for all requests, and a lower one for long running requests, like
+ * the ones streaming objects for clone, fetch and push, or the {@code log} and {@code diff}
+ * commands. A request holds its permits until its {@link Exchange} completes, since the response
+ * entities of such requests are lazily computed while they're streamed out, and releases them
+ * however the exchange ends. Requests that don't get a permit within the admission timeout are
+ * rejected with a {@link Status#SERVER_ERROR_SERVICE_UNAVAILABLE 503} status.
+ * <p>
+ * Requests not served through an {@link ExchangeServerHelper} connector release their permits as
+ * soon as the response has been computed.
+ */
+class AdmissionFilter extends Filter {
+
+    /**
+     * Last path segments of the resources whose responses are expensive to compute or stream
+     */
+    private static final Set<String> LONG_RUNNING = ImmutableSet.of("batchobjects",
+            "sendobject", "filteredchanges", "affectedfeatures", "log", "diff", "blame",
+            "statistics");
+
+    private final @Nullable Semaphore requests;
+
+    private final @Nullable Semaphore longRunningRequests;
+
+    private final long timeoutMillis;
+
+    /**
+     * @param maxRequests maximum number of requests to serve concurrently, or zero for no limit
+     * @param maxLongRunningRequests maximum number of long running requests to serve
+     *        concurrently, or zero for no limit
+     * @param timeoutMillis how long to wait for a request to be admitted before rejecting it
+     */
+    public AdmissionFilter(Context context, int maxRequests, int maxLongRunningRequests,
+            long timeoutMillis) {
+        super(context);
+        checkArgument(maxRequests >= 0, "maxRequests must be >= 0: %s", maxRequests);
+        checkArgument(maxLongRunningRequests >= 0, "maxLongRunningRequests must be >= 0: %s",
+                maxLongRunningRequests);
+        checkArgument(timeoutMillis >= 0, "timeoutMillis must be >= 0: %s", timeoutMillis);
+        this.requests = maxRequests == 0 ? null : new Semaphore(maxRequests, true);
+        this.longRunningRequests = maxLongRunningRequests == 0 ? null
+                : new Semaphore(maxLongRunningRequests, true);
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    protected void doHandle(Request request, Response response) {
+        final Permits permits = new Permits();
+        try {
+            if (!permits.acquire(requests)
+                    || (isLongRunning(request) && !permits.acquire(longRunningRequests))) {
+                permits.release();
+                response.setStatus(Status.SERVER_ERROR_SERVICE_UNAVAILABLE,
+                        "The server is too busy to handle the request, try again later");
+                return;
+            }
+        } catch (InterruptedException e) {
+            permits.release();
+            Thread.currentThread().interrupt();
+            response.setStatus(Status.SERVER_ERROR_SERVICE_UNAVAILABLE);
+            return;
+        }
+
+        if (Exchange.onCompletion(permits::release)) {
+            super.doHandle(request, response);
+        } else {
+            // not served through ExchangeServerHelper, the permits can only be held while the
+            // response is computed
+            try {
+                super.doHandle(request, response);
+            } finally {
+                permits.release();
+            }
+        }
+    }
+
+    private boolean isLongRunning(Request request) {
+        if (request.getResourceRef() == null) {
+            return false;
+        }
+        List<String> segments = request.getResourceRef().getSegments();
+        if (segments == null || segments.isEmpty()) {
+            return false;
+        }
+        String resource = segments.get(segments.size() - 1);
+        int extension = resource.lastIndexOf('.');
+        if (extension > 0) {
+            resource = resource.substring(0, extension);
+        }
+        return LONG_RUNNING.contains(resource);
+    }
+
+    @VisibleForTesting
+    int availableRequestPermits() {
+        return requests == null ? -1 : requests.availablePermits();
+    }
+
+    @VisibleForTesting
+    int availableLongRunningPermits() {
+        return longRunningRequests == null ? -1 : longRunningRequests.availablePermits();
+    }
+
+    private class Permits {
+
+        private boolean request, longRunning;
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        boolean acquire(@Nullable Semaphore semaphore) throws InterruptedException {
+            if (semaphore == null) {
+                return true;
+            }
+            boolean acquired = semaphore.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS);
+            if (acquired) {
+                if (semaphore == requests) {
+                    request = true;
+                } else {
+                    longRunning = true;
+                }
+            }
+            return acquired;
+        }
+
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                if (request) {
+                    requests.release();
+                }
+                if (longRunning) {
+                    longRunningRequests.release();
+                }
+            }
+        }
+    }
+}
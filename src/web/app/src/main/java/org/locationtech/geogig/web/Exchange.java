@@ -0,0 +1,92 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.web;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The HTTP exchange being served by the calling thread, from the moment its request is received
+ * until its response has been written out or the exchange aborted.
+ * <p>
+ * Restlet 1.0 has no request completion callback, and response entities are written out by the
+ * connector after the application's restlets returned, so anything a request must hold until its
+ * response is fully sent (e.g. admission permits, leased repositories) is registered as a
+ * completion task instead. {@link ExchangeServerHelper} runs each HTTP call through
+ * {@link #run(Runnable)}, which runs the completion tasks however the call ends, including client
+ * disconnects, responses without an entity, and connector failures.
+ */
+final class Exchange {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Exchange.class);
+
+    private static final ThreadLocal<Exchange> CURRENT = new ThreadLocal<>();
+
+    private final Deque<Runnable> completionTasks = new ArrayDeque<>();
+
+    private Exchange() {
+        //
+    }
+
+    /**
+     * Runs a whole HTTP exchange in the calling thread, and then the completion tasks registered
+     * while running it, in the reverse order they were registered.
+     */
+    static void run(Runnable exchange) {
+        checkNotNull(exchange);
+        final @Nullable Exchange previous = CURRENT.get();
+        final Exchange current = new Exchange();
+        CURRENT.set(current);
+        try {
+            exchange.run();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+            current.complete();
+        }
+    }
+
+    /**
+     * Registers a task to be run once the exchange being served by the calling thread completes.
+     *
+     * @return {@code true} if the task was registered, {@code false} if the calling thread is not
+     *         serving an exchange, in which case it's up to the caller to run the task when
+     *         appropriate
+     */
+    static boolean onCompletion(Runnable task) {
+        checkNotNull(task);
+        Exchange current = CURRENT.get();
+        if (current == null) {
+            return false;
+        }
+        current.completionTasks.push(task);
+        return true;
+    }
+
+    private void complete() {
+        Runnable task;
+        while ((task = completionTasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                LOG.warn("Error completing HTTP exchange", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.web;
+
+import java.util.List;
+
+import org.restlet.Server;
+
+import com.noelios.restlet.Engine;
+import com.noelios.restlet.ServerHelper;
+import com.noelios.restlet.http.HttpServerCall;
+
+/**
+ * Jetty HTTP server connector that serves each call within an {@link Exchange}, so that whatever
+ * a request holds until its response is sent is released once the connector is done with the
+ * call, whether the response was fully written out or not.
+ * <p>
+ * Must be public and have a public {@link Server} constructor for the restlet engine to
+ * instantiate it, see {@link #register()}.
+ */
+public class ExchangeServerHelper extends com.noelios.restlet.ext.jetty.HttpServerHelper {
+
+    public ExchangeServerHelper(Server server) {
+        super(server);
+    }
+
+    @Override
+    public void handle(HttpServerCall httpCall) {
+        Exchange.run(() -> super.handle(httpCall));
+    }
+
+    /**
+     * Registers this connector ahead of the default Jetty one, so that it's used by the HTTP
+     * servers created afterwards.
+     */
+    static synchronized void register() {
+        Engine engine = (Engine) org.restlet.util.Engine.getInstance();
+        List<ServerHelper> servers = engine.getRegisteredServers();
+        for (ServerHelper helper : servers) {
+            if (helper instanceof ExchangeServerHelper) {
+                return;
+            }
+        }
+        servers.add(0, new ExchangeServerHelper(null));
+    }
+}
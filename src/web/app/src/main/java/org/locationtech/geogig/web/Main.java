@@ -15,6 +15,7 @@ import java.util.LinkedList;
 import java.util.Map;
 
 import org.locationtech.geogig.cli.CLIContextBuilder;
+import org.locationtech.geogig.metrics.CommandMetrics;
 import org.locationtech.geogig.model.impl.DefaultPlatform;
 import org.locationtech.geogig.plumbing.ResolveGeogigURI;
 import org.locationtech.geogig.repository.Context;
@@ -23,6 +24,7 @@ import org.locationtech.geogig.repository.Platform;
 import org.locationtech.geogig.repository.Repository;
 import org.locationtech.geogig.repository.RepositoryConnectionException;
 import org.locationtech.geogig.repository.impl.GlobalContextBuilder;
+import org.locationtech.geogig.rest.MetricsResource;
 import org.locationtech.geogig.rest.TaskResultDownloadResource;
 import org.locationtech.geogig.rest.TaskStatusResource;
 import org.locationtech.geogig.rest.postgis.PGRouter;
@@ -39,6 +41,7 @@ import org.restlet.Application;
 import org.restlet.Component;
 import org.restlet.Restlet;
 import org.restlet.Router;
+import org.restlet.Server;
 import org.restlet.data.Protocol;
 import org.restlet.data.Request;
 import org.restlet.data.Response;
@@ -55,10 +58,35 @@ public class Main extends Application {
         setup();
     }
 
+    /**
+     * Default maximum number of HTTP worker threads
+     */
+    public static final int DEFAULT_MAX_THREADS = 255;
+
+    /**
+     * Default maximum number of long running requests served concurrently, see
+     * {@link AdmissionFilter}
+     */
+    public static final int DEFAULT_MAX_LONG_RUNNING_REQUESTS = 2
+            * Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Default time to wait for a request to be admitted before rejecting it
+     */
+    public static final long DEFAULT_ADMISSION_TIMEOUT_MILLIS = 30_000;
+
     private RepositoryProvider repoProvider;
 
     private final boolean multiRepo;
 
+    private int maxRequests = 0;
+
+    private int maxLongRunningRequests = DEFAULT_MAX_LONG_RUNNING_REQUESTS;
+
+    private long admissionTimeoutMillis = DEFAULT_ADMISSION_TIMEOUT_MILLIS;
+
+    private boolean metrics;
+
     public Main() {
         super();
         this.multiRepo = false;
@@ -70,6 +98,30 @@ public class Main extends Application {
         this.multiRepo = multiRepo;
     }
 
+    /**
+     * Configures how many requests are served concurrently, requests exceeding the limits wait up
+     * to {@code timeoutMillis} to be served and are rejected with a 503 status otherwise.
+     * 
+     * @param maxRequests maximum number of requests to serve concurrently, or zero for no limit
+     * @param maxLongRunningRequests maximum number of long running requests (e.g. object streams
+     *        for clone and fetch, log, diff) to serve concurrently, or zero for no limit
+     * @param timeoutMillis how long a request waits to be admitted
+     */
+    public void setAdmission(int maxRequests, int maxLongRunningRequests, long timeoutMillis) {
+        this.maxRequests = maxRequests;
+        this.maxLongRunningRequests = maxLongRunningRequests;
+        this.admissionTimeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Whether to record {@link CommandMetrics command metrics} and serve them at {@code /metrics}.
+     * The endpoint is not authenticated, so only enable it on servers whose access is restricted
+     * otherwise.
+     */
+    public void setMetrics(boolean metrics) {
+        this.metrics = metrics;
+    }
+
     @Override
     public void setContext(org.restlet.Context context) {
         super.setContext(context);
@@ -118,6 +170,10 @@ public class Main extends Application {
         router.attach("/tasks/{taskId}.{extension}", TaskStatusResource.class);
         router.attach("/tasks/{taskId}", TaskStatusResource.class);
         router.attach("/tasks/{taskId}/download", TaskResultDownloadResource.class);
+        if (metrics) {
+            CommandMetrics.get().setEnabled(true);
+            router.attach("/metrics", MetricsResource.class);
+        }
         router.attach("/" + RepositoryProvider.BASE_REPOSITORY_ROUTE + ".{extension}",
                 new RepositoryFinder(repoProvider));
         router.attach("/" + RepositoryProvider.BASE_REPOSITORY_ROUTE,
@@ -161,7 +217,38 @@ public class Main extends Application {
         decoder.setDecodeResponse(false);
         decoder.setNext(encoder);
 
-        return decoder;
+        if (maxRequests == 0 && maxLongRunningRequests == 0) {
+            return decoder;
+        }
+        AdmissionFilter admission = new AdmissionFilter(context, maxRequests,
+                maxLongRunningRequests, admissionTimeoutMillis);
+        admission.setNext(decoder);
+        return admission;
+    }
+
+    /**
+     * Adds an HTTP server to the component, using Jetty's non blocking connector so that idle and
+     * keep-alive connections don't hold a worker thread, with at most {@code maxThreads} worker
+     * threads. Calls are served within an {@link Exchange}, see {@link ExchangeServerHelper}.
+     * 
+     * @param acceptQueueSize the number of connection requests the operating system queues up
+     *        before refusing new connections, or zero for its default
+     */
+    public static Server addServer(Component component, int port, int maxThreads,
+            int acceptQueueSize) {
+        ExchangeServerHelper.register();
+        Server server = component.getServers().add(Protocol.HTTP, port);
+        if (server.getContext() == null) {
+            server.setContext(new org.restlet.Context());
+        }
+        // 1: SelectChannelConnector (NIO), 2: blocking NIO, 3: blocking BIO
+        server.getContext().getParameters().add("type", "1");
+        server.getContext().getParameters().add("maxThreads", String.valueOf(maxThreads));
+        if (acceptQueueSize > 0) {
+            server.getContext().getParameters().add("acceptQueueSize",
+                    String.valueOf(acceptQueueSize));
+        }
+        return server;
     }
 
     static Repository loadGeoGIG(String repo) {
@@ -198,7 +285,7 @@ public class Main extends Application {
         } else {
             System.err.printf("Starting server at port %d for repo %s\n", 8182, path);
         }
-        comp.getServers().add(Protocol.HTTP, 8182);
+        addServer(comp, 8182, DEFAULT_MAX_THREADS, 0);
         comp.start();
         System.err.println("started.");
     }
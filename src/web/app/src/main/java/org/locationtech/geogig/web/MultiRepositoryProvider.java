@@ -17,10 +17,19 @@ import java.io.IOException;
 import java.net.URI;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.locationtech.geogig.model.Node;
+import org.locationtech.geogig.model.Ref;
+import org.locationtech.geogig.model.RevCommit;
+import org.locationtech.geogig.model.RevTree;
 import org.locationtech.geogig.plumbing.ResolveGeogigURI;
+import org.locationtech.geogig.porcelain.BranchListOp;
 import org.locationtech.geogig.repository.Context;
 import org.locationtech.geogig.repository.Hints;
 import org.locationtech.geogig.repository.Repository;
@@ -29,6 +38,8 @@ import org.locationtech.geogig.repository.RepositoryResolver;
 import org.locationtech.geogig.repository.impl.GeoGIG;
 import org.locationtech.geogig.repository.impl.GlobalContextBuilder;
 import org.locationtech.geogig.rest.repository.RepositoryProvider;
+import org.locationtech.geogig.storage.ConfigDatabase;
+import org.locationtech.geogig.storage.ObjectDatabase;
 import org.restlet.data.Method;
 import org.restlet.data.Request;
 import org.slf4j.Logger;
@@ -38,36 +49,123 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
+import com.google.common.base.Ticker;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.cache.RemovalCause;
 import com.google.common.cache.RemovalListener;
 import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * {@link RepositoryProvider} that looks up the coresponding {@link GeoGIG} instance to a given
  * {@link Request} by asking the geoserver's {@link RepositoryManager}
+ * <p>
+ * Open repositories are kept in a pool weighted by the maximum size of their object cache, and are
+ * evicted, least recently used first, when the object caches of all the open repositories could
+ * hold more objects than the given cache budget, or when they haven't been accessed for the given
+ * idle timeout. The default budget fits a few dozen repositories with the default object cache
+ * size, and the default idle timeout is long enough for intermittently accessed repositories to
+ * keep their caches warm.
+ * <p>
+ * Requests {@link #lease(String) lease} the repositories they use, and an evicted repository is
+ * only closed once it's no longer leased. Leases taken through {@link #getGeogig(Request)} are
+ * released when the request's {@link Exchange} completes, so they only guarantee the repository
+ * isn't closed while the request is being served. Work a request leaves running in the background
+ * (e.g. asynchronous commands, imports and exports) shall take its own lease through
+ * {@link #lease(Request)} and close it once done.
+ * <p>
+ * Note the underlying storage handles (e.g. RocksDB databases and PostgreSQL connection pools)
+ * are reference counted by their storage backends, and hence shared among repositories that live
+ * in the same database.
  */
 public class MultiRepositoryProvider implements RepositoryProvider {
 
     private static final Logger LOG = LoggerFactory.getLogger(MultiRepositoryProvider.class);
 
-    private LoadingCache<String, Repository> repositories;
+    /**
+     * Rough estimate of the heap size of a cached object, used to compute the default cache
+     * budget
+     */
+    private static final int ESTIMATED_OBJECT_SIZE = 2 * 1024;
+
+    /**
+     * Default value of the {@code objectdb.cache.maxSize} repository config option, see
+     * {@code CacheFactory}
+     */
+    private static final int DEFAULT_OBJECT_CACHE_SIZE = 50_000;
+
+    /**
+     * Number of repositories with the default object cache size the default cache budget fits
+     */
+    private static final int DEFAULT_POOL_SIZE = 32;
+
+    /**
+     * Default time a repository is kept open without being accessed
+     */
+    public static final long DEFAULT_IDLE_TIMEOUT_MINUTES = 10;
+
+    private LoadingCache<String, PooledRepository> repositories;
 
     private final URI rootRepoURI;
 
     private final RepositoryResolver resolver;
 
+    private final long cacheBudget;
+
+    private final long idleTimeoutMillis;
+
+    /**
+     * Creates a provider with the default cache budget and idle timeout
+     */
     public MultiRepositoryProvider(final URI rootRepoURI) {
+        this(rootRepoURI, defaultCacheBudget());
+    }
+
+    /**
+     * Creates a provider with the default idle timeout
+     * 
+     * @param rootRepoURI the URI of the root location of the repositories
+     * @param cacheBudget the maximum number of objects the object caches of all the open
+     *        repositories can hold altogether
+     */
+    public MultiRepositoryProvider(final URI rootRepoURI, final long cacheBudget) {
+        this(rootRepoURI, cacheBudget, DEFAULT_IDLE_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /**
+     * @param rootRepoURI the URI of the root location of the repositories
+     * @param cacheBudget the maximum number of objects the object caches of all the open
+     *        repositories can hold altogether
+     * @param idleTimeout how long a repository is kept open without being accessed
+     */
+    public MultiRepositoryProvider(final URI rootRepoURI, final long cacheBudget,
+            final long idleTimeout, final TimeUnit unit) {
+        this(rootRepoURI, cacheBudget, idleTimeout, unit, Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    MultiRepositoryProvider(final URI rootRepoURI, final long cacheBudget,
+            final long idleTimeout, final TimeUnit unit, final Ticker ticker) {
         checkNotNull(rootRepoURI, "root repo URI is null");
+        checkNotNull(unit, "idle timeout unit is null");
+        checkNotNull(ticker, "ticker is null");
+        Preconditions.checkArgument(cacheBudget > 0, "cache budget must be > 0: %s",
+                cacheBudget);
+        Preconditions.checkArgument(idleTimeout > 0, "idle timeout must be > 0: %s",
+                idleTimeout);
 
         resolver = RepositoryResolver.lookup(rootRepoURI);
 
         this.rootRepoURI = rootRepoURI;
+        this.cacheBudget = cacheBudget;
+        this.idleTimeoutMillis = unit.toMillis(idleTimeout);
 
         try {
-            this.repositories = buildCache();
+            this.repositories = buildCache(ticker);
         } catch (IOException e) {
             throw Throwables.propagate(e);
         }
@@ -106,10 +204,51 @@ public class MultiRepositoryProvider implements RepositoryProvider {
                 return initRepo;
             }
         }
-        return Optional.of(getGeogig(repositoryName));
+        final Lease lease = lease(repositoryName);
+        if (!Exchange.onCompletion(lease::close)) {
+            // not served within an exchange, there's no way to know when the request is done
+            lease.close();
+        }
+        return Optional.of(lease.repository());
+    }
+
+    /**
+     * Leases the repository the request resolves to, independently of the request's
+     * {@link Exchange}, see {@link #lease(String)}
+     */
+    @Override
+    public Optional<RepositoryProvider.Lease> lease(Request request) {
+        final String repositoryName = getStringAttribute(request, "repository");
+        if (null == repositoryName || isInitRequest(request)) {
+            return RepositoryProvider.super.lease(request);
+        }
+        return Optional.<RepositoryProvider.Lease> of(lease(repositoryName));
     }
 
+    /**
+     * Returns the named repository without leasing it, hence it may be closed at any time if
+     * evicted from the pool; prefer {@link #lease(String)}.
+     */
     public Repository getGeogig(final String repositoryName) {
+        return pooled(repositoryName).repo;
+    }
+
+    /**
+     * Leases the named repository, opening it if it's not in the pool. The repository won't be
+     * closed until the lease is {@link Lease#close() closed}, even if it's evicted from the pool in
+     * the meantime.
+     */
+    public Lease lease(final String repositoryName) {
+        while (true) {
+            PooledRepository pooled = pooled(repositoryName);
+            if (pooled.lease()) {
+                return new Lease(pooled);
+            }
+            // evicted in between, the next call loads it again
+        }
+    }
+
+    private PooledRepository pooled(final String repositoryName) {
         try {
             return repositories.get(repositoryName);
         } catch (ExecutionException e) {
@@ -118,19 +257,111 @@ public class MultiRepositoryProvider implements RepositoryProvider {
         }
     }
 
-    private static final RemovalListener<String, Repository> removalListener = new RemovalListener<String, Repository>() {
+    /**
+     * A lease on a pooled repository, see {@link MultiRepositoryProvider#lease(String)}
+     */
+    public static final class Lease implements RepositoryProvider.Lease {
+
+        private final PooledRepository pooled;
+
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Lease(PooledRepository pooled) {
+            this.pooled = pooled;
+        }
+
         @Override
-        public void onRemoval(RemovalNotification<String, Repository> notification) {
-            final RemovalCause cause = notification.getCause();
-            final String repositoryName = notification.getKey();
-            final Repository repo = notification.getValue();
-            LOG.info("Disposing repository {}. Cause: " + cause(cause));
+        public Repository repository() {
+            return pooled.repo;
+        }
+
+        /**
+         * Releases the lease, closing the repository if it was evicted from the pool and this was
+         * its last lease. Calling it more than once has no effect.
+         */
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                pooled.release();
+            }
+        }
+    }
+
+    /**
+     * An open repository in the pool, closed once it's been evicted and is no longer leased
+     */
+    private static class PooledRepository {
+
+        final String name;
+
+        final Repository repo;
+
+        private int leases;
+
+        private boolean evicted;
+
+        PooledRepository(String name, Repository repo) {
+            this.name = name;
+            this.repo = repo;
+        }
+
+        synchronized boolean lease() {
+            if (evicted) {
+                return false;
+            }
+            leases++;
+            return true;
+        }
+
+        void release() {
+            final boolean close;
+            synchronized (this) {
+                Preconditions.checkState(leases > 0, "repository %s is not leased", name);
+                leases--;
+                close = evicted && leases == 0;
+            }
+            if (close) {
+                close();
+            }
+        }
+
+        void evict() {
+            final boolean close;
+            synchronized (this) {
+                evicted = true;
+                close = leases == 0;
+            }
+            if (close) {
+                close();
+            } else {
+                LOG.info("Repository {} is still leased, it'll be closed once released", name);
+            }
+        }
+
+        synchronized int leases() {
+            return leases;
+        }
+
+        private void close() {
+            LOG.info("Closing repository {}", name);
             try {
-                if (repo != null) {
+                if (repo.isOpen()) {
                     repo.close();
                 }
             } catch (RuntimeException e) {
-                LOG.warn("Error closing repository {}", repositoryName, e);
+                LOG.warn("Error closing repository {}", name, e);
+            }
+        }
+    }
+
+    private static final RemovalListener<String, PooledRepository> removalListener = new RemovalListener<String, PooledRepository>() {
+        @Override
+        public void onRemoval(RemovalNotification<String, PooledRepository> notification) {
+            final RemovalCause cause = notification.getCause();
+            final PooledRepository pooled = notification.getValue();
+            LOG.info("Disposing repository {}. Cause: {}", notification.getKey(), cause(cause));
+            if (pooled != null) {
+                pooled.evict();
             }
         }
 
@@ -152,28 +383,147 @@ public class MultiRepositoryProvider implements RepositoryProvider {
         }
     };
 
-    private LoadingCache<String, Repository> buildCache() throws IOException {
+    private LoadingCache<String, PooledRepository> buildCache(Ticker ticker) throws IOException {
 
-        CacheLoader<String, Repository> loader = new CacheLoader<String, Repository>() {
+        CacheLoader<String, PooledRepository> loader = new CacheLoader<String, PooledRepository>() {
 
             @Override
-            public Repository load(final String repoName) throws Exception {
+            public PooledRepository load(final String repoName) throws Exception {
                 Repository repo = loadGeoGIG(repoName);
-                return repo;
+                return new PooledRepository(repoName, repo);
             }
 
         };
 
-        LoadingCache<String, Repository> cache = CacheBuilder.newBuilder()//
+        // a single segment so that the least recently used repository is evicted across the
+        // whole pool rather than within a segment
+        LoadingCache<String, PooledRepository> cache = CacheBuilder.newBuilder()//
                 .concurrencyLevel(1)//
-                .expireAfterAccess(1, TimeUnit.MINUTES)//
-                .maximumSize(1024)//
+                .maximumWeight(cacheBudget)//
+                .weigher(weigher)//
+                .expireAfterAccess(idleTimeoutMillis, TimeUnit.MILLISECONDS)//
+                .ticker(ticker)//
                 .removalListener(removalListener)//
                 .build(loader);
 
         return cache;
     }
 
+    /**
+     * @return a budget that fits {@link #DEFAULT_POOL_SIZE} repositories with the default object
+     *         cache size, or half the heap, whichever is larger
+     */
+    private static long defaultCacheBudget() {
+        return Math.max(DEFAULT_POOL_SIZE * (long) DEFAULT_OBJECT_CACHE_SIZE,
+                Runtime.getRuntime().maxMemory() / 2 / ESTIMATED_OBJECT_SIZE);
+    }
+
+    /**
+     * @return the weight of the repositories currently in the pool
+     */
+    private long pooledWeight() {
+        long weight = 0;
+        for (Map.Entry<String, PooledRepository> e : repositories.asMap().entrySet()) {
+            weight += weigher.weigh(e.getKey(), e.getValue());
+        }
+        return weight;
+    }
+
+    @VisibleForTesting
+    int leases(String repositoryName) {
+        PooledRepository pooled = repositories.getIfPresent(repositoryName);
+        return pooled == null ? 0 : pooled.leases();
+    }
+
+    @VisibleForTesting
+    void cleanUp() {
+        repositories.cleanUp();
+    }
+
+    /**
+     * Weighs each repository by the maximum number of objects its object cache can hold
+     */
+    private static final Weigher<String, PooledRepository> weigher = new Weigher<String, PooledRepository>() {
+        @Override
+        public int weigh(String repositoryName, PooledRepository pooled) {
+            final Repository repo = pooled.repo;
+            if (!repo.isOpen()) {
+                return 1;
+            }
+            try {
+                ConfigDatabase config = repo.configDatabase();
+                boolean enabled = config.get("objectdb.cache.enabled", Boolean.class)
+                        .or(Boolean.TRUE);
+                if (!enabled) {
+                    return 1;
+                }
+                int maxSize = config.get("objectdb.cache.maxSize", Integer.class)
+                        .or(DEFAULT_OBJECT_CACHE_SIZE);
+                return Math.max(1, maxSize);
+            } catch (RuntimeException e) {
+                LOG.debug("Unable to get the object cache size of repository {}",
+                        repositoryName, e);
+                return DEFAULT_OBJECT_CACHE_SIZE;
+            }
+        }
+    };
+
+    /**
+     * Opens the given repositories and loads their branch tips commits and root trees in the
+     * background, so that the first requests to them don't pay the cost of opening the repository
+     * and loading the most frequently used objects. Repositories that don't exist are ignored, and
+     * no more repositories are opened once opening another one with the default object cache size
+     * would exceed the cache budget.
+     * 
+     * @param repositoryNames the names of the repositories to warm up, most frequently used first
+     */
+    public void warmUp(final Iterable<String> repositoryNames) {
+        checkNotNull(repositoryNames, "repositoryNames is null");
+        final ImmutableSet<String> names = ImmutableSet.copyOf(repositoryNames);
+        if (names.isEmpty()) {
+            return;
+        }
+        ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                .setDaemon(true).setNameFormat("geogig-repository-warmup-%d").build());
+        executor.submit(() -> {
+            final Set<String> existing = ImmutableSet.copyOf(findRepositories());
+            for (String name : names) {
+                if (!existing.contains(name)) {
+                    LOG.info("Not warming up repository {}, it doesn't exist", name);
+                    continue;
+                }
+                if (repositories.getIfPresent(name) == null
+                        && pooledWeight() + DEFAULT_OBJECT_CACHE_SIZE > cacheBudget) {
+                    LOG.info("Cache budget full, not warming up repository {} and the rest", name);
+                    break;
+                }
+                try (Lease lease = lease(name)) {
+                    warmUp(lease.repository());
+                } catch (RuntimeException e) {
+                    LOG.warn("Error warming up repository {}", name, e);
+                }
+            }
+        });
+        executor.shutdown();
+    }
+
+    private void warmUp(Repository repo) {
+        if (!repo.isOpen()) {
+            return;
+        }
+        final ObjectDatabase objects = repo.objectDatabase();
+        for (Ref branch : repo.command(BranchListOp.class).call()) {
+            if (branch.getObjectId().isNull()) {
+                continue;
+            }
+            RevCommit commit = objects.getCommit(branch.getObjectId());
+            RevTree root = objects.getTree(commit.getTreeId());
+            for (Node featureTree : root.trees()) {
+                objects.getTree(featureTree.getObjectId());
+            }
+        }
+    }
+
     @VisibleForTesting
     Repository loadGeoGIG(final String repoName) {
         LOG.info("Loading repository " + repoName);
@@ -29,9 +29,7 @@ import org.locationtech.geogig.rest.repository.RepositoryProvider;
 import org.locationtech.geogig.rest.repository.SingleRepositoryProvider;
 import org.locationtech.geogig.web.Main;
 import org.locationtech.geogig.web.MultiRepositoryProvider;
-import org.restlet.Application;
 import org.restlet.Component;
-import org.restlet.data.Protocol;
 
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.Parameters;
@@ -41,7 +39,7 @@ import com.beust.jcommander.Parameters;
  * <p>
  * Usage:
  * <ul>
- * <li>{@code geogig serve [-p <port>] [<directory>]}
+ * <li>{@code geogig serve [-p <port>] [-m [--warm <repo>[,<repo>]...]] [<directory>]}
  * </ul>
  * </p>
  * 
@@ -61,6 +59,27 @@ public class Serve extends AbstractCommand {
     @Parameter(names = { "--port", "-p" }, description = "Port to run server on")
     private int port = 8182;
 
+    @Parameter(names = "--warm", description = "Comma separated list of repositories to open and warm up on startup when serving multiple repositories, most frequently used first")
+    private List<String> warm;
+
+    @Parameter(names = "--max-threads", description = "Maximum number of HTTP worker threads")
+    private int maxThreads = Main.DEFAULT_MAX_THREADS;
+
+    @Parameter(names = "--accept-queue", description = "Number of pending connections the operating system queues up before refusing new ones (0 for its default)")
+    private int acceptQueueSize = 0;
+
+    @Parameter(names = "--max-requests", description = "Maximum number of requests served concurrently (0 for no limit)")
+    private int maxRequests = 0;
+
+    @Parameter(names = "--max-long-requests", description = "Maximum number of long running requests (object streams for clone/fetch/push, log, diff) served concurrently (0 for no limit)")
+    private int maxLongRunningRequests = Main.DEFAULT_MAX_LONG_RUNNING_REQUESTS;
+
+    @Parameter(names = "--admission-timeout", description = "Seconds a request waits to be served when the server is busy before being rejected")
+    private int admissionTimeoutSeconds = (int) (Main.DEFAULT_ADMISSION_TIMEOUT_MILLIS / 1000);
+
+    @Parameter(names = "--metrics", description = "Record command metrics and serve them at /metrics. The endpoint is not authenticated, only enable it on servers whose access is restricted otherwise")
+    private boolean metrics = false;
+
     @Override
     protected void runInternal(GeogigCLI cli)
             throws InvalidParameterException, CommandFailedException, IOException {
@@ -82,18 +101,30 @@ public class Serve extends AbstractCommand {
             }
     
             if (multiRepo) {
-                provider = new MultiRepositoryProvider(repoURI);
+                MultiRepositoryProvider multiRepoProvider = new MultiRepositoryProvider(repoURI);
+                if (warm != null) {
+                    multiRepoProvider.warmUp(warm);
+                }
+                provider = multiRepoProvider;
             } else {
                 provider = new SingleRepositoryProvider(loadGeoGIG(repoURI, cli));
             }
         }
         
-        Application application = new Main(provider, multiRepo);
+        if (maxThreads < 1 || maxRequests < 0 || maxLongRunningRequests < 0
+                || admissionTimeoutSeconds < 0 || acceptQueueSize < 0) {
+            throw new InvalidParameterException(
+                    "--max-threads must be > 0, and --max-requests, --max-long-requests, --admission-timeout and --accept-queue >= 0");
+        }
+        Main application = new Main(provider, multiRepo);
+        application.setAdmission(maxRequests, maxLongRunningRequests,
+                admissionTimeoutSeconds * 1000L);
+        application.setMetrics(metrics);
 
         Component comp = new Component();
 
         comp.getDefaultHost().attach(application);
-        comp.getServers().add(Protocol.HTTP, port);
+        Main.addServer(comp, port, maxThreads, acceptQueueSize);
 
         cli.getConsole()
                 .println(String.format("Starting server on port %d, use CTRL+C to exit.", port));
@@ -0,0 +1,124 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.rest.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.locationtech.geogig.repository.Repository;
+import org.locationtech.geogig.rest.AsyncContext;
+import org.locationtech.geogig.rest.AsyncContext.AsyncCommand;
+import org.locationtech.geogig.rest.repository.CommandResource.RestletContext;
+import org.locationtech.geogig.web.MockMultiRepositoryProvider;
+import org.locationtech.geogig.web.api.AbstractWebAPICommand;
+import org.locationtech.geogig.web.api.CommandContext;
+import org.locationtech.geogig.web.api.CommandResponse;
+import org.restlet.data.Form;
+import org.restlet.data.MediaType;
+import org.restlet.data.Method;
+import org.restlet.data.Request;
+
+public class CommandResourceAsyncTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockMultiRepositoryProvider provider;
+
+    private AsyncContext asyncContext;
+
+    @Before
+    public void before() {
+        provider = new MockMultiRepositoryProvider(folder.getRoot().toURI());
+        asyncContext = AsyncContext.createNew(1, 0);
+    }
+
+    @After
+    public void after() {
+        asyncContext.shutDown();
+    }
+
+    private static class BlockingCommand extends AbstractWebAPICommand {
+
+        final CountDownLatch release = new CountDownLatch(1);
+
+        final AtomicBoolean repositoryOpen = new AtomicBoolean();
+
+        BlockingCommand() {
+            super(new FormParams(new Form()));
+        }
+
+        @Override
+        protected boolean requiresTransaction() {
+            return false;
+        }
+
+        @Override
+        protected void runInternal(CommandContext context) {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            repositoryOpen.set(context.getRepository().isOpen());
+            context.setResponseContent(CommandResponse.warning("done"));
+        }
+    }
+
+    private void use(String repoName) {
+        provider.lease(repoName).close();
+    }
+
+    @Test
+    public void testRepositoryKeptOpenUntilAsyncCommandFinishes() throws Exception {
+        final Request request = new Request(Method.GET, "http://localhost/repos/repo1/merge");
+        request.getAttributes().put("repository", "repo1");
+        request.getAttributes().put(RepositoryProvider.KEY, provider);
+
+        // not served within an exchange, the request's own lease is released right away, as it'd
+        // be once the task status is sent
+        final Repository repo1 = provider.getGeogig(request).get();
+        assertEquals(0, provider.leases("repo1"));
+
+        BlockingCommand command = new BlockingCommand();
+        RestletContext ctx = new RestletContext(repo1, request);
+        AsyncCommand<File> task = CommandResource.runAsync(asyncContext, "merge", command, ctx,
+                MediaType.APPLICATION_JSON);
+        assertEquals(1, provider.leases("repo1"));
+
+        // evicted and expired while the command is running
+        use("repo2");
+        use("repo3");
+        provider.advance(11, TimeUnit.MINUTES);
+        provider.cleanUp();
+        assertTrue(repo1.isOpen());
+
+        command.release.countDown();
+        File result = task.get();
+        try {
+            assertEquals(AsyncContext.Status.FINISHED, task.getStatus());
+            assertTrue(command.repositoryOpen.get());
+            assertFalse(repo1.isOpen());
+        } finally {
+            result.delete();
+        }
+    }
+}
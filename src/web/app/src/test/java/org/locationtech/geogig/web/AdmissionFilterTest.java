@@ -0,0 +1,142 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.web;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.restlet.Context;
+import org.restlet.Restlet;
+import org.restlet.data.Method;
+import org.restlet.data.Request;
+import org.restlet.data.Response;
+import org.restlet.data.Status;
+import org.restlet.resource.StringRepresentation;
+
+public class AdmissionFilterTest {
+
+    private AdmissionFilter filter;
+
+    private Status status;
+
+    private RuntimeException failure;
+
+    @Before
+    public void before() throws Exception {
+        status = Status.SUCCESS_OK;
+        failure = null;
+        filter = new AdmissionFilter(new Context(), 2, 1, 0);
+        filter.setNext(new Restlet() {
+            @Override
+            public void handle(Request request, Response response) {
+                if (failure != null) {
+                    throw failure;
+                }
+                response.setStatus(status);
+                if (Status.SUCCESS_OK.equals(status)) {
+                    response.setEntity(new StringRepresentation("response"));
+                }
+            }
+        });
+        filter.start();
+    }
+
+    private Response handle(String resource) {
+        Request request = new Request(Method.GET, "http://localhost/repos/repo1/" + resource);
+        Response response = new Response(request);
+        filter.handle(request, response);
+        return response;
+    }
+
+    private void assertAvailable(int requests, int longRunningRequests) {
+        assertEquals(requests, filter.availableRequestPermits());
+        assertEquals(longRunningRequests, filter.availableLongRunningPermits());
+    }
+
+    @Test
+    public void testPermitsHeldUntilExchangeCompletes() {
+        Exchange.run(() -> {
+            Response response = handle("log");
+            assertNotNull(response.getEntity());
+            // the entity is yet to be written out
+            assertAvailable(1, 0);
+        });
+        assertAvailable(2, 1);
+    }
+
+    @Test
+    public void testRejectedWhenBusy() {
+        Exchange.run(() -> {
+            assertEquals(Status.SUCCESS_OK, handle("log").getStatus());
+            assertEquals(Status.SERVER_ERROR_SERVICE_UNAVAILABLE, handle("diff").getStatus());
+            assertAvailable(1, 0);
+            assertEquals(Status.SUCCESS_OK, handle("status").getStatus());
+            assertAvailable(0, 0);
+            assertEquals(Status.SERVER_ERROR_SERVICE_UNAVAILABLE, handle("ls-tree").getStatus());
+        });
+        assertAvailable(2, 1);
+    }
+
+    @Test
+    public void testReleasedWithoutEntity() {
+        status = Status.SUCCESS_NO_CONTENT;
+        Exchange.run(() -> handle("log"));
+        assertAvailable(2, 1);
+
+        status = Status.REDIRECTION_NOT_MODIFIED;
+        Exchange.run(() -> handle("log"));
+        assertAvailable(2, 1);
+    }
+
+    @Test
+    public void testReleasedWhenExchangeAborted() {
+        try {
+            Exchange.run(() -> {
+                handle("log");
+                // e.g. the client disconnected before the entity was written out
+                throw new IllegalStateException("connection reset");
+            });
+            fail("Expected ISE");
+        } catch (IllegalStateException e) {
+            assertEquals("connection reset", e.getMessage());
+        }
+        assertAvailable(2, 1);
+    }
+
+    @Test
+    public void testReleasedWhenRequestFails() {
+        failure = new IllegalArgumentException("failed");
+        try {
+            Exchange.run(() -> handle("log"));
+            fail("Expected IAE");
+        } catch (IllegalArgumentException e) {
+            assertEquals("failed", e.getMessage());
+        }
+        assertAvailable(2, 1);
+    }
+
+    @Test
+    public void testReleasedOutsideExchange() {
+        handle("log");
+        assertAvailable(2, 1);
+
+        failure = new IllegalArgumentException("failed");
+        try {
+            handle("log");
+            fail("Expected IAE");
+        } catch (IllegalArgumentException e) {
+            assertEquals("failed", e.getMessage());
+        }
+        assertAvailable(2, 1);
+    }
+}
@@ -0,0 +1,113 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.web;
+
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.locationtech.geogig.repository.Context;
+import org.locationtech.geogig.repository.Repository;
+import org.locationtech.geogig.storage.ConfigDatabase;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Ticker;
+
+/**
+ * A {@link MultiRepositoryProvider} serving mock repositories whose object caches hold
+ * {@link #CACHE_SIZE} objects, with a cache budget that fits two of them and a clock that only
+ * moves when {@link #advance advanced}.
+ */
+public class MockMultiRepositoryProvider extends MultiRepositoryProvider {
+
+    public static final int CACHE_SIZE = 100;
+
+    private final ManualTicker ticker;
+
+    private final Map<String, Repository> loaded = new ConcurrentHashMap<>();
+
+    public MockMultiRepositoryProvider(URI rootRepoURI) {
+        this(rootRepoURI, new ManualTicker());
+    }
+
+    private MockMultiRepositoryProvider(URI rootRepoURI, ManualTicker ticker) {
+        super(rootRepoURI, 2 * CACHE_SIZE + CACHE_SIZE / 2, 10, TimeUnit.MINUTES, ticker);
+        this.ticker = ticker;
+    }
+
+    private static class ManualTicker extends Ticker {
+
+        final AtomicLong nanos = new AtomicLong();
+
+        @Override
+        public long read() {
+            return nanos.get();
+        }
+    }
+
+    @Override
+    Repository loadGeoGIG(String repoName) {
+        Repository repo = mockRepository();
+        loaded.put(repoName, repo);
+        return repo;
+    }
+
+    private Repository mockRepository() {
+        final AtomicBoolean open = new AtomicBoolean(true);
+        ConfigDatabase config = mock(ConfigDatabase.class);
+        when(config.get("objectdb.cache.enabled", Boolean.class))
+                .thenReturn(Optional.<Boolean> absent());
+        when(config.get("objectdb.cache.maxSize", Integer.class))
+                .thenReturn(Optional.of(CACHE_SIZE));
+
+        Repository repo = mock(Repository.class);
+        Context context = mock(Context.class);
+        when(context.repository()).thenReturn(repo);
+        when(repo.context()).thenReturn(context);
+        when(repo.configDatabase()).thenReturn(config);
+        when(repo.isOpen()).thenAnswer((invocation) -> open.get());
+        doAnswer((invocation) -> {
+            open.set(false);
+            return null;
+        }).when(repo).close();
+        return repo;
+    }
+
+    /**
+     * @return the last repository loaded with the given name, or {@code null}
+     */
+    public Repository loaded(String repoName) {
+        return loaded.get(repoName);
+    }
+
+    /**
+     * Moves the clock forward, for repositories to expire on the next {@link #cleanUp()}
+     */
+    public void advance(long time, TimeUnit unit) {
+        ticker.nanos.addAndGet(unit.toNanos(time));
+    }
+
+    @Override
+    public int leases(String repositoryName) {
+        return super.leases(repositoryName);
+    }
+
+    @Override
+    public void cleanUp() {
+        super.cleanUp();
+    }
+}
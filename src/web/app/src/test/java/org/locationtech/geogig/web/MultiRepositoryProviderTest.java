@@ -0,0 +1,169 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.web;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.locationtech.geogig.repository.AbstractGeoGigOp;
+import org.locationtech.geogig.repository.Repository;
+import org.locationtech.geogig.rest.AsyncContext;
+import org.locationtech.geogig.rest.AsyncContext.AsyncCommand;
+import org.locationtech.geogig.web.MultiRepositoryProvider.Lease;
+import org.restlet.data.Method;
+import org.restlet.data.Request;
+
+public class MultiRepositoryProviderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockMultiRepositoryProvider provider;
+
+    @Before
+    public void before() {
+        // fits two repositories
+        provider = new MockMultiRepositoryProvider(folder.getRoot().toURI());
+    }
+
+    private Repository use(String repoName) {
+        try (Lease lease = provider.lease(repoName)) {
+            return lease.repository();
+        }
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        Repository repo1 = use("repo1");
+        Repository repo2 = use("repo2");
+        use("repo1");
+        Repository repo3 = use("repo3");
+
+        assertTrue(repo1.isOpen());
+        assertFalse(repo2.isOpen());
+        assertTrue(repo3.isOpen());
+    }
+
+    @Test
+    public void testLeasedRepositoryClosedOnlyOnceReleased() {
+        final Lease lease = provider.lease("repo1");
+        final Repository repo1 = lease.repository();
+        assertEquals(1, provider.leases("repo1"));
+
+        use("repo2");
+        use("repo3");
+        // evicted, but still in use
+        assertEquals(0, provider.leases("repo1"));
+        assertTrue(repo1.isOpen());
+
+        // a new request gets a new instance
+        Repository reloaded = use("repo1");
+        assertNotSame(repo1, reloaded);
+        assertTrue(reloaded.isOpen());
+
+        lease.close();
+        assertFalse(repo1.isOpen());
+
+        // closing a lease twice has no effect
+        lease.close();
+        assertTrue(reloaded.isOpen());
+    }
+
+    @Test
+    public void testIdleExpiry() {
+        final Repository repo1 = use("repo1");
+        final Lease lease = provider.lease("repo2");
+        final Repository repo2 = lease.repository();
+
+        provider.advance(11, TimeUnit.MINUTES);
+        provider.cleanUp();
+
+        assertFalse(repo1.isOpen());
+        assertTrue(repo2.isOpen());
+        lease.close();
+        assertFalse(repo2.isOpen());
+    }
+
+    @Test
+    public void testRequestLeaseReleasedWhenExchangeCompletes() {
+        final Request request = new Request(Method.GET, "http://localhost/repos/repo1/log");
+        request.getAttributes().put("repository", "repo1");
+
+        Exchange.run(() -> {
+            Repository repo = provider.getGeogig(request).get();
+            assertSame(provider.loaded("repo1"), repo);
+            assertEquals(1, provider.leases("repo1"));
+        });
+        assertEquals(0, provider.leases("repo1"));
+
+        // outside an exchange the lease is released right away
+        provider.getGeogig(request);
+        assertEquals(0, provider.leases("repo1"));
+        assertTrue(provider.loaded("repo1").isOpen());
+    }
+
+    private static class BlockingOp extends AbstractGeoGigOp<Boolean> {
+
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        protected Boolean _call() {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return context().repository().isOpen();
+        }
+    }
+
+    @Test
+    public void testRequestLeaseOutlivesExchange() throws Exception {
+        final Request request = new Request(Method.GET, "http://localhost/repos/repo1/export");
+        request.getAttributes().put("repository", "repo1");
+        final AsyncContext asyncContext = AsyncContext.createNew(1, 0);
+        final BlockingOp op = new BlockingOp();
+        final AtomicReference<AsyncCommand<Boolean>> task = new AtomicReference<>();
+        try {
+            Exchange.run(() -> {
+                op.setContext(provider.getGeogig(request).get().context());
+                task.set(asyncContext.run(op, "background task",
+                        provider.lease(request).orNull()));
+            });
+            final Repository repo1 = provider.loaded("repo1");
+            assertEquals(1, provider.leases("repo1"));
+
+            // evicted and expired while the task is running
+            use("repo2");
+            use("repo3");
+            provider.advance(11, TimeUnit.MINUTES);
+            provider.cleanUp();
+            assertTrue(repo1.isOpen());
+
+            op.release.countDown();
+            assertTrue(task.get().get());
+            assertEquals(AsyncContext.Status.FINISHED, task.get().getStatus());
+            assertFalse(repo1.isOpen());
+        } finally {
+            asyncContext.shutDown();
+        }
+    }
+}